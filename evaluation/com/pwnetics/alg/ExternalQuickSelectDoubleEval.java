@@ -0,0 +1,104 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.pwnetics.math.ExternalQuickMedianDouble;
+
+/**
+ * Writes a temporary file of random doubles, by default 2^28 of them or 2 GiB, and times the exact external median and some percentiles of {@link ExternalQuickSelectDouble}.
+ * The results are checked against a sorted copy when the file fits in an array.
+ * The first argument is the number of doubles and the second is the directory of the temporary file.
+ */
+public class ExternalQuickSelectDoubleEval {
+
+	public static void main(String[] args) throws IOException {
+		final long numValues = args.length > 0 ? Long.parseLong(args[0]) : 1L << 28;
+		final File directory = args.length > 1 ? new File(args[1]) : null;
+		Random random = new Random(42);
+
+		File file = File.createTempFile("ExternalQuickSelectDoubleEval", ".bin", directory);
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 23).order(ByteOrder.nativeOrder());
+			final boolean isChecked = numValues <= 1 << 27;
+			double [] sorted = isChecked ? new double[(int)numValues] : null;
+			for(long i=0; i<numValues; i++) {
+				final double value = random.nextGaussian();
+				if(isChecked) {
+					sorted[(int)i] = value;
+				}
+				bytes.putDouble(value);
+				if(!bytes.hasRemaining() || i == numValues - 1) {
+					bytes.flip();
+					while(bytes.hasRemaining()) {
+						channel.write(bytes);
+					}
+					bytes.clear();
+				}
+			}
+			if(isChecked) {
+				Arrays.sort(sorted);
+			}
+			System.out.println("wrote " + (8 * numValues >> 20) + " MiB to " + file);
+
+			ExternalQuickSelectDouble select = new ExternalQuickSelectDouble(new QuickSelectDoubleArray(false), ExternalQuickSelectDouble.DEFAULT_MAX_BUFFERED_VALUES);
+			System.out.println("percentile\tms\tvalue");
+			for(double percentile : new double[] {0.0, 1.0, 50.0, 99.0, 99.99, 100.0}) {
+				final long selectIdx = Math.min(numValues - 1, (long)(percentile / 100.0 * numValues));
+				long start = System.nanoTime();
+				double value = select.select(channel, selectIdx);
+				long millis = (System.nanoTime() - start) / 1000000;
+				if(isChecked && value != sorted[(int)selectIdx]) {
+					throw new IllegalStateException("wrong value at " + selectIdx);
+				}
+				System.out.println(percentile + "\t" + millis + "\t" + value);
+			}
+
+			long start = System.nanoTime();
+			double median = new ExternalQuickMedianDouble().median(channel);
+			System.out.println("median\t" + (System.nanoTime() - start) / 1000000 + "\t" + median);
+		} finally {
+			raf.close();
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelQuickSelectDoubleArrayEval {
+	private static final Random random = new Random(42);
+
+	private static double [] randomArray(int n) {
+		double [] values = new double[n];
+		for(int i=0; i<n; i++) {
+			values[i] = random.nextDouble();
+		}
+		return values;
+	}
+
+
+	public static void main(String[] args) {
+		int [] sizes = new int[] {1 << 20, 1 << 22, 1 << 24, 1 << 26};
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		int numTrials = 10;
+
+		System.out.println("size\tthreads\tmilliseconds\tspeedup");
+		for(int size : sizes) {
+			double [] original = randomArray(size);
+			double [] values = new double[size];
+			int selectIdx = size / 2;
+
+			double [] sorted = Arrays.copyOf(original, size);
+			Arrays.sort(sorted);
+			double expected = sorted[selectIdx];
+
+			// Time the sequential QuickSelect as the baseline that the parallel one must beat
+			QuickSelectDoubleArray qs = new QuickSelectDoubleArray(false);
+			long sequentialTime = 0L;
+			for(int trial=0; trial<numTrials; trial++) {
+				System.arraycopy(original, 0, values, 0, size);
+				long startTime = System.nanoTime();
+				qs.select(values, selectIdx);
+				sequentialTime += System.nanoTime() - startTime;
+				if(values[selectIdx] != expected) {  // FindBugs: not a bug, the selected value must be exactly the sorted value
+					System.out.println("error: " + values[selectIdx] + ", " + expected);
+				}
+			}
+			System.out.println(size + "\tsequential\t" + (sequentialTime / numTrials / 1e6) + "\t1.0");
+
+			for(int threads=1; threads<=maxThreads; threads*=2) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				ParallelQuickSelectDoubleArray pqs = new ParallelQuickSelectDoubleArray(qs, pool, ParallelQuickSelectDoubleArray.DEFAULT_SEQUENTIAL_THRESHOLD);
+				long parallelTime = 0L;
+				for(int trial=0; trial<numTrials; trial++) {
+					System.arraycopy(original, 0, values, 0, size);
+					long startTime = System.nanoTime();
+					pqs.select(values, selectIdx);
+					parallelTime += System.nanoTime() - startTime;
+					if(values[selectIdx] != expected) {  // FindBugs: not a bug, the selected value must be exactly the sorted value
+						System.out.println("error: " + values[selectIdx] + ", " + expected);
+					}
+				}
+				pool.shutdown();
+				System.out.println(size + "\t" + threads + "\t" + (parallelTime / numTrials / 1e6) + "\t" + ((double)sequentialTime / parallelTime));
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import com.pwnetics.math.QuickMedianDoubleArray;
+import com.pwnetics.math.QuickMedianDoubleBuffer;
+
+/**
+ * Times the median of a memory-mapped file of doubles with {@link QuickMedianDoubleBuffer}, against reading the file into an array for {@link QuickMedianDoubleArray}.
+ * The number of doubles is the first argument, 2^25 by default.
+ */
+public class QuickSelectDoubleBufferEval {
+
+	public static void main(String[] args) throws IOException {
+		final long numValues = args.length > 0 ? Long.parseLong(args[0]) : 1L << 25;
+		Random random = new Random(42);
+
+		File file = File.createTempFile("QuickSelectDoubleBufferEval", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			raf.setLength(8 * numValues);
+			BigDoubleBuffer writer = BigDoubleBuffer.map(channel, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder());
+			for(long i=0; i<numValues; i++) {
+				writer.put(i, random.nextGaussian());
+			}
+
+			System.out.println("trial\tmapped ms\tarray ms\tmedian");
+			for(int trial=0; trial<3; trial++) {
+				// A private mapping reorders a copy-on-write view, so every trial starts from the same file
+				long start = System.nanoTime();
+				double mappedMedian = new QuickMedianDoubleBuffer().median(BigDoubleBuffer.map(channel, FileChannel.MapMode.PRIVATE, ByteOrder.nativeOrder()));
+				long mappedNanos = System.nanoTime() - start;
+
+				String arrayMillis = "n/a";
+				if(numValues <= Integer.MAX_VALUE - 8) {
+					start = System.nanoTime();
+					double [] values = new double[(int)numValues];
+					BigDoubleBuffer.map(channel, FileChannel.MapMode.READ_ONLY, ByteOrder.nativeOrder()).get(0, values, 0, values.length);
+					double arrayMedian = new QuickMedianDoubleArray().median(values);
+					arrayMillis = Long.toString((System.nanoTime() - start) / 1000000);
+					if(arrayMedian != mappedMedian) {
+						throw new IllegalStateException();
+					}
+				}
+				System.out.println(trial + "\t" + mappedNanos / 1000000 + "\t" + arrayMillis + "\t" + mappedMedian);
+			}
+		} finally {
+			raf.close();
+		}
+		file.delete();
+	}
+}
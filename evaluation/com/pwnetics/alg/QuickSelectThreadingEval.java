@@ -0,0 +1,96 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pwnetics.math.QuickMedianDoubleArray;
+
+/**
+ * Measures the median throughput of threads that share one {@link QuickMedianDoubleArray}, with a shared seeded {@link Random} versus the default per-thread generator.
+ * Prints medians per second for each thread count.
+ */
+public class QuickSelectThreadingEval {
+	private static final int SIZE = 1001;
+	private static final int NUM_ARRAYS = 1000;
+	private static final long RUN_MILLISECONDS = 2000;
+
+	private static long medianThroughput(final QuickMedianDoubleArray qm, int numThreads, final double [][] arrays) throws InterruptedException {
+		final AtomicLong numMedians = new AtomicLong();
+		final long stopTime = System.nanoTime() + RUN_MILLISECONDS * 1000000L;
+		Thread [] threads = new Thread[numThreads];
+		for(int t=0; t<numThreads; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					double [] values = new double[SIZE];
+					long count = 0;
+					while(System.nanoTime() < stopTime) {
+						System.arraycopy(arrays[(int)(count % NUM_ARRAYS)], 0, values, 0, SIZE);
+						qm.median(values);
+						count++;
+					}
+					numMedians.addAndGet(count);
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		return numMedians.get() * 1000 / RUN_MILLISECONDS;
+	}
+
+
+	public static void main(String[] args) throws InterruptedException {
+		Random random = new Random(42);
+		double [][] arrays = new double[NUM_ARRAYS][SIZE];
+		for(double [] values : arrays) {
+			for(int i=0; i<SIZE; i++) {
+				values[i] = random.nextDouble();
+			}
+		}
+
+		QuickMedianDoubleArray sharedRandom = new QuickMedianDoubleArray(new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD));
+		QuickMedianDoubleArray threadLocalRandom = new QuickMedianDoubleArray(new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD));
+
+		// Warm up both configurations so that the first timed run isn't interpreted
+		medianThroughput(sharedRandom, 1, arrays);
+		medianThroughput(threadLocalRandom, 1, arrays);
+
+		int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+		System.out.println("threads\tshared Random\tThreadLocalRandom\t(medians per second)");
+		for(int numThreads=1; numThreads<=maxThreads; numThreads*=2) {
+			System.out.println(numThreads + "\t" + medianThroughput(sharedRandom, numThreads, arrays) + "\t" + medianThroughput(threadLocalRandom, numThreads, arrays));
+		}
+	}
+}
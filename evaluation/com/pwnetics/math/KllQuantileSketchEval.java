@@ -0,0 +1,110 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares {@link KllQuantileSketch} against the exact {@link QuickMedianDoubleArray} and {@link QuickQuantileDoubleArray}.
+ * For each stream size and k, prints the worst normalized rank error of the sketch over the percentiles, its retained values, and the nanoseconds per value of the sketch and of the exact median.
+ */
+public class KllQuantileSketchEval {
+	private static final int NUM_TRIALS = 10;
+
+	private static double exactRank(double [] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return (double)lo / sorted.length;
+	}
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		int [] sizes = new int[] {10000, 100000, 1000000, 10000000};
+		int [] ks = new int[] {50, 200, 1000};
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		QuickQuantileDoubleArray qq = new QuickQuantileDoubleArray();
+
+		System.out.println("n\tk\tmax rank error\tmedian rank error\tretained\tsketch ns/value\texact median ns/value\texact 99th ns/value");
+		for(int size : sizes) {
+			double [] stream = new double[size];
+			for(int k : ks) {
+				double maxRankError = 0;
+				double maxMedianRankError = 0;
+				int retained = 0;
+				long sketchNanos = 0;
+				long medianNanos = 0;
+				long quantileNanos = 0;
+				for(int trial=0; trial<NUM_TRIALS; trial++) {
+					for(int i=0; i<size; i++) {
+						stream[i] = random.nextGaussian();
+					}
+
+					long start = System.nanoTime();
+					KllQuantileSketch sketch = new KllQuantileSketch(k);
+					for(double value : stream) {
+						sketch.update(value);
+					}
+					double sketchMedian = sketch.quantile(0.5);
+					sketchNanos += System.nanoTime() - start;
+					retained = Math.max(retained, sketch.getNumRetained());
+
+					double [] values = stream.clone();
+					start = System.nanoTime();
+					qm.median(values);
+					medianNanos += System.nanoTime() - start;
+
+					values = stream.clone();
+					start = System.nanoTime();
+					qq.quantile(values, 0.99);
+					quantileNanos += System.nanoTime() - start;
+
+					Arrays.sort(values);
+					maxMedianRankError = Math.max(maxMedianRankError, Math.abs(exactRank(values, sketchMedian) - 0.5));
+					for(int percent=1; percent<100; percent++) {
+						double p = percent / 100.0;
+						maxRankError = Math.max(maxRankError, Math.abs(exactRank(values, sketch.quantile(p)) - p));
+					}
+				}
+				System.out.println(size + "\t" + k + "\t" + maxRankError + "\t" + maxMedianRankError + "\t" + retained + "\t" + (double)sketchNanos / NUM_TRIALS / size + "\t" + (double)medianNanos / NUM_TRIALS / size + "\t" + (double)quantileNanos / NUM_TRIALS / size);
+			}
+		}
+	}
+}
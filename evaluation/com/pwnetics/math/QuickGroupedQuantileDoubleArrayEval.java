@@ -0,0 +1,94 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the grouped medians of {@link QuickGroupedQuantileDoubleArray} against collecting each group's values into an <code>ArrayList&lt;Double&gt;</code>, unboxing it and running {@link QuickMedianDoubleArray}.
+ * Prints the milliseconds per aggregation for each number of groups.
+ */
+public class QuickGroupedQuantileDoubleArrayEval {
+	private static final int NUM_TRIALS = 10;
+	private static final int NUM_VALUES = 2000000;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		QuickGroupedQuantileDoubleArray grouped = new QuickGroupedQuantileDoubleArray();
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		double checksum = 0;
+
+		System.out.println("groups\tgrouped ms\tlists ms");
+		for(int numGroups : new int[] {10, 1000, 100000}) {
+			int [] keys = new int[NUM_VALUES];
+			double [] values = new double[NUM_VALUES];
+			for(int i=0; i<NUM_VALUES; i++) {
+				keys[i] = random.nextInt(numGroups);
+				values[i] = random.nextGaussian();
+			}
+
+			long groupedNanos = 0;
+			long listsNanos = 0;
+			for(int trial=0; trial<NUM_TRIALS+1; trial++) {  // The first trial warms up the JIT
+				long start = System.nanoTime();
+				for(double m : grouped.medians(keys, values, numGroups)) {
+					checksum += m;
+				}
+				long groupedTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				List<List<Double>> lists = new ArrayList<List<Double>>(numGroups);
+				for(int g=0; g<numGroups; g++) {
+					lists.add(new ArrayList<Double>());
+				}
+				for(int i=0; i<NUM_VALUES; i++) {
+					lists.get(keys[i]).add(values[i]);
+				}
+				for(List<Double> list : lists) {
+					double [] groupValues = new double[list.size()];
+					for(int i=0; i<groupValues.length; i++) {
+						groupValues[i] = list.get(i);
+					}
+					checksum -= qm.median(groupValues);
+				}
+				long listsTime = System.nanoTime() - start;
+
+				if(trial > 0) {
+					groupedNanos += groupedTime;
+					listsNanos += listsTime;
+				}
+			}
+			System.out.println(numGroups + "\t" + groupedNanos / 1e6 / NUM_TRIALS + "\t" + listsNanos / 1e6 / NUM_TRIALS);
+		}
+		System.out.println("checksum (should be about 0) " + checksum);
+	}
+}
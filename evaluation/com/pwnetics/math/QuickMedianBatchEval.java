@@ -0,0 +1,106 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the batch medians of {@link QuickMedianDoubleArray#medians(double[][])} and {@link QuickMedianDoubleArray#medians(double[], int[])} against calling {@link QuickMedianDoubleArray#median(double[])} once per array.
+ * Each batch holds about a million values in arrays of one length, like a minute of readings for each of many sensors.
+ * Prints the nanoseconds per array for each array length.
+ */
+public class QuickMedianBatchEval {
+	private static final int NUM_TRIALS = 20;
+	private static final int NUM_VALUES = 1000000;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		double checksum = 0;
+
+		System.out.println("length\tmedian ns\tarrays ns\tflat ns\tflat parallel ns (" + pool.getParallelism() + " threads)");
+		for(int length : new int[] {5, 16, 30, 60, 61, 300, 1000}) {
+			final int numArrays = NUM_VALUES / length;
+			double [] reference = new double[numArrays * length];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = random.nextGaussian();
+			}
+			int [] offsets = new int[numArrays + 1];
+			for(int i=0; i<=numArrays; i++) {
+				offsets[i] = i * length;
+			}
+			double [][] arrays = new double[numArrays][length];
+			double [] flat = new double[reference.length];
+
+			long [] nanos = new long[4];
+			for(int trial=0; trial<NUM_TRIALS+1; trial++) {  // The first trial warms up the JIT
+				for(int method=0; method<nanos.length; method++) {
+					// Selection reorders the values, so every method starts from the same unsorted copy
+					for(int i=0; i<numArrays; i++) {
+						System.arraycopy(reference, i * length, arrays[i], 0, length);
+					}
+					System.arraycopy(reference, 0, flat, 0, reference.length);
+
+					long start = System.nanoTime();
+					double sum = 0;
+					switch(method) {
+					case 0:
+						for(double [] values : arrays) {
+							sum += qm.median(values);
+						}
+						break;
+					case 1:
+						for(double m : qm.medians(arrays)) {
+							sum += m;
+						}
+						break;
+					case 2:
+						for(double m : qm.medians(flat, offsets)) {
+							sum += m;
+						}
+						break;
+					default:
+						for(double m : qm.medians(flat, offsets, pool)) {
+							sum += m;
+						}
+					}
+					if(trial > 0) {
+						nanos[method] += System.nanoTime() - start;
+					}
+					checksum += method == 0 ? 3 * sum : -sum;
+				}
+			}
+			System.out.println(length + "\t" + nanos[0] / NUM_TRIALS / numArrays + "\t" + nanos[1] / NUM_TRIALS / numArrays + "\t" + nanos[2] / NUM_TRIALS / numArrays + "\t" + nanos[3] / NUM_TRIALS / numArrays);
+		}
+		System.out.println("checksum (should be about 0) " + checksum);
+	}
+}
@@ -31,7 +31,6 @@ package com.pwnetics.math;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
@@ -40,8 +39,18 @@ import java.util.Map.Entry;
 import java.util.Random;
 
 import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
 import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
-
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+
+/**
+ * Ad hoc comparison of QuickMedian against sorting across the original evaluation conditions, printing total
+ * milliseconds per condition.
+ * For numbers that can be compared between runs, with warmup, forking and allocation rates, use the JMH suite in the
+ * <code>jmh</code> directory instead.
+ *
+ * @author romanows
+ */
 public class QuickMedianDoubleArrayEval {
 	private static final Random random = new Random(42);
 
@@ -52,12 +61,20 @@ public class QuickMedianDoubleArrayEval {
 		public boolean duplicate;
 		public SortingCondition sorting;
 		public EnumSet<QuickSelectDoubleArray.PivotMethod> pivotMethod;
+		public SelectionMethod selectionMethod;
+		public PartitionMethod partitionMethod;
+
+		public Condition(int size, boolean duplicate, SortingCondition sorting, EnumSet<QuickSelectDoubleArray.PivotMethod> pivotMethod, SelectionMethod selectionMethod) {
+			this(size, duplicate, sorting, pivotMethod, selectionMethod, QuickSelectDoubleArray.DEFAULT_PARTITION_METHOD);
+		}
 
-		public Condition(int size, boolean duplicate, SortingCondition sorting, EnumSet<QuickSelectDoubleArray.PivotMethod> pivotMethod) {
+		public Condition(int size, boolean duplicate, SortingCondition sorting, EnumSet<QuickSelectDoubleArray.PivotMethod> pivotMethod, SelectionMethod selectionMethod, PartitionMethod partitionMethod) {
 			this.size = size;
 			this.duplicate = duplicate;
 			this.sorting = sorting;
 			this.pivotMethod = pivotMethod;
+			this.selectionMethod = selectionMethod;
+			this.partitionMethod = partitionMethod;
 		}
 
 		@Override
@@ -66,7 +83,9 @@ public class QuickMedianDoubleArrayEval {
 			sb.append(size).append("\t");
 			sb.append(duplicate).append("\t");
 			sb.append(sorting).append("\t");
-			sb.append(pivotMethod);
+			sb.append(pivotMethod).append("\t");
+			sb.append(selectionMethod).append("\t");
+			sb.append(partitionMethod);
 			return sb.toString();
 		}
 	}
@@ -97,6 +116,46 @@ public class QuickMedianDoubleArrayEval {
 	}
 
 
+	/**
+	 * Arranges the values in the given sorting condition.
+	 * @param values values to arrange in-place
+	 * @param sorting how the values should be arranged
+	 */
+	protected static void arrange(double [] values, SortingCondition sorting) {
+		switch (sorting) {
+		case UNSORTED:
+			// Pass, they're stored unsorted
+			break;
+		case SORTED:
+			Arrays.sort(values);
+			break;
+		case MIDDLE_UNSORTED:
+			Arrays.sort(values,0,(int)(values.length * 0.45));
+			Arrays.sort(values,(int)(values.length * 0.55), values.length);
+			break;
+		case REVERSE_SORTED:
+			for(int i=0; i<values.length; i++) {
+				values[i] = -values[i];
+			}
+			Arrays.sort(values);
+			for(int i=0; i<values.length; i++) {
+				values[i] = -values[i];
+			}
+			break;
+		case REVERSE_MIDDLE_UNSORTED:
+			for(int i=0; i<values.length; i++) {
+				values[i] = -values[i];
+			}
+			Arrays.sort(values,0,(int)(values.length * 0.45));
+			Arrays.sort(values,(int)(values.length * 0.55), values.length);
+			for(int i=0; i<values.length; i++) {
+				values[i] = -values[i];
+			}
+			break;
+		}
+	}
+
+
 	public static void main(String[] args) {
 		int [] sizes = new int[] {100, 101, 1000, 1001, 10000, 10001, 100000, 100001};
 		List<EnumSet<QuickSelectDoubleArray.PivotMethod>> pivotMethods = new ArrayList<EnumSet<QuickSelectDoubleArray.PivotMethod>>();
@@ -110,8 +169,13 @@ public class QuickMedianDoubleArrayEval {
 			for(boolean duplicate : new Boolean[] {true, false}) {
 				for(SortingCondition sorting : EnumSet.allOf(SortingCondition.class)) {
 					for(EnumSet<QuickSelectDoubleArray.PivotMethod> pivotMethod : pivotMethods) {
-						conditions.add(new Condition(size, duplicate, sorting, pivotMethod));
+						conditions.add(new Condition(size, duplicate, sorting, pivotMethod, SelectionMethod.QUICKSELECT));
+						conditions.add(new Condition(size, duplicate, sorting, pivotMethod, SelectionMethod.QUICKSELECT, PartitionMethod.THREE_WAY));
+						conditions.add(new Condition(size, duplicate, sorting, pivotMethod, SelectionMethod.QUICKSELECT, PartitionMethod.BLOCK));
 					}
+					// Neither Floyd-Rivest nor radix selection use the pivot method
+					conditions.add(new Condition(size, duplicate, sorting, EnumSet.noneOf(QuickSelectDoubleArray.PivotMethod.class), SelectionMethod.FLOYD_RIVEST));
+					conditions.add(new Condition(size, duplicate, sorting, EnumSet.noneOf(QuickSelectDoubleArray.PivotMethod.class), SelectionMethod.RADIX));
 				}
 			}
 		}
@@ -127,50 +191,19 @@ public class QuickMedianDoubleArrayEval {
 				List<double []> valuesList = new ArrayList<double[]>();
 				for(int rep=0; rep<1e6/c.size; rep++) {  // Need to do many arrays, otherwise system clock isn't fast enough to catch median computation
 					double [] values = intArray(c.size, c.duplicate);
-
-					switch (c.sorting) {
-					case UNSORTED:
-						// Pass, they're stored unsorted
-						break;
-					case SORTED:
-						Arrays.sort(values);
-						break;
-					case MIDDLE_UNSORTED:
-						Arrays.sort(values,0,(int)(values.length * 0.45));
-						Arrays.sort(values,(int)(values.length * 0.55), values.length);
-						break;
-					case REVERSE_SORTED:
-						for(int i=0; i<values.length; i++) {
-							values[i] = -values[i];
-						}
-						Arrays.sort(values);
-						for(int i=0; i<values.length; i++) {
-							values[i] = -values[i];
-						}
-						break;
-					case REVERSE_MIDDLE_UNSORTED:
-						for(int i=0; i<values.length; i++) {
-							values[i] = -values[i];
-						}
-						Arrays.sort(values,0,(int)(values.length * 0.45));
-						Arrays.sort(values,(int)(values.length * 0.55), values.length);
-						for(int i=0; i<values.length; i++) {
-							values[i] = -values[i];
-						}
-						break;
-					}
+					arrange(values, c.sorting);
 					valuesList.add(values);
 				}
 
-				QuickSelectDoubleArray qs = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, c.pivotMethod, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+				QuickSelectDoubleArray qs = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, c.pivotMethod, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, c.selectionMethod, c.partitionMethod);
 				QuickMedianDoubleArray qm = new QuickMedianDoubleArray(qs);
 
 				double m = 0.0;
-				long elapsedTime = new Date().getTime();
+				long elapsedTime = System.nanoTime();
 				for(double [] values : valuesList) {
 					m += qm.median(values);
 				}
-				elapsedTime = new Date().getTime() - elapsedTime;
+				elapsedTime = System.nanoTime() - elapsedTime;
 
 				if(!conditionToTime.containsKey(c)) {
 					conditionToTime.put(c, 0L);
@@ -179,11 +212,11 @@ public class QuickMedianDoubleArrayEval {
 				conditionToTime.put(c, conditionToTime.get(c) + elapsedTime);
 
 				double sm = 0.0;
-				elapsedTime = new Date().getTime();
+				elapsedTime = System.nanoTime();
 				for(double [] values : valuesList) {
 					sm += SortingMedianDoubleArray.median(values);
 				}
-				elapsedTime = new Date().getTime() - elapsedTime;
+				elapsedTime = System.nanoTime() - elapsedTime;
 				sortedConditionToTime.put(c, sortedConditionToTime.get(c) + elapsedTime);
 
 				if(m != sm) {  // FindBugs: not a bug, if the two medians are not exactly equivalent, one of the methods is in error
@@ -194,8 +227,8 @@ public class QuickMedianDoubleArrayEval {
 
 		System.out.println("\n\n");
 		for(Entry<Condition, Long> entry : conditionToTime.entrySet()) {
-			System.out.println(entry.getKey().toString() + "\t" + entry.getValue() + "\tQUICKMEDIAN");
-			System.out.println(entry.getKey().toString() + "\t" + sortedConditionToTime.get(entry.getKey()) + "\tSORTED");
+			System.out.println(entry.getKey().toString() + "\t" + (entry.getValue() / 1000000) + "\tQUICKMEDIAN");
+			System.out.println(entry.getKey().toString() + "\t" + (sortedConditionToTime.get(entry.getKey()) / 1000000) + "\tSORTED");
 		}
 	}
 }
@@ -0,0 +1,78 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import java.util.Random;
+
+/**
+ * Compares {@link QuickMedianDoubleArray#medianNonDestructive(double[])} against cloning the array and running {@link QuickMedianDoubleArray#median(double[])}.
+ * Prints the microseconds per median for each array size.
+ */
+public class QuickMedianNonDestructiveEval {
+	private static final int NUM_TRIALS = 20;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		double checksum = 0;
+
+		System.out.println("size\tnon-destructive us\tclone us");
+		for(int size : new int[] {100, 1000, 10000, 100000, 1000000, 10000000}) {
+			double [] values = new double[size];
+			for(int i=0; i<size; i++) {
+				values[i] = random.nextGaussian();
+			}
+			final int reps = Math.max(1, 1000000 / size);
+
+			long nonDestructiveNanos = 0;
+			long cloneNanos = 0;
+			for(int trial=0; trial<NUM_TRIALS+1; trial++) {  // The first trial warms up the JIT and the scratch array
+				long start = System.nanoTime();
+				for(int rep=0; rep<reps; rep++) {
+					checksum += qm.medianNonDestructive(values);
+				}
+				long nonDestructive = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for(int rep=0; rep<reps; rep++) {
+					checksum -= qm.median(values.clone());
+				}
+				long cloneTime = System.nanoTime() - start;
+
+				if(trial > 0) {
+					nonDestructiveNanos += nonDestructive;
+					cloneNanos += cloneTime;
+				}
+			}
+			System.out.println(size + "\t" + nonDestructiveNanos / 1e3 / NUM_TRIALS / reps + "\t" + cloneNanos / 1e3 / NUM_TRIALS / reps);
+		}
+		System.out.println("checksum (should be 0) " + checksum);
+	}
+}
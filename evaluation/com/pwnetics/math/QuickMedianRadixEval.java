@@ -0,0 +1,121 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+import com.pwnetics.math.QuickMedianDoubleArrayEval.SortingCondition;
+
+/**
+ * Compares the {@link SelectionMethod#RADIX} selection method against the comparison-based selection methods and pivot methods on large arrays, in each {@link SortingCondition}.
+ * {@link QuickMedianDoubleArrayEval} covers the smaller array sizes, where many arrays are needed per timing.
+ * Prints the milliseconds per median for each size, sorting condition and method.
+ *
+ * <p>The array sizes may be given as arguments; the default sizes go up to 10^7, which needs a heap of about 256MB.</p>
+ */
+public class QuickMedianRadixEval {
+	private static final int NUM_TRIALS = 5;
+
+
+	public static void main(String[] args) {
+		int [] sizes = new int[] {100000, 1000000, 10000000};
+		if(args.length > 0) {
+			sizes = new int[args.length];
+			for(int i=0; i<args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		List<String> names = new ArrayList<String>();
+		List<QuickMedianDoubleArray> medians = new ArrayList<QuickMedianDoubleArray>();
+		List<EnumSet<PivotMethod>> pivotMethods = new ArrayList<EnumSet<PivotMethod>>();
+		pivotMethods.add(EnumSet.noneOf(PivotMethod.class));
+		pivotMethods.add(EnumSet.of(PivotMethod.MEDIAN_OF_THREE));
+		pivotMethods.add(EnumSet.of(PivotMethod.RANDOM));
+		pivotMethods.add(EnumSet.of(PivotMethod.MEDIAN_OF_THREE, PivotMethod.RANDOM));
+		for(EnumSet<PivotMethod> pivotMethod : pivotMethods) {
+			for(PartitionMethod partitionMethod : new PartitionMethod[] {PartitionMethod.TWO_WAY, PartitionMethod.BLOCK}) {
+				if(pivotMethod.isEmpty() || partitionMethod == PartitionMethod.TWO_WAY) {
+					names.add("QUICKSELECT " + pivotMethod + " " + partitionMethod);
+					medians.add(new QuickMedianDoubleArray(new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, pivotMethod, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.QUICKSELECT, partitionMethod)));
+				}
+			}
+		}
+		for(SelectionMethod selectionMethod : new SelectionMethod[] {SelectionMethod.INTROSELECT, SelectionMethod.FLOYD_RIVEST, SelectionMethod.RADIX}) {
+			names.add(selectionMethod.toString());
+			medians.add(new QuickMedianDoubleArray(new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod)));
+		}
+
+		Random random = new Random(42);
+		System.out.println("size\tsorting\tmethod\tms");
+		for(int size : sizes) {
+			double [] values = new double[size];
+			double [] v = new double[size];
+			for(SortingCondition sorting : SortingCondition.values()) {
+				// Shuffled integers, as in QuickMedianDoubleArrayEval, but shuffled in place
+				for(int i=0; i<size; i++) {
+					values[i] = i;
+				}
+				for(int i=size-1; i>0; i--) {
+					int j = random.nextInt(i + 1);
+					double swap = values[i];
+					values[i] = values[j];
+					values[j] = swap;
+				}
+				QuickMedianDoubleArrayEval.arrange(values, sorting);
+
+				double expected = Double.NaN;
+				for(int m=0; m<medians.size(); m++) {
+					long elapsedNanos = 0;
+					for(int trial=0; trial<NUM_TRIALS+1; trial++) {  // The first trial warms up the JIT
+						System.arraycopy(values, 0, v, 0, size);
+						long start = System.nanoTime();
+						double median = medians.get(m).median(v);
+						if(trial > 0) {
+							elapsedNanos += System.nanoTime() - start;
+						}
+						if(Double.isNaN(expected)) {
+							expected = median;
+						} else if(median != expected) {  // FindBugs: not a bug, the methods must agree exactly
+							System.out.println("error: " + median + ", " + expected + " : " + names.get(m));
+						}
+					}
+					System.out.println(size + "\t" + sorting + "\t" + names.get(m) + "\t" + elapsedNanos / 1e6 / NUM_TRIALS);
+				}
+			}
+		}
+	}
+}
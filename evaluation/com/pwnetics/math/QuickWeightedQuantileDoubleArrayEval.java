@@ -0,0 +1,94 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Random;
+
+/**
+ * Compares the weighted median of {@link QuickWeightedQuantileDoubleArray} against expanding the counts into repeated values and running {@link QuickMedianDoubleArray}.
+ * Prints the milliseconds per median for each number of buckets and mean count.
+ */
+public class QuickWeightedQuantileDoubleArrayEval {
+	private static final int NUM_TRIALS = 20;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray();
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		double checksum = 0;
+
+		System.out.println("buckets\tmean count\tweighted ms\texpanded ms");
+		for(int numBuckets : new int[] {1000, 10000, 100000}) {
+			for(int meanCount : new int[] {10, 100, 1000}) {
+				if((long)numBuckets * meanCount > 20000000) {
+					continue;
+				}
+				long weightedNanos = 0;
+				long expandedNanos = 0;
+				for(int trial=0; trial<NUM_TRIALS+1; trial++) {  // The first trial warms up the JIT
+					double [] values = new double[numBuckets];
+					long [] counts = new long[numBuckets];
+					for(int i=0; i<numBuckets; i++) {
+						values[i] = random.nextGaussian();
+						counts[i] = random.nextInt(2 * meanCount + 1);
+					}
+
+					long start = System.nanoTime();
+					checksum += qw.median(values.clone(), counts.clone());
+					long weighted = System.nanoTime() - start;
+
+					start = System.nanoTime();
+					int n = 0;
+					for(long count : counts) {
+						n += count;
+					}
+					double [] expanded = new double[n];
+					int k = 0;
+					for(int i=0; i<numBuckets; i++) {
+						for(long c=0; c<counts[i]; c++) {
+							expanded[k++] = values[i];
+						}
+					}
+					checksum -= qm.median(expanded);
+					long expandedTime = System.nanoTime() - start;
+
+					if(trial > 0) {
+						weightedNanos += weighted;
+						expandedNanos += expandedTime;
+					}
+				}
+				System.out.println(numBuckets + "\t" + meanCount + "\t" + weightedNanos / 1e6 / NUM_TRIALS + "\t" + expandedNanos / 1e6 / NUM_TRIALS);
+			}
+		}
+		System.out.println("checksum (should be 0) " + checksum);
+	}
+}
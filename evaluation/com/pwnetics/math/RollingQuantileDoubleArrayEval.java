@@ -0,0 +1,82 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Random;
+
+/**
+ * Compares the rolling median of {@link RollingQuantileDoubleArray} against running {@link QuickMedianDoubleArray} on a copy of every window.
+ * Prints the nanoseconds per output value for each window size.
+ */
+public class RollingQuantileDoubleArrayEval {
+	private static final int SERIES_LENGTH = 1000000;
+
+	/** Windows recomputed with QuickMedian, which is far too slow to run over the whole series */
+	private static final int NUM_COPIED_WINDOWS = 2000;
+
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		double [] series = new double[SERIES_LENGTH];
+		double level = 0;
+		for(int i=0; i<series.length; i++) {
+			level += random.nextGaussian();
+			series[i] = level + 10 * random.nextGaussian();
+		}
+
+		RollingQuantileDoubleArray rm = new RollingQuantileDoubleArray();
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		double checksum = 0;
+
+		System.out.println("window\trolling ns/value\tcopy and QuickMedian ns/value");
+		for(int windowSize : new int[] {1000, 10000, 100000}) {
+			for(int trial=0; trial<3; trial++) {  // The first trial warms up the JIT
+				long start = System.nanoTime();
+				double [] medians = rm.quantiles(series, windowSize);
+				long rollingNanos = System.nanoTime() - start;
+				checksum += medians[medians.length - 1];
+
+				double [] window = new double[windowSize];
+				start = System.nanoTime();
+				for(int i=series.length-NUM_COPIED_WINDOWS; i<series.length; i++) {
+					System.arraycopy(series, i - windowSize + 1, window, 0, windowSize);
+					checksum += qm.median(window);
+				}
+				long copiedNanos = System.nanoTime() - start;
+
+				if(trial > 0) {
+					System.out.println(windowSize + "\t" + (double)rollingNanos / series.length + "\t" + (double)copiedNanos / NUM_COPIED_WINDOWS);
+				}
+			}
+		}
+		System.out.println("checksum " + checksum);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.alg;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link SelectionMetrics} that also records each selection call, or only each degenerate one, as a Java Flight Recorder event.
+ * The events are named <code>com.pwnetics.Selection</code> and can be enabled, thresholded, and streamed like any other JFR event, e.g. with <code>jcmd &lt;pid&gt; JFR.start</code>.
+ * Creating an event is cheap while no recording has it enabled.
+ *
+ * <p>This class requires Java 11, so it is built by the separate <code>jfr</code> module while the rest of the library stays on Java 8.</p>
+ *
+ * @author romanows
+ */
+public class JfrSelectionMetrics extends SelectionMetrics {
+
+	@Name("com.pwnetics.Selection")
+	@Label("Selection")
+	@Category("QuickSelect")
+	@Description("One selection call of a QuickSelect object")
+	static class SelectionEvent extends Event {
+		@Label("Size")
+		@Description("Number of elements in the array subset selected from")
+		int size;
+
+		@Label("Partitions")
+		int partitions;
+
+		@Label("Elements Scanned")
+		@Description("Sum of the sizes of the partitioned array subsets")
+		long elementsScanned;
+
+		@Label("Swaps")
+		long swaps;
+
+		@Label("Minimum Balance")
+		@Description("Smaller over larger side of the worst partition, from 0 to 1")
+		double minBalance;
+
+		@Label("Degenerate")
+		@Description("Whether the call scanned more than the work factor times its size")
+		boolean degenerate;
+
+		@Label("Select Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long selectTime;
+	}
+
+	private final boolean isDegenerateOnly;
+
+
+	/**
+	 * Constructor with the default work factor and unbalanced ratio, which records every call.
+	 */
+	public JfrSelectionMetrics() {
+		this(DEFAULT_WORK_FACTOR, DEFAULT_UNBALANCED_RATIO, false);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param workFactor a call that scans more than this many elements per element of its array subset is counted as degenerate
+	 * @param unbalancedRatio a partition with a balance below this is counted as unbalanced, see {@link #balance(int, int)}; between 0 and 1
+	 * @param isDegenerateOnly if true, only degenerate calls are recorded as events
+	 */
+	public JfrSelectionMetrics(double workFactor, double unbalancedRatio, boolean isDegenerateOnly) {
+		super(workFactor, unbalancedRatio);
+		this.isDegenerateOnly = isDegenerateOnly;
+	}
+
+
+	@Override
+	protected void callFinished(int size, int numPartitions, long numScanned, long numSwaps, double minBalance, boolean isDegenerate, long elapsedNanos) {
+		if(isDegenerateOnly && !isDegenerate) {
+			return;
+		}
+		final SelectionEvent event = new SelectionEvent();
+		if(!event.isEnabled()) {
+			return;
+		}
+		event.size = size;
+		event.partitions = numPartitions;
+		event.elementsScanned = numScanned;
+		event.swaps = numSwaps;
+		event.minBalance = minBalance;
+		event.degenerate = isDegenerate;
+		event.selectTime = elapsedNanos;
+		event.commit();
+	}
+}
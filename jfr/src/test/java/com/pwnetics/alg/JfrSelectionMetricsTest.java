@@ -0,0 +1,96 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+
+public class JfrSelectionMetricsTest {
+
+	private static List<RecordedEvent> record(JfrSelectionMetrics metrics, double [] ... arrays) throws IOException {
+		QuickSelectDoubleArray qs = new QuickSelectDoubleArray(true, EnumSet.noneOf(PivotMethod.class), new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD,
+				SelectionMethod.QUICKSELECT, PartitionMethod.TWO_WAY, QuickSelectDoubleArray.DEFAULT_SMALL_SORT_THRESHOLD, metrics);
+		File file = File.createTempFile("selection", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable("com.pwnetics.Selection");
+				recording.start();
+				for(double [] values : arrays) {
+					qs.select(values, values.length / 2);
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+
+	@Test
+	public void testEvents() throws IOException {
+		double [] good = new double[1001];
+		Random random = new Random(42);
+		for(int i=0; i<good.length; i++) {
+			good[i] = random.nextDouble();
+		}
+		double [] bad = new double[1000];  // All equal, which the two-way partition handles badly
+
+		List<RecordedEvent> events = record(new JfrSelectionMetrics(), good.clone(), bad.clone());
+		assertTrue(events.size() == 2);
+		for(RecordedEvent event : events) {
+			assertTrue(event.getEventType().getName().equals("com.pwnetics.Selection"));
+			assertTrue(event.getLong("elementsScanned") >= event.getInt("size"));
+			assertTrue(event.getBoolean("degenerate") == (event.getInt("size") == bad.length));
+		}
+
+		events = record(new JfrSelectionMetrics(SelectionMetrics.DEFAULT_WORK_FACTOR, SelectionMetrics.DEFAULT_UNBALANCED_RATIO, true), good.clone(), bad.clone());
+		assertTrue(events.size() == 1);
+		assertTrue(events.get(0).getBoolean("degenerate") && events.get(0).getInt("partitions") > 100);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.benchmark;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pwnetics.alg.BigDoubleBuffer;
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+import com.pwnetics.alg.QuickSelectDoubleBuffer;
+
+/**
+ * Times a selection over a {@link BigDoubleBuffer} against the same selection over the array that backs it.
+ * With an in-memory threshold of 1, every pass runs on the buffer, so the difference is the cost of partitioning through
+ * the buffer's element access rather than the array kernels; the default threshold shows the cost in normal use.
+ *
+ * @author romanows
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferSelectionBenchmark {
+
+	@State(Scope.Thread)
+	public static class Algorithm {
+		@Param({"1", "65536"})
+		public int inMemoryThreshold;
+
+		QuickSelectDoubleArray quickSelect;
+		QuickSelectDoubleBuffer bufferSelect;
+
+		@Setup(Level.Trial)
+		public void setUpAlgorithm() {
+			quickSelect = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(43),
+					QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.INTROSELECT);
+			bufferSelect = new QuickSelectDoubleBuffer(quickSelect, inMemoryThreshold);
+		}
+	}
+
+
+	@Benchmark
+	public double array(DoubleArrayState data, Algorithm algorithm) {
+		double [] values = data.fresh();
+		int selectIdx = values.length >>> 1;
+		algorithm.quickSelect.select(values, selectIdx);
+		return values[selectIdx];
+	}
+
+
+	@Benchmark
+	public double buffer(DoubleArrayState data, Algorithm algorithm) {
+		double [] values = data.fresh();
+		BigDoubleBuffer buffer = new BigDoubleBuffer(DoubleBuffer.wrap(values));
+		long selectIdx = values.length >>> 1;
+		algorithm.bufferSelect.select(buffer, selectIdx);
+		return buffer.get(selectIdx);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Arrangements of the benchmark input, matching the sorting conditions used by the older evaluation harness.
+ *
+ * @author romanows
+ */
+public enum DataShape {
+	UNSORTED,
+	SORTED,
+	MIDDLE_UNSORTED,
+	REVERSE_SORTED,
+	REVERSE_MIDDLE_UNSORTED;
+
+
+	/**
+	 * Generates a shuffled array of small integer-valued doubles.
+	 * @param n length of the array
+	 * @param duplicates if true, every value appears twice (for odd n, one appears once); otherwise the values are 0 to n-1
+	 * @param random source of the shuffle
+	 * @return shuffled values
+	 */
+	public static double [] intArray(int n, boolean duplicates, Random random) {
+		double [] values = new double[n];
+		int m = duplicates ? n / 2 : n;
+		for(int i=0; i<n; i++) {
+			values[i] = i < m ? i : i - m;
+		}
+		for(int i=n-1; i>0; i--) {
+			int j = random.nextInt(i + 1);
+			double t = values[i];
+			values[i] = values[j];
+			values[j] = t;
+		}
+		return values;
+	}
+
+
+	/**
+	 * Arranges the values in this shape.
+	 * @param values values to arrange in-place
+	 */
+	public void arrange(double [] values) {
+		switch (this) {
+		case UNSORTED:
+			// Pass, they're stored unsorted
+			break;
+		case SORTED:
+			Arrays.sort(values);
+			break;
+		case MIDDLE_UNSORTED:
+			sortEnds(values);
+			break;
+		case REVERSE_SORTED:
+			negate(values);
+			Arrays.sort(values);
+			negate(values);
+			break;
+		case REVERSE_MIDDLE_UNSORTED:
+			negate(values);
+			sortEnds(values);
+			negate(values);
+			break;
+		}
+	}
+
+
+	/**
+	 * Sorts the first 45% and the last 45% of the values, leaving the middle shuffled.
+	 */
+	private static void sortEnds(double [] values) {
+		Arrays.sort(values, 0, (int)(values.length * 0.45));
+		Arrays.sort(values, (int)(values.length * 0.55), values.length);
+	}
+
+
+	private static void negate(double [] values) {
+		for(int i=0; i<values.length; i++) {
+			values[i] = -values[i];
+		}
+	}
+}
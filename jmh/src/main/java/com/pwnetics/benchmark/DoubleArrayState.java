@@ -0,0 +1,79 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.benchmark;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Input data shared by the benchmarks: one reference array per trial, plus a working array that each invocation
+ * refills with {@link #fresh()}.
+ * Selection rearranges its input, so every measured call must start from an unpartitioned copy; the copy is part of the
+ * measured time and {@link SortingMedianDoubleArrayBenchmark#copy(DoubleArrayState)} measures it on its own so it can be
+ * subtracted.
+ * Copying into a preallocated array keeps the GC profiler's allocation rate attributable to the code under test.
+ *
+ * @author romanows
+ */
+@State(Scope.Thread)
+public class DoubleArrayState {
+	@Param({"101", "1000", "10001", "100000", "1000001"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean duplicate;
+
+	@Param({"UNSORTED", "SORTED", "MIDDLE_UNSORTED", "REVERSE_SORTED", "REVERSE_MIDDLE_UNSORTED"})
+	public DataShape sorting;
+
+	private double [] reference;
+	private double [] values;
+
+
+	@Setup(Level.Trial)
+	public void setUpData() {
+		reference = DataShape.intArray(size, duplicate, new Random(42));
+		sorting.arrange(reference);
+		values = new double[size];
+	}
+
+
+	/**
+	 * @return working array, overwritten with the reference values
+	 */
+	public double [] fresh() {
+		System.arraycopy(reference, 0, values, 0, reference.length);
+		return values;
+	}
+}
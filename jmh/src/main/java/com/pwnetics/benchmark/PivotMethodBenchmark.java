@@ -0,0 +1,115 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.benchmark;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+import com.pwnetics.math.QuickMedianDoubleArray;
+
+/**
+ * Times quickselect under every combination of {@link PivotMethod} and every {@link PartitionMethod}.
+ *
+ * @author romanows
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PivotMethodBenchmark {
+
+	@State(Scope.Thread)
+	public static class Algorithm {
+		/** {@link PivotMethod} names joined by +, or NONE for the empty set (not commas, which JMH splits -p values on) */
+		@Param({"NONE", "MEDIAN_OF_THREE", "RANDOM", "MEDIAN_OF_THREE+RANDOM"})
+		public String pivotMethod;
+
+		@Param({"TWO_WAY", "THREE_WAY", "BLOCK"})
+		public PartitionMethod partitionMethod;
+
+		QuickSelectDoubleArray quickSelect;
+		QuickMedianDoubleArray quickMedian;
+
+		@Setup(Level.Trial)
+		public void setUpAlgorithm() {
+			quickSelect = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, parsePivotMethod(pivotMethod), new Random(43),
+					QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.QUICKSELECT, partitionMethod);
+			quickMedian = new QuickMedianDoubleArray(quickSelect);
+		}
+	}
+
+
+	/**
+	 * @param pivotMethod pivot method names joined by +, or NONE
+	 * @return the named pivot methods
+	 */
+	static EnumSet<PivotMethod> parsePivotMethod(String pivotMethod) {
+		EnumSet<PivotMethod> methods = EnumSet.noneOf(PivotMethod.class);
+		if(!"NONE".equals(pivotMethod)) {
+			for(String name : pivotMethod.split("\\+")) {
+				methods.add(PivotMethod.valueOf(name.trim()));
+			}
+		}
+		return methods;
+	}
+
+
+	@Benchmark
+	public double select(DoubleArrayState data, Algorithm algorithm) {
+		double [] values = data.fresh();
+		int selectIdx = values.length >>> 1;
+		algorithm.quickSelect.select(values, selectIdx);
+		return values[selectIdx];
+	}
+
+
+	@Benchmark
+	public double median(DoubleArrayState data, Algorithm algorithm) {
+		return algorithm.quickMedian.median(data.fresh());
+	}
+}
@@ -0,0 +1,242 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A sequence of doubles with long indexes, spread over one or more {@link DoubleBuffer} chunks, so that it can hold more than the 2^31 elements of an array or a single buffer.
+ * The usual source is a binary file of doubles memory-mapped with {@link #map(FileChannel, FileChannel.MapMode, ByteOrder)}, which keeps the values off the heap and lets the operating system page them in and out as needed.
+ *
+ * <p>
+ * Every chunk except the last must hold the same power-of-two number of elements, so that an index splits into a chunk and an offset with a shift and a mask.
+ * Reads and writes go straight to the chunks, so changes to a mapped file's values are written back to the file by the operating system.
+ * </p>
+ *
+ * @author romanows
+ */
+public class BigDoubleBuffer {
+
+	/** Default number of doubles in each chunk of a mapped file, 2^27 doubles or 1 GiB, which is below the 2 GiB limit of {@link FileChannel#map(FileChannel.MapMode, long, long)} */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 27;
+
+	/** Chunks, each of which starts at index 0 */
+	private final DoubleBuffer [] chunks;
+
+	/** Base-2 logarithm of the number of elements in every chunk but the last */
+	private final int chunkShift;
+
+	/** Mask of the offset within a chunk */
+	private final long chunkMask;
+
+	/** Total number of elements */
+	private final long size;
+
+
+	/**
+	 * Constructor for a single buffer, whose elements from its position to its limit make up this sequence.
+	 * @param buffer buffer to wrap
+	 */
+	public BigDoubleBuffer(DoubleBuffer buffer) {
+		this(new DoubleBuffer[] {buffer});
+	}
+
+
+	/**
+	 * Constructor.
+	 * Each buffer contributes its elements from its position to its limit.
+	 * @param buffers chunks of the sequence, in order; every one but the last must hold the same power-of-two number of elements
+	 */
+	public BigDoubleBuffer(DoubleBuffer [] buffers) {
+		if(buffers == null || buffers.length == 0) {
+			throw new IllegalArgumentException();
+		}
+		chunks = new DoubleBuffer[buffers.length];
+		long totalSize = 0;
+		for(int i=0; i<buffers.length; i++) {
+			if(buffers[i] == null) {
+				throw new IllegalArgumentException();
+			}
+			chunks[i] = buffers[i].slice();
+			totalSize += chunks[i].capacity();
+		}
+
+		final int chunkSize = chunks.length == 1 ? Integer.highestOneBit(Math.max(1, chunks[0].capacity())) << 1 : chunks[0].capacity();
+		if(chunks.length > 1) {
+			if(Integer.bitCount(chunkSize) != 1) {
+				throw new IllegalArgumentException();
+			}
+			for(int i=1; i<chunks.length; i++) {
+				if(i < chunks.length - 1 ? chunks[i].capacity() != chunkSize : chunks[i].capacity() > chunkSize) {
+					throw new IllegalArgumentException();
+				}
+			}
+		}
+		// A single chunk may not be a power of two, so its shift is taken from the next power of two, which maps every index to chunk 0
+		chunkShift = chunkSize <= 0 ? 31 : Integer.numberOfTrailingZeros(chunkSize);
+		chunkMask = (1L << chunkShift) - 1;
+		size = totalSize;
+	}
+
+
+	/**
+	 * Memory-maps a binary file of doubles in chunks of {@link #DEFAULT_CHUNK_SIZE} elements.
+	 * @param channel channel of a file whose size is a multiple of 8 bytes
+	 * @param mode {@link FileChannel.MapMode#READ_WRITE} to select in place, which reorders the file's values; {@link FileChannel.MapMode#PRIVATE} to reorder a copy-on-write view and leave the file alone
+	 * @param order byte order of the doubles in the file
+	 * @return sequence over the whole file
+	 * @throws IOException if the file can't be mapped
+	 */
+	public static BigDoubleBuffer map(FileChannel channel, FileChannel.MapMode mode, ByteOrder order) throws IOException {
+		return map(channel, mode, order, DEFAULT_CHUNK_SIZE);
+	}
+
+
+	/**
+	 * Memory-maps a binary file of doubles in chunks of the given size.
+	 * @param channel channel of a file whose size is a multiple of 8 bytes
+	 * @param mode {@link FileChannel.MapMode#READ_WRITE} to select in place, which reorders the file's values; {@link FileChannel.MapMode#PRIVATE} to reorder a copy-on-write view and leave the file alone
+	 * @param order byte order of the doubles in the file
+	 * @param chunkSize number of doubles in each mapped chunk, a power of two no larger than {@link #DEFAULT_CHUNK_SIZE}
+	 * @return sequence over the whole file
+	 * @throws IOException if the file can't be mapped
+	 */
+	public static BigDoubleBuffer map(FileChannel channel, FileChannel.MapMode mode, ByteOrder order, int chunkSize) throws IOException {
+		if(channel == null || mode == null || order == null || chunkSize < 1 || chunkSize > DEFAULT_CHUNK_SIZE || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException();
+		}
+		final long fileSize = channel.size();
+		if(fileSize % 8 != 0) {
+			throw new IllegalArgumentException();
+		}
+		final long numElements = fileSize / 8;
+		final int numChunks = (int)Math.max(1, (numElements + chunkSize - 1) / chunkSize);
+		DoubleBuffer [] buffers = new DoubleBuffer[numChunks];
+		for(int i=0; i<numChunks; i++) {
+			final long first = (long)i * chunkSize;
+			final long count = Math.min(chunkSize, numElements - first);
+			buffers[i] = channel.map(mode, 8 * first, 8 * count).order(order).asDoubleBuffer();
+		}
+		return new BigDoubleBuffer(buffers);
+	}
+
+
+	/**
+	 * Number of elements.
+	 * @return number of elements
+	 */
+	public long size() {
+		return size;
+	}
+
+
+	/**
+	 * Reads an element.
+	 * @param index index of the element
+	 * @return the element
+	 */
+	public double get(long index) {
+		return chunks[(int)(index >>> chunkShift)].get((int)(index & chunkMask));
+	}
+
+
+	/**
+	 * Writes an element.
+	 * @param index index of the element
+	 * @param value new value of the element
+	 */
+	public void put(long index, double value) {
+		chunks[(int)(index >>> chunkShift)].put((int)(index & chunkMask), value);
+	}
+
+
+	/**
+	 * Swaps two elements.
+	 * @param i index of an element
+	 * @param j index of an element
+	 */
+	public void swap(long i, long j) {
+		final DoubleBuffer chunkI = chunks[(int)(i >>> chunkShift)];
+		final DoubleBuffer chunkJ = chunks[(int)(j >>> chunkShift)];
+		final int offsetI = (int)(i & chunkMask);
+		final int offsetJ = (int)(j & chunkMask);
+		final double value = chunkI.get(offsetI);
+		chunkI.put(offsetI, chunkJ.get(offsetJ));
+		chunkJ.put(offsetJ, value);
+	}
+
+
+	/**
+	 * Copies a run of elements into an array.
+	 * @param index index of the first element to copy
+	 * @param destination array to copy into
+	 * @param destinationIndex index of the first array element to write
+	 * @param length number of elements to copy
+	 */
+	public void get(long index, double [] destination, int destinationIndex, int length) {
+		while(length > 0) {
+			final DoubleBuffer chunk = chunks[(int)(index >>> chunkShift)];
+			final int offset = (int)(index & chunkMask);
+			final int count = Math.min(length, chunk.capacity() - offset);
+			DoubleBuffer view = chunk.duplicate();
+			view.position(offset);
+			view.get(destination, destinationIndex, count);
+			index += count;
+			destinationIndex += count;
+			length -= count;
+		}
+	}
+
+
+	/**
+	 * Copies a run of array elements into this sequence.
+	 * @param index index of the first element to write
+	 * @param source array to copy from
+	 * @param sourceIndex index of the first array element to copy
+	 * @param length number of elements to copy
+	 */
+	public void put(long index, double [] source, int sourceIndex, int length) {
+		while(length > 0) {
+			final DoubleBuffer chunk = chunks[(int)(index >>> chunkShift)];
+			final int offset = (int)(index & chunkMask);
+			final int count = Math.min(length, chunk.capacity() - offset);
+			DoubleBuffer view = chunk.duplicate();
+			view.position(offset);
+			view.put(source, sourceIndex, count);
+			index += count;
+			sourceIndex += count;
+			length -= count;
+		}
+	}
+}
@@ -0,0 +1,366 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Selects an order statistic from a binary file of doubles that is too large for memory and that can't be mapped or changed, by reading it sequentially a few times.
+ *
+ * <p>
+ * Each double is mapped to a long key with the same order, so that a range of keys can be split into equal-width buckets whatever the spread of exponents.
+ * The first pass counts the values in each of 2^{@value #BUCKET_BITS} buckets over every possible key, i.e., by sign, exponent and leading mantissa bits, and finds the bucket that holds the selected rank.
+ * Each following pass counts the values in 2^{@value #BUCKET_BITS} buckets over the previous bucket's key range, so at most four passes narrow the range down to a single key.
+ * As soon as the values in the range fit in the in-memory buffer, one last pass copies them into an array and {@link QuickSelectDoubleArray} finishes the selection.
+ * </p>
+ *
+ * <p>
+ * Reads go through a direct buffer of {@link #DEFAULT_READ_BUFFER_SIZE} bytes at explicit positions, so the channel's own position is not changed.
+ * A {@link Double#NaN} value in the file throws an {@link IllegalArgumentException}.
+ * An ExternalQuickSelectDouble object holds no per-selection state, so it can be shared by threads that read different channels.
+ * </p>
+ *
+ * @author romanows
+ */
+public class ExternalQuickSelectDouble {
+
+	/** Default number of values that the last pass may copy into memory, 32 MiB of doubles */
+	public static final int DEFAULT_MAX_BUFFERED_VALUES = 1 << 22;
+
+	/** Default size, in bytes, of the direct buffer that the file is read through */
+	public static final int DEFAULT_READ_BUFFER_SIZE = 1 << 23;
+
+	/** Base-2 logarithm of the number of histogram buckets per pass */
+	private static final int BUCKET_BITS = 16;
+
+	/** Finishes the selection in memory, and gives the sort order */
+	private final QuickSelectDoubleArray quickSelect;
+
+	/** Largest number of values that the last pass copies into memory */
+	private final int maxBufferedValues;
+
+	/** Byte order of the doubles in the file */
+	private final ByteOrder order;
+
+	/** Size, in bytes, of the direct read buffer */
+	private final int readBufferSize;
+
+
+	/** Constructor */
+	public ExternalQuickSelectDouble() {
+		this(new QuickSelectDoubleArray(), DEFAULT_MAX_BUFFERED_VALUES);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect finishes the selection in memory, and gives the sort order
+	 * @param maxBufferedValues largest number of values that the last pass copies into memory
+	 */
+	public ExternalQuickSelectDouble(QuickSelectDoubleArray quickSelect, int maxBufferedValues) {
+		this(quickSelect, maxBufferedValues, ByteOrder.nativeOrder());
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect finishes the selection in memory, and gives the sort order
+	 * @param maxBufferedValues largest number of values that the last pass copies into memory
+	 * @param order byte order of the doubles in the file
+	 */
+	public ExternalQuickSelectDouble(QuickSelectDoubleArray quickSelect, int maxBufferedValues, ByteOrder order) {
+		this(quickSelect, maxBufferedValues, order, DEFAULT_READ_BUFFER_SIZE);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect finishes the selection in memory, and gives the sort order
+	 * @param maxBufferedValues largest number of values that the last pass copies into memory, at least 1
+	 * @param order byte order of the doubles in the file
+	 * @param readBufferSize size, in bytes, of the direct buffer that the file is read through; a positive multiple of 8
+	 */
+	public ExternalQuickSelectDouble(QuickSelectDoubleArray quickSelect, int maxBufferedValues, ByteOrder order, int readBufferSize) {
+		if(quickSelect == null || maxBufferedValues < 1 || order == null || readBufferSize < 8 || readBufferSize % 8 != 0) {
+			throw new IllegalArgumentException();
+		}
+		this.quickSelect = quickSelect;
+		this.maxBufferedValues = maxBufferedValues;
+		this.order = order;
+		this.readBufferSize = readBufferSize;
+	}
+
+
+	/**
+	 * Finds the value that would be at the selected index if the file's values were sorted in the order given by the {@link QuickSelectDoubleArray}.
+	 * @param channel channel of a file of doubles, whose size is a multiple of 8 bytes
+	 * @param selectIdx index to select
+	 * @return the selected value
+	 * @throws IOException if the file can't be read
+	 */
+	public double select(FileChannel channel, long selectIdx) throws IOException {
+		return selectAdjacent(channel, selectIdx)[0];
+	}
+
+
+	/**
+	 * Finds the values that would be at the selected index and the one after it if the file's values were sorted in the order given by the {@link QuickSelectDoubleArray}.
+	 * Medians of an even number of values and interpolated quantiles need such a pair; the second value costs no extra pass.
+	 * @param channel channel of a file of doubles, whose size is a multiple of 8 bytes
+	 * @param selectIdx index to select
+	 * @return the values at the selected index and at the next index, which is NaN if the selected index is the last
+	 * @throws IOException if the file can't be read
+	 */
+	public double [] selectAdjacent(FileChannel channel, long selectIdx) throws IOException {
+		if(channel == null || channel.size() % 8 != 0) {
+			throw new IllegalArgumentException();
+		}
+		final long n = channel.size() / 8;
+		if(selectIdx < 0 || selectIdx >= n) {
+			throw new IllegalArgumentException();
+		}
+		if(!quickSelect.isDescending()) {
+			return selectAscending(channel, selectIdx);
+		}
+
+		// In descending order, the pair is the ascending pair that ends at the mirrored index
+		if(selectIdx == n - 1) {
+			return new double[] {selectAscending(channel, 0)[0], Double.NaN};
+		}
+		final double [] ascending = selectAscending(channel, n - 2 - selectIdx);
+		return new double[] {ascending[1], ascending[0]};
+	}
+
+
+	/**
+	 * Finds the values at an ascending rank and the next one.
+	 * @param channel channel of a file of doubles
+	 * @param rank ascending rank to select
+	 * @return the values at the rank and at the next rank, which is NaN if there is no next rank
+	 * @throws IOException if the file can't be read
+	 */
+	private double [] selectAscending(FileChannel channel, long rank) throws IOException {
+		final ByteBuffer readBuffer = ByteBuffer.allocateDirect(readBufferSize).order(order);
+		final long [] counts = new long[1 << BUCKET_BITS];
+
+		// Keys in [lowKey, highKey] are still candidates
+		long lowKey = Long.MIN_VALUE;
+		long highKey = Long.MAX_VALUE;
+		while(true) {
+			final long width = highKey - lowKey;  // Unsigned
+			final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(width) - BUCKET_BITS);
+			final long [] minAbove = new long[] {Long.MAX_VALUE};
+			final boolean [] isAbove = new boolean[1];
+			long countBelow = histogram(channel, readBuffer, lowKey, highKey, shift, counts, minAbove, isAbove);
+
+			// Find the bucket that holds the rank
+			int bucket = 0;
+			while(countBelow + counts[bucket] <= rank) {
+				countBelow += counts[bucket];
+				bucket++;
+			}
+
+			// Narrow the range to the bucket, working with unsigned offsets from the low key so that nothing overflows
+			final long bucketOffset = (long)bucket << shift;
+			final long bucketWidth = (1L << shift) - 1;
+			lowKey += bucketOffset;
+			highKey = lowKey + (Long.compareUnsigned(width - bucketOffset, bucketWidth) < 0 ? width - bucketOffset : bucketWidth);
+
+			if(shift == 0) {
+				// Every bucket is a single key, so the histogram answers both ranks
+				final double value = toDouble(lowKey);
+				if(rank + 1 < countBelow + counts[bucket]) {
+					return new double[] {value, value};
+				}
+				for(int next=bucket+1; next<counts.length; next++) {
+					if(counts[next] > 0) {
+						return new double[] {value, toDouble(lowKey + (next - bucket))};
+					}
+				}
+				return new double[] {value, isAbove[0] ? toDouble(minAbove[0]) : Double.NaN};
+			}
+			if(counts[bucket] <= maxBufferedValues) {
+				return collectAndSelect(channel, readBuffer, lowKey, highKey, (int)counts[bucket], (int)(rank - countBelow));
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the file and counts the values whose keys fall into each bucket of a key range.
+	 * @param channel channel of a file of doubles
+	 * @param readBuffer direct buffer to read through
+	 * @param lowKey smallest key of the range
+	 * @param highKey largest key of the range
+	 * @param shift base-2 logarithm of the width of each bucket, in keys
+	 * @param counts set to the number of values in each bucket
+	 * @param minAbove set to the smallest key above the range, if any
+	 * @param isAbove set to whether any key is above the range
+	 * @return number of values below the range
+	 * @throws IOException if the file can't be read
+	 */
+	private long histogram(FileChannel channel, ByteBuffer readBuffer, long lowKey, long highKey, int shift, long [] counts, long [] minAbove, boolean [] isAbove) throws IOException {
+		Arrays.fill(counts, 0);
+		long countBelow = 0;
+		long smallestAbove = Long.MAX_VALUE;
+		boolean isAnyAbove = false;
+		long position = 0;
+		while(true) {
+			final DoubleBuffer doubles = read(channel, readBuffer, position);
+			final int numDoubles = doubles.remaining();
+			if(numDoubles == 0) {
+				break;
+			}
+			position += 8L * numDoubles;
+			for(int i=0; i<numDoubles; i++) {
+				final long key = toKey(doubles.get(i));
+				if(key < lowKey) {
+					countBelow++;
+				} else if(key > highKey) {
+					isAnyAbove = true;
+					if(key < smallestAbove) {
+						smallestAbove = key;
+					}
+				} else {
+					counts[(int)((key - lowKey) >>> shift)]++;
+				}
+			}
+		}
+		minAbove[0] = smallestAbove;
+		isAbove[0] = isAnyAbove;
+		return countBelow;
+	}
+
+
+	/**
+	 * Reads the file, copies the values whose keys fall into a key range into an array, and selects from them.
+	 * @param channel channel of a file of doubles
+	 * @param readBuffer direct buffer to read through
+	 * @param lowKey smallest key of the range
+	 * @param highKey largest key of the range
+	 * @param count number of values in the range
+	 * @param localRank ascending rank to select among the values in the range
+	 * @return the values at the rank and at the next rank, which is NaN if there is no next rank
+	 * @throws IOException if the file can't be read
+	 */
+	private double [] collectAndSelect(FileChannel channel, ByteBuffer readBuffer, long lowKey, long highKey, int count, int localRank) throws IOException {
+		final double [] values = new double[count];
+		int numValues = 0;
+		long smallestAbove = Long.MAX_VALUE;
+		boolean isAnyAbove = false;
+		long position = 0;
+		while(true) {
+			final DoubleBuffer doubles = read(channel, readBuffer, position);
+			final int numDoubles = doubles.remaining();
+			if(numDoubles == 0) {
+				break;
+			}
+			position += 8L * numDoubles;
+			for(int i=0; i<numDoubles; i++) {
+				final double value = doubles.get(i);
+				final long key = toKey(value);
+				if(key > highKey) {
+					isAnyAbove = true;
+					if(key < smallestAbove) {
+						smallestAbove = key;
+					}
+				} else if(key >= lowKey) {
+					values[numValues++] = value;
+				}
+			}
+		}
+		if(numValues != count) {
+			// The file changed between passes
+			throw new IllegalStateException();
+		}
+
+		// The quickSelect may be descending, so select by its own index of each ascending rank
+		final boolean isDescending = quickSelect.isDescending();
+		final int selectIdx = isDescending ? count - 1 - localRank : localRank;
+		if(localRank + 1 < count) {
+			final int nextIdx = isDescending ? selectIdx - 1 : selectIdx + 1;
+			quickSelect.select(values, new int[] {Math.min(selectIdx, nextIdx), Math.max(selectIdx, nextIdx)});
+			return new double[] {values[selectIdx], values[nextIdx]};
+		}
+		quickSelect.select(values, selectIdx, 0, count);
+		return new double[] {values[selectIdx], isAnyAbove ? toDouble(smallestAbove) : Double.NaN};
+	}
+
+
+	/**
+	 * Reads the next run of the file into the read buffer.
+	 * @param channel channel of a file of doubles
+	 * @param readBuffer direct buffer to read through
+	 * @param position byte position in the file to read from
+	 * @return doubles read, which are none at the end of the file
+	 * @throws IOException if the file can't be read
+	 */
+	private static DoubleBuffer read(FileChannel channel, ByteBuffer readBuffer, long position) throws IOException {
+		readBuffer.clear();
+		while(readBuffer.hasRemaining()) {
+			final int numRead = channel.read(readBuffer, position + readBuffer.position());
+			if(numRead < 0) {
+				break;
+			}
+		}
+		readBuffer.flip();
+		return readBuffer.asDoubleBuffer();
+	}
+
+
+	/**
+	 * Maps a double to a long with the same order, with -0.0 just below 0.0.
+	 * @param value value that must not be NaN
+	 * @return the key of the value
+	 */
+	private static long toKey(double value) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException();
+		}
+		final long bits = Double.doubleToRawLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+
+	/**
+	 * Inverts {@link #toKey(double)}.
+	 * @param key key of a value
+	 * @return the value
+	 */
+	private static double toDouble(long key) {
+		return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,335 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Implements a parallel QuickSelect for very large arrays, splitting each partitioning pass across the threads of a {@link ForkJoinPool}.
+ * For large arrays, a sequential {@link QuickSelectDoubleArray} is limited by memory bandwidth that a single core can't saturate.
+ *
+ * <p>
+ * Each partitioning pass picks a pivot with the pivot picking method of the sequential QuickSelect, then works in three parallel phases over blocks of the array subset:
+ * </p>
+ * <ol>
+ *   <li>each block counts its values that go before, equal to, and after the pivot;</li>
+ *   <li>prefix sums of these counts give every block its own output ranges, so each block scatters its values into a scratch array without any synchronization;</li>
+ *   <li>the scratch array is copied back into the array subset.</li>
+ * </ol>
+ * <p>
+ * The next pass recurses only into the part that holds selectIdx, and returns immediately if selectIdx lands in the run of values equal to the pivot.
+ * Once the array subset is no larger than the sequential threshold, the sequential QuickSelect finishes the job.
+ * The results are exactly as described by {@link QuickSelectDoubleArray#select(double[], int, int, int)}.
+ * </p>
+ *
+ * <p>
+ * A scratch array as large as the array subset is allocated for every call that doesn't finish sequentially.
+ * Each pass reads and writes every element about twice as often as a sequential partitioning pass, so this only pays off with several cores to share the work.
+ * A pool with a parallelism of one always falls back to the sequential QuickSelect.
+ * Calls on the same object may run concurrently on different arrays, under the same conditions as for the sequential {@link QuickSelectDoubleArray}.
+ * </p>
+ *
+ * @author romanows
+ */
+public class ParallelQuickSelectDoubleArray {
+
+	/** Default size at or below which an array subset is handed to the sequential QuickSelect */
+	public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1 << 17;
+
+	/** Smallest number of elements given to a block in a parallel phase; smaller blocks don't pay for their task overhead */
+	private static final int MIN_BLOCK_SIZE = 1 << 14;
+
+	/** Number of blocks per thread in the pool, so that threads that finish early can steal work */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/** Picks pivots and finishes small array subsets */
+	private final QuickSelectDoubleArray quickSelect;
+
+	/** Pool that runs the parallel phases */
+	private final ForkJoinPool pool;
+
+	/** Array subsets at or below this size are handed to the sequential QuickSelect */
+	private final int sequentialThreshold;
+
+
+	/**
+	 * Constructor.
+	 * Creates a parallel QuickSelect that places the largest values before the selected index and runs in the common {@link ForkJoinPool}.
+	 */
+	public ParallelQuickSelectDoubleArray() {
+		this(new QuickSelectDoubleArray(), ForkJoinPool.commonPool(), DEFAULT_SEQUENTIAL_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect sequential QuickSelect whose sorting order and pivot picking method are used, and which finishes small array subsets
+	 * @param pool pool that runs the parallel phases
+	 * @param sequentialThreshold array subsets at or below this size are handed to the sequential QuickSelect
+	 */
+	public ParallelQuickSelectDoubleArray(QuickSelectDoubleArray quickSelect, ForkJoinPool pool, int sequentialThreshold) {
+		if(quickSelect == null || pool == null || sequentialThreshold < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.quickSelect = quickSelect;
+		this.pool = pool;
+		this.sequentialThreshold = sequentialThreshold;
+	}
+
+
+	/**
+	 * Implements the parallel QuickSelect algorithm to reorder the given array.
+	 * See {@link QuickSelectDoubleArray#select(double[], int)} for details.
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN
+	 * @param selectIdx index of the value to select
+	 */
+	public void select(double [] values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdx, 0, values.length);
+	}
+
+
+	/**
+	 * Implements the parallel QuickSelect algorithm to reorder a subset of the given array.
+	 * See {@link QuickSelectDoubleArray#select(double[], int, int, int)} for details.
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @return a pair of indexes that specify correctly sorted array elements bounding the selectIdx OR -1 to denote that no index was encountered, see {@link QuickSelectDoubleArray#select(double[], int, int, int)}
+	 */
+	public int [] select(double [] values, int selectIdx, int beginIndex, int endIndex) {
+		if(values == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		// Counting and scattering touch every element twice, so a pool without spare threads is always slower than the sequential QuickSelect
+		double [] scratch = null;
+		while(pool.getParallelism() > 1 && endIndex - beginIndex > sequentialThreshold) {
+			if(scratch == null) {
+				scratch = new double[endIndex - beginIndex];
+			}
+
+			final int subArraySize = endIndex - beginIndex;
+			final double pivot = values[quickSelect.getPivotIdx(values, beginIndex, subArraySize)];
+			final int numBlocks = Math.max(1, Math.min(pool.getParallelism() * BLOCKS_PER_THREAD, subArraySize / MIN_BLOCK_SIZE));
+			PartitionTask task = new PartitionTask(values, scratch, beginIndex, endIndex, pivot, numBlocks);
+			pool.invoke(task);
+
+			// The pass leaves values[beginIndex:equalBeginIndex] before the pivot, values[equalBeginIndex:afterBeginIndex] equal to it, and the rest after it
+			final int equalBeginIndex = task.equalBeginIndex;
+			final int afterBeginIndex = task.afterBeginIndex;
+			if(selectIdx < equalBeginIndex) {
+				endIndex = equalBeginIndex;
+				afterSelectIdx = equalBeginIndex;
+			} else if(selectIdx >= afterBeginIndex) {
+				beginIndex = afterBeginIndex;
+				beforeSelectIdx = afterBeginIndex - 1;
+			} else {
+				// The selection index is inside the run of values equal to the pivot, so its neighbors in the run are correctly sorted, too
+				if(selectIdx > equalBeginIndex) {
+					beforeSelectIdx = selectIdx - 1;
+				}
+				if(selectIdx < afterBeginIndex - 1) {
+					afterSelectIdx = selectIdx + 1;
+				}
+				return new int[] {beforeSelectIdx, afterSelectIdx};
+			}
+		}
+
+		int [] selectBounds = quickSelect.select(values, selectIdx, beginIndex, endIndex);
+		if(selectBounds[0] < 0) {
+			selectBounds[0] = beforeSelectIdx;
+		}
+		if(selectBounds[1] < 0) {
+			selectBounds[1] = afterSelectIdx;
+		}
+		return selectBounds;
+	}
+
+
+	/**
+	 * Runs the count, scatter and copy phases of one partitioning pass, each phase in parallel over the blocks.
+	 */
+	private class PartitionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final double [] values;
+		final double [] scratch;
+		final int beginIndex;
+		final int endIndex;
+		final double pivot;
+		final int numBlocks;
+		final int blockSize;
+
+		/** Per-block counts of values that go before, equal to and after the pivot, turned into per-block output positions by the prefix sums */
+		final int [] before;
+		final int [] equal;
+		final int [] after;
+
+		int equalBeginIndex;
+		int afterBeginIndex;
+
+		PartitionTask(double [] values, double [] scratch, int beginIndex, int endIndex, double pivot, int numBlocks) {
+			this.values = values;
+			this.scratch = scratch;
+			this.beginIndex = beginIndex;
+			this.endIndex = endIndex;
+			this.pivot = pivot;
+			this.numBlocks = numBlocks;
+			this.blockSize = (endIndex - beginIndex + numBlocks - 1) / numBlocks;
+			this.before = new int[numBlocks];
+			this.equal = new int[numBlocks];
+			this.after = new int[numBlocks];
+		}
+
+		@Override
+		protected void compute() {
+			new BlockTask(this, BlockTask.COUNT, 0, numBlocks).compute();
+
+			// Exclusive prefix sums turn the counts into the first output position of each block
+			int beforePosition = beginIndex;
+			int totalBefore = 0;
+			int totalEqual = 0;
+			for(int block=0; block<numBlocks; block++) {
+				totalBefore += before[block];
+				totalEqual += equal[block];
+			}
+			int equalPosition = beginIndex + totalBefore;
+			int afterPosition = equalPosition + totalEqual;
+			equalBeginIndex = equalPosition;
+			afterBeginIndex = afterPosition;
+			for(int block=0; block<numBlocks; block++) {
+				final int numBefore = before[block];
+				final int numEqual = equal[block];
+				final int numAfter = after[block];
+				before[block] = beforePosition;
+				equal[block] = equalPosition;
+				after[block] = afterPosition;
+				beforePosition += numBefore;
+				equalPosition += numEqual;
+				afterPosition += numAfter;
+			}
+
+			new BlockTask(this, BlockTask.SCATTER, 0, numBlocks).compute();
+			new BlockTask(this, BlockTask.COPY, 0, numBlocks).compute();
+		}
+	}
+
+
+	/**
+	 * Runs one phase of a partitioning pass over a range of blocks, splitting the range in half until a single block is left.
+	 */
+	private class BlockTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		static final int COUNT = 0;
+		static final int SCATTER = 1;
+		static final int COPY = 2;
+
+		final PartitionTask partition;
+		final int phase;
+		final int firstBlock;
+		final int lastBlock;
+
+		BlockTask(PartitionTask partition, int phase, int firstBlock, int lastBlock) {
+			this.partition = partition;
+			this.phase = phase;
+			this.firstBlock = firstBlock;
+			this.lastBlock = lastBlock;
+		}
+
+		@Override
+		protected void compute() {
+			if(lastBlock - firstBlock > 1) {
+				final int middleBlock = (firstBlock + lastBlock) >>> 1;
+				invokeAll(new BlockTask(partition, phase, firstBlock, middleBlock), new BlockTask(partition, phase, middleBlock, lastBlock));
+				return;
+			}
+
+			final int block = firstBlock;
+			final int blockBegin = partition.beginIndex + block * partition.blockSize;
+			final int blockEnd = Math.min(partition.endIndex, blockBegin + partition.blockSize);
+			final double [] values = partition.values;
+			final double pivot = partition.pivot;
+			final boolean isDescending = quickSelect.isDescending();
+
+			switch(phase) {
+			case COUNT: {
+				int numBefore = 0;
+				int numEqual = 0;
+				for(int i=blockBegin; i<blockEnd; i++) {
+					final double value = values[i];
+					if(isDescending ? value > pivot : value < pivot) {
+						numBefore++;
+					} else if(value == pivot) {
+						numEqual++;
+					}
+				}
+				partition.before[block] = numBefore;
+				partition.equal[block] = numEqual;
+				partition.after[block] = (blockEnd - blockBegin) - numBefore - numEqual;
+				break;
+			}
+			case SCATTER: {
+				final double [] scratch = partition.scratch;
+				final int offset = partition.beginIndex;
+				int beforePosition = partition.before[block] - offset;
+				int equalPosition = partition.equal[block] - offset;
+				int afterPosition = partition.after[block] - offset;
+				for(int i=blockBegin; i<blockEnd; i++) {
+					final double value = values[i];
+					if(isDescending ? value > pivot : value < pivot) {
+						scratch[beforePosition++] = value;
+					} else if(value == pivot) {
+						scratch[equalPosition++] = value;
+					} else {
+						scratch[afterPosition++] = value;
+					}
+				}
+				break;
+			}
+			default:
+				System.arraycopy(partition.scratch, blockBegin - partition.beginIndex, values, blockBegin, blockEnd - blockBegin);
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,386 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+
+
+/**
+ * Implements the QuickSelect algorithm without moving the values themselves, or while moving other arrays along with them.
+ * See {@link QuickSelectDoubleArray} for a description of the algorithm, of the pivot picking options, and of when an object can be shared across threads.
+ *
+ * <p>
+ * This is useful when the values line up with parallel arrays, e.g. the scores of a beam search alongside arrays of hypothesis ids, back-pointers and states.
+ * There are two ways to get the top N entries without building objects:
+ * </p>
+ *
+ * <ul>
+ *   <li>An argselect permutes an <code>int[]</code> array of indexes into the values, ordering them by <code>values[indexes[i]]</code>, and never writes to the values.
+ *       The first N indexes then point at the top N values in every parallel array.</li>
+ *   <li>A payload select reorders the values with a two-way partition around pivots picked by the configured pivot methods, and applies every swap to any number of <code>int[]</code> and <code>long[]</code> payload arrays, too.</li>
+ * </ul>
+ *
+ * @author romanows
+ */
+public class QuickArgSelectDoubleArray {
+
+	/** Pivot picking method */
+	private final EnumSet<PivotMethod> pivotMethod;
+
+	/** Whether the sorting order is descending or ascending */
+	private final boolean isDescending;
+
+	/** Random number generator used for the randomized pivot picking methods; if null, {@link ThreadLocalRandom} is used */
+	private final Random random;
+
+	/** Median-of-three pivot method is disabled when the number of pivot candidate elements is less than the median-of-three threshold number */
+	private final int medianOfThreeThreshold;
+
+
+	/**
+	 * Constructor.
+	 * Creates an object that places the largest values before the selected index.
+	 */
+	public QuickArgSelectDoubleArray() {
+		this(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 */
+	public QuickArgSelectDoubleArray(boolean isDescending) {
+		this(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 */
+	public QuickArgSelectDoubleArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold) {
+		if(pivotMethod == null) {
+			throw new IllegalArgumentException();
+		}
+		this.pivotMethod = pivotMethod;
+		this.isDescending = isDescending;
+		this.medianOfThreeThreshold = medianOfThreeThreshold;
+
+		this.random = random;
+	}
+
+
+	/**
+	 * Get the value at a position, either directly or through an index array.
+	 * @param values array of values
+	 * @param indexes array of indexes into values, or null to read values directly
+	 * @param i position
+	 * @return <code>values[indexes[i]]</code>, or <code>values[i]</code> when indexes is null
+	 */
+	private static double valueAt(double [] values, int [] indexes, int i) {
+		return indexes == null ? values[i] : values[indexes[i]];
+	}
+
+
+	/**
+	 * Get the position of the median value of three positions.
+	 * @param values array containing values
+	 * @param indexes array of indexes into values, or null to read values directly
+	 * @param idx1 position of a median candidate
+	 * @param idx2 position of a median candidate
+	 * @param idx3 position of a median candidate
+	 * @return the position of the median with respect to the given candidates
+	 */
+	protected int medianIdx(double [] values, int [] indexes, int idx1, int idx2, int idx3) {
+		final double v1 = valueAt(values, indexes, idx1);
+		final double v2 = valueAt(values, indexes, idx2);
+		final double v3 = valueAt(values, indexes, idx3);
+		if(v1 <= v2) {
+			if(v3 >= v2) {
+				return idx2;
+			} else if(v1 >= v3) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		} else {
+			if(v2 >= v3) {
+				return idx2;
+			} else if(v3 >= v1) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		}
+	}
+
+
+	/**
+	 * Draws a random index for the randomized pivot picking methods.
+	 * Uses the random number generator given on construction, or the calling thread's {@link ThreadLocalRandom} if none was given.
+	 * @param bound upper bound, exclusive, of the random index
+	 * @return random index in [0, bound)
+	 */
+	private int nextRandomInt(int bound) {
+		return random == null ? ThreadLocalRandom.current().nextInt(bound) : random.nextInt(bound);
+	}
+
+
+	/**
+	 * Get the pivot position for a partition step using the configured pivot picking method.
+	 * @param values array containing values
+	 * @param indexes array of indexes into values, or null to read values directly
+	 * @param startIdx starting position of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return pivot position
+	 */
+	protected int getPivotIdx(double [] values, int [] indexes, int startIdx, int subArraySize) {
+		if(pivotMethod.contains(PivotMethod.RANDOM)) {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				return medianIdx(values, indexes, startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize));
+			} else {
+				return startIdx + nextRandomInt(subArraySize);
+			}
+		} else {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				// Picking elements at indices of about 0.25, 0.5, and 0.75.
+				return medianIdx(values, indexes, startIdx + (subArraySize >>> 2), startIdx + (subArraySize >>> 1), startIdx + ((3 * subArraySize) >>> 2));
+			} else {
+				return startIdx + (subArraySize >>> 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Partitions a subset of an index array by the values the indexes point at.
+	 * @param values array of values, which is not modified
+	 * @param indexes array of indexes into values, which will be reordered
+	 * @param pivotIdx position of the pivot index
+	 * @param beginIndex starting position, inclusive, of the array subset
+	 * @param endIndex ending position, inclusive, of the array subset
+	 * @return the position at which the pivot index was placed
+	 */
+	protected int partitionIndexes(double [] values, int [] indexes, int pivotIdx, int beginIndex, int endIndex) {
+		final int pivotIndex = indexes[pivotIdx];
+		final double pivot = values[pivotIndex];
+		indexes[pivotIdx] = indexes[endIndex];
+
+		int beforePivotInsertIdx = beginIndex;
+		for(int i=beginIndex; i<endIndex; i++) {
+			final int index = indexes[i];
+			if((isDescending && values[index] >= pivot) || (!isDescending && values[index] <= pivot)) {
+				indexes[i] = indexes[beforePivotInsertIdx];
+				indexes[beforePivotInsertIdx] = index;
+				beforePivotInsertIdx++;
+			}
+		}
+
+		indexes[endIndex] = indexes[beforePivotInsertIdx];
+		indexes[beforePivotInsertIdx] = pivotIndex;
+		return beforePivotInsertIdx;
+	}
+
+
+	/**
+	 * Partitions a subset of the keys, applying every swap to the payload arrays, too.
+	 * @param keys array of values, which will be reordered
+	 * @param intPayloads int arrays that will be reordered along with the keys
+	 * @param longPayloads long arrays that will be reordered along with the keys
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partitionWithPayloads(double [] keys, int [][] intPayloads, long [][] longPayloads, int pivotIdx, int beginIndex, int endIndex) {
+		// Moving the pivot to the end with a real swap keeps the payloads in step with the keys
+		swap(keys, intPayloads, longPayloads, pivotIdx, endIndex);
+		final double pivot = keys[endIndex];
+
+		int beforePivotInsertIdx = beginIndex;
+		for(int i=beginIndex; i<endIndex; i++) {
+			if((isDescending && keys[i] >= pivot) || (!isDescending && keys[i] <= pivot)) {
+				swap(keys, intPayloads, longPayloads, i, beforePivotInsertIdx);
+				beforePivotInsertIdx++;
+			}
+		}
+
+		swap(keys, intPayloads, longPayloads, beforePivotInsertIdx, endIndex);
+		return beforePivotInsertIdx;
+	}
+
+
+	/**
+	 * Swaps two elements of the keys and of every payload array.
+	 */
+	private static void swap(double [] keys, int [][] intPayloads, long [][] longPayloads, int i, int j) {
+		final double swap = keys[i];
+		keys[i] = keys[j];
+		keys[j] = swap;
+		for(int [] payload : intPayloads) {
+			final int intSwap = payload[i];
+			payload[i] = payload[j];
+			payload[j] = intSwap;
+		}
+		for(long [] payload : longPayloads) {
+			final long longSwap = payload[i];
+			payload[i] = payload[j];
+			payload[j] = longSwap;
+		}
+	}
+
+
+	/**
+	 * Finds the indexes of the values that would be placed before and at selectIdx by {@link QuickSelectDoubleArray#select(double[], int)}, without modifying the values.
+	 *
+	 * @param values array of values, which is not modified; undefined behavior if an element is NaN
+	 * @param selectIdx position of the selected value in the returned index array
+	 * @return a new array of all of the indexes into values, ordered so that <code>values[ret[selectIdx]] == sort(values)[selectIdx]</code> and the indexes before selectIdx point at values that go before it
+	 */
+	public int [] argSelect(double [] values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		int [] indexes = new int[values.length];
+		for(int i=0; i<indexes.length; i++) {
+			indexes[i] = i;
+		}
+		select(values, indexes, selectIdx, 0, indexes.length);
+		return indexes;
+	}
+
+
+	/**
+	 * Reorders a subset of an index array so that <code>values[indexes[selectIdx]] == sort(values[indexes[beginIndex:endIndex]])[selectIdx - beginIndex]</code>.
+	 * The indexes before selectIdx point at values that are either >= or <= the selected value, depending on how the isDescending parameter was set upon construction.
+	 * The values are never modified.
+	 *
+	 * @param values array of values, which is not modified; undefined behavior if an element is NaN
+	 * @param indexes array of indexes into values, which will be reordered; the indexes need not cover all of the values
+	 * @param selectIdx position of the selected value in the index array
+	 * @param beginIndex starting position, inclusive, of index array elements upon which this will operate
+	 * @param endIndex ending position, exclusive, of index array elements upon which this will operate
+	 * @return a pair of positions in the index array that hold correctly sorted indexes bounding the selectIdx OR -1 to denote that no position was encountered, see {@link QuickSelectDoubleArray#select(double[], int, int, int)}
+	 */
+	public int [] select(double [] values, int [] indexes, int selectIdx, int beginIndex, int endIndex) {
+		if(values == null || indexes == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > indexes.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		endIndex--; // This becomes an inclusive ending index
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			int pivotIdx = getPivotIdx(values, indexes, beginIndex, subArraySize);
+			int beforePivotInsertIdx = partitionIndexes(values, indexes, pivotIdx, beginIndex, endIndex);
+
+			if(beforePivotInsertIdx < selectIdx) {
+				beginIndex = beforePivotInsertIdx + 1;
+				beforeSelectIdx = beforePivotInsertIdx;
+			} else if(beforePivotInsertIdx > selectIdx) {
+				endIndex = beforePivotInsertIdx - 1;
+				afterSelectIdx = beforePivotInsertIdx;
+			} else {
+				break;
+			}
+		}
+
+		return new int[] {beforeSelectIdx, afterSelectIdx};
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm on the keys, and moves the elements of every payload array along with the keys.
+	 * Pivots are picked with this object's pivot methods and every pass is a plain two-way partition; unlike {@link QuickSelectDoubleArray#select(double[], int, int, int)}, there are no selection or partition methods to configure and small ranges aren't finished with a sort, so the keys may not end up in the same order that method would leave them in.
+	 * After calling this method, <code>payload[i]</code> still belongs with <code>keys[i]</code> for every payload array and every i.
+	 *
+	 * @param keys array of values, which will be reordered; undefined behavior if an element is NaN
+	 * @param intPayloads int arrays that will be reordered along with the keys, each at least as long as endIndex; may be null or empty
+	 * @param longPayloads long arrays that will be reordered along with the keys, each at least as long as endIndex; may be null or empty
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate
+	 * @return a pair of indexes that specify correctly sorted array elements bounding the selectIdx OR -1 to denote that no index was encountered, see {@link QuickSelectDoubleArray#select(double[], int, int, int)}
+	 */
+	public int [] select(double [] keys, int [][] intPayloads, long [][] longPayloads, int selectIdx, int beginIndex, int endIndex) {
+		if(keys == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > keys.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+		if(intPayloads == null) {
+			intPayloads = new int[0][];
+		}
+		if(longPayloads == null) {
+			longPayloads = new long[0][];
+		}
+		for(int [] payload : intPayloads) {
+			if(payload == null || payload.length < endIndex) {
+				throw new IllegalArgumentException();
+			}
+		}
+		for(long [] payload : longPayloads) {
+			if(payload == null || payload.length < endIndex) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		endIndex--; // This becomes an inclusive ending index
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			int pivotIdx = getPivotIdx(keys, null, beginIndex, subArraySize);
+			int beforePivotInsertIdx = partitionWithPayloads(keys, intPayloads, longPayloads, pivotIdx, beginIndex, endIndex);
+
+			if(beforePivotInsertIdx < selectIdx) {
+				beginIndex = beforePivotInsertIdx + 1;
+				beforeSelectIdx = beforePivotInsertIdx;
+			} else if(beforePivotInsertIdx > selectIdx) {
+				endIndex = beforePivotInsertIdx - 1;
+				afterSelectIdx = beforePivotInsertIdx;
+			} else {
+				break;
+			}
+		}
+
+		return new int[] {beforeSelectIdx, afterSelectIdx};
+	}
+}
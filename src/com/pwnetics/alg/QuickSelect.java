@@ -0,0 +1,433 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+
+
+/**
+ * Implements the QuickSelect algorithm for object arrays and lists ordered by a {@link Comparator}.
+ * This is the object counterpart of {@link QuickSelectDoubleArray}; see that class for a description of the algorithm, of the pivot picking options, and of when an object can be shared across threads.
+ *
+ * <p>
+ * Elements are ordered as the comparator orders them, so after selecting index <code>i</code>, every element before <code>i</code> compares less than or equal to the element at <code>i</code>.
+ * To put the largest elements first, as {@link QuickSelectDoubleArray} does by default, pass a reversed comparator, e.g. {@link java.util.Collections#reverseOrder(Comparator)}.
+ * </p>
+ *
+ * <p>
+ * This is handy for finding the top N records of some kind, e.g. the slowest requests in a log, without sorting them all in <code>O(n log n)</code> time.
+ * </p>
+ *
+ * @param <T> type of the elements to select from
+ * @author romanows
+ */
+public class QuickSelect<T> {
+
+	/** Orders the elements */
+	private final Comparator<? super T> comparator;
+
+	/** Pivot picking method */
+	private final EnumSet<PivotMethod> pivotMethod;
+
+	/** Random number generator used for the randomized pivot picking methods; if null, {@link ThreadLocalRandom} is used */
+	private final Random random;
+
+	/** Median-of-three pivot method is disabled when the number of pivot candidate elements is less than the median-of-three threshold number */
+	private final int medianOfThreeThreshold;
+
+
+	/**
+	 * Constructor.
+	 * Creates a QuickSelect object with reasonable defaults.
+	 * @param comparator orders the elements; elements that compare smaller are placed before the selected index
+	 */
+	public QuickSelect(Comparator<? super T> comparator) {
+		this(comparator, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param comparator orders the elements; elements that compare smaller are placed before the selected index
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 */
+	public QuickSelect(Comparator<? super T> comparator, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold) {
+		if(comparator == null || pivotMethod == null) {
+			throw new IllegalArgumentException();
+		}
+		this.comparator = comparator;
+		this.pivotMethod = pivotMethod;
+		this.medianOfThreeThreshold = medianOfThreeThreshold;
+
+		this.random = random;
+	}
+
+
+	/**
+	 * Get the median value of three values from a given array.
+	 * @param values array containing values
+	 * @param idx1 index of a median candidate
+	 * @param idx2 index of a median candidate
+	 * @param idx3 index of a median candidate
+	 * @return the index of the median with respect to the given candidates
+	 */
+	protected int medianIdx(T [] values, int idx1, int idx2, int idx3) {
+		if(comparator.compare(values[idx1], values[idx2]) <= 0) {
+			if(comparator.compare(values[idx3], values[idx2]) >= 0) {
+				return idx2;
+			} else if(comparator.compare(values[idx1], values[idx3]) >= 0) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		} else {
+			if(comparator.compare(values[idx2], values[idx3]) >= 0) {
+				return idx2;
+			} else if(comparator.compare(values[idx3], values[idx1]) >= 0) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		}
+	}
+
+
+	/**
+	 * Get the median value of three values from a given list.
+	 * See {@link #medianIdx(Object[], int, int, int)}.
+	 * @param values list containing values; should be {@link RandomAccess}
+	 * @param idx1 index of a median candidate
+	 * @param idx2 index of a median candidate
+	 * @param idx3 index of a median candidate
+	 * @return the index of the median with respect to the given candidates
+	 */
+	protected int medianIdx(List<T> values, int idx1, int idx2, int idx3) {
+		final T value1 = values.get(idx1);
+		final T value2 = values.get(idx2);
+		final T value3 = values.get(idx3);
+		if(comparator.compare(value1, value2) <= 0) {
+			if(comparator.compare(value3, value2) >= 0) {
+				return idx2;
+			} else if(comparator.compare(value1, value3) >= 0) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		} else {
+			if(comparator.compare(value2, value3) >= 0) {
+				return idx2;
+			} else if(comparator.compare(value3, value1) >= 0) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		}
+	}
+
+
+	/**
+	 * Draws a random index for the randomized pivot picking methods.
+	 * Uses the random number generator given on construction, or the calling thread's {@link ThreadLocalRandom} if none was given.
+	 * @param bound upper bound, exclusive, of the random index
+	 * @return random index in [0, bound)
+	 */
+	private int nextRandomInt(int bound) {
+		return random == null ? ThreadLocalRandom.current().nextInt(bound) : random.nextInt(bound);
+	}
+
+
+	/**
+	 * Get the pivot index for a partition step using the configured pivot picking method.
+	 * @param values array whose elements will be reordered
+	 * @param startIdx starting index of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return pivot index
+	 */
+	protected int getPivotIdx(T [] values, int startIdx, int subArraySize) {
+		if(pivotMethod.contains(PivotMethod.RANDOM)) {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				return medianIdx(values, startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize));
+			} else {
+				return startIdx + nextRandomInt(subArraySize);
+			}
+		} else {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				// Picking elements at indices of about 0.25, 0.5, and 0.75.
+				return medianIdx(values, startIdx + (subArraySize >>> 2), startIdx + (subArraySize >>> 1), startIdx + ((3 * subArraySize) >>> 2));
+			} else {
+				return startIdx + (subArraySize >>> 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Get the pivot index for a partition step using the configured pivot picking method.
+	 * See {@link #getPivotIdx(Object[], int, int)}.
+	 * @param values list whose elements will be reordered; should be {@link RandomAccess}
+	 * @param startIdx starting index of the list subset
+	 * @param subArraySize number of elements in the list subset
+	 * @return pivot index
+	 */
+	protected int getPivotIdx(List<T> values, int startIdx, int subArraySize) {
+		if(pivotMethod.contains(PivotMethod.RANDOM)) {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				return medianIdx(values, startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize));
+			} else {
+				return startIdx + nextRandomInt(subArraySize);
+			}
+		} else {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				// Picking elements at indices of about 0.25, 0.5, and 0.75.
+				return medianIdx(values, startIdx + (subArraySize >>> 2), startIdx + (subArraySize >>> 1), startIdx + ((3 * subArraySize) >>> 2));
+			} else {
+				return startIdx + (subArraySize >>> 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Partitions a subset of the given array around the value at the given pivot index.
+	 * Values that compare less than or equal to the pivot are placed before it.
+	 * After this operation, the pivot is in its correct sorted place.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partition(T [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final T pivot = values[pivotIdx];
+		values[pivotIdx] = values[endIndex];
+
+		int beforePivotInsertIdx = beginIndex;
+		for(int i=beginIndex; i<endIndex; i++) {
+			if(comparator.compare(values[i], pivot) <= 0) {
+				final T swap = values[i];
+				values[i] = values[beforePivotInsertIdx];
+				values[beforePivotInsertIdx] = swap;
+				beforePivotInsertIdx++;
+			}
+		}
+
+		values[endIndex] = values[beforePivotInsertIdx];
+		values[beforePivotInsertIdx] = pivot;
+		return beforePivotInsertIdx;
+	}
+
+
+	/**
+	 * Partitions a subset of the given list around the value at the given pivot index.
+	 * See {@link #partition(Object[], int, int, int)}.
+	 *
+	 * @param values list whose elements will be reordered; should be {@link RandomAccess}
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the list subset
+	 * @param endIndex ending index, inclusive, of the list subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partition(List<T> values, int pivotIdx, int beginIndex, int endIndex) {
+		final T pivot = values.set(pivotIdx, values.get(endIndex));
+
+		int beforePivotInsertIdx = beginIndex;
+		for(int i=beginIndex; i<endIndex; i++) {
+			final T value = values.get(i);
+			if(comparator.compare(value, pivot) <= 0) {
+				if(i != beforePivotInsertIdx) {
+					values.set(i, values.set(beforePivotInsertIdx, value));
+				}
+				beforePivotInsertIdx++;
+			}
+		}
+
+		values.set(endIndex, values.get(beforePivotInsertIdx));
+		values.set(beforePivotInsertIdx, pivot);
+		return beforePivotInsertIdx;
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder the given array.
+	 * After calling this method, values[selectIdx] is the element that would be at selectIdx if the array were sorted by the comparator, and all of the elements before selectIdx compare less than or equal to it.
+	 * The given array is modified in-place.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the element to select
+	 */
+	public void select(T [] values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdx, 0, values.length);
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder a subset of the given array.
+	 * See {@link #select(Object[], int)} and {@link QuickSelectDoubleArray#select(double[], int, int, int)} for more details.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the element to select
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @return a pair of indexes that specify correctly sorted array elements bounding the selectIdx OR -1 to denote that no index was encountered.  When the indexes are available: sort(values)[ret[0]] <= sort(values)[selectIdx] <= sort(values)[ret[1]]
+	 */
+	public int [] select(T [] values, int selectIdx, int beginIndex, int endIndex) {
+		if(values == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		endIndex--; // This becomes an inclusive ending index
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			int pivotIdx = getPivotIdx(values, beginIndex, subArraySize);
+			int beforePivotInsertIdx = partition(values, pivotIdx, beginIndex, endIndex);
+
+			if(beforePivotInsertIdx < selectIdx) {
+				beginIndex = beforePivotInsertIdx + 1;  // The pivot index wound up to-the-left-of the selection index: look right
+				beforeSelectIdx = beforePivotInsertIdx;
+			} else if(beforePivotInsertIdx > selectIdx) {
+				endIndex = beforePivotInsertIdx - 1;  // The pivot index wound up to-the-right-of the selection index: look left
+				afterSelectIdx = beforePivotInsertIdx;
+			} else {
+				break;  // The pivot index wound up exactly-at the selection index; exit the loop
+			}
+		}
+
+		return new int[] {beforeSelectIdx, afterSelectIdx};
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder the given list.
+	 * See {@link #select(Object[], int)} for more details.
+	 *
+	 * @param values list whose elements will be reordered; must support {@link List#set(int, Object)}
+	 * @param selectIdx index of the element to select
+	 */
+	public void select(List<T> values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdx, 0, values.size());
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder a subset of the given list.
+	 * A {@link RandomAccess} list, e.g. an {@link java.util.ArrayList}, is reordered in place through {@link List#get(int)} and {@link List#set(int, Object)}.
+	 * Any other list is handled like {@link java.util.Collections#sort(List)} handles it: the list subset is copied to an array, reordered there, and written back, so this takes expected <code>O(n)</code> time for a {@link java.util.LinkedList} too.
+	 * See {@link #select(Object[], int, int, int)} for more details.
+	 *
+	 * @param values list whose elements will be reordered; must support {@link List#set(int, Object)}
+	 * @param selectIdx index of the element to select
+	 * @param beginIndex starting index, inclusive, of list elements upon which this will operate
+	 * @param endIndex ending index, exclusive, of list elements upon which this will operate
+	 * @return a pair of indexes that specify correctly sorted list elements bounding the selectIdx OR -1 to denote that no index was encountered, see {@link #select(Object[], int, int, int)}
+	 */
+	@SuppressWarnings("unchecked")
+	public int [] select(List<T> values, int selectIdx, int beginIndex, int endIndex) {
+		if(values == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.size() || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		if(values instanceof RandomAccess) {
+			return selectRandomAccess(values, selectIdx, beginIndex, endIndex);
+		}
+
+		List<T> subList = values.subList(beginIndex, endIndex);
+		T [] array = (T [])subList.toArray();
+		int [] selectBounds = select(array, selectIdx - beginIndex, 0, array.length);
+
+		ListIterator<T> it = subList.listIterator();
+		for(T value : array) {
+			it.next();
+			it.set(value);
+		}
+
+		for(int i=0; i<selectBounds.length; i++) {
+			if(selectBounds[i] >= 0) {
+				selectBounds[i] += beginIndex;
+			}
+		}
+		return selectBounds;
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm in place on a subset of a {@link RandomAccess} list.
+	 * This is {@link #select(Object[], int, int, int)} with element access through {@link List#get(int)} and {@link List#set(int, Object)}; arguments are not checked.
+	 *
+	 * @param values list whose elements will be reordered
+	 * @param selectIdx index of the element to select
+	 * @param beginIndex starting index, inclusive, of list elements upon which this will operate
+	 * @param endIndex ending index, exclusive, of list elements upon which this will operate
+	 * @return a pair of indexes that specify correctly sorted list elements bounding the selectIdx OR -1 to denote that no index was encountered
+	 */
+	private int [] selectRandomAccess(List<T> values, int selectIdx, int beginIndex, int endIndex) {
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		endIndex--; // This becomes an inclusive ending index
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			int pivotIdx = getPivotIdx(values, beginIndex, subArraySize);
+			int beforePivotInsertIdx = partition(values, pivotIdx, beginIndex, endIndex);
+
+			if(beforePivotInsertIdx < selectIdx) {
+				beginIndex = beforePivotInsertIdx + 1;  // The pivot index wound up to-the-left-of the selection index: look right
+				beforeSelectIdx = beforePivotInsertIdx;
+			} else if(beforePivotInsertIdx > selectIdx) {
+				endIndex = beforePivotInsertIdx - 1;  // The pivot index wound up to-the-right-of the selection index: look left
+				afterSelectIdx = beforePivotInsertIdx;
+			} else {
+				break;  // The pivot index wound up exactly-at the selection index; exit the loop
+			}
+		}
+
+		return new int[] {beforeSelectIdx, afterSelectIdx};
+	}
+}
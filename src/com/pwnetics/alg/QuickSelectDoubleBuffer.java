@@ -0,0 +1,143 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+/**
+ * Runs QuickSelect over a {@link BigDoubleBuffer}, e.g. a memory-mapped file of doubles too large for the heap or for an array, with long indexes.
+ * The selection reorders the buffer in place, with the same postconditions as {@link QuickSelectDoubleArray#select(double[], int)}.
+ *
+ * <p>
+ * While the array subset is larger than the in-memory threshold, each pass partitions the buffer in place with the given {@link QuickSelectDoubleArray}'s pivot and partition kernels, which are generated for buffers alongside the array ones, so its configured pivot, selection, and partition methods and sort order apply.
+ * Under {@link QuickSelectDoubleArray.SelectionMethod#INTROSELECT}, the passes fall back to median-of-medians pivots when they make poor progress, which bounds the worst case at <code>O(n)</code> time.
+ * The methods that have no buffer version fall back to the nearest one that does: {@link QuickSelectDoubleArray.PartitionMethod#BLOCK} partitions two-way, and {@link QuickSelectDoubleArray.SelectionMethod#FLOYD_RIVEST} and {@link QuickSelectDoubleArray.SelectionMethod#RADIX} make plain QuickSelect passes.
+ * Once the subset holding the selected index is no larger than the threshold, it is copied into an array and finished by the given QuickSelectDoubleArray, so that its small-subset sorting networks apply from there, and then copied back.
+ * The threshold bounds the only copy, so the data as a whole is never loaded onto the heap.
+ * </p>
+ *
+ * <p>
+ * Like {@link QuickSelectDoubleArray}, a QuickSelectDoubleBuffer object can be shared by any number of threads, as long as they select from different buffers.
+ * </p>
+ *
+ * @author romanows
+ */
+public class QuickSelectDoubleBuffer {
+
+	/** Default largest subset, in elements, that is copied into an array and finished by {@link QuickSelectDoubleArray}; 512 KiB of doubles fits in a typical L2 cache */
+	public static final int DEFAULT_IN_MEMORY_THRESHOLD = 1 << 16;
+
+	/** Partitions the buffer, selects from the last subset, and gives the sort order */
+	private final QuickSelectDoubleArray quickSelect;
+
+	/** Largest subset that is finished in an array */
+	private final int inMemoryThreshold;
+
+
+	/**
+	 * Constructor.
+	 * Uses {@link QuickSelectDoubleArray.SelectionMethod#INTROSELECT}, so that no arrangement of the buffer can make the selection take quadratic time.
+	 */
+	public QuickSelectDoubleBuffer() {
+		this(new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, QuickSelectDoubleArray.SelectionMethod.INTROSELECT));
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect partitions the buffer and selects from the last subset once it fits in an array, and gives the sort order of the whole selection
+	 */
+	public QuickSelectDoubleBuffer(QuickSelectDoubleArray quickSelect) {
+		this(quickSelect, DEFAULT_IN_MEMORY_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect partitions the buffer and selects from the last subset once it fits in an array, and gives the sort order of the whole selection
+	 * @param inMemoryThreshold subsets with at most this many elements are copied into an array and finished by the given quickSelect; must be at least 1
+	 */
+	public QuickSelectDoubleBuffer(QuickSelectDoubleArray quickSelect, int inMemoryThreshold) {
+		if(quickSelect == null || inMemoryThreshold < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.quickSelect = quickSelect;
+		this.inMemoryThreshold = inMemoryThreshold;
+	}
+
+
+	/**
+	 * Whether the largest values are placed before the selected index.
+	 * @return true if the largest values are placed before the selected index; false if the smallest values are placed before the selected index
+	 */
+	public boolean isDescending() {
+		return quickSelect.isDescending();
+	}
+
+
+	/**
+	 * Reorders the buffer so that the element at the selected index is the one that would be there if the buffer were sorted, every element before it is on the same side of it as in sorted order, and so is every element after it.
+	 * Behavior is undefined for buffers that contain {@link Double#NaN} values.
+	 *
+	 * @param values buffer whose elements will be reordered
+	 * @param selectIdx index to select
+	 */
+	public void select(BigDoubleBuffer values, long selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdx, 0, values.size());
+	}
+
+
+	/**
+	 * Selects within a subset of the buffer, see {@link #select(BigDoubleBuffer, long)}.
+	 * Behavior is undefined for buffers that contain {@link Double#NaN} values.
+	 *
+	 * @param values buffer whose elements will be reordered
+	 * @param selectIdx index to select, in the buffer's indexes
+	 * @param beginIndex starting index, inclusive, of the buffer subset
+	 * @param endIndex ending index, exclusive, of the buffer subset
+	 */
+	public void select(BigDoubleBuffer values, long selectIdx, long beginIndex, long endIndex) {
+		if(values == null || beginIndex < 0 || endIndex > values.size() || selectIdx < beginIndex || selectIdx >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		final long [] range = quickSelect.selectPasses(values, selectIdx, beginIndex, endIndex - 1, inMemoryThreshold);
+		beginIndex = range[0];
+		endIndex = range[1] + 1;
+
+		final int size = (int)(endIndex - beginIndex);
+		double [] subset = new double[size];
+		values.get(beginIndex, subset, 0, size);
+		quickSelect.select(subset, (int)(selectIdx - beginIndex), 0, size);
+		values.put(beginIndex, subset, 0, size);
+	}
+}
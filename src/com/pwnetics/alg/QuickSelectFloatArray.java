@@ -0,0 +1,1860 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+// Generated from template/QuickSelectArray.java.template by template/generate.sh; edit the template, not this file.
+
+
+package com.pwnetics.alg;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Implements the <a href="http://en.wikipedia.org/wiki/Selection_algorithm#Partition-based_general_selection_algorithm">QuickSelect</a> algorithm.
+ * QuickSelect is a kind of partial sort that runs in expected <code>O(n)</code> time and worst-case <code>O(n^2)</code> time, where <code>n</code> is the length of the input.
+ * It is particularly helpful for quickly finding the n-best values in a beam search or calculating the median.
+ * The {@link SelectionMethod#INTROSELECT} selection method bounds the worst case at <code>O(n)</code> time, which matters when the input may be adversarial.
+ *
+ * <p>
+ * Given an array X, this algorithm rearranges elements in X to produce an array Y such that <code>Y[i] == sort(X)[i]</code> for some user-specified index <code>i</code>.
+ * In addition, <code>Y[:i].containsAll(sort(X)[:i])</code> is true as is <code>Y[i:].containsAll(sort(X)[i:])</code>, although it is not guaranteed that <code>Y[j] == sort(X)[j]</code> for any <code>j != i</code>.
+ * </p>
+ *
+ * <p>
+ * These properties allow one to pick out the median value quickly, with something vaguely like <code>QuickSelect(X,X.length/2)</code> when X has an odd number of elements.
+ * The top N values in X are placed at the beginning with <code>QuickSelect(X,N-1)</code>, although the top N values will not be in any particular order.
+ * </p>
+ *
+ * <p>
+ * A QuickSelect object has no mutable state of its own, so one object can be shared by any number of threads, as long as they select from different arrays.
+ * When no random number generator is given on construction, the randomized pivot picking methods draw from each thread's own {@link ThreadLocalRandom}, so shared objects don't contend.
+ * A given {@link Random} is thread-safe too, but every pivot pick then updates its one shared seed, which becomes a bottleneck with many threads; pass a seeded Random only where reproducible runs matter, e.g. in tests.
+ * </p>
+ *
+ * <p>
+ * To find out why a selection was slow, pass a {@link SelectionListener}, such as {@link SelectionMetrics}, on construction.
+ * It is told the size, split and swaps of every partition pass, so calls whose pivots kept splitting the array badly stand out; without one, the only cost is a null check per partition pass.
+ * </p>
+ *
+ * @author romanows
+ */
+public class QuickSelectFloatArray {
+
+	/**
+	 * We use quicksort-like pivot value picking heuristics.
+	 * {@link QuickSelectFloatArray#DEFAULT_PIVOT_METHOD} is reasonable pivot method specification for the average dataset.
+	 *
+	 * <ul>
+	 *   <li>A <code>RANDOM</code> pivot method will randomly choose a value in the array to be the pivot each time</li>
+	 *   <li>A <code>MEDIAN_OF_THREE</code> pivot method will deterministically sample 3 values from pre-defined and constant indexes in the array and use the median as the pivot</li>
+	 *   <li>A <code>RANDOM | MEDIAN_OF_THREE</code> combined pivot method will randomly choose 3 values and use the median as the pivot</li>
+	 *   <li>Using none of these (<code>EnumSet.noneOf(PivotMethod)</code>) will always choose the middle value in the array as the pivot</li>
+	 * </ul>
+	 *
+	 * <p>The <code>RANDOM | MEDIAN_OF_THREE</code> method is probably the most robust to accidental performance-killer arrays, so this is set as the <code>DEFAULT</code>.
+	 * It requires more computation to choose the pivot, but this should wash out in savings from good pivot locations.</p>
+	 */
+	public static enum PivotMethod {RANDOM, MEDIAN_OF_THREE};
+
+	/** Default {@link PivotMethod} used when partitioning */
+	public static final EnumSet<PivotMethod> DEFAULT_PIVOT_METHOD = EnumSet.of(PivotMethod.RANDOM, PivotMethod.MEDIAN_OF_THREE);
+
+	/**
+	 * Selection algorithm used to find the selected index.
+	 *
+	 * <ul>
+	 *   <li>A <code>QUICKSELECT</code> selection method repeatedly partitions around a pivot chosen by the {@link PivotMethod}; expected <code>O(n)</code> but worst-case <code>O(n^2)</code> time</li>
+	 *   <li>An <code>INTROSELECT</code> selection method behaves like <code>QUICKSELECT</code> but watches how quickly the partitions shrink the array subset.
+	 *       When three consecutive partitions fail to halve the subset, the next partitions use a deterministic median-of-medians pivot until progress resumes.
+	 *       This bounds the worst case at <code>O(n)</code> time, even for arrays crafted to defeat the {@link PivotMethod}, while keeping the expected-case speed of <code>QUICKSELECT</code>.</li>
+	 *   <li>A <code>FLOYD_RIVEST</code> selection method recursively selects from a small sample around the selected index to get a pivot that lands very close to the selected index, then partitions once around it.
+	 *       It needs about <code>n + min(k, n-k)</code> comparisons on average instead of about <code>3n</code>, which pays off on large arrays.
+	 *       The {@link PivotMethod} is not used; like <code>QUICKSELECT</code>, the worst case is <code>O(n^2)</code> time.</li>
+	 *   <li>A <code>RADIX</code> selection method doesn't compare values at all.
+	 *       It maps each value to an unsigned integer key with the same order, counts the keys by a digit of 8 or 16 bits starting at their highest differing bit, and keeps only the bucket that holds the selected index, until the remaining keys are all equal.
+	 *       That takes at most one pass per byte of the key, so the time is <code>O(n)</code> whatever the input, with no pivot luck and no adversarial inputs.
+	 *       It doesn't get faster on presorted input, like the comparison-based methods do, and pays off mostly on large unsorted arrays.
+	 *       The {@link PivotMethod} and {@link PartitionMethod} are not used.</li>
+	 * </ul>
+	 */
+	public static enum SelectionMethod {QUICKSELECT, INTROSELECT, FLOYD_RIVEST, RADIX};
+
+	/** Default {@link SelectionMethod} */
+	public static final SelectionMethod DEFAULT_SELECTION_METHOD = SelectionMethod.QUICKSELECT;
+
+	/**
+	 * Partitioning scheme used by the {@link SelectionMethod#QUICKSELECT} and {@link SelectionMethod#INTROSELECT} selection methods.
+	 *
+	 * <ul>
+	 *   <li>A <code>TWO_WAY</code> partition method places values equal to the pivot before it, along with the values that should go before it.
+	 *       It does the least work per element, but a large run of duplicated values is partitioned over and over again.</li>
+	 *   <li>A <code>THREE_WAY</code> partition method groups the values equal to the pivot in the middle, in their correct sorted place, and stops as soon as the selected index lands in that run.
+	 *       It does a little more work per element, but arrays with few distinct values are selected in a few partitions.</li>
+	 *   <li>A <code>BLOCK</code> partition method splits values like <code>TWO_WAY</code>, but following Edelkamp and Wei&szlig;, "BlockQuicksort: Avoiding Branch Mispredictions in Quicksort", ESA 2016.
+	 *       It first records, without branching, the offsets of misplaced values in a block from each end of the array subset, and then swaps them in a batch.
+	 *       On random data, this avoids the branch mispredictions of the <code>TWO_WAY</code> loop on about half of the elements.</li>
+	 * </ul>
+	 *
+	 * <p>The {@link SelectionMethod#FLOYD_RIVEST} selection method always uses its own partitioning scheme.</p>
+	 */
+	public static enum PartitionMethod {TWO_WAY, THREE_WAY, BLOCK};
+
+	/** Default {@link PartitionMethod} */
+	public static final PartitionMethod DEFAULT_PARTITION_METHOD = PartitionMethod.TWO_WAY;
+
+	/**
+	 * How the NaN-aware methods, such as {@link QuickSelectFloatArray#select(float[], int, int, int, NaNPolicy)}, handle NaN values.
+	 * These methods find NaN values during their first partition pass, so they don't need a separate {@link QuickSelectFloatArray#containsNaN(float[])} pre-scan.
+	 *
+	 * <ul>
+	 *   <li>A <code>REJECT</code> policy throws an {@link IllegalArgumentException} when it meets a NaN value.</li>
+	 *   <li>An <code>IGNORE</code> policy moves the NaN values to the end of the array subset and selects among the remaining values, as if the NaN values weren't there.</li>
+	 *   <li>A <code>LARGEST</code> policy treats NaN as larger than every other value, including positive infinity, which is how {@link java.util.Arrays#sort(float[])} orders it.</li>
+	 * </ul>
+	 */
+	public static enum NaNPolicy {REJECT, IGNORE, LARGEST};
+
+	/** Default median-of-three threshold value; the median-of-three pivot method is disabled when the number of pivot candidate elements is less than the median-of-three threshold number */
+	public static final int DEFAULT_MEDIAN_OF_THREE_THRESHOLD = 24;
+
+	/** Default sorting order */
+	public static final boolean DEFAULT_IS_DESCENDING = true;
+
+	/** Default small-sort threshold; array subsets with at most this many elements are sorted instead of partitioned */
+	public static final int DEFAULT_SMALL_SORT_THRESHOLD = 16;
+
+	/**
+	 * Sorting networks indexed by the number of elements they sort, as flattened pairs of indexes to compare and exchange; null where there is no network for a size.
+	 * Networks have no data-dependent branches, so they beat insertion sort on random data.
+	 * They are the smallest known networks for their sizes, see Knuth, TAOCP volume 3, section 5.3.4.
+	 */
+	private static final int [][] SORTING_NETWORKS = new int[17][];
+	static {
+		SORTING_NETWORKS[3] = new int[] {0,2, 0,1, 1,2};
+		SORTING_NETWORKS[5] = new int[] {0,3, 1,4, 0,2, 1,3, 0,1, 2,4, 1,2, 3,4, 2,3};
+		SORTING_NETWORKS[7] = new int[] {0,6, 2,3, 4,5, 0,2, 1,4, 3,6, 0,1, 2,5, 3,4, 1,2, 4,6, 2,3, 4,5, 1,2, 3,4, 5,6};
+		SORTING_NETWORKS[9] = new int[] {0,3, 1,7, 2,5, 4,8, 0,7, 2,4, 3,8, 5,6, 0,2, 1,3, 4,5, 7,8, 1,4, 3,6, 5,7, 0,1, 2,4, 3,5, 6,8, 2,3, 4,5, 6,7, 1,2, 3,4, 5,6};
+		SORTING_NETWORKS[16] = new int[] {0,13, 1,12, 2,15, 3,14, 4,8, 5,6, 7,11, 9,10, 0,5, 1,7, 2,9, 3,4, 6,13, 8,14, 10,15, 11,12,
+				0,1, 2,3, 4,5, 6,8, 7,9, 10,11, 12,13, 14,15, 0,2, 1,3, 4,10, 5,11, 6,7, 8,9, 12,14, 13,15,
+				1,2, 3,12, 4,6, 5,7, 8,10, 9,11, 13,14, 1,4, 2,6, 5,8, 7,10, 9,13, 11,14, 2,4, 3,6, 9,12, 11,13,
+				3,5, 6,8, 7,9, 10,12, 3,4, 5,6, 7,8, 9,10, 11,12, 6,7, 8,9};
+	}
+
+	/** Number of partitions after which the {@link SelectionMethod#INTROSELECT} method checks that the array subset has been at least halved */
+	private static final int INTROSELECT_PARTITIONS_PER_CHECK = 3;
+
+	/** Number of elements whose comparisons the {@link PartitionMethod#BLOCK} method buffers from each end of the array subset before swapping */
+	private static final int PARTITION_BLOCK_SIZE = 128;
+
+	/** The {@link SelectionMethod#FLOYD_RIVEST} method selects from a sample of array subsets larger than this, and partitions smaller subsets directly */
+	private static final int FLOYD_RIVEST_SAMPLE_THRESHOLD = 600;
+
+	/** Number of key bits counted in each pass of the {@link SelectionMethod#RADIX} method */
+	private static final int RADIX_BITS = 8;
+
+	/** Number of key bits counted in each pass of the {@link SelectionMethod#RADIX} method over array subsets with at least {@link #RADIX_WIDE_THRESHOLD} elements */
+	private static final int RADIX_WIDE_BITS = 16;
+
+	/** The {@link SelectionMethod#RADIX} method counts array subsets with at least this many elements by wider digits, whose larger count array pays for itself */
+	private static final int RADIX_WIDE_THRESHOLD = 1 << 18;
+
+	/** The non-destructive methods copy arrays with at most this many elements whole, since a bracketing sample wouldn't save enough copying to pay for itself */
+	private static final int NON_DESTRUCTIVE_COPY_THRESHOLD = 1024;
+
+	/** Scratch arrays of each thread for the non-destructive methods, indexed by size class; the array in size class i holds 2^i elements */
+	private static final ThreadLocal<float [][]> THREAD_LOCAL_SCRATCH = new ThreadLocal<float [][]>() {
+		@Override
+		protected float [][] initialValue() {
+			return new float[31][];
+		}
+	};
+
+	/** Offset buffers of each thread for the {@link PartitionMethod#BLOCK} method, for the left and right blocks; kept here so that partition passes don't allocate */
+	private static final ThreadLocal<int [][]> THREAD_LOCAL_BLOCK_OFFSETS = new ThreadLocal<int [][]>() {
+		@Override
+		protected int [][] initialValue() {
+			return new int[][] {new int[PARTITION_BLOCK_SIZE], new int[PARTITION_BLOCK_SIZE]};
+		}
+	};
+
+	/** Digit count arrays of each thread for the {@link SelectionMethod#RADIX} method; holds 2^{@link #RADIX_BITS} counts until an array subset needs wider digits, so that repeated selections don't allocate */
+	private static final ThreadLocal<int []> THREAD_LOCAL_RADIX_COUNTS = new ThreadLocal<int []>() {
+		@Override
+		protected int [] initialValue() {
+			return new int[1 << RADIX_BITS];
+		}
+	};
+
+	/** Pivot picking method */
+	private final EnumSet<PivotMethod> pivotMethod;
+
+	/** Whether the sorting order is descending or ascending */
+	private final boolean isDescending;
+
+	/** Random number generator used for the randomized pivot picking methods; if null, {@link ThreadLocalRandom} is used */
+	private final Random random;
+
+	/** Median-of-three pivot method is disabled when the number of pivot candidate elements is less than the median-of-three threshold number */
+	private final int medianOfThreeThreshold;
+
+	/** Selection algorithm */
+	private final SelectionMethod selectionMethod;
+
+	/** Partitioning scheme */
+	private final PartitionMethod partitionMethod;
+
+	/** Array subsets with at most this many elements are sorted instead of partitioned */
+	private final int smallSortThreshold;
+
+	/** Receives the work of each selection call, or null */
+	private final SelectionListener selectionListener;
+
+
+	/**
+	 * Constructor.
+	 * Creates a QuickSelect object that places the largest values before the selected index.
+	 */
+	public QuickSelectFloatArray() {
+		this(DEFAULT_IS_DESCENDING);
+	}
+
+
+	/**
+	 * Constructor.
+	 * Creates a Partitioner with reasonable defaults.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 */
+	public QuickSelectFloatArray(boolean isDescending) {
+		this(isDescending, DEFAULT_PIVOT_METHOD, null, DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 */
+	public QuickSelectFloatArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold) {
+		this(isDescending, pivotMethod, random, medianOfThreeThreshold, DEFAULT_SELECTION_METHOD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 * @param selectionMethod specifies the selection algorithm
+	 */
+	public QuickSelectFloatArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold, SelectionMethod selectionMethod) {
+		this(isDescending, pivotMethod, random, medianOfThreeThreshold, selectionMethod, DEFAULT_PARTITION_METHOD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 * @param selectionMethod specifies the selection algorithm
+	 * @param partitionMethod specifies the partitioning scheme
+	 */
+	public QuickSelectFloatArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold, SelectionMethod selectionMethod, PartitionMethod partitionMethod) {
+		this(isDescending, pivotMethod, random, medianOfThreeThreshold, selectionMethod, partitionMethod, DEFAULT_SMALL_SORT_THRESHOLD);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values are placed before the selected index; if false, the smallest array values are placed before the selected index.
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 * @param selectionMethod specifies the selection algorithm
+	 * @param partitionMethod specifies the partitioning scheme
+	 * @param smallSortThreshold array subsets with at most this many elements are finished with {@link #sortSmall(float[], int, int)} instead of being partitioned further; 0 or 1 partitions all the way down
+	 */
+	public QuickSelectFloatArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold, SelectionMethod selectionMethod, PartitionMethod partitionMethod, int smallSortThreshold) {
+		this(isDescending, pivotMethod, random, medianOfThreeThreshold, selectionMethod, partitionMethod, smallSortThreshold, null);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param isDescending if true, the largest array values will be placed before the selected index, otherwise the smallest values will be
+	 * @param pivotMethod specifies the pivot picking method
+	 * @param random random number generator when randomizing pivot picking; if null, each thread uses its own {@link ThreadLocalRandom}, which is faster and never contended when this object is shared across threads
+	 * @param medianOfThreeThreshold median-of-three pivot method will be used for array subsets greater than or equal to this value, otherwise a (simpler) pivot picking procedure will be used.
+	 * @param selectionMethod specifies the selection algorithm
+	 * @param partitionMethod specifies the partitioning scheme
+	 * @param smallSortThreshold array subsets with at most this many elements are finished with {@link #sortSmall(float[], int, int)} instead of being partitioned further; 0 or 1 partitions all the way down
+	 * @param selectionListener receives the partition passes of each selection call, e.g. a {@link SelectionMetrics}; must be thread-safe if this object is shared across threads; if null, nothing is reported
+	 */
+	public QuickSelectFloatArray(boolean isDescending, EnumSet<PivotMethod> pivotMethod, Random random, int medianOfThreeThreshold, SelectionMethod selectionMethod, PartitionMethod partitionMethod, int smallSortThreshold, SelectionListener selectionListener) {
+		if(pivotMethod == null || selectionMethod == null || partitionMethod == null || smallSortThreshold < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.smallSortThreshold = smallSortThreshold;
+		this.pivotMethod = pivotMethod;
+		this.isDescending = isDescending;
+		this.medianOfThreeThreshold = medianOfThreeThreshold;
+		this.selectionMethod = selectionMethod;
+		this.partitionMethod = partitionMethod;
+		this.selectionListener = selectionListener;
+
+		this.random = random;
+	}
+
+
+	/**
+	 * Whether the largest array values are placed before the selected index.
+	 * @return true if the largest array values are placed before the selected index; false if the smallest array values are placed before the selected index
+	 */
+	public boolean isDescending() {
+		return isDescending;
+	}
+
+
+	/**
+	 * Get the median value of three values from a given array.
+	 * @param values array containing values
+	 * @param idx1 index of a median candidate
+	 * @param idx2 index of a median candidate
+	 * @param idx3 index of a median candidate
+	 * @return the index of the median with respect to the given candidates
+	 */
+	protected int medianIdx(float [] values, int idx1, int idx2, int idx3) {
+		if(values[idx1] <= values[idx2]) {
+			if(values[idx3] >= values[idx2]) {
+				return idx2;
+			} else if(values[idx1] >= values[idx3]) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		} else {
+			if(values[idx2] >= values[idx3]) {
+				return idx2;
+			} else if(values[idx3] >= values[idx1]) {
+				return idx1;
+			} else {
+				return idx3;
+			}
+		}
+	}
+
+
+	/**
+	 * Choose the pivot to be the median-of-three samples from a subset of the given array.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param startIdx starting index of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return median-of-three pivot index
+	 */
+	protected int getPivotIdxMedianThree(float [] values, int startIdx, int subArraySize) {
+		// Picking elements at indices of about 0.25, 0.5, and 0.75.
+		int i1 = startIdx + (subArraySize >>> 2);
+		int i2 = startIdx + (subArraySize >>> 1);
+		int i3 = startIdx + ((3 * subArraySize) >>> 2);
+
+		return medianIdx(values, i1, i2, i3);
+	}
+
+
+	/**
+	 * Choose the pivot to be the median-of-three samples from a subset of the given array.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param startIdx starting index of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return median-of-three pivot index
+	 */
+	protected int getPivotIdxMedianThreeRandom(float [] values, int startIdx, int subArraySize) {
+		return medianIdx(values, startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize), startIdx + nextRandomInt(subArraySize));
+	}
+
+
+	/**
+	 * Draws a random index for the randomized pivot picking methods.
+	 * Uses the random number generator given on construction, or the calling thread's {@link ThreadLocalRandom} if none was given.
+	 * @param bound upper bound, exclusive, of the random index
+	 * @return random index in [0, bound)
+	 */
+	private int nextRandomInt(int bound) {
+		return random == null ? ThreadLocalRandom.current().nextInt(bound) : random.nextInt(bound);
+	}
+
+
+	/**
+	 * Get the pivot index for a partition step using the configured pivot picking method.
+	 * @param values array whose elements will be reordered
+	 * @param startIdx starting index of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return pivot index
+	 */
+	protected int getPivotIdx(float [] values, int startIdx, int subArraySize) {
+		if(pivotMethod.contains(PivotMethod.RANDOM)) {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				return getPivotIdxMedianThreeRandom(values, startIdx, subArraySize);
+			} else {
+				return startIdx + nextRandomInt(subArraySize);
+			}
+		} else {
+			if(pivotMethod.contains(PivotMethod.MEDIAN_OF_THREE) && subArraySize >= medianOfThreeThreshold) {
+				return getPivotIdxMedianThree(values, startIdx, subArraySize);
+			} else {
+				return startIdx + (subArraySize >>> 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Choose the pivot to be the median-of-medians of groups of five elements from a subset of the given array.
+	 * The median of each group is moved to the start of the array subset and the median of these medians is found by a recursive {@link SelectionMethod#INTROSELECT}.
+	 * The pivot is guaranteed to have at least 30% of the array subset on either side of it, which is what bounds the introselect worst case.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param startIdx starting index of the array subset
+	 * @param subArraySize number of elements in the array subset
+	 * @return median-of-medians pivot index
+	 */
+	protected int getPivotIdxMedianOfMedians(float [] values, int startIdx, int subArraySize) {
+		final int numMedians = subArraySize / 5;
+		if(numMedians == 0) {
+			return startIdx + (subArraySize >>> 1);
+		}
+
+		for(int group=0; group<numMedians; group++) {
+			final int groupIdx = startIdx + 5 * group;
+			insertionSort(values, groupIdx, groupIdx + 4);
+
+			// The median slot startIdx+group is either in this group or in an earlier group whose median has already been moved
+			final float swap = values[groupIdx + 2];
+			values[groupIdx + 2] = values[startIdx + group];
+			values[startIdx + group] = swap;
+		}
+
+		final int middleIdx = startIdx + (numMedians >>> 1);
+		introSelect(values, middleIdx, startIdx, startIdx + numMedians - 1, new int[2]);
+		return middleIdx;
+	}
+
+
+	/**
+	 * Sorts a subset of the given array with insertion sort, in the order given by {@link #isDescending}.
+	 * Only sensible for very small array subsets.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 */
+	protected void insertionSort(float [] values, int beginIndex, int endIndex) {
+		for(int i=beginIndex + 1; i<=endIndex; i++) {
+			final float value = values[i];
+			int j = i - 1;
+			while(j >= beginIndex && ((isDescending && values[j] < value) || (!isDescending && values[j] > value))) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = value;
+		}
+	}
+
+
+	/**
+	 * Sorts a small subset of the given array, in the order given by {@link #isDescending}.
+	 * Subsets of 3, 5, 7, 9 or 16 elements are sorted with a branch-free sorting network and other sizes with insertion sort, so this takes <code>O(n^2)</code> time and is only sensible for a few dozen elements.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 */
+	public void sortSmall(float [] values, int beginIndex, int endIndex) {
+		if(values == null || beginIndex < 0 || endIndex > values.length || beginIndex > endIndex) {
+			throw new IllegalArgumentException();
+		}
+		if(endIndex - beginIndex > 1) {
+			sortSubset(values, beginIndex, endIndex - 1);
+		}
+	}
+
+
+	/**
+	 * Sorts a small subset of the given array with a sorting network when there is one for its size, otherwise with insertion sort.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 */
+	private void sortSubset(float [] values, int beginIndex, int endIndex) {
+		final int subArraySize = endIndex - beginIndex + 1;
+		final int [] network = subArraySize < SORTING_NETWORKS.length ? SORTING_NETWORKS[subArraySize] : null;
+		if(network == null) {
+			insertionSort(values, beginIndex, endIndex);
+		} else if(isDescending) {
+			for(int k=0; k<network.length; k+=2) {
+				final int i = beginIndex + network[k];
+				final int j = beginIndex + network[k + 1];
+				final float x = values[i];
+				final float y = values[j];
+				values[i] = Math.max(x, y);
+				values[j] = Math.min(x, y);
+			}
+		} else {
+			for(int k=0; k<network.length; k+=2) {
+				final int i = beginIndex + network[k];
+				final int j = beginIndex + network[k + 1];
+				final float x = values[i];
+				final float y = values[j];
+				values[i] = Math.min(x, y);
+				values[j] = Math.max(x, y);
+			}
+		}
+	}
+
+
+	/**
+	 * Finishes a selection by sorting the remaining array subset, which puts selectIdx and its neighbors in the subset in their correctly sorted places.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param beforeSelectIdx closest correctly sorted index before the array subset, or -1
+	 * @param afterSelectIdx closest correctly sorted index after the array subset, or -1
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx
+	 * @return selectBounds
+	 */
+	private int [] finishSmall(float [] values, int selectIdx, int beginIndex, int endIndex, int beforeSelectIdx, int afterSelectIdx, int [] selectBounds) {
+		sortSubset(values, beginIndex, endIndex);
+		selectBounds[0] = selectIdx > beginIndex ? selectIdx - 1 : beforeSelectIdx;
+		selectBounds[1] = selectIdx < endIndex ? selectIdx + 1 : afterSelectIdx;
+		return selectBounds;
+	}
+
+
+	/**
+	 * Partitions a subset of the given array around the value at the given pivot index.
+	 * Values that should go before the pivot, including values equal to the pivot, are placed before it.
+	 * After this operation, the pivot is in its correct sorted place.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partition(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final float pivot = values[pivotIdx];
+
+		// "Swap out pivot", but we've got the midpoint temporary variable holding the value, so we don't need to write it to values[endIdx].
+		values[pivotIdx] = values[endIndex];
+
+		// Place values that should go before the pivot, before the pivot
+		int beforePivotInsertIdx = beginIndex;
+		for(int i=beginIndex; i<endIndex; i++) {  // Notice we don't consider the endIdx, what contains the value we "swapped" with the midpoint
+			if((isDescending && values[i] >= pivot) || (!isDescending && values[i] <= pivot)) {
+				final float swap = values[i];
+				values[i] = values[beforePivotInsertIdx];
+				values[beforePivotInsertIdx] = swap;
+				beforePivotInsertIdx++;
+			}
+		}
+
+		// Swaps the pivot back into the correct location.
+		// If we only need the beam, we can avoid these copies when the pivot will wind up outside the beam.
+		// However, this doesn't seem to give any noticeable speed increases.
+		values[endIndex] = values[beforePivotInsertIdx];
+		values[beforePivotInsertIdx] = pivot;
+		return beforePivotInsertIdx;
+	}
+
+
+	/**
+	 * Partitions a subset of the given array into three parts: values that should go before the pivot, values equal to the pivot, and values that should go after the pivot.
+	 * Unlike {@link #partition(float[], int, int, int)}, a run of values equal to the pivot is placed in its correct sorted place all at once, so arrays with many duplicates can't stall the selection.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the first and last indexes, inclusive, of the run of values equal to the pivot
+	 */
+	protected int [] partitionThreeWay(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final float pivot = values[pivotIdx];
+
+		// Invariant: values[beginIndex:lt] go before the pivot, values[lt:i] equal the pivot, values[gt+1:endIndex+1] go after the pivot
+		int lt = beginIndex;
+		int gt = endIndex;
+		int i = beginIndex;
+		while(i <= gt) {
+			final float value = values[i];
+			if((isDescending && value > pivot) || (!isDescending && value < pivot)) {
+				values[i] = values[lt];
+				values[lt] = value;
+				lt++;
+				i++;
+			} else if(value == pivot) {
+				i++;
+			} else {
+				values[i] = values[gt];
+				values[gt] = value;
+				gt--;
+			}
+		}
+		if(selectionListener != null) {
+			reportPartition(beginIndex, endIndex, lt, gt, (lt - beginIndex) + (endIndex - gt));
+		}
+		return new int[] {lt, gt};
+	}
+
+
+	/**
+	 * Partitions a subset of the given array around the value at the given pivot index with the configured two-way {@link PartitionMethod}.
+	 * See {@link #partition(float[], int, int, int)} for details.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	private int partitionTwoWay(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		if(partitionMethod == PartitionMethod.BLOCK) {
+			final int pivotInsertIdx = isDescending ? partitionBlockDescending(values, pivotIdx, beginIndex, endIndex) : partitionBlockAscending(values, pivotIdx, beginIndex, endIndex);
+			if(selectionListener != null) {
+				reportPartition(beginIndex, endIndex, pivotInsertIdx, pivotInsertIdx, Math.min(pivotInsertIdx - beginIndex, endIndex - pivotInsertIdx));
+			}
+			return pivotInsertIdx;
+		}
+		final int pivotInsertIdx = partition(values, pivotIdx, beginIndex, endIndex);
+		if(selectionListener != null) {
+			// One exchange per value placed before the pivot, and one to put the pivot in place
+			reportPartition(beginIndex, endIndex, pivotInsertIdx, pivotInsertIdx, pivotInsertIdx - beginIndex + 1);
+		}
+		return pivotInsertIdx;
+	}
+
+
+	/**
+	 * Reports a partition pass to the selection listener, which must not be null.
+	 * @param beginIndex starting index, inclusive, of the partitioned array subset
+	 * @param endIndex ending index, inclusive, of the partitioned array subset
+	 * @param pivotBeginIndex first index, inclusive, of the pivot or the run of values equal to it
+	 * @param pivotEndIndex last index, inclusive, of the pivot or the run of values equal to it
+	 * @param numSwaps number of exchanges made by the pass
+	 */
+	private void reportPartition(int beginIndex, int endIndex, int pivotBeginIndex, int pivotEndIndex, long numSwaps) {
+		selectionListener.partitioned(endIndex - beginIndex + 1, pivotBeginIndex - beginIndex, endIndex - pivotEndIndex, numSwaps);
+	}
+
+
+	/**
+	 * Partitions a subset of the given array around the value at the given pivot index with the {@link PartitionMethod#BLOCK} method, placing the smallest values first.
+	 * The results are the same as those of {@link #partition(float[], int, int, int)}, although the order of values on either side of the pivot differs.
+	 *
+	 * <p>Each step scans a block of values at the left end of the unpartitioned range, recording the offsets of those greater than the pivot, and a block at the right end, recording the offsets of those less than or equal to the pivot.
+	 * The recorded values are then swapped pairwise.
+	 * The recording loops have no data-dependent branch, which is where the speedup on random data comes from.
+	 * A block is retired once all of its misplaced values have been swapped, and the last few values are partitioned like {@link #partition(float[], int, int, int)}.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partitionBlockAscending(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final float pivot = values[pivotIdx];
+		values[pivotIdx] = values[endIndex];
+
+		// Invariant: values[beginIndex:left] go before the pivot, values[right+1:endIndex] go after it
+		int left = beginIndex;
+		int right = endIndex - 1;
+		if(right - left + 1 > 2 * PARTITION_BLOCK_SIZE) {
+			final int [][] offsets = THREAD_LOCAL_BLOCK_OFFSETS.get();
+			final int [] leftOffsets = offsets[0];
+			final int [] rightOffsets = offsets[1];
+			int numLeft = 0;
+			int numRight = 0;
+			int startLeft = 0;
+			int startRight = 0;
+
+			while(right - left + 1 > 2 * PARTITION_BLOCK_SIZE) {
+				if(numLeft == 0) {
+					startLeft = 0;
+					for(int j=0; j<PARTITION_BLOCK_SIZE; j++) {
+						leftOffsets[numLeft] = j;
+						numLeft += values[left + j] > pivot ? 1 : 0;
+					}
+				}
+				if(numRight == 0) {
+					startRight = 0;
+					for(int j=0; j<PARTITION_BLOCK_SIZE; j++) {
+						rightOffsets[numRight] = j;
+						numRight += values[right - j] <= pivot ? 1 : 0;
+					}
+				}
+
+				final int numSwaps = Math.min(numLeft, numRight);
+				for(int j=0; j<numSwaps; j++) {
+					swap(values, left + leftOffsets[startLeft + j], right - rightOffsets[startRight + j]);
+				}
+				numLeft -= numSwaps;
+				numRight -= numSwaps;
+				startLeft += numSwaps;
+				startRight += numSwaps;
+				if(numLeft == 0) {
+					left += PARTITION_BLOCK_SIZE;
+				}
+				if(numRight == 0) {
+					right -= PARTITION_BLOCK_SIZE;
+				}
+			}
+		}
+
+		for(int i=left; i<=right; i++) {
+			if(values[i] <= pivot) {
+				swap(values, i, left);
+				left++;
+			}
+		}
+
+		values[endIndex] = values[left];
+		values[left] = pivot;
+		return left;
+	}
+
+
+	/**
+	 * Partitions a subset of the given array around the value at the given pivot index with the {@link PartitionMethod#BLOCK} method, placing the largest values first.
+	 * This mirrors {@link #partitionBlockAscending(float[], int, int, int)} with the comparisons reversed.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @return the index at which the pivot value was placed
+	 */
+	protected int partitionBlockDescending(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final float pivot = values[pivotIdx];
+		values[pivotIdx] = values[endIndex];
+
+		// Invariant: values[beginIndex:left] go before the pivot, values[right+1:endIndex] go after it
+		int left = beginIndex;
+		int right = endIndex - 1;
+		if(right - left + 1 > 2 * PARTITION_BLOCK_SIZE) {
+			final int [][] offsets = THREAD_LOCAL_BLOCK_OFFSETS.get();
+			final int [] leftOffsets = offsets[0];
+			final int [] rightOffsets = offsets[1];
+			int numLeft = 0;
+			int numRight = 0;
+			int startLeft = 0;
+			int startRight = 0;
+
+			while(right - left + 1 > 2 * PARTITION_BLOCK_SIZE) {
+				if(numLeft == 0) {
+					startLeft = 0;
+					for(int j=0; j<PARTITION_BLOCK_SIZE; j++) {
+						leftOffsets[numLeft] = j;
+						numLeft += values[left + j] < pivot ? 1 : 0;
+					}
+				}
+				if(numRight == 0) {
+					startRight = 0;
+					for(int j=0; j<PARTITION_BLOCK_SIZE; j++) {
+						rightOffsets[numRight] = j;
+						numRight += values[right - j] >= pivot ? 1 : 0;
+					}
+				}
+
+				final int numSwaps = Math.min(numLeft, numRight);
+				for(int j=0; j<numSwaps; j++) {
+					swap(values, left + leftOffsets[startLeft + j], right - rightOffsets[startRight + j]);
+				}
+				numLeft -= numSwaps;
+				numRight -= numSwaps;
+				startLeft += numSwaps;
+				startRight += numSwaps;
+				if(numLeft == 0) {
+					left += PARTITION_BLOCK_SIZE;
+				}
+				if(numRight == 0) {
+					right -= PARTITION_BLOCK_SIZE;
+				}
+			}
+		}
+
+		for(int i=left; i<=right; i++) {
+			if(values[i] >= pivot) {
+				swap(values, i, left);
+				left++;
+			}
+		}
+
+		values[endIndex] = values[left];
+		values[left] = pivot;
+		return left;
+	}
+
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder the given array.
+	 * After calling this method, values[selectIdx] == sort(values)[selectIdx], and all of the elements before selectIdx will either be >= or <= values[selectIdx] depending on how the isDescending parameter was set upon construction.
+	 * The given array is modified in-place.
+	 * See the {@link QuickSelectFloatArray} class documentation for more details.
+	 *
+	 * <p>An assert checks that the given array does not contain a NaN value element; if this assert is disabled, behavior is undefined.</p>
+	 *
+	 * <p>Note that if the values[selectIdx] value is duplicated in the array, then that value will occur at selectIdx but may also occur at some index i < selectIdx or i > selectIdx.</p>
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN (an {@link AssertionError} if assertions are enabled)
+	 * @param selectIdx number of smallest values to move to the start of the array
+	 */
+	public void select(float [] values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdx, 0, values.length);
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder the given array.
+	 * After calling this method, values[selectIdx] == sort(values)[selectIdx], and all of the elements before selectIdx will either be >= or <= values[selectIdx] depending on how the isDescending parameter was set upon construction.
+	 * The given array is modified in-place.
+	 * See the {@link QuickSelectFloatArray} class documentation for more details.
+	 *
+	 * <p>An assert checks that the given array does not contain a NaN value element; if this assert is disabled, behavior is undefined.</p>
+	 *
+	 * <p>Note that if the values[selectIdx] value is duplicated in the array, then that value will occur at selectIdx but may also occur at some index i < selectIdx or i > selectIdx.</p>
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN (an {@link AssertionError} if assertions are enabled)
+	 * @param selectIdx number of smallest values to move to the start of the array
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @return a pair of indexes that specify correctly sorted array elements bounding the selectIdx OR -1 to denote that no index was encountered (we got lucky and found the selectIdx almost immediately).  When the indexes are available, then when {@link #isDescending}: sort(values)[ret[0]] >= sort(values)[selectIdx] >= sort(values)[ret[1]]
+	 */
+	public int [] select(float [] values, int selectIdx, int beginIndex, int endIndex) {
+		assert(!containsNaN(values, beginIndex, endIndex));
+		if(values == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		if(selectionListener != null) {
+			selectionListener.selectStarted(endIndex - beginIndex);
+		}
+		try {
+			return selectSubset(values, selectIdx, beginIndex, endIndex - 1, new int[2]);
+		} finally {
+			if(selectionListener != null) {
+				selectionListener.selectFinished();
+			}
+		}
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder a subset of the given array, like {@link #select(float[], int, int, int)}, without any of the per-call overhead.
+	 * The arguments are not checked,
+	 * there is no assert that the array subset is free of NaN values,
+	 * the {@link SelectionListener} hears about the partition passes but not about the start and finish of the call, and the bounds are written to the given array rather than a new one.
+	 * This is meant for callers that select in many small array subsets and check their arguments once for all of them, such as the batch medians of QuickMedian; others should use {@link #select(float[], int, int, int)}.
+	 *
+	 * @param values array whose elements will be reordered; behavior is undefined if it is null or an element of the array subset is NaN
+	 * @param selectIdx index of the value to select; behavior is undefined unless beginIndex <= selectIdx < endIndex
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate; behavior is undefined if it is negative
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate; behavior is undefined if it is larger than values.length
+	 * @param selectBounds array of at least two elements that receives the pair of indexes that {@link #select(float[], int, int, int)} would return
+	 * @return selectBounds
+	 */
+	public int [] selectUnchecked(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		return selectSubset(values, selectIdx, beginIndex, endIndex - 1, selectBounds);
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder a subset of the given array, and reports where the values equal to the selected value ended up.
+	 * The array is reordered as described by {@link #select(float[], int, int, int)}, except that every value equal to values[selectIdx] is gathered into one run around selectIdx.
+	 * This lets the caller use the ties of the selected value without scanning the array again.
+	 *
+	 * <p>The selection always uses the {@link PartitionMethod#THREE_WAY} partition method, whatever the configured one.
+	 * The {@link SelectionMethod#INTROSELECT} selection method keeps its worst-case guarantee; the {@link SelectionMethod#FLOYD_RIVEST} and {@link SelectionMethod#RADIX} selection methods are treated like {@link SelectionMethod#QUICKSELECT}.</p>
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN (an {@link AssertionError} if assertions are enabled)
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @return the starting index, inclusive, and ending index, exclusive, of the run of values equal to values[selectIdx]; every other value in values[beginIndex:endIndex] differs from values[selectIdx]
+	 */
+	public int [] selectEqualRange(float [] values, int selectIdx, int beginIndex, int endIndex) {
+		assert(!containsNaN(values, beginIndex, endIndex));
+		if(values == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		if(selectionListener != null) {
+			selectionListener.selectStarted(endIndex - beginIndex);
+		}
+		try {
+			int [] pivotRun = selectThreeWay(values, selectIdx, beginIndex, endIndex - 1, selectionMethod == SelectionMethod.INTROSELECT, new int[2]);
+			return new int[] {pivotRun[0], pivotRun[1] + 1};
+		} finally {
+			if(selectionListener != null) {
+				selectionListener.selectFinished();
+			}
+		}
+	}
+
+
+	/**
+	 * Implements the QuickSelect algorithm to reorder a subset of the given array, which may contain NaN values.
+	 * Apart from the handling of NaN values, the array is reordered as described by {@link #select(float[], int, int, int)}.
+	 *
+	 * <p>The NaN values end up in one run, found during the first partition pass; see {@link #partitionNaN(float[], int, int, NaNPolicy)}.
+	 * Under the {@link NaNPolicy#IGNORE} policy, the run is at the end of the array subset, so selectIdx effectively counts only the values that aren't NaN.
+	 * If selectIdx falls into the run, e.g. because there are fewer than <code>selectIdx - beginIndex + 1</code> such values, values[selectIdx] is NaN and nothing more is selected.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param nanPolicy how NaN values are handled
+	 * @return a pair of indexes that specify correctly sorted array elements bounding the selectIdx OR -1, as returned by {@link #select(float[], int, int, int)}, followed by the starting index, inclusive, and ending index, exclusive, of the run of NaN values
+	 * @throws IllegalArgumentException if the policy is {@link NaNPolicy#REJECT} and the array subset contains a NaN value; the array subset may have been partly reordered
+	 */
+	public int [] select(float [] values, int selectIdx, int beginIndex, int endIndex, NaNPolicy nanPolicy) {
+		if(values == null || nanPolicy == null || selectIdx < 0 || endIndex <= selectIdx || beginIndex > selectIdx || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		if(selectionListener != null) {
+			selectionListener.selectStarted(endIndex - beginIndex);
+		}
+		try {
+			int [] pivotAndNaNRun = partitionNaN(values, beginIndex, endIndex, nanPolicy);
+			final int pivotIdx = pivotAndNaNRun[0];
+			final int nanBeginIndex = pivotAndNaNRun[1];
+			final int nanEndIndex = pivotAndNaNRun[2];
+			if(selectIdx >= nanBeginIndex && selectIdx < nanEndIndex) {
+				return new int[] {-1, -1, nanBeginIndex, nanEndIndex};
+			}
+
+			// The first partition pass already split the values that aren't NaN around the pivot, so only one side is left to select from
+			final int numbersBeginIndex = nanBeginIndex == beginIndex ? nanEndIndex : beginIndex;
+			final int numbersEndIndex = nanBeginIndex == beginIndex ? endIndex : nanBeginIndex;
+			final int [] selectBounds = new int[] {-1, -1};
+			if(selectIdx < pivotIdx) {
+				selectSubset(values, selectIdx, numbersBeginIndex, pivotIdx - 1, selectBounds);
+				if(selectBounds[1] < 0) {
+					selectBounds[1] = pivotIdx;
+				}
+			} else if(selectIdx > pivotIdx) {
+				selectSubset(values, selectIdx, pivotIdx + 1, numbersEndIndex - 1, selectBounds);
+				if(selectBounds[0] < 0) {
+					selectBounds[0] = pivotIdx;
+				}
+			}
+			return new int[] {selectBounds[0], selectBounds[1], nanBeginIndex, nanEndIndex};
+		} finally {
+			if(selectionListener != null) {
+				selectionListener.selectFinished();
+			}
+		}
+	}
+
+
+	/**
+	 * Partitions a subset of the given array once around a pivot, and moves the NaN values out of the way in the same pass.
+	 * This is the first partition pass of {@link #select(float[], int, int, int, NaNPolicy)}, exposed so that callers like QuickMedian can finish the selection themselves.
+	 *
+	 * <p>After this operation, the NaN values form one run: at the end of the array subset, except under the {@link NaNPolicy#LARGEST} policy when the largest values are placed first, in which case the run is at the start.
+	 * The other values are partitioned around the returned pivot index, which holds its correctly sorted value among them.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param nanPolicy how NaN values are handled
+	 * @return the pivot index, or -1 if every value is NaN, followed by the starting index, inclusive, and ending index, exclusive, of the run of NaN values
+	 * @throws IllegalArgumentException if the policy is {@link NaNPolicy#REJECT} and the array subset contains a NaN value; the array subset may have been partly reordered
+	 */
+	public int [] partitionNaN(float [] values, int beginIndex, int endIndex, NaNPolicy nanPolicy) {
+		if(values == null || nanPolicy == null || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		// The pivot must not be NaN; if the pivot picking method lands on one, take the next value that isn't
+		int pivotIdx = getPivotIdx(values, beginIndex, endIndex - beginIndex);
+		int numPivotCandidates = 1;
+		while(Float.isNaN(values[pivotIdx])) {
+			if(nanPolicy == NaNPolicy.REJECT) {
+				throw new IllegalArgumentException("NaN value at index " + pivotIdx);
+			}
+			if(numPivotCandidates == endIndex - beginIndex) {
+				return new int[] {-1, beginIndex, endIndex};
+			}
+			pivotIdx = pivotIdx + 1 < endIndex ? pivotIdx + 1 : beginIndex;
+			numPivotCandidates++;
+		}
+		final float pivot = values[pivotIdx];
+		if(nanPolicy == NaNPolicy.LARGEST && isDescending) {
+			return partitionNaNFirst(values, pivotIdx, beginIndex, endIndex);
+		}
+		swap(values, beginIndex, pivotIdx);
+
+		// Invariant: values[beginIndex+1:insertIdx] go before the pivot, values[insertIdx:i] go after it, and values[nanBeginIndex:endIndex] are NaN
+		int insertIdx = beginIndex + 1;
+		int nanBeginIndex = endIndex;
+		int i = beginIndex + 1;
+		while(i < nanBeginIndex) {
+			final float value = values[i];
+			if(Float.isNaN(value)) {
+				if(nanPolicy == NaNPolicy.REJECT) {
+					throw new IllegalArgumentException("NaN value at index " + i);
+				}
+				nanBeginIndex--;
+				values[i] = values[nanBeginIndex];
+				values[nanBeginIndex] = value;
+			} else {
+				if((isDescending && value >= pivot) || (!isDescending && value <= pivot)) {
+					values[i] = values[insertIdx];
+					values[insertIdx] = value;
+					insertIdx++;
+				}
+				i++;
+			}
+		}
+		pivotIdx = insertIdx - 1;
+		swap(values, beginIndex, pivotIdx);
+
+		if(selectionListener != null) {
+			// One exchange per value placed before the pivot and per NaN value, and two to move the pivot out of the way and back
+			selectionListener.partitioned(endIndex - beginIndex, pivotIdx - beginIndex, nanBeginIndex - pivotIdx - 1, (pivotIdx - beginIndex) + (endIndex - nanBeginIndex) + 2);
+		}
+		return new int[] {pivotIdx, nanBeginIndex, endIndex};
+	}
+
+
+	/**
+	 * Does the work of {@link #partitionNaN(float[], int, int, NaNPolicy)} when the NaN values belong at the start of the array subset, i.e. under the {@link NaNPolicy#LARGEST} policy when the largest values are placed first.
+	 * This mirrors the partition pass there, scanning from the end: values that go after the pivot are gathered at the end, next to the pivot, and NaN values are gathered at the start, so the NaN run is in place without a second pass.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param pivotIdx index of the pivot value, which is not NaN
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate
+	 * @return the pivot index, followed by the starting index, inclusive, and ending index, exclusive, of the run of NaN values
+	 */
+	private int [] partitionNaNFirst(float [] values, int pivotIdx, int beginIndex, int endIndex) {
+		final float pivot = values[pivotIdx];
+		final int lastIdx = endIndex - 1;
+		swap(values, lastIdx, pivotIdx);
+
+		// Invariant: values[insertIdx+1:lastIdx] go after the pivot, values[i+1:insertIdx+1] go before it, and values[beginIndex:nanEndIndex] are NaN
+		int insertIdx = lastIdx - 1;
+		int nanEndIndex = beginIndex;
+		int i = lastIdx - 1;
+		while(i >= nanEndIndex) {
+			final float value = values[i];
+			if(Float.isNaN(value)) {
+				values[i] = values[nanEndIndex];
+				values[nanEndIndex] = value;
+				nanEndIndex++;
+			} else {
+				if(value < pivot) {
+					values[i] = values[insertIdx];
+					values[insertIdx] = value;
+					insertIdx--;
+				}
+				i--;
+			}
+		}
+		pivotIdx = insertIdx + 1;
+		swap(values, lastIdx, pivotIdx);
+
+		if(selectionListener != null) {
+			// One exchange per value placed after the pivot and per NaN value, and two to move the pivot out of the way and back
+			selectionListener.partitioned(endIndex - beginIndex, pivotIdx - nanEndIndex, lastIdx - pivotIdx, (lastIdx - pivotIdx) + (nanEndIndex - beginIndex) + 2);
+		}
+		return new int[] {pivotIdx, beginIndex, nanEndIndex};
+	}
+
+
+	/**
+	 * Reorders the given array so that every one of the given indexes holds its correctly sorted value.
+	 * This is equivalent to calling {@link #select(float[], int)} once per index, but it partitions the array once for all of the indexes:
+	 * each partition sends every array subset only the indexes that fall inside it, so <code>k</code> indexes cost about <code>O(n log k)</code> time instead of <code>O(kn)</code>.
+	 * The given array is modified in-place.
+	 *
+	 * <p>After calling this method, the elements between two consecutive selected indexes are neither before the first nor after the second selected value, given the sorting order.</p>
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN (an {@link AssertionError} if assertions are enabled)
+	 * @param selectIdxs indexes of the values to select, in any order; duplicates are allowed
+	 */
+	public void select(float [] values, int [] selectIdxs) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		select(values, selectIdxs, 0, values.length);
+	}
+
+
+	/**
+	 * Reorders a subset of the given array so that every one of the given indexes holds its correctly sorted value.
+	 * See {@link #select(float[], int[])} for details.
+	 *
+	 * @param values array whose elements will be reordered, undefined behavior if an element is NaN (an {@link AssertionError} if assertions are enabled)
+	 * @param selectIdxs indexes of the values to select, in any order; duplicates are allowed
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 */
+	public void select(float [] values, int [] selectIdxs, int beginIndex, int endIndex) {
+		assert(!containsNaN(values, beginIndex, endIndex));
+		if(values == null || selectIdxs == null || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+		for(int selectIdx : selectIdxs) {
+			if(selectIdx < beginIndex || selectIdx >= endIndex) {
+				throw new IllegalArgumentException();
+			}
+		}
+		if(selectIdxs.length == 0) {
+			return;
+		}
+
+		if(selectionListener != null) {
+			selectionListener.selectStarted(endIndex - beginIndex);
+		}
+		try {
+			int [] sortedSelectIdxs = selectIdxs.clone();
+			Arrays.sort(sortedSelectIdxs);
+			multiSelect(values, sortedSelectIdxs, 0, sortedSelectIdxs.length, beginIndex, endIndex - 1);
+		} finally {
+			if(selectionListener != null) {
+				selectionListener.selectFinished();
+			}
+		}
+	}
+
+
+	/**
+	 * Runs the configured {@link SelectionMethod} on a subset of the given array.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx; see {@link #select(float[], int, int, int)}
+	 * @return selectBounds
+	 */
+	protected int [] selectSubset(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		switch(selectionMethod) {
+		case INTROSELECT:
+			return introSelect(values, selectIdx, beginIndex, endIndex, selectBounds);
+		case FLOYD_RIVEST:
+			return floydRivestSelect(values, selectIdx, beginIndex, endIndex, selectBounds);
+		case RADIX:
+			return radixSelect(values, selectIdx, beginIndex, endIndex, selectBounds);
+		default:
+			return quickSelect(values, selectIdx, beginIndex, endIndex, selectBounds);
+		}
+	}
+
+
+	/**
+	 * Selects several indexes in a subset of the given array.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * <p>Each partition uses a three-way partition, so a run of values equal to the pivot settles every selected index inside it at once.
+	 * The side with fewer selected indexes is handled by recursion and the other side by looping, which keeps the recursion depth at <code>O(log k)</code>.
+	 * Once a single selected index is left in an array subset, the configured {@link SelectionMethod} finishes the job.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdxs sorted indexes of the values to select
+	 * @param selectIdxsBegin starting index, inclusive, into selectIdxs of the indexes that fall inside the array subset
+	 * @param selectIdxsEnd ending index, exclusive, into selectIdxs of the indexes that fall inside the array subset
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 */
+	protected void multiSelect(float [] values, int [] selectIdxs, int selectIdxsBegin, int selectIdxsEnd, int beginIndex, int endIndex) {
+		while(selectIdxs[selectIdxsBegin] != selectIdxs[selectIdxsEnd - 1]) {
+			int subArraySize = endIndex - beginIndex + 1;
+			if(subArraySize <= smallSortThreshold) {
+				sortSubset(values, beginIndex, endIndex);
+				return;
+			}
+			int pivotIdx = getPivotIdx(values, beginIndex, subArraySize);
+			int [] pivotRun = partitionThreeWay(values, pivotIdx, beginIndex, endIndex);
+
+			// Split the selected indexes into those before, inside, and after the run of values equal to the pivot
+			int beforeRunEnd = selectIdxsBegin;
+			while(beforeRunEnd < selectIdxsEnd && selectIdxs[beforeRunEnd] < pivotRun[0]) {
+				beforeRunEnd++;
+			}
+			int afterRunBegin = beforeRunEnd;
+			while(afterRunBegin < selectIdxsEnd && selectIdxs[afterRunBegin] <= pivotRun[1]) {
+				afterRunBegin++;
+			}
+
+			if(beforeRunEnd - selectIdxsBegin < selectIdxsEnd - afterRunBegin) {
+				if(beforeRunEnd > selectIdxsBegin) {
+					multiSelect(values, selectIdxs, selectIdxsBegin, beforeRunEnd, beginIndex, pivotRun[0] - 1);
+				}
+				selectIdxsBegin = afterRunBegin;
+				beginIndex = pivotRun[1] + 1;
+			} else {
+				if(selectIdxsEnd > afterRunBegin) {
+					multiSelect(values, selectIdxs, afterRunBegin, selectIdxsEnd, pivotRun[1] + 1, endIndex);
+				}
+				selectIdxsEnd = beforeRunEnd;
+				endIndex = pivotRun[0] - 1;
+			}
+
+			if(selectIdxsBegin == selectIdxsEnd) {
+				return;
+			}
+		}
+
+		selectSubset(values, selectIdxs[selectIdxsBegin], beginIndex, endIndex, new int[2]);
+	}
+
+
+	/**
+	 * Implements the {@link SelectionMethod#QUICKSELECT} selection method.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx; see {@link #select(float[], int, int, int)}
+	 * @return selectBounds
+	 */
+	protected int [] quickSelect(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		if(partitionMethod == PartitionMethod.THREE_WAY) {
+			selectThreeWay(values, selectIdx, beginIndex, endIndex, false, selectBounds);
+			return selectBounds;
+		}
+
+		// During the QuickSelect process, we often partially sort the array several times before finding the selected element.
+		// These two indexes will be set to the closest fixed pivot points encountered to the selectIdx.
+		// This is mainly useful when running the median calculation on an even-length array, so the second middle point can be computed quickly.
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+
+		// Partition the array around the pivot
+		// After this operation, the pivot is in the correct sorted place
+		// Then, we partition the left or right span relative to the pivot, depending whether the nth value of the beam lies to the left or right.
+		while(true) {
+			// Pick a pivot value
+			int subArraySize = endIndex - beginIndex + 1;
+			if(subArraySize <= smallSortThreshold) {
+				return finishSmall(values, selectIdx, beginIndex, endIndex, beforeSelectIdx, afterSelectIdx, selectBounds);
+			}
+			int pivotIdx = getPivotIdx(values, beginIndex, subArraySize);
+			int beforePivotInsertIdx = partitionTwoWay(values, pivotIdx, beginIndex, endIndex);
+
+			if(beforePivotInsertIdx < selectIdx) {
+				beginIndex = beforePivotInsertIdx + 1;  // The pivot index wound up to-the-left-of the selection index: look right
+				beforeSelectIdx = beforePivotInsertIdx;
+			} else if(beforePivotInsertIdx > selectIdx) {
+				endIndex = beforePivotInsertIdx - 1;  // The pivot index wound up to-the-right-of the selection index: look left
+				afterSelectIdx = beforePivotInsertIdx;
+			} else {
+				break;  // The pivot index wound up exactly-at the selection index; exit the loop
+			}
+		}
+
+		selectBounds[0] = beforeSelectIdx;
+		selectBounds[1] = afterSelectIdx;
+		return selectBounds;
+	}
+
+
+	/**
+	 * Implements the {@link SelectionMethod#INTROSELECT} selection method.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * <p>Partitions use the configured {@link PivotMethod} as long as every {@value #INTROSELECT_PARTITIONS_PER_CHECK} partitions at least halve the array subset.
+	 * Otherwise, the following partitions use a median-of-medians pivot and a three-way partition, both of which guarantee progress no matter how the values are arranged or duplicated.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx; see {@link #select(float[], int, int, int)}
+	 * @return selectBounds
+	 */
+	protected int [] introSelect(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		if(partitionMethod == PartitionMethod.THREE_WAY) {
+			selectThreeWay(values, selectIdx, beginIndex, endIndex, true, selectBounds);
+			return selectBounds;
+		}
+
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		// Size of the array subset at the last progress check
+		int checkSubArraySize = endIndex - beginIndex + 1;
+		int partitionsSinceCheck = 0;
+		boolean isMedianOfMedians = false;
+
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			if(subArraySize <= smallSortThreshold) {
+				return finishSmall(values, selectIdx, beginIndex, endIndex, beforeSelectIdx, afterSelectIdx, selectBounds);
+			}
+			if(isMedianOfMedians) {
+				int pivotIdx = getPivotIdxMedianOfMedians(values, beginIndex, subArraySize);
+				int [] pivotRun = partitionThreeWay(values, pivotIdx, beginIndex, endIndex);
+
+				if(pivotRun[1] < selectIdx) {
+					beginIndex = pivotRun[1] + 1;
+					beforeSelectIdx = pivotRun[1];
+				} else if(pivotRun[0] > selectIdx) {
+					endIndex = pivotRun[0] - 1;
+					afterSelectIdx = pivotRun[0];
+				} else {
+					// The selection index is inside the run of values equal to the pivot, so its neighbors in the run are correctly sorted, too
+					if(selectIdx > pivotRun[0]) {
+						beforeSelectIdx = selectIdx - 1;
+					}
+					if(selectIdx < pivotRun[1]) {
+						afterSelectIdx = selectIdx + 1;
+					}
+					break;
+				}
+			} else {
+				int pivotIdx = getPivotIdx(values, beginIndex, subArraySize);
+				int beforePivotInsertIdx = partitionTwoWay(values, pivotIdx, beginIndex, endIndex);
+
+				if(beforePivotInsertIdx < selectIdx) {
+					beginIndex = beforePivotInsertIdx + 1;
+					beforeSelectIdx = beforePivotInsertIdx;
+				} else if(beforePivotInsertIdx > selectIdx) {
+					endIndex = beforePivotInsertIdx - 1;
+					afterSelectIdx = beforePivotInsertIdx;
+				} else {
+					break;
+				}
+			}
+
+			if(++partitionsSinceCheck == INTROSELECT_PARTITIONS_PER_CHECK) {
+				// Fall back to (or stay with) median-of-medians pivots until the array subset is being halved again
+				int newSubArraySize = endIndex - beginIndex + 1;
+				isMedianOfMedians = newSubArraySize > (checkSubArraySize >>> 1);
+				checkSubArraySize = newSubArraySize;
+				partitionsSinceCheck = 0;
+			}
+		}
+
+		selectBounds[0] = beforeSelectIdx;
+		selectBounds[1] = afterSelectIdx;
+		return selectBounds;
+	}
+
+
+	/**
+	 * Implements the {@link SelectionMethod#QUICKSELECT} and {@link SelectionMethod#INTROSELECT} selection methods with the {@link PartitionMethod#THREE_WAY} partition method.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * <p>Every partition leaves the values equal to the pivot in their correct sorted place, so the loop stops as soon as selectIdx lands in such a run.
+	 * Because values equal to a pivot never stay in the array subset that is partitioned next, the final run holds every value equal to the selected value.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param isIntroSelect if true, fall back to median-of-medians pivots when partitions make poor progress, as in {@link #introSelect(float[], int, int, int, int[])}
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx, see {@link #select(float[], int, int, int)}
+	 * @return the first and last indexes, inclusive, of the run of values equal to the selected value
+	 */
+	protected int [] selectThreeWay(float [] values, int selectIdx, int beginIndex, int endIndex, boolean isIntroSelect, int [] selectBounds) {
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		int checkSubArraySize = endIndex - beginIndex + 1;
+		int partitionsSinceCheck = 0;
+		boolean isMedianOfMedians = false;
+
+		int [] pivotRun;
+		while(true) {
+			int subArraySize = endIndex - beginIndex + 1;
+			if(subArraySize <= smallSortThreshold) {
+				int [] finishBounds = finishSmall(values, selectIdx, beginIndex, endIndex, beforeSelectIdx, afterSelectIdx, selectBounds);
+				beforeSelectIdx = finishBounds[0];
+				afterSelectIdx = finishBounds[1];
+
+				// The array subset is sorted and holds every value equal to the selected value, so the ties are next to selectIdx
+				int runBegin = selectIdx;
+				while(runBegin > beginIndex && values[runBegin - 1] == values[selectIdx]) {
+					runBegin--;
+				}
+				int runEnd = selectIdx;
+				while(runEnd < endIndex && values[runEnd + 1] == values[selectIdx]) {
+					runEnd++;
+				}
+				pivotRun = new int[] {runBegin, runEnd};
+				break;
+			}
+			int pivotIdx = isMedianOfMedians ? getPivotIdxMedianOfMedians(values, beginIndex, subArraySize) : getPivotIdx(values, beginIndex, subArraySize);
+			pivotRun = partitionThreeWay(values, pivotIdx, beginIndex, endIndex);
+
+			if(pivotRun[1] < selectIdx) {
+				beginIndex = pivotRun[1] + 1;
+				beforeSelectIdx = pivotRun[1];
+			} else if(pivotRun[0] > selectIdx) {
+				endIndex = pivotRun[0] - 1;
+				afterSelectIdx = pivotRun[0];
+			} else {
+				// The selection index is inside the run of values equal to the pivot, so its neighbors in the run are correctly sorted, too
+				if(selectIdx > pivotRun[0]) {
+					beforeSelectIdx = selectIdx - 1;
+				}
+				if(selectIdx < pivotRun[1]) {
+					afterSelectIdx = selectIdx + 1;
+				}
+				break;
+			}
+
+			if(isIntroSelect && ++partitionsSinceCheck == INTROSELECT_PARTITIONS_PER_CHECK) {
+				int newSubArraySize = endIndex - beginIndex + 1;
+				isMedianOfMedians = newSubArraySize > (checkSubArraySize >>> 1);
+				checkSubArraySize = newSubArraySize;
+				partitionsSinceCheck = 0;
+			}
+		}
+
+		selectBounds[0] = beforeSelectIdx;
+		selectBounds[1] = afterSelectIdx;
+		return pivotRun;
+	}
+
+
+	/**
+	 * Implements the {@link SelectionMethod#RADIX} selection method.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * <p>Each pass counts the keys of the array subset by a digit, finds the bucket that holds selectIdx, and partitions the subset into the keys whose digit is below, equal to, and above that bucket.
+	 * The partition takes two scans: a branch-free one that moves the keys below the bucket to the front, and one over the rest that gathers the keys in the bucket, which are usually few enough that its branch is well predicted.
+	 * The bucket becomes the new array subset.
+	 * The bits that still differ between the keys in the bucket are gathered during the partition, so the next digit starts at the highest bit that still tells keys apart, and every pass clears at least one digit's worth of bits.
+	 * The first pass doesn't know the differing bits yet and counts the top digit; if all keys share it, the differing bits gathered while counting are used for a second count instead of partitioning.</p>
+	 *
+	 * <p>Large array subsets are counted by {@link #RADIX_WIDE_BITS}-bit digits, since a wider digit usually leaves a small enough bucket after one partition that the remaining passes cost little.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx; see {@link #select(float[], int, int, int)}
+	 * @return selectBounds
+	 */
+	protected int [] radixSelect(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		int [] counts = THREAD_LOCAL_RADIX_COUNTS.get();
+		long differingBits = -1L;  // Unknown until the first pass; all bits set makes it count the top digit
+
+		while(true) {
+			if(endIndex - beginIndex < smallSortThreshold) {
+				return finishSmall(values, selectIdx, beginIndex, endIndex, -1, -1, selectBounds);
+			}
+
+			// Count the digits that start at the highest differing bit, then find the bucket that holds selectIdx
+			final int subArraySize = endIndex - beginIndex + 1;
+			final int bits = subArraySize >= RADIX_WIDE_THRESHOLD ? RADIX_WIDE_BITS : RADIX_BITS;
+			final int mask = (1 << bits) - 1;
+			final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(differingBits) - bits);
+			if(counts.length <= mask) {
+				counts = new int[mask + 1];
+				THREAD_LOCAL_RADIX_COUNTS.set(counts);
+			} else {
+				Arrays.fill(counts, 0, mask + 1, 0);
+			}
+			long orBits = 0L;
+			long andBits = -1L;
+			for(int i=beginIndex; i<=endIndex; i++) {
+				final long key = radixKey(values[i]);
+				counts[(int)(key >>> shift) & mask]++;
+				orBits |= key;
+				andBits &= key;
+			}
+			int bucket = 0;
+			int bucketBeginIndex = beginIndex;
+			while(bucketBeginIndex + counts[bucket] <= selectIdx) {
+				bucketBeginIndex += counts[bucket];
+				bucket++;
+			}
+			final int bucketEndIndex = bucketBeginIndex + counts[bucket] - 1;
+			if(counts[bucket] == subArraySize) {
+				// Every key has the same digit, which can only happen on the first pass; count again from the highest differing bit
+				differingBits = orBits ^ andBits;
+				if(differingBits == 0L) {
+					// Every value in the array subset is equal, so every index holds its correctly sorted value
+					selectBounds[0] = selectIdx > beginIndex ? selectIdx - 1 : -1;
+					selectBounds[1] = selectIdx < endIndex ? selectIdx + 1 : -1;
+					return selectBounds;
+				}
+				continue;
+			}
+
+			// Move the values below the bucket to the front; every value is swapped, so there is no branch on the digit to mispredict
+			int insertIdx = beginIndex;
+			for(int i=beginIndex; i<=endIndex; i++) {
+				final float value = values[i];
+				values[i] = values[insertIdx];
+				values[insertIdx] = value;
+				insertIdx += ((int)(radixKey(value) >>> shift) & mask) < bucket ? 1 : 0;
+			}
+
+			// Then move the values in the bucket right after them, gathering the differing bits of their keys as we go
+			orBits = 0L;
+			andBits = -1L;
+			for(int i=insertIdx; i<=endIndex; i++) {
+				final float value = values[i];
+				final long key = radixKey(value);
+				if(((int)(key >>> shift) & mask) == bucket) {
+					values[i] = values[insertIdx];
+					values[insertIdx++] = value;
+					orBits |= key;
+					andBits &= key;
+				}
+			}
+			if(selectionListener != null) {
+				// The first scan exchanges every value, the second one every value in the bucket
+				reportPartition(beginIndex, endIndex, bucketBeginIndex, bucketEndIndex, subArraySize + bucketEndIndex - bucketBeginIndex + 1);
+			}
+			beginIndex = bucketBeginIndex;
+			endIndex = bucketEndIndex;
+			differingBits = orBits ^ andBits;
+			if(differingBits == 0L) {
+				// Every value in the bucket is equal, so every index in it holds its correctly sorted value
+				selectBounds[0] = selectIdx > beginIndex ? selectIdx - 1 : -1;
+				selectBounds[1] = selectIdx < endIndex ? selectIdx + 1 : -1;
+				return selectBounds;
+			}
+		}
+	}
+
+
+	/**
+	 * Maps a value to an unsigned key for the {@link SelectionMethod#RADIX} selection method, such that the keys, compared as unsigned integers, are in the configured sorting order.
+	 * The sign bit of positive values is set and every bit of negative values is flipped, so -0.0 sorts just before 0.0, as in {@link java.util.Arrays#sort(float[])}.
+	 *
+	 * @param value value to map, not NaN
+	 * @return the key of the value
+	 */
+	private long radixKey(float value) {
+		final int bits = Float.floatToRawIntBits(value);
+		final long key = (bits ^ ((bits >> 31) | Integer.MIN_VALUE)) & 0xFFFFFFFFL;
+		return isDescending ? ~key : key;
+	}
+
+
+	/**
+	 * Implements the {@link SelectionMethod#FLOYD_RIVEST} selection method, following Floyd and Rivest, "Algorithm 489: The Algorithm SELECT", CACM 18(3), 1975.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * <p>For large array subsets, a sample of about <code>n^(2/3)</code> elements around the selected index is recursively selected, so that the value brought to selectIdx is very likely to be close to the true selected value.
+	 * Partitioning around that value then leaves only a small array subset on the side that still contains selectIdx.</p>
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param selectIdx index of the value to select
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, inclusive, of the array subset
+	 * @param selectBounds receives the pair of indexes that specify correctly sorted array elements bounding the selectIdx; see {@link #select(float[], int, int, int)}
+	 * @return selectBounds
+	 */
+	protected int [] floydRivestSelect(float [] values, int selectIdx, int beginIndex, int endIndex, int [] selectBounds) {
+		int beforeSelectIdx = -1;
+		int afterSelectIdx = -1;
+
+		while(endIndex > beginIndex) {
+			if(endIndex - beginIndex < smallSortThreshold) {
+				return finishSmall(values, selectIdx, beginIndex, endIndex, beforeSelectIdx, afterSelectIdx, selectBounds);
+			}
+			if(endIndex - beginIndex > FLOYD_RIVEST_SAMPLE_THRESHOLD) {
+				// Recursively select within a sample whose size and position depend on where selectIdx lies in the array subset
+				final int n = endIndex - beginIndex + 1;
+				final int i = selectIdx - beginIndex + 1;
+				final double z = Math.log(n);
+				final double s = 0.5 * Math.exp(2.0 * z / 3.0);
+				final double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * Math.signum(i - n / 2);
+				final int sampleBeginIndex = Math.max(beginIndex, (int)(selectIdx - i * s / n + sd));
+				final int sampleEndIndex = Math.min(endIndex, (int)(selectIdx + (n - i) * s / n + sd));
+				floydRivestSelect(values, selectIdx, sampleBeginIndex, sampleEndIndex, selectBounds);  // Its bounds aren't needed, and are overwritten before this returns
+			}
+
+			// Partition around the value brought to selectIdx
+			final float pivot = values[selectIdx];
+			int i = beginIndex;
+			int j = endIndex;
+			swap(values, beginIndex, selectIdx);
+			if(precedes(pivot, values[endIndex])) {
+				swap(values, beginIndex, endIndex);
+			}
+			while(i < j) {
+				swap(values, i, j);
+				i++;
+				j--;
+				while(precedes(values[i], pivot)) {
+					i++;
+				}
+				while(precedes(pivot, values[j])) {
+					j--;
+				}
+			}
+			if(values[beginIndex] == pivot) {
+				swap(values, beginIndex, j);
+			} else {
+				j++;
+				swap(values, j, endIndex);
+			}
+
+			// The pivot is now in its correct sorted place at j
+			if(selectionListener != null) {
+				reportPartition(beginIndex, endIndex, j, j, Math.min(j - beginIndex, endIndex - j));
+			}
+			if(j < selectIdx) {
+				beginIndex = j + 1;
+				beforeSelectIdx = j;
+			} else if(j > selectIdx) {
+				endIndex = j - 1;
+				afterSelectIdx = j;
+			} else {
+				break;
+			}
+		}
+
+		selectBounds[0] = beforeSelectIdx;
+		selectBounds[1] = afterSelectIdx;
+		return selectBounds;
+	}
+
+
+	/**
+	 * Gets the calling thread's scratch array for the non-destructive methods, such as {@link #selectNonDestructive(float[], int)}.
+	 * Each thread keeps one array per power-of-two size class, so repeated calls with similar sizes reuse the same array instead of allocating.
+	 * The arrays live as long as the thread; callers that would rather manage that memory themselves can pass their own scratch arrays instead.
+	 *
+	 * @param size smallest number of elements the scratch array must hold
+	 * @return scratch array with at least the given number of elements, whose contents are arbitrary
+	 */
+	public static float [] threadLocalScratch(int size) {
+		if(size < 0) {
+			throw new IllegalArgumentException();
+		}
+		final int sizeClass = size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+		if(sizeClass > 30) {
+			// Too large for a power-of-two array
+			return new float[size];
+		}
+		float [][] scratch = THREAD_LOCAL_SCRATCH.get();
+		if(scratch[sizeClass] == null) {
+			scratch[sizeClass] = new float[1 << sizeClass];
+		}
+		return scratch[sizeClass];
+	}
+
+
+	/**
+	 * Finds the value that {@link #select(float[], int)} would place at the selected index, without changing the given array.
+	 * The candidates are copied into the calling thread's scratch array, see {@link #threadLocalScratch(int)}, so no array the size of the input is allocated once the scratch array exists.
+	 * See {@link #selectNonDestructive(float[], int, boolean, float[])} for how the copy is fused with the first partition pass.
+	 *
+	 * @param values array from which to select, undefined behavior if an element is NaN; it is not changed
+	 * @param selectIdx index to select
+	 * @return the selected value
+	 */
+	public float selectNonDestructive(float [] values, int selectIdx) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		final float [] scratch = threadLocalScratch(values.length);
+		return scratch[selectNonDestructive(values, selectIdx, false, scratch)];
+	}
+
+
+	/**
+	 * Copies the candidates for a selected index into a scratch array and selects from them there, without changing the given array.
+	 *
+	 * <p>
+	 * Arrays with more than {@value #NON_DESTRUCTIVE_COPY_THRESHOLD} elements are not copied whole.
+	 * Instead, this selects two bracketing values from a random sample of about <code>n^(2/3)</code> elements, so that the selected value almost surely lies between them.
+	 * A single pass over the given array then counts the elements that fall before the bracket and copies only the elements within it, which are about <code>4 n^(2/3)</code> elements.
+	 * If the selected value turns out to lie outside the bracket, which happens in well under one call in a thousand, the whole array is copied instead.
+	 * </p>
+	 *
+	 * @param values array from which to select, undefined behavior if an element is NaN; it is not changed
+	 * @param selectIdx index to select
+	 * @param isNextNeeded if true, the value that would be at <code>selectIdx + 1</code> is also found; selectIdx must then not be the last index
+	 * @param scratch array that receives the candidates, with at least as many elements as the given array, e.g. from {@link #threadLocalScratch(int)}
+	 * @return index into the scratch array that holds the selected value; if isNextNeeded, the next value is at the following index
+	 */
+	public int selectNonDestructive(float [] values, int selectIdx, boolean isNextNeeded, float [] scratch) {
+		if(values == null || scratch == null || scratch.length < values.length || selectIdx < 0 || selectIdx >= (isNextNeeded ? values.length - 1 : values.length)) {
+			throw new IllegalArgumentException();
+		}
+		final int n = values.length;
+		final int lastIdx = isNextNeeded ? selectIdx + 1 : selectIdx;
+
+		int numCandidates = 0;
+		int numBefore = 0;
+		if(n > NON_DESTRUCTIVE_COPY_THRESHOLD) {
+			// Select the bracketing values from a sample, widened by about four standard deviations of a sample rank on either side
+			final int sampleSize = (int)Math.pow(n, 2.0 / 3.0);
+			final int spread = 2 * (int)Math.sqrt(sampleSize) + 2;
+			for(int i=0; i<sampleSize; i++) {
+				scratch[i] = values[nextRandomInt(n)];
+			}
+			final int firstSampleIdx = (int)((long)selectIdx * sampleSize / n) - spread;
+			final int lastSampleIdx = (int)((long)lastIdx * sampleSize / n) + spread;
+
+			// Bounds of the bracket in the sorting order; a bracket that reaches past the sample is open on that side
+			float firstBound;
+			float lastBound;
+			if(firstSampleIdx > 0) {
+				select(scratch, firstSampleIdx, 0, sampleSize);
+				firstBound = scratch[firstSampleIdx];
+			} else {
+				firstBound = isDescending ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+			}
+			if(lastSampleIdx < sampleSize - 1) {
+				select(scratch, lastSampleIdx, Math.max(0, firstSampleIdx), sampleSize);
+				lastBound = scratch[lastSampleIdx];
+			} else {
+				lastBound = isDescending ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+			}
+
+			// Values below the bracket are counted, values within it are copied, and values above it are skipped, in one pass
+			final float lowBound = isDescending ? lastBound : firstBound;
+			final float highBound = isDescending ? firstBound : lastBound;
+			int numLower = 0;
+			for(int i=0; i<n; i++) {
+				final float value = values[i];
+				if(value < lowBound) {
+					numLower++;
+				} else if(value <= highBound) {
+					scratch[numCandidates++] = value;
+				}
+			}
+			numBefore = isDescending ? n - numLower - numCandidates : numLower;
+		}
+		if(selectIdx < numBefore || lastIdx >= numBefore + numCandidates) {
+			// The array is small, or the bracket missed
+			System.arraycopy(values, 0, scratch, 0, n);
+			numCandidates = n;
+			numBefore = 0;
+		}
+
+		final int scratchIdx = selectIdx - numBefore;
+		select(scratch, scratchIdx, 0, numCandidates);
+		if(isNextNeeded) {
+			// The next value is the first, in the sorting order, of the values placed after the selected one
+			int nextIdx = scratchIdx + 1;
+			for(int i=scratchIdx+2; i<numCandidates; i++) {
+				if(precedes(scratch[i], scratch[nextIdx])) {
+					nextIdx = i;
+				}
+			}
+			swap(scratch, scratchIdx + 1, nextIdx);
+		}
+		return scratchIdx;
+	}
+
+
+	/**
+	 * Whether the first value should be placed strictly before the second value, given the sorting order.
+	 * @param x a value
+	 * @param y a value
+	 * @return true if x should be placed strictly before y
+	 */
+	private boolean precedes(float x, float y) {
+		return isDescending ? x > y : x < y;
+	}
+
+
+	/**
+	 * Swaps two elements of the given array.
+	 * @param values array whose elements will be swapped
+	 * @param i index of an element
+	 * @param j index of an element
+	 */
+	private static void swap(float [] values, int i, int j) {
+		final float swap = values[i];
+		values[i] = values[j];
+		values[j] = swap;
+	}
+
+
+	/**
+	 * Returns true if at least one value in the given array is NaN.
+	 *
+	 * @param values array to test
+	 * @return true if at least one value in the given array is NaN; otherwise, false
+	 */
+	public boolean containsNaN(float [] values) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		return containsNaN(values, 0, values.length);
+	}
+
+
+	/**
+	 * Returns true if at least one value in the given array is NaN.
+	 *
+	 * @param values array to test
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @return true if at least one value in the given array is NaN; otherwise, false
+	 */
+	public boolean containsNaN(float [] values, int beginIndex, int endIndex) {
+		if(values == null || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException();
+		}
+
+		for(int i=beginIndex; i < endIndex; i++) {
+			if(Float.isNaN(values[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
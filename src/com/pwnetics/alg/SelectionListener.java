@@ -0,0 +1,70 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.alg;
+
+/**
+ * Receives the work done by a QuickSelect object, one partition pass at a time, to tell slow selections caused by poor pivots apart from ones that are merely large.
+ * Pass a listener to the QuickSelect constructor, e.g. {@link QuickSelectDoubleArray#QuickSelectDoubleArray(boolean, java.util.EnumSet, java.util.Random, int, QuickSelectDoubleArray.SelectionMethod, QuickSelectDoubleArray.PartitionMethod, int, SelectionListener)}; without one, the only cost is a null check per partition pass.
+ *
+ * <p>Each public selection call is bracketed by {@link #selectStarted(int)} and {@link #selectFinished()}, on the calling thread, with the partition passes of that call reported in between.
+ * Passes made outside a selection call, e.g. by a direct call to <code>partitionNaN</code> or <code>selectUnchecked</code>, are reported without the brackets; the batch medians of QuickMedian select each array with <code>selectUnchecked</code>.
+ * A QuickSelect object may be shared by several threads, so a shared listener must be thread-safe; see {@link SelectionMetrics}.</p>
+ *
+ * @author romanows
+ */
+public interface SelectionListener {
+
+	/**
+	 * Called when a selection call starts.
+	 * @param size number of elements in the array subset being selected from
+	 */
+	void selectStarted(int size);
+
+
+	/**
+	 * Called after each partition pass.
+	 * The values placed before and after the pivot, and their balance, show how good the pivot was.
+	 * With the {@link QuickSelectDoubleArray.SelectionMethod#RADIX} selection method, the "pivot" is the digit bucket that holds the selected index.
+	 *
+	 * <p>Swaps are counted exactly for the TWO_WAY and THREE_WAY partition methods, the first pass of a selection with a NaNPolicy, and the RADIX selection method.
+	 * The BLOCK partition method and the FLOYD_RIVEST selection method exchange misplaced pairs, and report the most exchanges their split can take, the smaller of numBefore and numAfter.</p>
+	 *
+	 * @param subArraySize number of elements scanned by the pass
+	 * @param numBefore number of values placed before the pivot, or the run of values equal to it
+	 * @param numAfter number of values placed after the pivot, or the run of values equal to it
+	 * @param numSwaps number of exchanges of two array elements made by the pass
+	 */
+	void partitioned(int subArraySize, int numBefore, int numAfter, long numSwaps);
+
+
+	/**
+	 * Called when a selection call finishes, normally or by an exception.
+	 */
+	void selectFinished();
+}
@@ -0,0 +1,267 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.alg;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe {@link SelectionListener} that aggregates the work of every selection call into counters that a metrics registry can poll, e.g. as gauges or function counters.
+ * One object can be shared by any number of QuickSelect objects and threads.
+ *
+ * <p>
+ * Work is counted in elements scanned: the sum of the sizes of the array subsets partitioned by a call.
+ * A good selection of <code>n</code> elements scans about <code>2n</code> to <code>3.5n</code> elements, while a run of poor pivots scans <code>O(n^2)</code>.
+ * A call that scans more than <code>c*n</code> elements, for a work factor <code>c</code>, is counted as degenerate, which is the counter to alert on when inputs may be adversarial or unluckily ordered.
+ * A partition whose smaller side is less than a given ratio of its larger side is counted as unbalanced.
+ * </p>
+ *
+ * <p>Subclasses can act on each finished call, e.g. to log or record the degenerate ones, by overriding {@link #callFinished(int, int, long, long, double, boolean, long)}.</p>
+ *
+ * @author romanows
+ */
+public class SelectionMetrics implements SelectionListener {
+
+	/** Default work factor, above the expected work of every selection method with a reasonable margin */
+	public static final double DEFAULT_WORK_FACTOR = 6.0;
+
+	/** Default balance below which a partition counts as unbalanced, i.e. the smaller side holds less than about a tenth of the array subset */
+	public static final double DEFAULT_UNBALANCED_RATIO = 0.1;
+
+	/** Work of the selection call in progress on a thread */
+	private static class CallState {
+		int depth;
+		int size;
+		int numPartitions;
+		long numScanned;
+		long numSwaps;
+		double minBalance;
+		long startNanos;
+	}
+
+	private final ThreadLocal<CallState> callState = new ThreadLocal<CallState>() {
+		@Override
+		protected CallState initialValue() {
+			return new CallState();
+		}
+	};
+
+	private final double workFactor;
+	private final double unbalancedRatio;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder degenerateCalls = new LongAdder();
+	private final LongAdder partitions = new LongAdder();
+	private final LongAdder unbalancedPartitions = new LongAdder();
+	private final LongAdder elementsScanned = new LongAdder();
+	private final LongAdder swaps = new LongAdder();
+	private final DoubleAdder balanceSum = new DoubleAdder();
+
+
+	/**
+	 * Constructor with the default work factor and unbalanced ratio.
+	 */
+	public SelectionMetrics() {
+		this(DEFAULT_WORK_FACTOR, DEFAULT_UNBALANCED_RATIO);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param workFactor a call that scans more than this many elements per element of its array subset is counted as degenerate
+	 * @param unbalancedRatio a partition with a balance below this is counted as unbalanced, see {@link #balance(int, int)}; between 0 and 1
+	 */
+	public SelectionMetrics(double workFactor, double unbalancedRatio) {
+		if(!(workFactor > 0.0) || !(unbalancedRatio >= 0.0 && unbalancedRatio <= 1.0)) {
+			throw new IllegalArgumentException();
+		}
+		this.workFactor = workFactor;
+		this.unbalancedRatio = unbalancedRatio;
+	}
+
+
+	/**
+	 * Balance of a partition: the size of its smaller side over the size of its larger side.
+	 * A pivot at the median has a balance of 1, and a pivot at either end of the array subset has a balance of 0.
+	 * @param numBefore number of values placed before the pivot
+	 * @param numAfter number of values placed after the pivot
+	 * @return balance between 0 and 1; 1 if both sides are empty
+	 */
+	public static double balance(int numBefore, int numAfter) {
+		final int larger = Math.max(numBefore, numAfter);
+		return larger == 0 ? 1.0 : Math.min(numBefore, numAfter) / (double)larger;
+	}
+
+
+	@Override
+	public void selectStarted(int size) {
+		final CallState state = callState.get();
+		if(state.depth++ == 0) {
+			state.size = size;
+			state.numPartitions = 0;
+			state.numScanned = 0L;
+			state.numSwaps = 0L;
+			state.minBalance = 1.0;
+			state.startNanos = System.nanoTime();
+		}
+	}
+
+
+	@Override
+	public void partitioned(int subArraySize, int numBefore, int numAfter, long numSwaps) {
+		final double balance = balance(numBefore, numAfter);
+		partitions.increment();
+		elementsScanned.add(subArraySize);
+		swaps.add(numSwaps);
+		balanceSum.add(balance);
+		if(balance < unbalancedRatio) {
+			unbalancedPartitions.increment();
+		}
+
+		final CallState state = callState.get();
+		if(state.depth > 0) {
+			state.numPartitions++;
+			state.numScanned += subArraySize;
+			state.numSwaps += numSwaps;
+			state.minBalance = Math.min(state.minBalance, balance);
+		}
+	}
+
+
+	@Override
+	public void selectFinished() {
+		final CallState state = callState.get();
+		if(state.depth == 0 || --state.depth > 0) {
+			return;  // Unbalanced call, or the end of a selection nested in another one, whose work counts toward the outer call
+		}
+		final boolean isDegenerate = state.numScanned > workFactor * state.size;
+		calls.increment();
+		if(isDegenerate) {
+			degenerateCalls.increment();
+		}
+		callFinished(state.size, state.numPartitions, state.numScanned, state.numSwaps, state.minBalance, isDegenerate, System.nanoTime() - state.startNanos);
+	}
+
+
+	/**
+	 * Called on the selecting thread when a selection call finishes, after the counters are updated.
+	 * Does nothing by default.
+	 *
+	 * @param size number of elements in the array subset that was selected from
+	 * @param numPartitions number of partition passes made by the call
+	 * @param numScanned number of elements scanned by the call
+	 * @param numSwaps number of exchanges made by the call
+	 * @param minBalance balance of the worst partition of the call, 1 if there was none
+	 * @param isDegenerate whether the call scanned more than the work factor times its size
+	 * @param elapsedNanos time taken by the call, in nanoseconds
+	 */
+	protected void callFinished(int size, int numPartitions, long numScanned, long numSwaps, double minBalance, boolean isDegenerate, long elapsedNanos) {
+		// Pass
+	}
+
+
+	/**
+	 * Resets every counter to zero.
+	 * Calls in progress on other threads are counted when they finish.
+	 */
+	public void reset() {
+		calls.reset();
+		degenerateCalls.reset();
+		partitions.reset();
+		unbalancedPartitions.reset();
+		elementsScanned.reset();
+		swaps.reset();
+		balanceSum.reset();
+	}
+
+
+	/**
+	 * @return the work factor above which a call is counted as degenerate
+	 */
+	public double getWorkFactor() {
+		return workFactor;
+	}
+
+
+	/**
+	 * @return the number of finished selection calls
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+
+	/**
+	 * @return the number of finished selection calls that scanned more than the work factor times their size
+	 */
+	public long getDegenerateCalls() {
+		return degenerateCalls.sum();
+	}
+
+
+	/**
+	 * @return the number of partition passes
+	 */
+	public long getPartitions() {
+		return partitions.sum();
+	}
+
+
+	/**
+	 * @return the number of partition passes with a balance below the unbalanced ratio
+	 */
+	public long getUnbalancedPartitions() {
+		return unbalancedPartitions.sum();
+	}
+
+
+	/**
+	 * @return the number of elements scanned by partition passes
+	 */
+	public long getElementsScanned() {
+		return elementsScanned.sum();
+	}
+
+
+	/**
+	 * @return the number of exchanges made by partition passes
+	 */
+	public long getSwaps() {
+		return swaps.sum();
+	}
+
+
+	/**
+	 * @return the mean balance of the partition passes, or NaN if there were none
+	 */
+	public double getMeanBalance() {
+		final long numPartitions = partitions.sum();
+		return numPartitions == 0 ? Double.NaN : balanceSum.sum() / numPartitions;
+	}
+}
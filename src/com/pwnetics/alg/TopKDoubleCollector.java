@@ -0,0 +1,246 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import java.util.Arrays;
+
+
+/**
+ * Keeps the best k of a stream of values, each with an id, in <code>O(k)</code> memory and amortized <code>O(1)</code> time per value.
+ * This is meant for beam pruning and similar jobs where candidates arrive one at a time and gathering all of them before a {@link QuickSelectDoubleArray#select(double[], int)} would take too much memory.
+ *
+ * <p>
+ * Candidates are appended to a buffer of 2k slots.
+ * When the buffer is full, a payload select from {@link QuickArgSelectDoubleArray} moves the best k values, with their ids, to the front and the buffer is cut back to k values.
+ * The k-th best value then becomes a threshold that later candidates must beat, so once the stream has warmed up, most candidates are rejected with a single comparison.
+ * Each compaction costs <code>O(k)</code> time and happens at most once every k accepted candidates.
+ * </p>
+ *
+ * <p>
+ * Candidates that tie with the threshold are rejected, but a compaction doesn't preserve the order in which values were offered, so when several values tie for the k-th place, which of their ids are kept is unspecified.
+ * A collector is not safe to use from several threads at once.
+ * </p>
+ *
+ * @author romanows
+ */
+public class TopKDoubleCollector {
+
+	/** Number of values to keep */
+	private final int k;
+
+	/** Whether the largest or the smallest values are kept */
+	private final boolean isDescending;
+
+	/** Compacts the buffer, moving the ids along with the values */
+	private final QuickArgSelectDoubleArray quickSelect;
+
+	/** Buffered candidate values */
+	private final double [] values;
+
+	/** Ids of the buffered candidates, wrapped as the single payload of the select */
+	private final long [][] ids;
+
+	/** Number of buffered candidates */
+	private int size;
+
+	/** Number of candidates offered so far, which is also the id given to candidates offered without one */
+	private long numOffered;
+
+	/** Value that a candidate must beat to be kept, or NaN while every candidate is kept */
+	private double threshold;
+
+	/** Whether the best values are at the front of the buffer, as of the last candidate accepted */
+	private boolean isSelected;
+
+
+	/**
+	 * Constructor.
+	 * Creates a collector that keeps the k largest values.
+	 * @param k number of values to keep
+	 */
+	public TopKDoubleCollector(int k) {
+		this(k, QuickSelectDoubleArray.DEFAULT_IS_DESCENDING);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param k number of values to keep
+	 * @param isDescending if true, the k largest values are kept; if false, the k smallest values are kept
+	 */
+	public TopKDoubleCollector(int k, boolean isDescending) {
+		if(k < 1 || k > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException();
+		}
+		this.k = k;
+		this.isDescending = isDescending;
+		this.quickSelect = new QuickArgSelectDoubleArray(isDescending);
+		this.values = new double[2 * k];
+		this.ids = new long[][] {new long[2 * k]};
+		this.threshold = Double.NaN;
+	}
+
+
+	/**
+	 * Offers a candidate value, whose id is the number of candidates offered before it.
+	 * @param value candidate value, must not be NaN
+	 * @return true if the value is kept for now; false if it was rejected because k better values were already seen
+	 */
+	public boolean offer(double value) {
+		return offer(value, numOffered);
+	}
+
+
+	/**
+	 * Offers a candidate value with an id, e.g. the index of a hypothesis in a beam search.
+	 * @param value candidate value, must not be NaN
+	 * @param id id that is kept along with the value
+	 * @return true if the value is kept for now; false if it was rejected because k better values were already seen
+	 */
+	public boolean offer(double value, long id) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException();
+		}
+		numOffered++;
+
+		if(!isBetterThanThreshold(value)) {
+			return false;
+		}
+		if(size == values.length) {
+			compact();
+			if(!isBetterThanThreshold(value)) {
+				return false;
+			}
+		}
+
+		values[size] = value;
+		ids[0][size] = id;
+		size++;
+		isSelected = false;
+		return true;
+	}
+
+
+	/**
+	 * Whether a value beats the threshold.
+	 * @param value candidate value
+	 * @return true if there is no threshold yet or if the value is strictly better than the threshold
+	 */
+	private boolean isBetterThanThreshold(double value) {
+		// Comparisons with the NaN threshold are false, so every value is accepted until the first compaction
+		return !(isDescending ? value <= threshold : value >= threshold);
+	}
+
+
+	/**
+	 * Moves the best k values, with their ids, to the front of the buffer without dropping the others.
+	 */
+	private void selectBest() {
+		if(size > k && !isSelected) {
+			quickSelect.select(values, null, ids, k - 1, 0, size);
+		}
+		isSelected = true;
+	}
+
+
+	/**
+	 * Cuts the buffer back to the best k values and raises the threshold to the k-th best value.
+	 */
+	private void compact() {
+		if(size <= k) {
+			return;
+		}
+		selectBest();
+		size = k;
+		threshold = values[k - 1];
+	}
+
+
+	/**
+	 * Number of values returned by {@link #getValues()}, which is the smaller of k and the number of candidates kept.
+	 * @return number of values collected
+	 */
+	public int size() {
+		return Math.min(size, k);
+	}
+
+
+	/**
+	 * Number of candidates offered so far, including the rejected ones.
+	 * @return number of candidates offered
+	 */
+	public long getNumOffered() {
+		return numOffered;
+	}
+
+
+	/**
+	 * The value that a candidate must beat to be kept.
+	 * The threshold only rises, and it is the k-th best value seen as of the last compaction, so it may lag behind the true k-th best value.
+	 * @return the threshold, or NaN if no candidate has been rejected for lack of room yet
+	 */
+	public double getThreshold() {
+		return threshold;
+	}
+
+
+	/**
+	 * The best values collected so far, in no particular order.
+	 * The result lines up with {@link #getIds()}, as long as no candidate is offered in between.
+	 * This reorders the buffer but doesn't drop candidates or raise the threshold, so it doesn't change which later candidates are accepted.
+	 * @return new array of the best {@link #size()} values
+	 */
+	public double [] getValues() {
+		selectBest();
+		return Arrays.copyOf(values, size());
+	}
+
+
+	/**
+	 * Ids of the best values collected so far, in the same order as {@link #getValues()}.
+	 * @return new array of the ids of the best {@link #size()} values
+	 */
+	public long [] getIds() {
+		selectBest();
+		return Arrays.copyOf(ids[0], size());
+	}
+
+
+	/**
+	 * Forgets every candidate, so that the collector can be reused for another stream.
+	 */
+	public void clear() {
+		size = 0;
+		numOffered = 0;
+		threshold = Double.NaN;
+		isSelected = false;
+	}
+}
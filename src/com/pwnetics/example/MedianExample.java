@@ -28,6 +28,7 @@ authors.
 
 package com.pwnetics.example;
 
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
 import com.pwnetics.math.QuickMedianDoubleArray;
 
 /**
@@ -37,6 +38,7 @@ import com.pwnetics.math.QuickMedianDoubleArray;
  * <pre>
  * The median of {6.0, 8.0, 7.0, 5.0, 3.0, 0.0, 9.0, 1.0, 2.0, 4.0, 10.0} is:	5.0
  * The median of {6.0, 8.0, 7.0, 5.0, 3.0, 0.0, 9.0, 1.0, 2.0, 4.0} is:		4.5
+ * Ignoring NaN, the median of {6.0, NaN, 7.0, 5.0, NaN, 0.0} is:	5.5
  * </pre>
  *
  * @author romanows
@@ -51,5 +53,9 @@ public class MedianExample {
 
 		values = new double[] {6, 8, 7, 5, 3, 0, 9, 1, 2, 4};
 		System.out.println("The median of " + SelectExample.toString(values) + " is:\t\t" + quickMedian.median(values));
+
+		// Missing readings are skipped while the median is computed, without copying the array
+		values = new double[] {6, Double.NaN, 7, 5, Double.NaN, 0};
+		System.out.println("Ignoring NaN, the median of " + SelectExample.toString(values) + " is:\t" + quickMedian.median(values, NaNPolicy.IGNORE));
 	}
 }
@@ -29,6 +29,7 @@ authors.
 package com.pwnetics.example;
 
 import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
 
 /**
  * Example usage of {@link QuickSelectDoubleArray}.
@@ -53,12 +54,9 @@ public class SelectExample {
 
 		System.out.println("original:\t" + toString(values));
 
-		if(quickSelect.containsNaN(values)) {
-			throw new IllegalArgumentException("QuickSelect doesn't work with arrays containing NaN values");
-		}
-
 		// Puts the 6th largest value (which is 4.0) at values[5] and all larger values below it.
-		quickSelect.select(values, 5);
+		// The REJECT policy throws an IllegalArgumentException if it finds a NaN value during the first partition pass, so no separate containsNaN() check is needed.
+		quickSelect.select(values, 5, 0, values.length, NaNPolicy.REJECT);
 		System.out.println("select(5):\t" + toString(values));
 
 		// Puts the 3rd largest value (which is 7.0) at values[2] and all larger values below it.
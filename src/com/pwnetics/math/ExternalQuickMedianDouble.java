@@ -0,0 +1,100 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import com.pwnetics.alg.ExternalQuickSelectDouble;
+
+/**
+ * Uses {@link ExternalQuickSelectDouble} to find the exact median of a binary file of doubles that is too large for memory, in a few sequential passes over the file.
+ *
+ * @author romanows
+ */
+public class ExternalQuickMedianDouble {
+
+	private final ExternalQuickSelectDouble externalSelect;
+
+
+	/** Constructor */
+	public ExternalQuickMedianDouble() {
+		this(new ExternalQuickSelectDouble());
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param externalSelect {@link ExternalQuickSelectDouble} object to use for selecting the middle values for the median calculation
+	 */
+	public ExternalQuickMedianDouble(ExternalQuickSelectDouble externalSelect) {
+		if(externalSelect == null) {
+			throw new IllegalArgumentException();
+		}
+		this.externalSelect = externalSelect;
+	}
+
+
+	/**
+	 * The median is the middle value of an odd number of values or the average of the two middle values of an even number of values, as in {@link QuickMedianDoubleArray#median(double[])}.
+	 * The file is only read.
+	 *
+	 * @param channel channel of a nonempty file of doubles, whose size is a multiple of 8 bytes; a {@link Double#NaN} value throws an {@link IllegalArgumentException}
+	 * @return the median value of the file
+	 * @throws IOException if the file can't be read
+	 */
+	public double median(FileChannel channel) throws IOException {
+		if(channel == null || channel.size() == 0) {
+			throw new IllegalArgumentException();
+		}
+		final long n = channel.size() / 8;
+		if((n & 1) == 1) {
+			return externalSelect.select(channel, n >>> 1);
+		}
+		// Both middle values come from the same passes
+		final double [] middle = externalSelect.selectAdjacent(channel, (n >>> 1) - 1);
+		return average(middle[0], middle[1]);
+	}
+
+
+	/**
+	 * Finds the average of two values without overflowing, as {@link QuickMedianDoubleArray} does.
+	 * @param x one of two values to average
+	 * @param y one of two values to average
+	 * @return average of two given values
+	 */
+	private static double average(double x, double y) {
+		if(Double.isInfinite(x) || Double.isInfinite(y) || (x <= 0 && y >= 0) || (y <= 0 && x >= 0)) {
+			return (x + y) / 2.0;
+		}
+		return x >= y ? ((x - y) / 2.0) + y : ((y - x) / 2.0) + x;
+	}
+}
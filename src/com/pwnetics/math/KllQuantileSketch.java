@@ -0,0 +1,563 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+
+/**
+ * Estimates quantiles of an unbounded stream of values in fixed memory, following Karnin, Lang and Liberty, "Optimal Quantile Approximation in Streams", FOCS 2016.
+ * Use this when the data doesn't fit in one array; {@link QuickMedianDoubleArray} and {@link QuickQuantileDoubleArray} give exact answers when it does.
+ *
+ * <p>
+ * The sketch is a stack of compactors.
+ * Values retained at level <code>h</code> stand for <code>2^h</code> values of the stream each.
+ * New values go to level 0, and whenever the sketch holds more values than its capacity, the lowest level that is over its own capacity is compacted:
+ * its values are sorted, every other one is promoted to the next level, starting at a random offset, and the rest are dropped.
+ * The top level holds up to k values and every level below holds 2/3 as many as the level above, but at least {@value #MIN_LEVEL_CAPACITY}, so the sketch retains fewer than <code>3k</code> values plus a few per level.
+ * Compaction has to sort, since it keeps alternate values in sorted order, so a selection can't replace that sort; small levels are sorted with {@link QuickSelectDoubleArray#sortSmall(double[], int, int)}.
+ * </p>
+ *
+ * <p>
+ * The normalized rank error of a quantile estimate, i.e. how far the true rank of the returned value can be from the requested rank, divided by the stream length, is about <code>2.3 / k^0.97</code> with 99% confidence.
+ * That is about 1.3% for the default k of {@value #DEFAULT_K} and about 0.3% for k = 1000.
+ * The minimum and maximum values are always exact.
+ * </p>
+ *
+ * <p>
+ * Sketches with the same k can be merged, so each thread or host can keep its own sketch and combine them later with the same error guarantee as a single sketch of all the values.
+ * {@link #toByteArray()} and {@link #fromByteArray(byte[])} give a compact binary form for moving sketches between hosts.
+ * A sketch is not safe to update from several threads at once.
+ * </p>
+ *
+ * @author romanows
+ */
+public class KllQuantileSketch {
+
+	/** Default size of the top compactor */
+	public static final int DEFAULT_K = 200;
+
+	/** Smallest allowed k */
+	public static final int MIN_K = 8;
+
+	/** Smallest capacity of any compactor */
+	private static final int MIN_LEVEL_CAPACITY = 8;
+
+	/** Ratio of the capacity of a compactor to the capacity of the one above it */
+	private static final double LEVEL_CAPACITY_RATIO = 2.0 / 3.0;
+
+	/** Sorts the small levels that are compacted most often, ascending like {@link Arrays#sort(double[], int, int)} sorts the others; it holds no state, so all sketches share it */
+	private static final QuickSelectDoubleArray QUICK_SELECT = new QuickSelectDoubleArray(false);
+
+	/** Identifies the serialized form, and its version */
+	private static final int SERIAL_MAGIC = 0x4b4c4c01;
+
+	/** Size of the top compactor */
+	private final int k;
+
+	/** Random number generator that picks the offset of every compaction; if null, {@link ThreadLocalRandom} is used */
+	private final Random random;
+
+	/** Retained values of each level, with values at level h standing for 2^h values of the stream each */
+	private double [][] levels;
+
+	/** Number of retained values in each level */
+	private int [] levelSizes;
+
+	/** Number of levels in use */
+	private int numLevels;
+
+	/** Number of values retained by all levels */
+	private int numRetained;
+
+	/** Number of values that each level may hold before it is compacted; depends only on k and the number of levels */
+	private int [] levelCapacities;
+
+	/** Number of values that the sketch may retain before a level is compacted */
+	private int totalCapacity;
+
+	/** Number of values of the stream */
+	private long n;
+
+	/** Smallest value of the stream */
+	private double min;
+
+	/** Largest value of the stream */
+	private double max;
+
+	/** Retained values in ascending order, or null if values were added since they were last sorted */
+	private double [] sortedValues;
+
+	/** Total weight of the values up to and including each sorted value */
+	private long [] cumulativeWeights;
+
+
+	/** Constructor */
+	public KllQuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param k size of the top compactor; larger values of k retain more values and give more accurate estimates
+	 */
+	public KllQuantileSketch(int k) {
+		this(k, null);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param k size of the top compactor; larger values of k retain more values and give more accurate estimates
+	 * @param random random number generator that picks the offset of every compaction, e.g. a seeded one for reproducible tests; if null, each thread uses its own {@link ThreadLocalRandom}
+	 */
+	public KllQuantileSketch(int k, Random random) {
+		if(k < MIN_K) {
+			throw new IllegalArgumentException();
+		}
+		this.k = k;
+		this.random = random;
+		this.levels = new double[1][MIN_LEVEL_CAPACITY];
+		this.levelSizes = new int[1];
+		this.numLevels = 1;
+		computeCapacities();
+		this.min = Double.NaN;
+		this.max = Double.NaN;
+	}
+
+
+	/**
+	 * Size of the top compactor.
+	 * @return k
+	 */
+	public int getK() {
+		return k;
+	}
+
+
+	/**
+	 * Number of values of the stream, i.e., the number of times {@link #update(double)} was called on this sketch and on the sketches merged into it.
+	 * @return number of values of the stream
+	 */
+	public long getN() {
+		return n;
+	}
+
+
+	/**
+	 * Number of values that the sketch retains to represent the stream.
+	 * @return number of retained values
+	 */
+	public int getNumRetained() {
+		return numRetained;
+	}
+
+
+	/**
+	 * Whether no value has been added.
+	 * @return true if the stream is empty
+	 */
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+
+	/**
+	 * Computes the capacity of each level and of the whole sketch, which must be done whenever a level is added.
+	 */
+	private void computeCapacities() {
+		levelCapacities = new int[numLevels];
+		totalCapacity = 0;
+		for(int level=0; level<numLevels; level++) {
+			levelCapacities[level] = Math.max(MIN_LEVEL_CAPACITY, (int)Math.ceil(k * Math.pow(LEVEL_CAPACITY_RATIO, numLevels - 1 - level)));
+			totalCapacity += levelCapacities[level];
+		}
+	}
+
+
+	/**
+	 * Adds a value of the stream.
+	 * @param value value to add, must not be NaN
+	 */
+	public void update(double value) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException();
+		}
+		if(n == 0) {
+			min = value;
+			max = value;
+		} else if(value < min) {
+			min = value;
+		} else if(value > max) {
+			max = value;
+		}
+		n++;
+
+		append(0, value);
+		if(numRetained > totalCapacity) {
+			compress();
+		}
+	}
+
+
+	/**
+	 * Appends a value to a level, growing the level if needed.
+	 * @param level level to which the value is appended
+	 * @param value value to append
+	 */
+	private void append(int level, double value) {
+		if(levelSizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+		}
+		levels[level][levelSizes[level]++] = value;
+		numRetained++;
+		sortedValues = null;
+	}
+
+
+	/**
+	 * Compacts the lowest level that is over its capacity.
+	 * If no level is over capacity, the top level is compacted, which is possible only after a merge.
+	 */
+	private void compress() {
+		int level = 0;
+		while(level < numLevels - 1 && levelSizes[level] < levelCapacities[level]) {
+			level++;
+		}
+		compact(level);
+	}
+
+
+	/**
+	 * Sorts the values of a level and promotes every other one to the level above, which is created if needed.
+	 * If the level holds an odd number of values, its largest value stays behind.
+	 * @param level level to compact
+	 */
+	private void compact(int level) {
+		if(level == numLevels - 1) {
+			if(numLevels == levels.length) {
+				levels = Arrays.copyOf(levels, numLevels + 1);
+				levelSizes = Arrays.copyOf(levelSizes, numLevels + 1);
+			}
+			levels[numLevels] = new double[MIN_LEVEL_CAPACITY];
+			levelSizes[numLevels] = 0;
+			numLevels++;
+			computeCapacities();
+		}
+
+		final double [] values = levels[level];
+		final int size = levelSizes[level];
+		if(size <= QuickSelectDoubleArray.DEFAULT_SMALL_SORT_THRESHOLD) {
+			QUICK_SELECT.sortSmall(values, 0, size);
+		} else {
+			Arrays.sort(values, 0, size);
+		}
+
+		final int numPaired = size & ~1;
+		final int offset = (random == null ? ThreadLocalRandom.current().nextBoolean() : random.nextBoolean()) ? 1 : 0;
+		for(int i=offset; i<numPaired; i+=2) {
+			append(level + 1, values[i]);
+		}
+		numRetained -= numPaired;
+
+		// The unpaired value, if any, stays behind at the bottom of this level
+		if(numPaired < size) {
+			values[0] = values[size - 1];
+		}
+		levelSizes[level] = size - numPaired;
+	}
+
+
+	/**
+	 * Adds the values of another sketch to this one, as if every value of the other stream had been added to this sketch.
+	 * The other sketch is not changed.
+	 * @param other sketch with the same k
+	 */
+	public void merge(KllQuantileSketch other) {
+		if(other == null || other.k != k) {
+			throw new IllegalArgumentException();
+		}
+		if(other.n == 0) {
+			return;
+		}
+
+		if(n == 0) {
+			min = other.min;
+			max = other.max;
+		} else {
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+		n += other.n;
+
+		while(numLevels < other.numLevels) {
+			if(numLevels == levels.length) {
+				levels = Arrays.copyOf(levels, other.numLevels);
+				levelSizes = Arrays.copyOf(levelSizes, other.numLevels);
+			}
+			levels[numLevels] = new double[MIN_LEVEL_CAPACITY];
+			levelSizes[numLevels] = 0;
+			numLevels++;
+			computeCapacities();
+		}
+		for(int level=0; level<other.numLevels; level++) {
+			for(int i=0; i<other.levelSizes[level]; i++) {
+				append(level, other.levels[level][i]);
+			}
+		}
+
+		while(numRetained > totalCapacity) {
+			compress();
+		}
+	}
+
+
+	/**
+	 * Sorts the retained values along with their weights, if they changed since the last query.
+	 */
+	private void sortRetained() {
+		if(sortedValues != null) {
+			return;
+		}
+
+		// Each level is sorted separately, then the levels are merged one at a time into the running result
+		double [] values = new double[0];
+		long [] weights = new long[0];
+		for(int level=0; level<numLevels; level++) {
+			final int size = levelSizes[level];
+			final double [] levelValues = Arrays.copyOf(levels[level], size);
+			Arrays.sort(levelValues);
+			final long levelWeight = 1L << level;
+
+			double [] mergedValues = new double[values.length + size];
+			long [] mergedWeights = new long[values.length + size];
+			int i = 0;
+			int j = 0;
+			for(int m=0; m<mergedValues.length; m++) {
+				if(j == size || (i < values.length && values[i] <= levelValues[j])) {
+					mergedValues[m] = values[i];
+					mergedWeights[m] = weights[i];
+					i++;
+				} else {
+					mergedValues[m] = levelValues[j];
+					mergedWeights[m] = levelWeight;
+					j++;
+				}
+			}
+			values = mergedValues;
+			weights = mergedWeights;
+		}
+
+		for(int i=1; i<weights.length; i++) {
+			weights[i] += weights[i - 1];
+		}
+		sortedValues = values;
+		cumulativeWeights = weights;
+	}
+
+
+	/**
+	 * Estimates a quantile of the stream, which is the smallest retained value whose estimated rank is at least <code>p * n</code>.
+	 * The 0 and 1 quantiles are the exact minimum and maximum.
+	 * @param p probability between 0 and 1, inclusive
+	 * @return estimated quantile
+	 */
+	public double quantile(double p) {
+		if(!(p >= 0.0 && p <= 1.0) || n == 0) {
+			throw new IllegalArgumentException();
+		}
+		if(p == 0.0) {
+			return min;
+		}
+		if(p == 1.0) {
+			return max;
+		}
+
+		sortRetained();
+		final long totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+		final double targetWeight = p * totalWeight;
+		int lo = 0;
+		int hi = cumulativeWeights.length - 1;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(cumulativeWeights[mid] < targetWeight) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return sortedValues[lo];
+	}
+
+
+	/**
+	 * Estimates several quantiles of the stream.
+	 * See {@link #quantile(double)}.
+	 * @param ps probabilities between 0 and 1, inclusive
+	 * @return estimated quantiles, in the same order as the probabilities
+	 */
+	public double [] quantiles(double [] ps) {
+		if(ps == null) {
+			throw new IllegalArgumentException();
+		}
+		double [] quantiles = new double[ps.length];
+		for(int i=0; i<ps.length; i++) {
+			quantiles[i] = quantile(ps[i]);
+		}
+		return quantiles;
+	}
+
+
+	/**
+	 * Estimates the normalized rank of a value, i.e., the fraction of the stream that is less than or equal to it.
+	 * @param value value whose rank is estimated
+	 * @return estimated fraction of values less than or equal to the given value, between 0 and 1
+	 */
+	public double rank(double value) {
+		if(Double.isNaN(value) || n == 0) {
+			throw new IllegalArgumentException();
+		}
+		sortRetained();
+
+		// Find the first sorted value greater than the given value
+		int lo = 0;
+		int hi = sortedValues.length;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(sortedValues[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo == 0 ? 0.0 : (double)cumulativeWeights[lo - 1] / cumulativeWeights[cumulativeWeights.length - 1];
+	}
+
+
+	/**
+	 * Minimum value of the stream.
+	 * @return exact minimum, or NaN if the stream is empty
+	 */
+	public double getMin() {
+		return min;
+	}
+
+
+	/**
+	 * Maximum value of the stream.
+	 * @return exact maximum, or NaN if the stream is empty
+	 */
+	public double getMax() {
+		return max;
+	}
+
+
+	/**
+	 * Serializes the sketch, so that it can be stored or sent to another host and merged there.
+	 * The form holds a short header, the size of each level, and the retained values, i.e., about <code>8 * getNumRetained()</code> bytes.
+	 * @return serialized form of the sketch
+	 */
+	public byte [] toByteArray() {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 8 + 8 + 4 + 4 * numLevels + 8 * numRetained);
+		buffer.putInt(SERIAL_MAGIC);
+		buffer.putInt(k);
+		buffer.putLong(n);
+		buffer.putDouble(min);
+		buffer.putDouble(max);
+		buffer.putInt(numLevels);
+		for(int level=0; level<numLevels; level++) {
+			buffer.putInt(levelSizes[level]);
+		}
+		for(int level=0; level<numLevels; level++) {
+			for(int i=0; i<levelSizes[level]; i++) {
+				buffer.putDouble(levels[level][i]);
+			}
+		}
+		return buffer.array();
+	}
+
+
+	/**
+	 * Deserializes a sketch written by {@link #toByteArray()}.
+	 * The sketch picks compaction offsets with {@link ThreadLocalRandom}.
+	 * @param bytes serialized form of a sketch
+	 * @return the sketch
+	 */
+	public static KllQuantileSketch fromByteArray(byte [] bytes) {
+		if(bytes == null || bytes.length < 4 + 4 + 8 + 8 + 8 + 4) {
+			throw new IllegalArgumentException();
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if(buffer.getInt() != SERIAL_MAGIC) {
+			throw new IllegalArgumentException();
+		}
+		final int k = buffer.getInt();
+		if(k < MIN_K) {
+			throw new IllegalArgumentException();
+		}
+
+		KllQuantileSketch sketch = new KllQuantileSketch(k);
+		sketch.n = buffer.getLong();
+		sketch.min = buffer.getDouble();
+		sketch.max = buffer.getDouble();
+		final int numLevels = buffer.getInt();
+		if(numLevels < 1 || numLevels > 64 || buffer.remaining() < 4 * numLevels) {
+			throw new IllegalArgumentException();
+		}
+		sketch.numLevels = numLevels;
+		sketch.computeCapacities();
+		sketch.levels = new double[numLevels][];
+		sketch.levelSizes = new int[numLevels];
+		for(int level=0; level<numLevels; level++) {
+			final int size = buffer.getInt();
+			if(size < 0 || size > buffer.remaining() / 8) {
+				throw new IllegalArgumentException();
+			}
+			sketch.levelSizes[level] = size;
+			sketch.levels[level] = new double[Math.max(MIN_LEVEL_CAPACITY, size)];
+			sketch.numRetained += size;
+		}
+		if(buffer.remaining() != 8 * sketch.numRetained) {
+			throw new IllegalArgumentException();
+		}
+		for(int level=0; level<numLevels; level++) {
+			for(int i=0; i<sketch.levelSizes[level]; i++) {
+				sketch.levels[level][i] = buffer.getDouble();
+			}
+		}
+		return sketch;
+	}
+}
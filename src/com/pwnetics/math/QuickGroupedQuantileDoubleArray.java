@@ -0,0 +1,253 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.math.QuickQuantileDoubleArray.QuantileType;
+
+/**
+ * Finds the median or quantiles of each group of values, given a column of group keys and a parallel column of values, like a <code>GROUP BY</code> aggregation.
+ *
+ * <p>
+ * The values are first bucketed by key into one contiguous array with a counting sort: one pass counts the values of each group, prefix sums of the counts give each group its slice, and a second pass scatters every value into its group's slice.
+ * No per-group collections or boxed values are created, and the input columns are not changed.
+ * Each group's slice is then handed to {@link QuickMedianDoubleArray} or {@link QuickQuantileDoubleArray}, which select within the slice through their array subset methods.
+ * The groups may be spread across the threads of a {@link ForkJoinPool}.
+ * </p>
+ *
+ * <p>
+ * Group keys are indexes into the result, from 0 to one less than the number of groups, e.g. a sensor number or the position of a key in a dictionary.
+ * A group without values has a median and quantiles of {@link Double#NaN}.
+ * </p>
+ *
+ * @author romanows
+ */
+public class QuickGroupedQuantileDoubleArray {
+
+	/** Approximate number of values whose groups one task aggregates when the groups are spread across the threads of a pool; smaller tasks don't pay for their overhead */
+	private static final int TASK_SIZE = 1 << 16;
+
+	/** Finds the medians of the groups */
+	private final QuickMedianDoubleArray quickMedian;
+
+	/** Finds the quantiles of the groups */
+	private final QuickQuantileDoubleArray quickQuantile;
+
+
+	/** Constructor */
+	public QuickGroupedQuantileDoubleArray() {
+		this(new QuickSelectDoubleArray(), QuickQuantileDoubleArray.DEFAULT_QUANTILE_TYPE);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect {@link QuickSelectDoubleArray} object to use for selecting within each group
+	 * @param quantileType sample quantile definition used by the quantile methods
+	 */
+	public QuickGroupedQuantileDoubleArray(QuickSelectDoubleArray quickSelect, QuantileType quantileType) {
+		if(quickSelect == null || quantileType == null) {
+			throw new IllegalArgumentException();
+		}
+		this.quickMedian = new QuickMedianDoubleArray(quickSelect);
+		this.quickQuantile = new QuickQuantileDoubleArray(quickSelect, quantileType);
+	}
+
+
+	/**
+	 * Buckets the values by their group keys with a counting sort.
+	 * Values of the same group keep their relative order.
+	 *
+	 * @param keys group key of each value, from 0 to numGroups - 1
+	 * @param values values to bucket, as many as there are keys
+	 * @param numGroups number of groups
+	 * @param grouped array with at least as many elements as there are values, into which the values are scattered
+	 * @return offsets of the groups in the grouped array; group g is grouped[offsets[g]:offsets[g + 1]]
+	 */
+	public static int [] group(int [] keys, double [] values, int numGroups, double [] grouped) {
+		if(keys == null || values == null || grouped == null || keys.length != values.length || grouped.length < values.length || numGroups < 0) {
+			throw new IllegalArgumentException();
+		}
+
+		// Count each group's values in the slot after the group, so that the prefix sums give each group's starting offset
+		final int [] offsets = new int[numGroups + 1];
+		for(int key : keys) {
+			if(key < 0 || key >= numGroups) {
+				throw new IllegalArgumentException("group key out of range: " + key);
+			}
+			offsets[key + 1]++;
+		}
+		for(int g=0; g<numGroups; g++) {
+			offsets[g + 1] += offsets[g];
+		}
+
+		final int [] insertIdxs = new int[numGroups];
+		System.arraycopy(offsets, 0, insertIdxs, 0, numGroups);
+		for(int i=0; i<keys.length; i++) {
+			grouped[insertIdxs[keys[i]]++] = values[i];
+		}
+		return offsets;
+	}
+
+
+	/**
+	 * Finds the median of each group, like {@link QuickMedianDoubleArray#median(double[])} would.
+	 * Behavior is undefined if any value is {@link Double#NaN}.
+	 *
+	 * @param keys group key of each value, from 0 to numGroups - 1
+	 * @param values values to aggregate, as many as there are keys; not changed
+	 * @param numGroups number of groups
+	 * @return the median of each group, indexed by group key
+	 */
+	public double [] medians(int [] keys, double [] values, int numGroups) {
+		return medians(keys, values, numGroups, null);
+	}
+
+
+	/**
+	 * Finds the median of each group, like {@link #medians(int[], double[], int)}, optionally spreading the groups across the threads of a pool.
+	 *
+	 * @param keys group key of each value, from 0 to numGroups - 1
+	 * @param values values to aggregate, as many as there are keys; not changed
+	 * @param numGroups number of groups
+	 * @param pool pool whose threads share the groups, or null to aggregate every group in the calling thread
+	 * @return the median of each group, indexed by group key
+	 */
+	public double [] medians(int [] keys, double [] values, int numGroups, ForkJoinPool pool) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		final double [] grouped = new double[values.length];
+		final int [] offsets = group(keys, values, numGroups, grouped);
+		return quickMedian.medians(grouped, offsets, pool);
+	}
+
+
+	/**
+	 * Finds the quantiles of each group for several probabilities, like {@link QuickQuantileDoubleArray#quantiles(double[], double[])} would.
+	 * Behavior is undefined if any value is {@link Double#NaN}.
+	 *
+	 * @param keys group key of each value, from 0 to numGroups - 1
+	 * @param values values to aggregate, as many as there are keys; not changed
+	 * @param numGroups number of groups
+	 * @param probabilities probabilities between 0 and 1, inclusive, in any order
+	 * @return the quantiles of each group, indexed by group key and then in the same order as the given probabilities
+	 */
+	public double [][] quantiles(int [] keys, double [] values, int numGroups, double [] probabilities) {
+		return quantiles(keys, values, numGroups, probabilities, null);
+	}
+
+
+	/**
+	 * Finds the quantiles of each group for several probabilities, like {@link #quantiles(int[], double[], int, double[])}, optionally spreading the groups across the threads of a pool.
+	 *
+	 * @param keys group key of each value, from 0 to numGroups - 1
+	 * @param values values to aggregate, as many as there are keys; not changed
+	 * @param numGroups number of groups
+	 * @param probabilities probabilities between 0 and 1, inclusive, in any order
+	 * @param pool pool whose threads share the groups, or null to aggregate every group in the calling thread
+	 * @return the quantiles of each group, indexed by group key and then in the same order as the given probabilities
+	 */
+	public double [][] quantiles(int [] keys, double [] values, int numGroups, double [] probabilities, ForkJoinPool pool) {
+		if(values == null || probabilities == null) {
+			throw new IllegalArgumentException();
+		}
+		for(double probability : probabilities) {
+			if(!(probability >= 0.0 && probability <= 1.0)) {
+				throw new IllegalArgumentException("probability must be between 0 and 1: " + probability);
+			}
+		}
+		final double [] grouped = new double[values.length];
+		final int [] offsets = group(keys, values, numGroups, grouped);
+
+		final double [][] quantiles = new double[numGroups][];
+		final int groupsPerTask = (int)Math.max(1L, Math.min(numGroups, (long)TASK_SIZE * numGroups / Math.max(1, values.length)));
+		QuantileTask task = new QuantileTask(grouped, offsets, probabilities, quantiles, 0, numGroups, groupsPerTask);
+		if(pool == null || pool.getParallelism() <= 1) {
+			task.quantileGroups();
+		} else {
+			pool.invoke(task);
+		}
+		return quantiles;
+	}
+
+
+	/**
+	 * Finds the quantiles of a range of the groups, splitting the range in halves until each task has few enough groups.
+	 * Each task writes only its own range of the result, so tasks need no synchronization.
+	 */
+	private class QuantileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final double [] grouped;
+		final int [] offsets;
+		final double [] probabilities;
+		final double [][] quantiles;
+		final int beginGroup;
+		final int endGroup;
+		final int groupsPerTask;
+
+		QuantileTask(double [] grouped, int [] offsets, double [] probabilities, double [][] quantiles, int beginGroup, int endGroup, int groupsPerTask) {
+			this.grouped = grouped;
+			this.offsets = offsets;
+			this.probabilities = probabilities;
+			this.quantiles = quantiles;
+			this.beginGroup = beginGroup;
+			this.endGroup = endGroup;
+			this.groupsPerTask = groupsPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if(endGroup - beginGroup <= groupsPerTask) {
+				quantileGroups();
+			} else {
+				final int middleGroup = (beginGroup + endGroup) >>> 1;
+				invokeAll(new QuantileTask(grouped, offsets, probabilities, quantiles, beginGroup, middleGroup, groupsPerTask),
+						new QuantileTask(grouped, offsets, probabilities, quantiles, middleGroup, endGroup, groupsPerTask));
+			}
+		}
+
+		/** Finds the quantiles of this task's groups in the calling thread */
+		void quantileGroups() {
+			for(int g=beginGroup; g<endGroup; g++) {
+				if(offsets[g] == offsets[g + 1]) {
+					quantiles[g] = new double[probabilities.length];
+					Arrays.fill(quantiles[g], Double.NaN);
+				} else {
+					quantiles[g] = quickQuantile.quantiles(grouped, offsets[g], offsets[g + 1], probabilities);
+				}
+			}
+		}
+	}
+}
@@ -26,16 +26,30 @@ authors.
 */
 
 
+// Generated from template/QuickMedianArray.java.template by template/generate.sh; edit the template, not this file.
+
+
 package com.pwnetics.math;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
 
 /**
  * Uses {@link QuickSelectDoubleArray} to find the median in expected O(n) time.
+ * A QuickMedian object can be shared across threads whenever its QuickSelect object can, see {@link QuickSelectDoubleArray}.
  *
  * @author romanows
  */
 public class QuickMedianDoubleArray {
+	/** Arrays with at most this many elements are sorted outright, which covers all of the sizes for which {@link QuickSelectDoubleArray#sortSmall(double[], int, int)} has a sorting network */
+	private static final int SORT_MEDIAN_THRESHOLD = 16;
+
+	/** Approximate number of elements whose medians one task finds when a batch is spread across the threads of a pool; smaller tasks don't pay for their overhead */
+	private static final int BATCH_TASK_SIZE = 1 << 16;
+
 	private final QuickSelectDoubleArray quickSelect;
 
 
@@ -105,6 +119,15 @@ public class QuickMedianDoubleArray {
 			median = values[0];
 		} else if(values.length == 2) {
 			median = average(values[0], values[1]);
+		} else if(values.length <= SORT_MEDIAN_THRESHOLD) {
+			// Small windows are common in batch workloads; sorting them skips the argument checks and pivot picking of a selection
+			quickSelect.sortSmall(values, 0, values.length);
+			int highMiddleIdx = values.length >>> 1;
+			if((values.length & 1) == 1) {
+				median = values[highMiddleIdx];
+			} else {
+				median = average(values[highMiddleIdx - 1], values[highMiddleIdx]);
+			}
 		} else if((values.length & 1) == 1) {
 			// Length of values is odd, median is the value where half of the numbers are lower or equal and half are higher or equal
 			int middleIdx = values.length >>> 1;
@@ -133,4 +156,304 @@ public class QuickMedianDoubleArray {
 
 		return median;
 	}
+
+
+	/**
+	 * Finds the median like {@link #median(double[])}, but without changing the given array.
+	 * The values that may be middle values are copied into the calling thread's scratch array, see {@link QuickSelectDoubleArray#threadLocalScratch(int)}, so callers that share their arrays don't need to clone them first.
+	 *
+	 * @param values array over which to calculate the median, must not contain NaN elements; it is not changed
+	 * @return the median value in the list
+	 */
+	public double medianNonDestructive(double [] values) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		return medianNonDestructive(values, QuickSelectDoubleArray.threadLocalScratch(values.length));
+	}
+
+
+	/**
+	 * Finds the median like {@link #median(double[])}, but without changing the given array.
+	 * Only the values that may be middle values are copied into the scratch array, in the same pass that partitions them, see {@link QuickSelectDoubleArray#selectNonDestructive(double[], int, boolean, double[])}.
+	 *
+	 * @param values array over which to calculate the median, must not contain NaN elements; it is not changed
+	 * @param scratch array with at least as many elements as the given array, whose contents are overwritten
+	 * @return the median value in the list
+	 */
+	public double medianNonDestructive(double [] values, double [] scratch) {
+		if(values == null || values.length == 0 || scratch == null || scratch.length < values.length) {
+			throw new IllegalArgumentException();
+		}
+
+		final int highMiddleIdx = values.length >>> 1;
+		if(values.length <= SORT_MEDIAN_THRESHOLD) {
+			System.arraycopy(values, 0, scratch, 0, values.length);
+			quickSelect.sortSmall(scratch, 0, values.length);
+			return (values.length & 1) == 1 ? scratch[highMiddleIdx] : average(scratch[highMiddleIdx - 1], scratch[highMiddleIdx]);
+		}
+		if((values.length & 1) == 1) {
+			return scratch[quickSelect.selectNonDestructive(values, highMiddleIdx, false, scratch)];
+		}
+		final int scratchIdx = quickSelect.selectNonDestructive(values, highMiddleIdx - 1, true, scratch);
+		return average(scratch[scratchIdx], scratch[scratchIdx + 1]);
+	}
+
+
+	/**
+	 * Finds the median of each of the given arrays, like {@link #median(double[])} would.
+	 * The arguments are checked once for the whole batch, each array is handled by the cheapest kernel for its length, and the second middle value of an even-length array is found by a scan rather than a second selection.
+	 * The arrays are selected with {@link QuickSelectDoubleArray#selectUnchecked(double[], int, int, int, int[])}, so each array pays for none of the argument checks, listener calls and allocations of a public selection call.
+	 * This method may reorder the elements in each of the given arrays.
+	 * Behavior is undefined if an element is NaN, and unlike {@link #median(double[])}, no assert checks for one.
+	 *
+	 * @param arrays arrays over which to calculate the medians; the median of an empty array is {@link Double#NaN}
+	 * @return the median of each array, in the same order
+	 */
+	public double [] medians(double [][] arrays) {
+		return medians(arrays, null);
+	}
+
+
+	/**
+	 * Finds the median of each of the given arrays, like {@link #medians(double[][])}, optionally spreading the arrays across the threads of a pool.
+	 *
+	 * @param arrays arrays over which to calculate the medians; the median of an empty array is {@link Double#NaN}
+	 * @param pool pool whose threads share the arrays, or null to find every median in the calling thread
+	 * @return the median of each array, in the same order
+	 */
+	public double [] medians(double [][] arrays, ForkJoinPool pool) {
+		if(arrays == null) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		long numElements = 0;
+		for(double [] values : arrays) {
+			if(values == null) {
+				throw new IllegalArgumentException(new NullPointerException());
+			}
+			numElements += values.length;
+		}
+
+		final double [] medians = new double[arrays.length];
+		runBatch(new BatchTask(arrays, null, null, medians, 0, medians.length, segmentsPerTask(medians.length, numElements)), pool);
+		return medians;
+	}
+
+
+	/**
+	 * Finds the median of each segment of the given array, like {@link #medians(double[][])}.
+	 * Segment i is values[offsets[i]:offsets[i + 1]], so many short series can share one flat array, e.g. a minute of readings for each of many sensors.
+	 * This method may reorder the elements within each segment.
+	 *
+	 * @param values array that holds the segments
+	 * @param offsets non-decreasing starting indexes of the segments, followed by the ending index, exclusive, of the last one; the median of an empty segment is {@link Double#NaN}
+	 * @return the median of each segment, in the same order
+	 */
+	public double [] medians(double [] values, int [] offsets) {
+		return medians(values, offsets, null);
+	}
+
+
+	/**
+	 * Finds the median of each segment of the given array, like {@link #medians(double[], int[])}, optionally spreading the segments across the threads of a pool.
+	 *
+	 * @param values array that holds the segments
+	 * @param offsets non-decreasing starting indexes of the segments, followed by the ending index, exclusive, of the last one; the median of an empty segment is {@link Double#NaN}
+	 * @param pool pool whose threads share the segments, or null to find every median in the calling thread
+	 * @return the median of each segment, in the same order
+	 */
+	public double [] medians(double [] values, int [] offsets, ForkJoinPool pool) {
+		if(values == null || offsets == null || offsets.length == 0 || offsets[0] < 0 || offsets[offsets.length - 1] > values.length) {
+			throw new IllegalArgumentException();
+		}
+		for(int i=1; i<offsets.length; i++) {
+			if(offsets[i] < offsets[i - 1]) {
+				throw new IllegalArgumentException("offsets must be non-decreasing: " + offsets[i - 1] + " > " + offsets[i]);
+			}
+		}
+
+		final double [] medians = new double[offsets.length - 1];
+		runBatch(new BatchTask(null, values, offsets, medians, 0, medians.length, segmentsPerTask(medians.length, offsets[offsets.length - 1] - offsets[0])), pool);
+		return medians;
+	}
+
+
+	/**
+	 * Finds the median of a subset of the given array, choosing the kernel by the length of the subset.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, exclusive, of the array subset
+	 * @param selectBounds scratch array of two elements for the bounds of the selection, reused across the subsets of a batch
+	 * @return the median value of the array subset, or {@link Double#NaN} if it is empty
+	 */
+	private double medianSubset(double [] values, int beginIndex, int endIndex, int [] selectBounds) {
+		final int n = endIndex - beginIndex;
+		if(n <= 2) {
+			return n == 0 ? Double.NaN : (n == 1 ? values[beginIndex] : average(values[beginIndex], values[beginIndex + 1]));
+		}
+
+		final int highMiddleIdx = beginIndex + (n >>> 1);
+		if(n <= SORT_MEDIAN_THRESHOLD) {
+			quickSelect.sortSmall(values, beginIndex, endIndex);
+			return (n & 1) == 1 ? values[highMiddleIdx] : average(values[highMiddleIdx - 1], values[highMiddleIdx]);
+		}
+		quickSelect.selectUnchecked(values, highMiddleIdx, beginIndex, endIndex, selectBounds);
+		if((n & 1) == 1) {
+			return values[highMiddleIdx];
+		}
+
+		// The low middle value comes last, in the sorting order, among the values before the high middle one; none of them before a correctly sorted bound can be it
+		final int scanBeginIndex = selectBounds[0] < beginIndex ? beginIndex : selectBounds[0];
+		double lowMiddleValue = values[scanBeginIndex];
+		if(quickSelect.isDescending()) {
+			for(int i=scanBeginIndex+1; i<highMiddleIdx; i++) {
+				lowMiddleValue = Math.min(lowMiddleValue, values[i]);
+			}
+		} else {
+			for(int i=scanBeginIndex+1; i<highMiddleIdx; i++) {
+				lowMiddleValue = Math.max(lowMiddleValue, values[i]);
+			}
+		}
+		return average(lowMiddleValue, values[highMiddleIdx]);
+	}
+
+
+	/**
+	 * Gets the number of segments that one task handles when a batch is spread across a pool.
+	 * @param numSegments number of segments in the batch
+	 * @param numElements number of elements in all segments of the batch
+	 * @return number of segments per task, at least one
+	 */
+	private static int segmentsPerTask(int numSegments, long numElements) {
+		return (int)Math.max(1L, Math.min(numSegments, (long)BATCH_TASK_SIZE * numSegments / Math.max(1L, numElements)));
+	}
+
+
+	/**
+	 * Runs a batch task in the given pool, or in the calling thread if there is no pool with more than one thread.
+	 * @param task task covering the whole batch
+	 * @param pool pool, or null
+	 */
+	private static void runBatch(BatchTask task, ForkJoinPool pool) {
+		if(pool == null || pool.getParallelism() <= 1) {
+			task.medianSegments();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+
+	/**
+	 * Finds the medians of a range of the segments of a batch, splitting the range in halves until each task has few enough segments.
+	 * Each task writes only its own range of the medians array, so tasks need no synchronization.
+	 */
+	private class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Arrays of the batch, or null if the batch is a flat array with offsets */
+		final double [][] arrays;
+		final double [] values;
+		final int [] offsets;
+		final double [] medians;
+		final int beginSegment;
+		final int endSegment;
+		final int segmentsPerTask;
+
+		BatchTask(double [][] arrays, double [] values, int [] offsets, double [] medians, int beginSegment, int endSegment, int segmentsPerTask) {
+			this.arrays = arrays;
+			this.values = values;
+			this.offsets = offsets;
+			this.medians = medians;
+			this.beginSegment = beginSegment;
+			this.endSegment = endSegment;
+			this.segmentsPerTask = segmentsPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if(endSegment - beginSegment <= segmentsPerTask) {
+				medianSegments();
+			} else {
+				final int middleSegment = (beginSegment + endSegment) >>> 1;
+				invokeAll(new BatchTask(arrays, values, offsets, medians, beginSegment, middleSegment, segmentsPerTask),
+						new BatchTask(arrays, values, offsets, medians, middleSegment, endSegment, segmentsPerTask));
+			}
+		}
+
+		/** Finds the medians of this task's segments in the calling thread */
+		void medianSegments() {
+			final int [] selectBounds = new int[2];
+			if(arrays != null) {
+				for(int i=beginSegment; i<endSegment; i++) {
+					medians[i] = medianSubset(arrays[i], 0, arrays[i].length, selectBounds);
+				}
+			} else {
+				for(int i=beginSegment; i<endSegment; i++) {
+					medians[i] = medianSubset(values, offsets[i], offsets[i + 1], selectBounds);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Finds the median of an array that may contain {@link Double#NaN} values, without a separate pass to check for or filter them out.
+	 * The first partition pass of the selection also moves the NaN values out of the way, see {@link QuickSelectDoubleArray#partitionNaN(double[], int, int, NaNPolicy)}.
+	 * This method may reorder the elements in the given array.
+	 *
+	 * <ul>
+	 *   <li>Under the {@link NaNPolicy#REJECT} policy, an array with a NaN value throws an {@link IllegalArgumentException}.</li>
+	 *   <li>Under the {@link NaNPolicy#IGNORE} policy, the result is the median of the values that aren't NaN, or NaN if there are none.</li>
+	 *   <li>Under the {@link NaNPolicy#LARGEST} policy, NaN is larger than every other value, so the result is NaN if a middle value is NaN.</li>
+	 * </ul>
+	 *
+	 * @param values array over which to calculate the median
+	 * @param nanPolicy how NaN values are handled
+	 * @return the median value in the list
+	 */
+	public double median(double [] values, NaNPolicy nanPolicy) {
+		if(values == null || values.length == 0 || nanPolicy == null) {
+			throw new IllegalArgumentException();
+		}
+
+		int [] pivotAndNaNRun = quickSelect.partitionNaN(values, 0, values.length, nanPolicy);
+		final int pivotIdx = pivotAndNaNRun[0];
+		final int nanBeginIndex = pivotAndNaNRun[1];
+		final int nanEndIndex = pivotAndNaNRun[2];
+		final int numbersBeginIndex = nanBeginIndex == 0 ? nanEndIndex : 0;
+		final int numbersEndIndex = nanBeginIndex == 0 ? values.length : nanBeginIndex;
+
+		int medianBeginIndex = 0;
+		int medianEndIndex = values.length;
+		if(nanPolicy == NaNPolicy.IGNORE) {
+			medianBeginIndex = numbersBeginIndex;
+			medianEndIndex = numbersEndIndex;
+			if(medianBeginIndex == medianEndIndex) {
+				return Double.NaN;
+			}
+		}
+
+		int highMiddleIdx = (medianBeginIndex + medianEndIndex) >>> 1;
+		int lowMiddleIdx = ((medianEndIndex - medianBeginIndex) & 1) == 1 ? highMiddleIdx : highMiddleIdx - 1;
+		if(lowMiddleIdx < numbersBeginIndex || highMiddleIdx >= numbersEndIndex) {
+			return Double.NaN;  // A middle value lies in the run of NaN values
+		}
+
+		// The first partition pass split the values around the pivot, so only one side is left to select from
+		if(highMiddleIdx < pivotIdx) {
+			quickSelect.select(values, highMiddleIdx, numbersBeginIndex, pivotIdx);
+		} else if(highMiddleIdx > pivotIdx) {
+			quickSelect.select(values, highMiddleIdx, pivotIdx + 1, numbersEndIndex);
+		}
+		double highMedianValue = values[highMiddleIdx];
+		if(lowMiddleIdx == highMiddleIdx) {
+			return highMedianValue;
+		}
+
+		// The other middle value is the last one before highMiddleIdx on its side of the pivot, which may be the pivot itself
+		quickSelect.select(values, lowMiddleIdx, highMiddleIdx > pivotIdx ? pivotIdx : numbersBeginIndex, highMiddleIdx);
+		return average(values[lowMiddleIdx], highMedianValue);
+	}
 }
@@ -0,0 +1,110 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import com.pwnetics.alg.BigDoubleBuffer;
+import com.pwnetics.alg.QuickSelectDoubleBuffer;
+
+/**
+ * Uses {@link QuickSelectDoubleBuffer} to find the median of a {@link BigDoubleBuffer}, e.g. a memory-mapped file of doubles, in expected O(n) time.
+ * A QuickMedianDoubleBuffer object can be shared across threads whenever its QuickSelectDoubleBuffer object can.
+ *
+ * @author romanows
+ */
+public class QuickMedianDoubleBuffer {
+
+	private final QuickSelectDoubleBuffer quickSelect;
+
+
+	/** Constructor */
+	public QuickMedianDoubleBuffer() {
+		this(new QuickSelectDoubleBuffer());
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect {@link QuickSelectDoubleBuffer} object to use for selecting the middle elements for the median calculation
+	 */
+	public QuickMedianDoubleBuffer(QuickSelectDoubleBuffer quickSelect) {
+		if(quickSelect == null) {
+			throw new IllegalArgumentException();
+		}
+		this.quickSelect = quickSelect;
+	}
+
+
+	/**
+	 * The median is the middle value of an odd number of values or the average of the two middle values of an even number of values, as in {@link QuickMedianDoubleArray#median(double[])}.
+	 * Behavior is undefined for buffers that contain {@link Double#NaN} values.
+	 * This method may reorder the elements in the given buffer.
+	 *
+	 * @param values buffer over which to calculate the median, must not contain {@link Double#NaN} elements
+	 * @return the median value of the buffer
+	 */
+	public double median(BigDoubleBuffer values) {
+		if(values == null || values.size() == 0) {
+			throw new IllegalArgumentException();
+		}
+
+		final long highMiddleIdx = values.size() >>> 1;
+		quickSelect.select(values, highMiddleIdx);
+		final double highMedianValue = values.get(highMiddleIdx);
+		if((values.size() & 1) == 1) {
+			return highMedianValue;
+		}
+
+		// The other middle value is the element before the selected index in sort order, i.e., the one of the first part closest to the selected value
+		final boolean isDescending = quickSelect.isDescending();
+		double lowMedianValue = values.get(0);
+		for(long i=1; i<highMiddleIdx; i++) {
+			final double value = values.get(i);
+			if(isDescending ? value < lowMedianValue : value > lowMedianValue) {
+				lowMedianValue = value;
+			}
+		}
+		return average(lowMedianValue, highMedianValue);
+	}
+
+
+	/**
+	 * Finds the average of two values without overflowing, as {@link QuickMedianDoubleArray} does.
+	 * @param x one of two values to average
+	 * @param y one of two values to average
+	 * @return average of two given values
+	 */
+	private static double average(double x, double y) {
+		if(Double.isInfinite(x) || Double.isInfinite(y) || (x <= 0 && y >= 0) || (y <= 0 && x >= 0)) {
+			return (x + y) / 2.0;
+		}
+		return x >= y ? ((x - y) / 2.0) + y : ((y - x) / 2.0) + x;
+	}
+}
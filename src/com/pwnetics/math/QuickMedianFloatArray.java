@@ -0,0 +1,459 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+// Generated from template/QuickMedianArray.java.template by template/generate.sh; edit the template, not this file.
+
+
+package com.pwnetics.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.pwnetics.alg.QuickSelectFloatArray;
+import com.pwnetics.alg.QuickSelectFloatArray.NaNPolicy;
+
+/**
+ * Uses {@link QuickSelectFloatArray} to find the median in expected O(n) time.
+ * A QuickMedian object can be shared across threads whenever its QuickSelect object can, see {@link QuickSelectFloatArray}.
+ *
+ * @author romanows
+ */
+public class QuickMedianFloatArray {
+	/** Arrays with at most this many elements are sorted outright, which covers all of the sizes for which {@link QuickSelectFloatArray#sortSmall(float[], int, int)} has a sorting network */
+	private static final int SORT_MEDIAN_THRESHOLD = 16;
+
+	/** Approximate number of elements whose medians one task finds when a batch is spread across the threads of a pool; smaller tasks don't pay for their overhead */
+	private static final int BATCH_TASK_SIZE = 1 << 16;
+
+	private final QuickSelectFloatArray quickSelect;
+
+
+	/** Constructor */
+	public QuickMedianFloatArray() {
+		quickSelect = new QuickSelectFloatArray();
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect {@link QuickSelectFloatArray} object to use for selecting the middle elements for the median calculation
+	 */
+	public QuickMedianFloatArray(QuickSelectFloatArray quickSelect) {
+		this.quickSelect = quickSelect;
+	}
+
+	/**
+	 * Finds the average of two values.
+	 * An assert checks that the given values are not NaN; if disabled, undefined behavior will occur.
+	 *
+	 * @param x one of two values to average
+	 * @param y one of two values to average
+	 * @return average of two given values
+	 */
+	protected double average(double x, double y) {
+		assert(!Double.isNaN(x) && !Double.isNaN(y));
+		if(Double.isInfinite(x) || Double.isInfinite(y)) {
+			// Overflow isn't a problem; the (x+y) addition is always +/- infinity or NaN
+			return (x + y) / 2.0;
+		}
+
+		if(x >= y) {
+			if(y <= 0 && x >= 0) {
+				// If x and y are opposite signs, we can use (x+y)/2.0 and be sure the sum doesn't overflow
+				return (x + y) / 2.0;
+			}
+			// Otherwise, we first calculate the delta, which we know is smaller than either of the two numbers, and thus doesn't overflow
+			return ((x - y) / 2.0) + y;
+		} else {
+			if(y >= 0 && x <= 0) {
+				return (x + y) / 2.0;
+			}
+			return ((y - x) / 2.0) + x;
+		}
+	}
+
+
+	/**
+	 * The median is the middle value in an odd-length list or the average of the two middle numbers in an even-length list.
+	 * Behavior is undefined for list that contain {@link Float#NaN} values.
+	 * This method may reorder the elements in the given array.
+	 * The median is found in O(n) time using the QuickSelect algorithm.
+	 *
+	 * @param values array over which to calculate the median, must not contain {@link Float#NaN} elements.
+	 * @return the median value in the list
+	 */
+	public double median(float [] values) {
+		if(values == null || values.length == 0) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+
+		double median;
+		if(values.length == 0) {
+			median = values[0];
+		} else if(values.length == 1) {
+			median = values[0];
+		} else if(values.length == 2) {
+			median = average(values[0], values[1]);
+		} else if(values.length <= SORT_MEDIAN_THRESHOLD) {
+			// Small windows are common in batch workloads; sorting them skips the argument checks and pivot picking of a selection
+			quickSelect.sortSmall(values, 0, values.length);
+			int highMiddleIdx = values.length >>> 1;
+			if((values.length & 1) == 1) {
+				median = values[highMiddleIdx];
+			} else {
+				median = average(values[highMiddleIdx - 1], values[highMiddleIdx]);
+			}
+		} else if((values.length & 1) == 1) {
+			// Length of values is odd, median is the value where half of the numbers are lower or equal and half are higher or equal
+			int middleIdx = values.length >>> 1;
+			quickSelect.select(values, middleIdx);
+			median = values[middleIdx];
+		} else {
+			// Length of values is even, median is the average of the two numbers such that half of the numbers are lower or equal to the first and half are higher or equal to the second and the first is lower or equal to the second
+			int highMiddleIdx = values.length >>> 1;
+			int lowMiddleIdx = highMiddleIdx - 1;
+
+			int [] pivotBounds = quickSelect.select(values, highMiddleIdx, 0, values.length);
+			double highMedianValue = values[highMiddleIdx];
+
+			if(pivotBounds[0] == lowMiddleIdx) {
+				median = average(values[lowMiddleIdx], highMedianValue);
+			} else {
+				if(pivotBounds[0] < 0) {
+					pivotBounds[0] = 0;
+				} else {
+					pivotBounds[0]++;
+				}
+				quickSelect.select(values, lowMiddleIdx, pivotBounds[0], highMiddleIdx);
+				median = average(values[lowMiddleIdx], highMedianValue);
+			}
+		}
+
+		return median;
+	}
+
+
+	/**
+	 * Finds the median like {@link #median(float[])}, but without changing the given array.
+	 * The values that may be middle values are copied into the calling thread's scratch array, see {@link QuickSelectFloatArray#threadLocalScratch(int)}, so callers that share their arrays don't need to clone them first.
+	 *
+	 * @param values array over which to calculate the median, must not contain NaN elements; it is not changed
+	 * @return the median value in the list
+	 */
+	public double medianNonDestructive(float [] values) {
+		if(values == null) {
+			throw new IllegalArgumentException();
+		}
+		return medianNonDestructive(values, QuickSelectFloatArray.threadLocalScratch(values.length));
+	}
+
+
+	/**
+	 * Finds the median like {@link #median(float[])}, but without changing the given array.
+	 * Only the values that may be middle values are copied into the scratch array, in the same pass that partitions them, see {@link QuickSelectFloatArray#selectNonDestructive(float[], int, boolean, float[])}.
+	 *
+	 * @param values array over which to calculate the median, must not contain NaN elements; it is not changed
+	 * @param scratch array with at least as many elements as the given array, whose contents are overwritten
+	 * @return the median value in the list
+	 */
+	public double medianNonDestructive(float [] values, float [] scratch) {
+		if(values == null || values.length == 0 || scratch == null || scratch.length < values.length) {
+			throw new IllegalArgumentException();
+		}
+
+		final int highMiddleIdx = values.length >>> 1;
+		if(values.length <= SORT_MEDIAN_THRESHOLD) {
+			System.arraycopy(values, 0, scratch, 0, values.length);
+			quickSelect.sortSmall(scratch, 0, values.length);
+			return (values.length & 1) == 1 ? scratch[highMiddleIdx] : average(scratch[highMiddleIdx - 1], scratch[highMiddleIdx]);
+		}
+		if((values.length & 1) == 1) {
+			return scratch[quickSelect.selectNonDestructive(values, highMiddleIdx, false, scratch)];
+		}
+		final int scratchIdx = quickSelect.selectNonDestructive(values, highMiddleIdx - 1, true, scratch);
+		return average(scratch[scratchIdx], scratch[scratchIdx + 1]);
+	}
+
+
+	/**
+	 * Finds the median of each of the given arrays, like {@link #median(float[])} would.
+	 * The arguments are checked once for the whole batch, each array is handled by the cheapest kernel for its length, and the second middle value of an even-length array is found by a scan rather than a second selection.
+	 * The arrays are selected with {@link QuickSelectFloatArray#selectUnchecked(float[], int, int, int, int[])}, so each array pays for none of the argument checks, listener calls and allocations of a public selection call.
+	 * This method may reorder the elements in each of the given arrays.
+	 * Behavior is undefined if an element is NaN, and unlike {@link #median(float[])}, no assert checks for one.
+	 *
+	 * @param arrays arrays over which to calculate the medians; the median of an empty array is {@link Double#NaN}
+	 * @return the median of each array, in the same order
+	 */
+	public double [] medians(float [][] arrays) {
+		return medians(arrays, null);
+	}
+
+
+	/**
+	 * Finds the median of each of the given arrays, like {@link #medians(float[][])}, optionally spreading the arrays across the threads of a pool.
+	 *
+	 * @param arrays arrays over which to calculate the medians; the median of an empty array is {@link Double#NaN}
+	 * @param pool pool whose threads share the arrays, or null to find every median in the calling thread
+	 * @return the median of each array, in the same order
+	 */
+	public double [] medians(float [][] arrays, ForkJoinPool pool) {
+		if(arrays == null) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		long numElements = 0;
+		for(float [] values : arrays) {
+			if(values == null) {
+				throw new IllegalArgumentException(new NullPointerException());
+			}
+			numElements += values.length;
+		}
+
+		final double [] medians = new double[arrays.length];
+		runBatch(new BatchTask(arrays, null, null, medians, 0, medians.length, segmentsPerTask(medians.length, numElements)), pool);
+		return medians;
+	}
+
+
+	/**
+	 * Finds the median of each segment of the given array, like {@link #medians(float[][])}.
+	 * Segment i is values[offsets[i]:offsets[i + 1]], so many short series can share one flat array, e.g. a minute of readings for each of many sensors.
+	 * This method may reorder the elements within each segment.
+	 *
+	 * @param values array that holds the segments
+	 * @param offsets non-decreasing starting indexes of the segments, followed by the ending index, exclusive, of the last one; the median of an empty segment is {@link Double#NaN}
+	 * @return the median of each segment, in the same order
+	 */
+	public double [] medians(float [] values, int [] offsets) {
+		return medians(values, offsets, null);
+	}
+
+
+	/**
+	 * Finds the median of each segment of the given array, like {@link #medians(float[], int[])}, optionally spreading the segments across the threads of a pool.
+	 *
+	 * @param values array that holds the segments
+	 * @param offsets non-decreasing starting indexes of the segments, followed by the ending index, exclusive, of the last one; the median of an empty segment is {@link Double#NaN}
+	 * @param pool pool whose threads share the segments, or null to find every median in the calling thread
+	 * @return the median of each segment, in the same order
+	 */
+	public double [] medians(float [] values, int [] offsets, ForkJoinPool pool) {
+		if(values == null || offsets == null || offsets.length == 0 || offsets[0] < 0 || offsets[offsets.length - 1] > values.length) {
+			throw new IllegalArgumentException();
+		}
+		for(int i=1; i<offsets.length; i++) {
+			if(offsets[i] < offsets[i - 1]) {
+				throw new IllegalArgumentException("offsets must be non-decreasing: " + offsets[i - 1] + " > " + offsets[i]);
+			}
+		}
+
+		final double [] medians = new double[offsets.length - 1];
+		runBatch(new BatchTask(null, values, offsets, medians, 0, medians.length, segmentsPerTask(medians.length, offsets[offsets.length - 1] - offsets[0])), pool);
+		return medians;
+	}
+
+
+	/**
+	 * Finds the median of a subset of the given array, choosing the kernel by the length of the subset.
+	 * Arguments are assumed to have been checked by the caller.
+	 *
+	 * @param values array whose elements will be reordered
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, exclusive, of the array subset
+	 * @param selectBounds scratch array of two elements for the bounds of the selection, reused across the subsets of a batch
+	 * @return the median value of the array subset, or {@link Double#NaN} if it is empty
+	 */
+	private double medianSubset(float [] values, int beginIndex, int endIndex, int [] selectBounds) {
+		final int n = endIndex - beginIndex;
+		if(n <= 2) {
+			return n == 0 ? Double.NaN : (n == 1 ? values[beginIndex] : average(values[beginIndex], values[beginIndex + 1]));
+		}
+
+		final int highMiddleIdx = beginIndex + (n >>> 1);
+		if(n <= SORT_MEDIAN_THRESHOLD) {
+			quickSelect.sortSmall(values, beginIndex, endIndex);
+			return (n & 1) == 1 ? values[highMiddleIdx] : average(values[highMiddleIdx - 1], values[highMiddleIdx]);
+		}
+		quickSelect.selectUnchecked(values, highMiddleIdx, beginIndex, endIndex, selectBounds);
+		if((n & 1) == 1) {
+			return values[highMiddleIdx];
+		}
+
+		// The low middle value comes last, in the sorting order, among the values before the high middle one; none of them before a correctly sorted bound can be it
+		final int scanBeginIndex = selectBounds[0] < beginIndex ? beginIndex : selectBounds[0];
+		float lowMiddleValue = values[scanBeginIndex];
+		if(quickSelect.isDescending()) {
+			for(int i=scanBeginIndex+1; i<highMiddleIdx; i++) {
+				lowMiddleValue = Math.min(lowMiddleValue, values[i]);
+			}
+		} else {
+			for(int i=scanBeginIndex+1; i<highMiddleIdx; i++) {
+				lowMiddleValue = Math.max(lowMiddleValue, values[i]);
+			}
+		}
+		return average(lowMiddleValue, values[highMiddleIdx]);
+	}
+
+
+	/**
+	 * Gets the number of segments that one task handles when a batch is spread across a pool.
+	 * @param numSegments number of segments in the batch
+	 * @param numElements number of elements in all segments of the batch
+	 * @return number of segments per task, at least one
+	 */
+	private static int segmentsPerTask(int numSegments, long numElements) {
+		return (int)Math.max(1L, Math.min(numSegments, (long)BATCH_TASK_SIZE * numSegments / Math.max(1L, numElements)));
+	}
+
+
+	/**
+	 * Runs a batch task in the given pool, or in the calling thread if there is no pool with more than one thread.
+	 * @param task task covering the whole batch
+	 * @param pool pool, or null
+	 */
+	private static void runBatch(BatchTask task, ForkJoinPool pool) {
+		if(pool == null || pool.getParallelism() <= 1) {
+			task.medianSegments();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+
+	/**
+	 * Finds the medians of a range of the segments of a batch, splitting the range in halves until each task has few enough segments.
+	 * Each task writes only its own range of the medians array, so tasks need no synchronization.
+	 */
+	private class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Arrays of the batch, or null if the batch is a flat array with offsets */
+		final float [][] arrays;
+		final float [] values;
+		final int [] offsets;
+		final double [] medians;
+		final int beginSegment;
+		final int endSegment;
+		final int segmentsPerTask;
+
+		BatchTask(float [][] arrays, float [] values, int [] offsets, double [] medians, int beginSegment, int endSegment, int segmentsPerTask) {
+			this.arrays = arrays;
+			this.values = values;
+			this.offsets = offsets;
+			this.medians = medians;
+			this.beginSegment = beginSegment;
+			this.endSegment = endSegment;
+			this.segmentsPerTask = segmentsPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if(endSegment - beginSegment <= segmentsPerTask) {
+				medianSegments();
+			} else {
+				final int middleSegment = (beginSegment + endSegment) >>> 1;
+				invokeAll(new BatchTask(arrays, values, offsets, medians, beginSegment, middleSegment, segmentsPerTask),
+						new BatchTask(arrays, values, offsets, medians, middleSegment, endSegment, segmentsPerTask));
+			}
+		}
+
+		/** Finds the medians of this task's segments in the calling thread */
+		void medianSegments() {
+			final int [] selectBounds = new int[2];
+			if(arrays != null) {
+				for(int i=beginSegment; i<endSegment; i++) {
+					medians[i] = medianSubset(arrays[i], 0, arrays[i].length, selectBounds);
+				}
+			} else {
+				for(int i=beginSegment; i<endSegment; i++) {
+					medians[i] = medianSubset(values, offsets[i], offsets[i + 1], selectBounds);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Finds the median of an array that may contain {@link Float#NaN} values, without a separate pass to check for or filter them out.
+	 * The first partition pass of the selection also moves the NaN values out of the way, see {@link QuickSelectFloatArray#partitionNaN(float[], int, int, NaNPolicy)}.
+	 * This method may reorder the elements in the given array.
+	 *
+	 * <ul>
+	 *   <li>Under the {@link NaNPolicy#REJECT} policy, an array with a NaN value throws an {@link IllegalArgumentException}.</li>
+	 *   <li>Under the {@link NaNPolicy#IGNORE} policy, the result is the median of the values that aren't NaN, or NaN if there are none.</li>
+	 *   <li>Under the {@link NaNPolicy#LARGEST} policy, NaN is larger than every other value, so the result is NaN if a middle value is NaN.</li>
+	 * </ul>
+	 *
+	 * @param values array over which to calculate the median
+	 * @param nanPolicy how NaN values are handled
+	 * @return the median value in the list
+	 */
+	public double median(float [] values, NaNPolicy nanPolicy) {
+		if(values == null || values.length == 0 || nanPolicy == null) {
+			throw new IllegalArgumentException();
+		}
+
+		int [] pivotAndNaNRun = quickSelect.partitionNaN(values, 0, values.length, nanPolicy);
+		final int pivotIdx = pivotAndNaNRun[0];
+		final int nanBeginIndex = pivotAndNaNRun[1];
+		final int nanEndIndex = pivotAndNaNRun[2];
+		final int numbersBeginIndex = nanBeginIndex == 0 ? nanEndIndex : 0;
+		final int numbersEndIndex = nanBeginIndex == 0 ? values.length : nanBeginIndex;
+
+		int medianBeginIndex = 0;
+		int medianEndIndex = values.length;
+		if(nanPolicy == NaNPolicy.IGNORE) {
+			medianBeginIndex = numbersBeginIndex;
+			medianEndIndex = numbersEndIndex;
+			if(medianBeginIndex == medianEndIndex) {
+				return Double.NaN;
+			}
+		}
+
+		int highMiddleIdx = (medianBeginIndex + medianEndIndex) >>> 1;
+		int lowMiddleIdx = ((medianEndIndex - medianBeginIndex) & 1) == 1 ? highMiddleIdx : highMiddleIdx - 1;
+		if(lowMiddleIdx < numbersBeginIndex || highMiddleIdx >= numbersEndIndex) {
+			return Double.NaN;  // A middle value lies in the run of NaN values
+		}
+
+		// The first partition pass split the values around the pivot, so only one side is left to select from
+		if(highMiddleIdx < pivotIdx) {
+			quickSelect.select(values, highMiddleIdx, numbersBeginIndex, pivotIdx);
+		} else if(highMiddleIdx > pivotIdx) {
+			quickSelect.select(values, highMiddleIdx, pivotIdx + 1, numbersEndIndex);
+		}
+		double highMedianValue = values[highMiddleIdx];
+		if(lowMiddleIdx == highMiddleIdx) {
+			return highMedianValue;
+		}
+
+		// The other middle value is the last one before highMiddleIdx on its side of the pivot, which may be the pivot itself
+		quickSelect.select(values, lowMiddleIdx, highMiddleIdx > pivotIdx ? pivotIdx : numbersBeginIndex, highMiddleIdx);
+		return average(values[lowMiddleIdx], highMedianValue);
+	}
+}
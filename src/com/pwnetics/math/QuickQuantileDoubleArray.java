@@ -0,0 +1,362 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Arrays;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+
+/**
+ * Uses {@link QuickSelectDoubleArray} to find any number of quantiles in expected O(n log k) time, where k is the number of quantiles.
+ *
+ * <p>Quantiles follow the nine sample quantile definitions of Hyndman and Fan, "Sample Quantiles in Statistical Packages", The American Statistician 50(4), 1996, which are also the nine types offered by R's <code>quantile</code> function.
+ * Every definition is a weighted average of two adjacent order statistics <code>x[j]</code> and <code>x[j+1]</code>.
+ * All of the needed lower order statistics are found with a single multi-index {@link QuickSelectDoubleArray#select(double[], int[])} call.
+ * As in {@link QuickMedianDoubleArray#median(double[])}, an upper order statistic is then found cheaply because the selected indexes bound it: it is the smallest value between its lower order statistic and the next selected index.</p>
+ *
+ * @author romanows
+ */
+public class QuickQuantileDoubleArray {
+
+	/**
+	 * Sample quantile definitions, numbered as in Hyndman and Fan.
+	 * With <code>n</code> values and probability <code>p</code>, each definition picks <code>j = floor(np + m)</code> and <code>g = np + m - j</code> for some offset <code>m</code>, and returns <code>(1 - gamma) * x[j] + gamma * x[j+1]</code> using 1-based order statistics.
+	 *
+	 * <ul>
+	 *   <li><code>TYPE_1</code>: inverse of the empirical distribution function; <code>m = 0</code>, <code>gamma = 0</code> if <code>g == 0</code>, otherwise 1</li>
+	 *   <li><code>TYPE_2</code>: like <code>TYPE_1</code> but averages at discontinuities; <code>gamma = 0.5</code> if <code>g == 0</code>, otherwise 1</li>
+	 *   <li><code>TYPE_3</code>: nearest even order statistic, as in SAS; <code>m = -0.5</code>, <code>gamma = 0</code> if <code>g == 0</code> and <code>j</code> is even, otherwise 1</li>
+	 *   <li><code>TYPE_4</code>: linear interpolation of the empirical distribution function; <code>m = 0</code>, <code>gamma = g</code></li>
+	 *   <li><code>TYPE_5</code>: piecewise linear with knots at the midpoints; <code>m = 0.5</code>, <code>gamma = g</code></li>
+	 *   <li><code>TYPE_6</code>: <code>p[k] = k / (n + 1)</code>, as in Minitab and SPSS; <code>m = p</code>, <code>gamma = g</code></li>
+	 *   <li><code>TYPE_7</code>: <code>p[k] = (k - 1) / (n - 1)</code>, as in R, S and numpy by default; <code>m = 1 - p</code>, <code>gamma = g</code></li>
+	 *   <li><code>TYPE_8</code>: approximately median-unbiased; <code>m = (p + 1) / 3</code>, <code>gamma = g</code></li>
+	 *   <li><code>TYPE_9</code>: approximately unbiased for normally distributed values; <code>m = p / 4 + 3 / 8</code>, <code>gamma = g</code></li>
+	 * </ul>
+	 *
+	 * <p>Order statistics before the first are taken to be the first and order statistics after the last are taken to be the last.
+	 * With <code>TYPE_7</code>, the 0.5 quantile is the same as {@link QuickMedianDoubleArray#median(double[])}.</p>
+	 */
+	public static enum QuantileType {TYPE_1, TYPE_2, TYPE_3, TYPE_4, TYPE_5, TYPE_6, TYPE_7, TYPE_8, TYPE_9};
+
+	/** Default {@link QuantileType}, the same as the R and numpy default */
+	public static final QuantileType DEFAULT_QUANTILE_TYPE = QuantileType.TYPE_7;
+
+	/** Tolerance used when deciding whether <code>np + m</code> is a whole number, the same as used by R */
+	static final double FUZZ = 4 * Math.ulp(1.0);
+
+	private final QuickSelectDoubleArray quickSelect;
+
+	private final QuantileType quantileType;
+
+
+	/** Constructor */
+	public QuickQuantileDoubleArray() {
+		this(DEFAULT_QUANTILE_TYPE);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quantileType sample quantile definition
+	 */
+	public QuickQuantileDoubleArray(QuantileType quantileType) {
+		this(new QuickSelectDoubleArray(), quantileType);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param quickSelect {@link QuickSelectDoubleArray} object to use for selecting the order statistics for the quantile calculation
+	 * @param quantileType sample quantile definition
+	 */
+	public QuickQuantileDoubleArray(QuickSelectDoubleArray quickSelect, QuantileType quantileType) {
+		if(quickSelect == null || quantileType == null) {
+			throw new IllegalArgumentException();
+		}
+		this.quickSelect = quickSelect;
+		this.quantileType = quantileType;
+	}
+
+
+	/**
+	 * Finds the weighted average <code>(1 - weight) * lower + weight * upper</code> of two values without overflowing.
+	 * An assert checks that the given values are not NaN; if disabled, undefined behavior will occur.
+	 *
+	 * @param lower the smaller of two values
+	 * @param upper the larger of two values
+	 * @param weight weight of the larger value, between 0 and 1
+	 * @return weighted average of the two given values
+	 */
+	protected double interpolate(double lower, double upper, double weight) {
+		assert(!Double.isNaN(lower) && !Double.isNaN(upper) && lower <= upper);
+		if(weight == 0.0 || lower == upper) {
+			// Also avoids 0 * Infinity
+			return lower;
+		}
+		if(lower <= 0 && upper >= 0) {
+			// If the values are opposite signs, neither product can overflow and neither can their sum
+			return (1.0 - weight) * lower + weight * upper;
+		}
+		// Otherwise, the difference is smaller than either of the two numbers, and thus doesn't overflow
+		return lower + weight * (upper - lower);
+	}
+
+
+	/**
+	 * Finds the quantile for a single probability.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements in the given array.
+	 *
+	 * @param values array over which to calculate the quantile, must not contain {@link Double#NaN} elements.
+	 * @param probability probability between 0 and 1, inclusive
+	 * @return the quantile of the values in the array
+	 */
+	public double quantile(double [] values, double probability) {
+		return quantiles(values, new double[] {probability})[0];
+	}
+
+
+	/**
+	 * Finds the quantiles for several probabilities at once.
+	 * Each order statistic is selected once, no matter how many quantiles need it.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements in the given array.
+	 *
+	 * @param values array over which to calculate the quantiles, must not contain {@link Double#NaN} elements.
+	 * @param probabilities probabilities between 0 and 1, inclusive, in any order
+	 * @return the quantiles of the values in the array, in the same order as the given probabilities
+	 */
+	public double [] quantiles(double [] values, double [] probabilities) {
+		if(values == null) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		return quantiles(values, 0, values.length, probabilities);
+	}
+
+
+	/**
+	 * Finds the quantiles of a subset of the given array for several probabilities at once, like {@link #quantiles(double[], double[])}.
+	 * Only the elements in the array subset are reordered.
+	 *
+	 * @param values array over which to calculate the quantiles, must not contain {@link Double#NaN} elements in the array subset.
+	 * @param beginIndex starting index, inclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param endIndex ending index, exclusive, of array elements upon which this will operate (i.e., values[startIdx:endIdx])
+	 * @param probabilities probabilities between 0 and 1, inclusive, in any order
+	 * @return the quantiles of the values in the array subset, in the same order as the given probabilities
+	 */
+	public double [] quantiles(double [] values, int beginIndex, int endIndex, double [] probabilities) {
+		if(values == null || probabilities == null || beginIndex < 0 || endIndex > values.length || beginIndex >= endIndex) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		for(double probability : probabilities) {
+			if(!(probability >= 0.0 && probability <= 1.0)) {
+				throw new IllegalArgumentException("probability must be between 0 and 1: " + probability);
+			}
+		}
+
+		// Translate each probability into the array index of its lower order statistic and the weight of the following order statistic
+		final int n = endIndex - beginIndex;
+		int [] selectIdxs = new int[probabilities.length];
+		double [] upperWeights = new double[probabilities.length];
+		for(int i=0; i<probabilities.length; i++) {
+			orderStatistics(n, probabilities[i], selectIdxs, upperWeights, i);
+			selectIdxs[i] = beginIndex + (quickSelect.isDescending() ? n - 1 - selectIdxs[i] : selectIdxs[i]);
+		}
+
+		double [] quantiles = new double[probabilities.length];
+		if(probabilities.length == 0) {
+			return quantiles;
+		}
+		quickSelect.select(values, selectIdxs, beginIndex, endIndex);
+
+		int [] sortedSelectIdxs = selectIdxs.clone();
+		Arrays.sort(sortedSelectIdxs);
+		for(int i=0; i<probabilities.length; i++) {
+			double lower = values[selectIdxs[i]];
+			if(upperWeights[i] == 0.0) {
+				quantiles[i] = lower;
+			} else {
+				quantiles[i] = interpolate(lower, nextOrderStatistic(values, beginIndex, endIndex, selectIdxs[i], sortedSelectIdxs), upperWeights[i]);
+			}
+		}
+		return quantiles;
+	}
+
+
+	/**
+	 * Finds the quantile for a single probability like {@link #quantile(double[], double)}, but without changing the given array.
+	 * The values that may be the needed order statistics are copied into the calling thread's scratch array, see {@link QuickSelectDoubleArray#threadLocalScratch(int)}.
+	 *
+	 * @param values array over which to calculate the quantile, must not contain {@link Double#NaN} elements; it is not changed
+	 * @param probability probability between 0 and 1, inclusive
+	 * @return the quantile of the values in the array
+	 */
+	public double quantileNonDestructive(double [] values, double probability) {
+		if(values == null) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		return quantileNonDestructive(values, probability, QuickSelectDoubleArray.threadLocalScratch(values.length));
+	}
+
+
+	/**
+	 * Finds the quantile for a single probability like {@link #quantile(double[], double)}, but without changing the given array.
+	 * Only the values that may be the needed order statistics are copied into the scratch array, in the same pass that partitions them, see {@link QuickSelectDoubleArray#selectNonDestructive(double[], int, boolean, double[])}.
+	 *
+	 * @param values array over which to calculate the quantile, must not contain {@link Double#NaN} elements; it is not changed
+	 * @param probability probability between 0 and 1, inclusive
+	 * @param scratch array with at least as many elements as the given array, whose contents are overwritten
+	 * @return the quantile of the values in the array
+	 */
+	public double quantileNonDestructive(double [] values, double probability, double [] scratch) {
+		if(values == null || values.length == 0 || scratch == null || scratch.length < values.length) {
+			throw new IllegalArgumentException(new NullPointerException());
+		}
+		if(!(probability >= 0.0 && probability <= 1.0)) {
+			throw new IllegalArgumentException("probability must be between 0 and 1: " + probability);
+		}
+
+		final int n = values.length;
+		int [] lowerRanks = new int[1];
+		double [] upperWeights = new double[1];
+		orderStatistics(n, probability, lowerRanks, upperWeights, 0);
+		final int rank = lowerRanks[0];
+		if(upperWeights[0] == 0.0) {
+			return scratch[quickSelect.selectNonDestructive(values, quickSelect.isDescending() ? n - 1 - rank : rank, false, scratch)];
+		}
+
+		// The next order statistic in a descending order is the previous one in ascending order, so the pair is selected from the other end
+		if(quickSelect.isDescending()) {
+			final int scratchIdx = quickSelect.selectNonDestructive(values, n - 2 - rank, true, scratch);
+			return interpolate(scratch[scratchIdx + 1], scratch[scratchIdx], upperWeights[0]);
+		}
+		final int scratchIdx = quickSelect.selectNonDestructive(values, rank, true, scratch);
+		return interpolate(scratch[scratchIdx], scratch[scratchIdx + 1], upperWeights[0]);
+	}
+
+
+	/**
+	 * Finds the order statistics needed for a quantile.
+	 *
+	 * @param n number of values
+	 * @param probability probability between 0 and 1, inclusive
+	 * @param lowerRanks receives, at index i, the 0-based ascending rank <code>r</code> of the lower order statistic
+	 * @param upperWeights receives, at index i, the weight, in <code>[0, 1)</code>, of the order statistic with rank <code>r + 1</code>
+	 * @param i index into lowerRanks and upperWeights
+	 */
+	protected void orderStatistics(int n, double probability, int [] lowerRanks, double [] upperWeights, int i) {
+		double m;
+		switch(quantileType) {
+		case TYPE_3: m = -0.5; break;
+		case TYPE_5: m = 0.5; break;
+		case TYPE_6: m = probability; break;
+		case TYPE_7: m = 1.0 - probability; break;
+		case TYPE_8: m = (probability + 1.0) / 3.0; break;
+		case TYPE_9: m = probability / 4.0 + 3.0 / 8.0; break;
+		default: m = 0.0; break;
+		}
+
+		// 1-based order statistic index j and fractional part g
+		final double npm = n * probability + m;
+		long j = (long)Math.floor(npm + FUZZ);
+		double g = npm - j;
+		if(Math.abs(g) < FUZZ) {
+			g = 0.0;
+		}
+
+		double gamma;
+		switch(quantileType) {
+		case TYPE_1: gamma = g > 0.0 ? 1.0 : 0.0; break;
+		case TYPE_2: gamma = g > 0.0 ? 1.0 : 0.5; break;
+		case TYPE_3: gamma = g == 0.0 && (j & 1) == 0 ? 0.0 : 1.0; break;
+		default: gamma = g; break;
+		}
+
+		// x[0] is taken to be x[1] and x[n+1] is taken to be x[n]
+		if(j < 1) {
+			lowerRanks[i] = 0;
+			upperWeights[i] = 0.0;
+		} else if(j >= n) {
+			lowerRanks[i] = n - 1;
+			upperWeights[i] = 0.0;
+		} else if(gamma >= 1.0) {
+			lowerRanks[i] = (int)j;
+			upperWeights[i] = 0.0;
+		} else {
+			lowerRanks[i] = (int)(j - 1);
+			upperWeights[i] = gamma;
+		}
+	}
+
+
+	/**
+	 * Finds the value of the order statistic that follows the one at the given selected index.
+	 * The elements between a selected index and the next selected index, in the direction of larger values, all lie between the two selected values.
+	 * So the following order statistic is the smallest of those elements, or the next selected value if there are none.
+	 *
+	 * @param values array whose subset has been reordered by {@link QuickSelectDoubleArray#select(double[], int[], int, int)}
+	 * @param beginIndex starting index, inclusive, of the array subset
+	 * @param endIndex ending index, exclusive, of the array subset
+	 * @param selectIdx selected index of an order statistic that is not the largest value
+	 * @param sortedSelectIdxs all of the selected indexes, sorted
+	 * @return value of the order statistic following the one at selectIdx
+	 */
+	private double nextOrderStatistic(double [] values, int beginIndex, int endIndex, int selectIdx, int [] sortedSelectIdxs) {
+		final int step = quickSelect.isDescending() ? -1 : 1;
+
+		// Find the nearest selected index past selectIdx in the direction of larger values, or the end of the array subset
+		int boundIdx;
+		int pos = Arrays.binarySearch(sortedSelectIdxs, selectIdx);
+		if(step > 0) {
+			while(pos < sortedSelectIdxs.length && sortedSelectIdxs[pos] <= selectIdx) {
+				pos++;
+			}
+			boundIdx = pos < sortedSelectIdxs.length ? sortedSelectIdxs[pos] : endIndex;
+		} else {
+			while(pos >= 0 && sortedSelectIdxs[pos] >= selectIdx) {
+				pos--;
+			}
+			boundIdx = pos >= 0 ? sortedSelectIdxs[pos] : beginIndex - 1;
+		}
+
+		final int nextIdx = selectIdx + step;
+		double next = values[nextIdx];
+		if(nextIdx != boundIdx) {
+			for(int i=nextIdx + step; i != boundIdx; i += step) {
+				if(values[i] < next) {
+					next = values[i];
+				}
+			}
+		}
+		return next;
+	}
+}
@@ -0,0 +1,352 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Finds the weighted median and weighted quantiles of values that each carry a weight or count, in expected O(n) time and without expanding the weights into repeated values.
+ *
+ * <p>
+ * The selection partitions the values three ways around a random pivot, moving each weight along with its value, and sums the weights of the values below and equal to the pivot.
+ * Comparing those sums with the target <code>p * W</code>, where <code>W</code> is the total weight, tells which part holds the quantile, so the selection continues in that part only, as QuickSelect does.
+ * </p>
+ *
+ * <p>
+ * The weighted quantile is the smallest value whose cumulative weight, i.e., the total weight of the values less than or equal to it, is at least <code>p * W</code>.
+ * If the cumulative weight equals <code>p * W</code>, the result is the average of that value and the next larger value with positive weight.
+ * Like {@link QuickQuantileDoubleArray}, a <code>p * W</code> within a small rounding tolerance of a whole number, the same one R uses, counts as that whole number, so that e.g. <code>p = 15 / 22.0</code> of a total weight of 22 counts as exactly 15.
+ * With every weight equal to 1, this is the same as {@link QuickQuantileDoubleArray.QuantileType#TYPE_2}, and the weighted median is the same as {@link QuickMedianDoubleArray#median(double[])}.
+ * Values with zero weight are never the result.
+ * </p>
+ *
+ * @author romanows
+ */
+public class QuickWeightedQuantileDoubleArray {
+
+	/** Random number generator for picking pivots; if null, {@link ThreadLocalRandom} is used */
+	private final Random random;
+
+
+	/** Constructor */
+	public QuickWeightedQuantileDoubleArray() {
+		this(null);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param random random number generator for picking pivots, e.g. a seeded one for reproducible runs; if null, each thread uses its own {@link ThreadLocalRandom}
+	 */
+	public QuickWeightedQuantileDoubleArray(Random random) {
+		this.random = random;
+	}
+
+
+	/**
+	 * Finds the weighted median.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements of both arrays, but each weight stays with its value.
+	 *
+	 * @param values array over which to calculate the median, must not contain {@link Double#NaN} elements
+	 * @param weights weight of each value; finite, non-negative, and not all zero
+	 * @return weighted median
+	 */
+	public double median(double [] values, double [] weights) {
+		return quantile(values, weights, 0.5);
+	}
+
+
+	/**
+	 * Finds the weighted median.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements of both arrays, but each count stays with its value.
+	 *
+	 * @param values array over which to calculate the median, must not contain {@link Double#NaN} elements
+	 * @param counts number of occurrences of each value; non-negative and not all zero
+	 * @return weighted median
+	 */
+	public double median(double [] values, long [] counts) {
+		return quantile(values, counts, 0.5);
+	}
+
+
+	/**
+	 * Finds a weighted quantile.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements of both arrays, but each weight stays with its value.
+	 *
+	 * @param values array over which to calculate the quantile, must not contain {@link Double#NaN} elements
+	 * @param weights weight of each value; finite, non-negative, and not all zero
+	 * @param probability probability between 0 and 1, inclusive
+	 * @return weighted quantile
+	 */
+	public double quantile(double [] values, double [] weights, double probability) {
+		if(values == null || weights == null || values.length != weights.length || !(probability >= 0.0 && probability <= 1.0)) {
+			throw new IllegalArgumentException();
+		}
+		double totalWeight = 0;
+		double maxValue = Double.NEGATIVE_INFINITY;
+		for(int i=0; i<weights.length; i++) {
+			if(!(weights[i] >= 0.0) || Double.isInfinite(weights[i])) {
+				throw new IllegalArgumentException();
+			}
+			if(weights[i] > 0.0) {
+				totalWeight += weights[i];
+				maxValue = Math.max(maxValue, values[i]);
+			}
+		}
+		if(!(totalWeight > 0.0) || Double.isInfinite(totalWeight)) {
+			throw new IllegalArgumentException();
+		}
+
+		final double target = wholeTarget(probability * totalWeight);
+		int begin = 0;
+		int end = values.length;
+		double weightBefore = 0;
+		while(begin < end) {
+			final double pivot = values[begin + nextRandomInt(end - begin)];
+
+			// Three-way partition into [begin, lt) < pivot, [lt, gt) == pivot, and [gt, end) > pivot, summing the weights of the first two parts
+			int lt = begin;
+			int i = begin;
+			int gt = end;
+			double lessWeight = 0;
+			double equalWeight = 0;
+			while(i < gt) {
+				final double value = values[i];
+				if(value < pivot) {
+					lessWeight += weights[i];
+					swap(values, weights, lt++, i++);
+				} else if(value > pivot) {
+					swap(values, weights, i, --gt);
+				} else {
+					equalWeight += weights[i];
+					i++;
+				}
+			}
+
+			if(lessWeight > 0.0 && weightBefore + lessWeight >= target) {
+				end = lt;
+			} else if(equalWeight > 0.0 && weightBefore + lessWeight + equalWeight >= target) {
+				if(weightBefore + lessWeight + equalWeight == target) {
+					// Values past the subset were all moved there by earlier partitions, so every value from gt to the end of the array is larger
+					return averageWithNext(values, weights, pivot, gt, values.length);
+				}
+				return pivot;
+			} else {
+				weightBefore += lessWeight + equalWeight;
+				begin = gt;
+			}
+		}
+
+		// Reached only if rounding left the partial sums just short of the target, which can only be the total weight
+		return maxValue;
+	}
+
+
+	/**
+	 * Finds a weighted quantile.
+	 * Behavior is undefined for arrays that contain {@link Double#NaN} values.
+	 * This method may reorder the elements of both arrays, but each count stays with its value.
+	 *
+	 * @param values array over which to calculate the quantile, must not contain {@link Double#NaN} elements
+	 * @param counts number of occurrences of each value; non-negative and not all zero
+	 * @param probability probability between 0 and 1, inclusive
+	 * @return weighted quantile
+	 */
+	public double quantile(double [] values, long [] counts, double probability) {
+		if(values == null || counts == null || values.length != counts.length || !(probability >= 0.0 && probability <= 1.0)) {
+			throw new IllegalArgumentException();
+		}
+		long totalCount = 0;
+		for(int i=0; i<counts.length; i++) {
+			if(counts[i] < 0) {
+				throw new IllegalArgumentException();
+			}
+			totalCount += counts[i];
+			if(totalCount < 0) {
+				// Overflowed
+				throw new IllegalArgumentException();
+			}
+		}
+		if(totalCount == 0) {
+			throw new IllegalArgumentException();
+		}
+
+		final double target = wholeTarget(probability * totalCount);
+		int begin = 0;
+		int end = values.length;
+		long countBefore = 0;
+		while(true) {
+			final double pivot = values[begin + nextRandomInt(end - begin)];
+
+			// Three-way partition into [begin, lt) < pivot, [lt, gt) == pivot, and [gt, end) > pivot, summing the counts of the first two parts
+			int lt = begin;
+			int i = begin;
+			int gt = end;
+			long lessCount = 0;
+			long equalCount = 0;
+			while(i < gt) {
+				final double value = values[i];
+				if(value < pivot) {
+					lessCount += counts[i];
+					swap(values, counts, lt++, i++);
+				} else if(value > pivot) {
+					swap(values, counts, i, --gt);
+				} else {
+					equalCount += counts[i];
+					i++;
+				}
+			}
+
+			// Counts are summed exactly, so the target, which is at most the total count, is always found
+			if(lessCount > 0 && countBefore + lessCount >= target) {
+				end = lt;
+			} else if(equalCount > 0 && countBefore + lessCount + equalCount >= target) {
+				if(countBefore + lessCount + equalCount == target) {
+					return averageWithNext(values, counts, pivot, gt, values.length);
+				}
+				return pivot;
+			} else {
+				countBefore += lessCount + equalCount;
+				begin = gt;
+			}
+		}
+	}
+
+
+	/**
+	 * Rounds the target cumulative weight <code>p * W</code> to a whole number when it is within the rounding tolerance that {@link QuickQuantileDoubleArray} allows for <code>np</code>.
+	 * This makes unit weights give the same results as {@link QuickQuantileDoubleArray.QuantileType#TYPE_2}.
+	 * @param target target cumulative weight
+	 * @return the nearby whole number, or the given target if there is none
+	 */
+	private static double wholeTarget(double target) {
+		final double whole = Math.floor(target + QuickQuantileDoubleArray.FUZZ);
+		return target - whole < QuickQuantileDoubleArray.FUZZ ? whole : target;
+	}
+
+
+	/**
+	 * Averages a value with the smallest value of positive weight in a subset of the array, all of whose values are larger.
+	 * @param values array of values
+	 * @param weights weight of each value
+	 * @param value value to average
+	 * @param beginIndex starting index, inclusive, of the subset
+	 * @param endIndex ending index, exclusive, of the subset
+	 * @return the average, or the given value if no value in the subset has positive weight
+	 */
+	private static double averageWithNext(double [] values, double [] weights, double value, int beginIndex, int endIndex) {
+		double next = Double.POSITIVE_INFINITY;
+		boolean isFound = false;
+		for(int i=beginIndex; i<endIndex; i++) {
+			if(weights[i] > 0.0 && values[i] <= next) {
+				next = values[i];
+				isFound = true;
+			}
+		}
+		return isFound ? average(value, next) : value;
+	}
+
+
+	/**
+	 * Averages a value with the smallest value of positive count in a subset of the array, all of whose values are larger.
+	 * @param values array of values
+	 * @param counts count of each value
+	 * @param value value to average
+	 * @param beginIndex starting index, inclusive, of the subset
+	 * @param endIndex ending index, exclusive, of the subset
+	 * @return the average, or the given value if no value in the subset has positive count
+	 */
+	private static double averageWithNext(double [] values, long [] counts, double value, int beginIndex, int endIndex) {
+		double next = Double.POSITIVE_INFINITY;
+		boolean isFound = false;
+		for(int i=beginIndex; i<endIndex; i++) {
+			if(counts[i] > 0 && values[i] <= next) {
+				next = values[i];
+				isFound = true;
+			}
+		}
+		return isFound ? average(value, next) : value;
+	}
+
+
+	/**
+	 * Finds the average of two values without overflowing, as {@link QuickMedianDoubleArray} does.
+	 * @param lower the smaller of two values
+	 * @param upper the larger of two values
+	 * @return average of the two given values
+	 */
+	private static double average(double lower, double upper) {
+		if(Double.isInfinite(lower) || Double.isInfinite(upper) || (lower <= 0 && upper >= 0)) {
+			return (lower + upper) / 2.0;
+		}
+		return ((upper - lower) / 2.0) + lower;
+	}
+
+
+	/**
+	 * Draws a random index for picking a pivot.
+	 * @param bound upper bound, exclusive, of the random index
+	 * @return random index in [0, bound)
+	 */
+	private int nextRandomInt(int bound) {
+		return random == null ? ThreadLocalRandom.current().nextInt(bound) : random.nextInt(bound);
+	}
+
+
+	/**
+	 * Swaps two values along with their weights.
+	 */
+	private static void swap(double [] values, double [] weights, int i, int j) {
+		final double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		final double weight = weights[i];
+		weights[i] = weights[j];
+		weights[j] = weight;
+	}
+
+
+	/**
+	 * Swaps two values along with their counts.
+	 */
+	private static void swap(double [] values, long [] counts, int i, int j) {
+		final double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		final long count = counts[i];
+		counts[i] = counts[j];
+		counts[j] = count;
+	}
+}
@@ -0,0 +1,473 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import java.util.Arrays;
+
+/**
+ * Finds the quantile of a sliding window over a series of values, in O(log w) time per step for a window of w values, instead of the O(w) time of running {@link QuickQuantileDoubleArray} or {@link QuickMedianDoubleArray} on a copy of every window.
+ *
+ * <p>
+ * The window is split between two indexed heaps over primitive arrays: a max-heap of the values at or below the quantile and a min-heap of the values above it.
+ * Every value remembers its position in its heap, so the oldest value can be evicted from the middle of a heap in O(log w) time, after which one value moves between the heaps to restore the split.
+ * Quantiles follow {@link QuickQuantileDoubleArray.QuantileType#TYPE_7}, so a probability of 0.5 gives the same median as {@link QuickMedianDoubleArray#median(double[])}: the average of the two middle values of an even-sized window.
+ * </p>
+ *
+ * <p>
+ * Windows can hold a fixed number of values, see {@link #quantiles(double[], int)}, or the values within a span of time, see {@link #quantiles(double[], long[], long)}.
+ * For streams, values can also be added and evicted one at a time with {@link #add(double)} and {@link #removeOldest()}.
+ * Objects of this class hold the current window, so they are not safe to share between threads.
+ * </p>
+ *
+ * @author romanows
+ */
+public class RollingQuantileDoubleArray {
+
+	/** Default probability, which gives the rolling median */
+	public static final double DEFAULT_PROBABILITY = 0.5;
+
+	/** Capacity of a new window that will grow as needed */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Probability of the quantile */
+	private final double probability;
+
+	/** Values of the window, in a ring buffer ordered from oldest to newest */
+	private double [] slotValues;
+
+	/** Position of the value in each slot of the ring buffer: <code>i</code> for index i of the lower heap, <code>-1 - i</code> for index i of the upper heap */
+	private int [] slotHeapIndexes;
+
+	/** Slot of the oldest value in the ring buffer */
+	private int head;
+
+	/** Number of values in the window */
+	private int size;
+
+	/** Max-heap of the slots of the values at or below the quantile */
+	private int [] lowerHeap;
+
+	/** Number of slots in the lower heap */
+	private int lowerSize;
+
+	/** Min-heap of the slots of the values above the quantile */
+	private int [] upperHeap;
+
+	/** Number of slots in the upper heap */
+	private int upperSize;
+
+
+	/** Constructor for a rolling median */
+	public RollingQuantileDoubleArray() {
+		this(DEFAULT_PROBABILITY);
+	}
+
+
+	/**
+	 * Constructor.
+	 * @param probability probability of the quantile, between 0 and 1, inclusive
+	 */
+	public RollingQuantileDoubleArray(double probability) {
+		if(!(probability >= 0.0 && probability <= 1.0)) {
+			throw new IllegalArgumentException();
+		}
+		this.probability = probability;
+		allocate(INITIAL_CAPACITY);
+	}
+
+
+	/**
+	 * Replaces the window with an empty one of the given capacity.
+	 * @param capacity number of values that the window can hold before it grows
+	 */
+	private void allocate(int capacity) {
+		slotValues = new double[capacity];
+		slotHeapIndexes = new int[capacity];
+		lowerHeap = new int[capacity];
+		upperHeap = new int[capacity];
+		head = 0;
+		size = 0;
+		lowerSize = 0;
+		upperSize = 0;
+	}
+
+
+	/**
+	 * Doubles the capacity of the window, moving the oldest value to slot 0.
+	 */
+	private void grow() {
+		final int capacity = slotValues.length;
+		final int newCapacity = 2 * capacity;
+
+		// The ring buffer is unrolled, so every slot moves back by head
+		double [] newSlotValues = new double[newCapacity];
+		int [] newSlotHeapIndexes = new int[newCapacity];
+		for(int i=0; i<size; i++) {
+			final int slot = (head + i) % capacity;
+			newSlotValues[i] = slotValues[slot];
+			newSlotHeapIndexes[i] = slotHeapIndexes[slot];
+		}
+		for(int i=0; i<lowerSize; i++) {
+			lowerHeap[i] = (lowerHeap[i] - head + capacity) % capacity;
+		}
+		for(int i=0; i<upperSize; i++) {
+			upperHeap[i] = (upperHeap[i] - head + capacity) % capacity;
+		}
+
+		slotValues = newSlotValues;
+		slotHeapIndexes = newSlotHeapIndexes;
+		lowerHeap = Arrays.copyOf(lowerHeap, newCapacity);
+		upperHeap = Arrays.copyOf(upperHeap, newCapacity);
+		head = 0;
+	}
+
+
+	/**
+	 * Number of values in the window.
+	 * @return number of values in the window
+	 */
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Empties the window.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+		lowerSize = 0;
+		upperSize = 0;
+	}
+
+
+	/**
+	 * Adds the newest value to the window, growing the window if needed.
+	 * @param value value to add, must not be NaN
+	 */
+	public void add(double value) {
+		if(Double.isNaN(value)) {
+			throw new IllegalArgumentException();
+		}
+		if(size == slotValues.length) {
+			grow();
+		}
+		int slot = head + size;
+		if(slot >= slotValues.length) {
+			slot -= slotValues.length;
+		}
+		slotValues[slot] = value;
+		size++;
+
+		if(lowerSize > 0 && value <= slotValues[lowerHeap[0]]) {
+			lowerHeap[lowerSize] = slot;
+			siftUpLower(lowerSize++);
+		} else {
+			upperHeap[upperSize] = slot;
+			siftUpUpper(upperSize++);
+		}
+		rebalance();
+	}
+
+
+	/**
+	 * Evicts the oldest value from the window.
+	 * @return the evicted value
+	 */
+	public double removeOldest() {
+		if(size == 0) {
+			throw new IllegalArgumentException();
+		}
+		final int slot = head;
+		final double value = slotValues[slot];
+		head = head + 1 == slotValues.length ? 0 : head + 1;
+		size--;
+
+		final int heapIndex = slotHeapIndexes[slot];
+		if(heapIndex >= 0) {
+			removeLower(heapIndex);
+		} else {
+			removeUpper(-1 - heapIndex);
+		}
+		rebalance();
+		return value;
+	}
+
+
+	/**
+	 * Finds the quantile of the values in the window.
+	 * @return the quantile, or NaN if the window is empty
+	 */
+	public double quantile() {
+		if(size == 0) {
+			return Double.NaN;
+		}
+		final double h = (size - 1) * probability;
+		final double weight = h - Math.floor(h);
+		final double lower = slotValues[lowerHeap[0]];
+		if(weight == 0.0 || upperSize == 0) {
+			return lower;
+		}
+		return interpolate(lower, slotValues[upperHeap[0]], weight);
+	}
+
+
+	/**
+	 * Finds the rolling quantile over windows of a fixed number of values.
+	 * The window ending at index <code>i</code> holds <code>values[i-windowSize+1]</code> through <code>values[i]</code>; the first <code>windowSize-1</code> windows are shorter and hold every value up to index <code>i</code>.
+	 * Any values already in the window are discarded first.
+	 *
+	 * @param values series of values, must not contain {@link Double#NaN} elements; it is not changed
+	 * @param windowSize number of values in a full window
+	 * @return quantile of the window ending at each index of the given series
+	 */
+	public double [] quantiles(double [] values, int windowSize) {
+		if(values == null || windowSize < 1) {
+			throw new IllegalArgumentException();
+		}
+		final int capacity = Math.min(windowSize, values.length);
+		if(slotValues.length < capacity) {
+			allocate(capacity);
+		} else {
+			clear();
+		}
+
+		double [] quantiles = new double[values.length];
+		for(int i=0; i<values.length; i++) {
+			if(size == windowSize) {
+				removeOldest();
+			}
+			add(values[i]);
+			quantiles[i] = quantile();
+		}
+		return quantiles;
+	}
+
+
+	/**
+	 * Finds the rolling quantile over windows of a fixed span of time.
+	 * The window ending at index <code>i</code> holds every value whose timestamp is greater than <code>timestamps[i] - windowLength</code> and at most <code>timestamps[i]</code>, so it always holds at least <code>values[i]</code>.
+	 * Any values already in the window are discarded first.
+	 *
+	 * @param values series of values, must not contain {@link Double#NaN} elements; it is not changed
+	 * @param timestamps timestamp of each value, in non-decreasing order and in any unit
+	 * @param windowLength span of time covered by a window, in the unit of the timestamps
+	 * @return quantile of the window ending at each index of the given series
+	 */
+	public double [] quantiles(double [] values, long [] timestamps, long windowLength) {
+		if(values == null || timestamps == null || values.length != timestamps.length || windowLength < 1) {
+			throw new IllegalArgumentException();
+		}
+		clear();
+
+		double [] quantiles = new double[values.length];
+		int oldest = 0;
+		for(int i=0; i<values.length; i++) {
+			if(i > 0 && timestamps[i] < timestamps[i - 1]) {
+				throw new IllegalArgumentException();
+			}
+			while(timestamps[oldest] <= timestamps[i] - windowLength) {
+				removeOldest();
+				oldest++;
+			}
+			add(values[i]);
+			quantiles[i] = quantile();
+		}
+		return quantiles;
+	}
+
+
+	/**
+	 * Moves values between the heaps until the lower heap holds the order statistics up to and including the lower one of the quantile.
+	 */
+	private void rebalance() {
+		final int lowerTarget = size == 0 ? 0 : (int)Math.floor((size - 1) * probability) + 1;
+		while(lowerSize > lowerTarget) {
+			final int slot = lowerHeap[0];
+			removeLower(0);
+			upperHeap[upperSize] = slot;
+			siftUpUpper(upperSize++);
+		}
+		while(lowerSize < lowerTarget) {
+			final int slot = upperHeap[0];
+			removeUpper(0);
+			lowerHeap[lowerSize] = slot;
+			siftUpLower(lowerSize++);
+		}
+	}
+
+
+	/**
+	 * Removes the slot at an index of the lower heap, moving the last slot of the heap into its place.
+	 * @param heapIndex index into the lower heap
+	 */
+	private void removeLower(int heapIndex) {
+		lowerSize--;
+		if(heapIndex < lowerSize) {
+			lowerHeap[heapIndex] = lowerHeap[lowerSize];
+			siftDownLower(siftUpLower(heapIndex));
+		}
+	}
+
+
+	/**
+	 * Removes the slot at an index of the upper heap, moving the last slot of the heap into its place.
+	 * @param heapIndex index into the upper heap
+	 */
+	private void removeUpper(int heapIndex) {
+		upperSize--;
+		if(heapIndex < upperSize) {
+			upperHeap[heapIndex] = upperHeap[upperSize];
+			siftDownUpper(siftUpUpper(heapIndex));
+		}
+	}
+
+
+	/**
+	 * Moves the slot at an index of the lower heap toward the root until its parent's value is no smaller, updating the heap index of every moved slot.
+	 * @param heapIndex index into the lower heap
+	 * @return new index of the slot
+	 */
+	private int siftUpLower(int heapIndex) {
+		final int slot = lowerHeap[heapIndex];
+		final double value = slotValues[slot];
+		while(heapIndex > 0) {
+			final int parent = (heapIndex - 1) >>> 1;
+			if(slotValues[lowerHeap[parent]] >= value) {
+				break;
+			}
+			lowerHeap[heapIndex] = lowerHeap[parent];
+			slotHeapIndexes[lowerHeap[heapIndex]] = heapIndex;
+			heapIndex = parent;
+		}
+		lowerHeap[heapIndex] = slot;
+		slotHeapIndexes[slot] = heapIndex;
+		return heapIndex;
+	}
+
+
+	/**
+	 * Moves the slot at an index of the lower heap away from the root until no child's value is larger, updating the heap index of every moved slot.
+	 * @param heapIndex index into the lower heap
+	 */
+	private void siftDownLower(int heapIndex) {
+		final int slot = lowerHeap[heapIndex];
+		final double value = slotValues[slot];
+		while(true) {
+			int child = 2 * heapIndex + 1;
+			if(child >= lowerSize) {
+				break;
+			}
+			if(child + 1 < lowerSize && slotValues[lowerHeap[child + 1]] > slotValues[lowerHeap[child]]) {
+				child++;
+			}
+			if(slotValues[lowerHeap[child]] <= value) {
+				break;
+			}
+			lowerHeap[heapIndex] = lowerHeap[child];
+			slotHeapIndexes[lowerHeap[heapIndex]] = heapIndex;
+			heapIndex = child;
+		}
+		lowerHeap[heapIndex] = slot;
+		slotHeapIndexes[slot] = heapIndex;
+	}
+
+
+	/**
+	 * Moves the slot at an index of the upper heap toward the root until its parent's value is no larger, updating the heap index of every moved slot.
+	 * @param heapIndex index into the upper heap
+	 * @return new index of the slot
+	 */
+	private int siftUpUpper(int heapIndex) {
+		final int slot = upperHeap[heapIndex];
+		final double value = slotValues[slot];
+		while(heapIndex > 0) {
+			final int parent = (heapIndex - 1) >>> 1;
+			if(slotValues[upperHeap[parent]] <= value) {
+				break;
+			}
+			upperHeap[heapIndex] = upperHeap[parent];
+			slotHeapIndexes[upperHeap[heapIndex]] = -1 - heapIndex;
+			heapIndex = parent;
+		}
+		upperHeap[heapIndex] = slot;
+		slotHeapIndexes[slot] = -1 - heapIndex;
+		return heapIndex;
+	}
+
+
+	/**
+	 * Moves the slot at an index of the upper heap away from the root until no child's value is smaller, updating the heap index of every moved slot.
+	 * @param heapIndex index into the upper heap
+	 */
+	private void siftDownUpper(int heapIndex) {
+		final int slot = upperHeap[heapIndex];
+		final double value = slotValues[slot];
+		while(true) {
+			int child = 2 * heapIndex + 1;
+			if(child >= upperSize) {
+				break;
+			}
+			if(child + 1 < upperSize && slotValues[upperHeap[child + 1]] < slotValues[upperHeap[child]]) {
+				child++;
+			}
+			if(slotValues[upperHeap[child]] >= value) {
+				break;
+			}
+			upperHeap[heapIndex] = upperHeap[child];
+			slotHeapIndexes[upperHeap[heapIndex]] = -1 - heapIndex;
+			heapIndex = child;
+		}
+		upperHeap[heapIndex] = slot;
+		slotHeapIndexes[slot] = -1 - heapIndex;
+	}
+
+
+	/**
+	 * Finds the weighted average <code>(1 - weight) * lower + weight * upper</code> of two values without overflowing, as in {@link QuickQuantileDoubleArray#interpolate(double, double, double)}.
+	 *
+	 * @param lower the smaller of two values
+	 * @param upper the larger of two values
+	 * @param weight weight of the larger value, between 0 and 1
+	 * @return weighted average of the two given values
+	 */
+	private static double interpolate(double lower, double upper, double weight) {
+		if(lower == upper) {
+			// Also avoids 0 * Infinity
+			return lower;
+		}
+		if(lower <= 0 && upper >= 0) {
+			return (1.0 - weight) * lower + weight * upper;
+		}
+		return lower + weight * (upper - lower);
+	}
+}
@@ -0,0 +1,32 @@
+#!/bin/sh
+#
+# Regenerates the primitive-specialized QuickSelect and QuickMedian classes from the templates in this directory.
+# Each primitive type gets its own copy of the code so that the partitioning loops stay monomorphic and never box values.
+#
+# Template tokens:
+#   __type__   primitive element type, e.g. int
+#   __Type__   class name fragment, e.g. Int
+#   __Boxed__  wrapper class, e.g. Integer
+#
+# Lines between "//#if TAG" and "//#endif" (with an optional "//#else") are kept only when TAG applies to the type.
+# The tags are FLOATING or INTEGRAL, and the primitive type name itself.
+#
+# Usage: template/generate.sh  (from any directory)
+
+cd "$(dirname "$0")/.." || exit 1
+
+generate() {
+	# $1 type, $2 Type, $3 Boxed, $4 FLOATING or INTEGRAL, $5 template file, $6 output file
+	awk -v tags=" $1 $4 " '
+		/^\/\/#if / { inBlock = 1; keep = index(tags, " " $2 " ") > 0; next }
+		/^\/\/#else$/ { keep = !keep; next }
+		/^\/\/#endif$/ { inBlock = 0; next }
+		!inBlock || keep
+	' "$5" | sed -e "s/__type__/$1/g" -e "s/__Type__/$2/g" -e "s/__Boxed__/$3/g" > "$6"
+}
+
+for spec in "double Double Double FLOATING" "float Float Float FLOATING" "int Int Integer INTEGRAL" "long Long Long INTEGRAL"; do
+	set -- $spec
+	generate "$1" "$2" "$3" "$4" template/QuickSelectArray.java.template "src/com/pwnetics/alg/QuickSelect$2Array.java"
+	generate "$1" "$2" "$3" "$4" template/QuickMedianArray.java.template "src/com/pwnetics/math/QuickMedian$2Array.java"
+done
@@ -0,0 +1,149 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pwnetics.math.ExternalQuickMedianDouble;
+import com.pwnetics.math.QuickMedianDoubleArray;
+
+public class ExternalQuickSelectDoubleTest {
+
+	/**
+	 * Writes values to a temporary file in the given byte order.
+	 */
+	private static File write(double [] values, ByteOrder order) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(8 * values.length).order(order);
+		for(double value : values) {
+			bytes.putDouble(value);
+		}
+		bytes.flip();
+
+		File file = File.createTempFile("ExternalQuickSelectDoubleTest", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.getChannel().write(bytes);
+		} finally {
+			raf.close();
+		}
+		return file;
+	}
+
+
+	@Test
+	public void testIllegalArguments() throws IOException {
+		try {
+			new ExternalQuickSelectDouble(new QuickSelectDoubleArray(), 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		File file = write(new double[] {1, 2, Double.NaN}, ByteOrder.nativeOrder());
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			try {
+				new ExternalQuickSelectDouble().select(raf.getChannel(), 3);
+				assertTrue("should throw exception", false);
+			} catch (IllegalArgumentException e) {
+				assertTrue(true);  // Exception correctly thrown
+			}
+
+			try {
+				new ExternalQuickSelectDouble().select(raf.getChannel(), 0);
+				assertTrue("should throw exception", false);
+			} catch (IllegalArgumentException e) {
+				assertTrue(true);  // Exception correctly thrown
+			}
+		} finally {
+			raf.close();
+		}
+		file.delete();
+	}
+
+
+	@Test
+	public void testRandom() throws IOException {
+		Random random = new Random(19);
+		for(int trial=0; trial<40; trial++) {
+			double [] values = new double[1 + random.nextInt(5000)];
+			for(int i=0; i<values.length; i++) {
+				switch(trial % 4) {
+				case 0: values[i] = random.nextGaussian(); break;
+				case 1: values[i] = random.nextInt(3); break;  // Heavy duplicates, narrowed down to single keys
+				case 2: values[i] = Math.pow(10, random.nextInt(600) - 300) * (random.nextBoolean() ? 1 : -1); break;  // Widely spread exponents
+				default: values[i] = random.nextBoolean() ? 0.0 : -0.0; break;
+				}
+			}
+			ByteOrder order = random.nextBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+			File file = write(values, order);
+			double [] sorted = values.clone();
+			Arrays.sort(sorted);
+
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				for(boolean isDescending : new boolean[] {true, false}) {
+					// A tiny buffer and read buffer force several histogram passes and many reads per pass
+					ExternalQuickSelectDouble eqs = new ExternalQuickSelectDouble(new QuickSelectDoubleArray(isDescending), 1 + random.nextInt(50), order, 8 * (1 + random.nextInt(100)));
+					for(int rep=0; rep<5; rep++) {
+						int selectIdx = random.nextInt(values.length);
+						int sortedIdx = isDescending ? values.length - 1 - selectIdx : selectIdx;
+						double [] pair = eqs.selectAdjacent(raf.getChannel(), selectIdx);
+						assertTrue(pair[0] == sorted[sortedIdx]);
+						if(selectIdx == values.length - 1) {
+							assertTrue(Double.isNaN(pair[1]));
+						} else {
+							assertTrue(pair[1] == sorted[isDescending ? sortedIdx - 1 : sortedIdx + 1]);
+						}
+					}
+				}
+
+				QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+				assertTrue(new ExternalQuickMedianDouble(new ExternalQuickSelectDouble(new QuickSelectDoubleArray(), 10, order)).median(raf.getChannel()) == qm.median(values.clone()));
+			} finally {
+				raf.close();
+			}
+			file.delete();
+		}
+	}
+}
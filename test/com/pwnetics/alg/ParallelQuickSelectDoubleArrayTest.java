@@ -0,0 +1,156 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+
+public class ParallelQuickSelectDoubleArrayTest {
+
+	/**
+	 * Checks that values are partitioned around selectIdx and that the returned bounds point at correctly sorted elements.
+	 */
+	private static void assertPartitioned(double [] values, double [] sorted, int selectIdx, int beginIndex, int endIndex, int [] bounds, boolean isDescending) {
+		assertTrue(values[selectIdx] == sorted[selectIdx]);
+		for(int i=beginIndex; i<selectIdx; i++) {
+			assertTrue(isDescending ? values[i] >= values[selectIdx] : values[i] <= values[selectIdx]);
+		}
+		for(int i=selectIdx+1; i<endIndex; i++) {
+			assertTrue(isDescending ? values[i] <= values[selectIdx] : values[i] >= values[selectIdx]);
+		}
+		assertTrue(bounds[0] == -1 || (bounds[0] >= beginIndex && bounds[0] < selectIdx && values[bounds[0]] == sorted[bounds[0]]));
+		assertTrue(bounds[1] == -1 || (bounds[1] > selectIdx && bounds[1] < endIndex && values[bounds[1]] == sorted[bounds[1]]));
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new ParallelQuickSelectDoubleArray(null, ForkJoinPool.commonPool(), 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+		try {
+			new ParallelQuickSelectDoubleArray(new QuickSelectDoubleArray(), null, 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+		try {
+			new ParallelQuickSelectDoubleArray(new QuickSelectDoubleArray(), ForkJoinPool.commonPool(), 0);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+
+		ParallelQuickSelectDoubleArray pqs = new ParallelQuickSelectDoubleArray();
+		try {
+			pqs.select(null, 0);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+		try {
+			pqs.select(new double[] {1, 2, 3}, 3);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+		try {
+			pqs.select(new double[] {1, 2, 3}, 0, 1, 3);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {}
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(42);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(boolean isDescending : new boolean[] {false, true}) {
+				QuickSelectDoubleArray qs = new QuickSelectDoubleArray(isDescending, EnumSet.of(PivotMethod.MEDIAN_OF_THREE, PivotMethod.RANDOM), new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+				// A tiny threshold forces several parallel passes on arrays small enough for a unit test
+				ParallelQuickSelectDoubleArray pqs = new ParallelQuickSelectDoubleArray(qs, pool, 16);
+				for(int trial=0; trial<50; trial++) {
+					int n = 1 + random.nextInt(100000);
+					boolean isDuplicated = trial % 2 == 0;
+					double [] values = new double[n];
+					for(int i=0; i<n; i++) {
+						values[i] = isDuplicated ? random.nextInt(20) : random.nextDouble();
+					}
+					int beginIndex = random.nextInt(n);
+					int endIndex = beginIndex + 1 + random.nextInt(n - beginIndex);
+					int selectIdx = beginIndex + random.nextInt(endIndex - beginIndex);
+
+					double [] sorted = Arrays.copyOf(values, n);
+					Arrays.sort(sorted, beginIndex, endIndex);
+					if(isDescending) {
+						for(int i=beginIndex, j=endIndex-1; i<j; i++, j--) {
+							double tmp = sorted[i];
+							sorted[i] = sorted[j];
+							sorted[j] = tmp;
+						}
+					}
+
+					int [] bounds = pqs.select(values, selectIdx, beginIndex, endIndex);
+					assertPartitioned(values, sorted, selectIdx, beginIndex, endIndex, bounds, isDescending);
+					for(int i=0; i<beginIndex; i++) {
+						assertTrue(values[i] == sorted[i]);
+					}
+					for(int i=endIndex; i<n; i++) {
+						assertTrue(values[i] == sorted[i]);
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+
+	@Test
+	public void testAllEqual() {
+		double [] values = new double[50000];
+		Arrays.fill(values, 7.0);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			ParallelQuickSelectDoubleArray pqs = new ParallelQuickSelectDoubleArray(new QuickSelectDoubleArray(), pool, 16);
+			int [] bounds = pqs.select(values, 0, 0, values.length);
+			assertTrue(bounds[0] == -1 && bounds[1] == 1);
+			bounds = pqs.select(values, 25000, 0, values.length);
+			assertTrue(bounds[0] == 24999 && bounds[1] == 25001);
+			bounds = pqs.select(values, 49999, 0, values.length);
+			assertTrue(bounds[0] == 49998 && bounds[1] == -1);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
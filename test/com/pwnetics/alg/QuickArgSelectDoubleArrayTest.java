@@ -0,0 +1,164 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuickArgSelectDoubleArrayTest {
+
+	@Test
+	public void testIllegalArguments() {
+		QuickArgSelectDoubleArray p = new QuickArgSelectDoubleArray();
+
+		try {
+			p.argSelect(null, 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[10], new int[5], 5, 0, 5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[10], new int[][] {new int[9]}, null, 0, 0, 10);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testArgSelect() {
+		Random random = new Random(97);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickArgSelectDoubleArray p = new QuickArgSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+			for(int trial=0; trial<100; trial++) {
+				double [] values = new double[1 + random.nextInt(2000)];
+				for(int i=0; i<values.length; i++) {
+					values[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(10);
+				}
+				double [] reference = values.clone();
+				double [] sorted = values.clone();
+				Arrays.sort(sorted);
+
+				int selectIdx = random.nextInt(values.length);
+				int [] indexes = p.argSelect(values, selectIdx);
+				assertTrue(Arrays.equals(values, reference));  // values are never moved
+
+				double expected = sorted[isDescending ? sorted.length - 1 - selectIdx : selectIdx];
+				assertTrue(values[indexes[selectIdx]] == expected);
+				boolean [] seen = new boolean[values.length];
+				for(int i=0; i<indexes.length; i++) {
+					assertTrue(!seen[indexes[i]]);
+					seen[indexes[i]] = true;
+					double v = values[indexes[i]];
+					if(i < selectIdx) {
+						assertTrue(isDescending ? v >= expected : v <= expected);
+					} else if(i > selectIdx) {
+						assertTrue(isDescending ? v <= expected : v >= expected);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testArgSelectIndexSubset() {
+		QuickArgSelectDoubleArray p = new QuickArgSelectDoubleArray();
+		double [] values = new double[] {0, 10, 20, 30, 40, 50, 60};
+		int [] indexes = new int[] {6, 1, 3, 5, 0};
+		int [] selectBounds = p.select(values, indexes, 2, 1, 4);
+		assertTrue(indexes[0] == 6 && indexes[4] == 0);
+		assertTrue(indexes[1] == 5 && indexes[2] == 3 && indexes[3] == 1);
+		assertTrue(selectBounds[0] < 0 || selectBounds[0] == 1);
+		assertTrue(selectBounds[1] < 0 || selectBounds[1] == 3);
+	}
+
+
+	@Test
+	public void testSelectWithPayloads() {
+		Random random = new Random(101);
+		QuickArgSelectDoubleArray p = new QuickArgSelectDoubleArray(true, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+		for(int trial=0; trial<100; trial++) {
+			int n = 1 + random.nextInt(2000);
+			double [] keys = new double[n];
+			int [] ids = new int[n];
+			int [] backPointers = new int[n];
+			long [] states = new long[n];
+			for(int i=0; i<n; i++) {
+				keys[i] = random.nextInt(n);
+				ids[i] = i;
+				backPointers[i] = 3 * i;
+				states[i] = ((long)i << 32) | i;
+			}
+			double [] reference = keys.clone();
+			double [] sorted = keys.clone();
+			Arrays.sort(sorted);
+
+			int selectIdx = random.nextInt(n);
+			int [] selectBounds = p.select(keys, new int[][] {ids, backPointers}, new long[][] {states}, selectIdx, 0, n);
+			assertTrue(keys[selectIdx] == sorted[n - 1 - selectIdx]);
+			for(int i=0; i<n; i++) {
+				// Every payload still belongs with its key
+				assertTrue(keys[i] == reference[ids[i]]);
+				assertTrue(backPointers[i] == 3 * ids[i]);
+				assertTrue(states[i] == (((long)ids[i] << 32) | ids[i]));
+				if(i < selectIdx) {
+					assertTrue(keys[i] >= keys[selectIdx]);
+				} else if(i > selectIdx) {
+					assertTrue(keys[i] <= keys[selectIdx]);
+				}
+			}
+			for(int bound : selectBounds) {
+				if(bound >= 0) {
+					assertTrue(keys[bound] == sorted[n - 1 - bound]);
+				}
+			}
+		}
+
+		// No payloads at all behaves like a plain select
+		double [] keys = new double[] {3, 1, 2};
+		p.select(keys, null, null, 0, 0, keys.length);
+		assertTrue(keys[0] == 3);
+	}
+}
@@ -32,12 +32,18 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
 import org.junit.Test;
 
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+
 public class QuickSelectDoubleArrayTest {
 	/* Wolfram Alpha doesn't seem to handle cases of Infinity very well for some of these operations.
 	 * Let's base our truth values on Numpy and mathy reasoning: "from numpy import average, median, inf, nan, isnan"
@@ -344,6 +350,734 @@ public class QuickSelectDoubleArrayTest {
 	}
 
 
+	@Test
+	public void testIntroSelectRandom() {
+		List<EnumSet<PivotMethod>> pivotMethods = new ArrayList<EnumSet<PivotMethod>>();
+		pivotMethods.add(EnumSet.noneOf(PivotMethod.class));
+		pivotMethods.add(QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD);
+		for(EnumSet<PivotMethod> pivotMethod : pivotMethods) {
+			QuickSelectDoubleArray p = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, pivotMethod, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.INTROSELECT);
+
+			Random random = new Random(37);
+			for(int trial=0; trial<100; trial++) {
+				double [] reference = new double[1 + random.nextInt(2000)];
+				double [] v = new double[reference.length];
+				int [] selectIdx = new int[] {0, reference.length-1, (int)(reference.length * 0.5), random.nextInt(reference.length)};
+
+				// Mix in runs of duplicates, which is where the fallback three-way partition gets exercised
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(5);
+				}
+
+				double [] sorted = new double[reference.length];
+				System.arraycopy(reference, 0, sorted, 0, reference.length);
+				Arrays.sort(sorted);
+
+				for(int sIdx : selectIdx) {
+					System.arraycopy(reference, 0, v, 0, reference.length);
+					int[] selectBounds = p.select(v, sIdx, 0, v.length);
+					assertSelect(v, reference.length-1, reference);
+					assertTrue(v[sIdx] == sorted[sorted.length - sIdx - 1]);
+					for(int i=0; i<sIdx; i++) {
+						assertTrue(v[i] >= v[sIdx]);
+					}
+					for(int i=sIdx+1; i<v.length; i++) {
+						assertTrue(v[i] <= v[sIdx]);
+					}
+
+					if(selectBounds[0] >= 0) {
+						assertTrue(v[selectBounds[0]] == sorted[sorted.length - selectBounds[0] - 1]);
+					}
+					if(selectBounds[1] >= 0) {
+						assertTrue(v[selectBounds[1]] == sorted[sorted.length - selectBounds[1] - 1]);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testFloydRivestRandom() {
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickSelectDoubleArray p = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.FLOYD_RIVEST);
+
+			Random random = new Random(41);
+			for(int trial=0; trial<60; trial++) {
+				// Large enough that the sampling step recurses more than once
+				double [] reference = new double[1 + random.nextInt(trial < 30 ? 2000 : 200000)];
+				double [] v = new double[reference.length];
+				int [] selectIdx = new int[] {0, reference.length-1, (int)(reference.length * 0.5), random.nextInt(reference.length)};
+
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial % 3) == 0 ? random.nextInt(7) : random.nextDouble();
+				}
+
+				double [] sorted = new double[reference.length];
+				System.arraycopy(reference, 0, sorted, 0, reference.length);
+				Arrays.sort(sorted);
+				if(isDescending) {
+					for(int i=0, j=sorted.length-1; i<j; i++, j--) {
+						double swap = sorted[i];
+						sorted[i] = sorted[j];
+						sorted[j] = swap;
+					}
+				}
+
+				for(int sIdx : selectIdx) {
+					System.arraycopy(reference, 0, v, 0, reference.length);
+					int[] selectBounds = p.select(v, sIdx, 0, v.length);
+					assertTrue(v[sIdx] == sorted[sIdx]);
+					for(int i=0; i<sIdx; i++) {
+						assertTrue(isDescending ? v[i] >= v[sIdx] : v[i] <= v[sIdx]);
+					}
+					for(int i=sIdx+1; i<v.length; i++) {
+						assertTrue(isDescending ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+					}
+
+					if(selectBounds[0] >= 0) {
+						assertTrue(selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0]]);
+					}
+					if(selectBounds[1] >= 0) {
+						assertTrue(selectBounds[1] > sIdx && v[selectBounds[1]] == sorted[selectBounds[1]]);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testRadixRandom() {
+		final double [] specialValues = new double[] {0.0, -0.0, INF, NINF, MAX, NMAX, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL, 1.0, -1.0};
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickSelectDoubleArray p = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.RADIX);
+
+			Random random = new Random(43);
+			for(int trial=0; trial<60; trial++) {
+				double [] reference = new double[1 + random.nextInt(trial < 30 ? 2000 : 200000)];
+				double [] v = new double[reference.length];
+				int [] selectIdx = new int[] {0, reference.length-1, (int)(reference.length * 0.5), random.nextInt(reference.length)};
+
+				for(int i=0; i<reference.length; i++) {
+					switch(trial % 4) {
+					case 0: reference[i] = random.nextInt(7); break;
+					case 1: reference[i] = specialValues[random.nextInt(specialValues.length)]; break;
+					case 2: reference[i] = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20); break;
+					default: reference[i] = random.nextDouble();
+					}
+				}
+
+				double [] sorted = new double[reference.length];
+				System.arraycopy(reference, 0, sorted, 0, reference.length);
+				Arrays.sort(sorted);
+				if(isDescending) {
+					for(int i=0, j=sorted.length-1; i<j; i++, j--) {
+						double swap = sorted[i];
+						sorted[i] = sorted[j];
+						sorted[j] = swap;
+					}
+				}
+
+				for(int sIdx : selectIdx) {
+					System.arraycopy(reference, 0, v, 0, reference.length);
+					int[] selectBounds = p.select(v, sIdx, 0, v.length);
+					assertTrue(Double.compare(v[sIdx], sorted[sIdx]) == 0);  // -0.0 and 0.0 are ordered like Arrays.sort orders them
+					for(int i=0; i<sIdx; i++) {
+						assertTrue(isDescending ? v[i] >= v[sIdx] : v[i] <= v[sIdx]);
+					}
+					for(int i=sIdx+1; i<v.length; i++) {
+						assertTrue(isDescending ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+					}
+
+					if(selectBounds[0] >= 0) {
+						assertTrue(selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0]]);
+					}
+					if(selectBounds[1] >= 0) {
+						assertTrue(selectBounds[1] > sIdx && v[selectBounds[1]] == sorted[selectBounds[1]]);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testThreeWayRandom() {
+		for(SelectionMethod selectionMethod : new SelectionMethod[] {SelectionMethod.QUICKSELECT, SelectionMethod.INTROSELECT}) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				QuickSelectDoubleArray p = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod, PartitionMethod.THREE_WAY);
+
+				Random random = new Random(43);
+				for(int trial=0; trial<100; trial++) {
+					double [] reference = new double[1 + random.nextInt(2000)];
+					double [] v = new double[reference.length];
+					int [] selectIdx = new int[] {0, reference.length-1, (int)(reference.length * 0.5), random.nextInt(reference.length)};
+
+					// Mostly a handful of distinct values, like quantized sensor readings
+					for(int i=0; i<reference.length; i++) {
+						reference[i] = (trial % 4) == 0 ? random.nextDouble() : random.nextInt(1 + trial % 10);
+					}
+
+					double [] sorted = new double[reference.length];
+					System.arraycopy(reference, 0, sorted, 0, reference.length);
+					Arrays.sort(sorted);
+					if(isDescending) {
+						for(int i=0, j=sorted.length-1; i<j; i++, j--) {
+							double swap = sorted[i];
+							sorted[i] = sorted[j];
+							sorted[j] = swap;
+						}
+					}
+
+					for(int sIdx : selectIdx) {
+						System.arraycopy(reference, 0, v, 0, reference.length);
+						int[] selectBounds = p.select(v, sIdx, 0, v.length);
+						assertTrue(v[sIdx] == sorted[sIdx]);
+						for(int i=0; i<sIdx; i++) {
+							assertTrue(isDescending ? v[i] >= v[sIdx] : v[i] <= v[sIdx]);
+						}
+						for(int i=sIdx+1; i<v.length; i++) {
+							assertTrue(isDescending ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+						}
+
+						if(selectBounds[0] >= 0) {
+							assertTrue(selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0]]);
+						}
+						if(selectBounds[1] >= 0) {
+							assertTrue(selectBounds[1] > sIdx && v[selectBounds[1]] == sorted[selectBounds[1]]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testBlockPartitionRandom() {
+		for(SelectionMethod selectionMethod : new SelectionMethod[] {SelectionMethod.QUICKSELECT, SelectionMethod.INTROSELECT}) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				QuickSelectDoubleArray p = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod, PartitionMethod.BLOCK);
+
+				Random random = new Random(45);
+				for(int trial=0; trial<60; trial++) {
+					// Large enough for several blocks at each end, small enough for the scalar tail alone
+					double [] reference = new double[1 + random.nextInt(trial < 20 ? 300 : 50000)];
+					double [] v = new double[reference.length];
+					int [] selectIdx = new int[] {0, reference.length-1, (int)(reference.length * 0.5), random.nextInt(reference.length)};
+
+					for(int i=0; i<reference.length; i++) {
+						reference[i] = (trial % 3) == 0 ? random.nextInt(5) : random.nextDouble();
+					}
+
+					double [] sorted = new double[reference.length];
+					System.arraycopy(reference, 0, sorted, 0, reference.length);
+					Arrays.sort(sorted);
+					if(isDescending) {
+						for(int i=0, j=sorted.length-1; i<j; i++, j--) {
+							double swap = sorted[i];
+							sorted[i] = sorted[j];
+							sorted[j] = swap;
+						}
+					}
+
+					for(int sIdx : selectIdx) {
+						System.arraycopy(reference, 0, v, 0, reference.length);
+						int[] selectBounds = p.select(v, sIdx, 0, v.length);
+						assertTrue(v[sIdx] == sorted[sIdx]);
+						for(int i=0; i<sIdx; i++) {
+							assertTrue(isDescending ? v[i] >= v[sIdx] : v[i] <= v[sIdx]);
+						}
+						for(int i=sIdx+1; i<v.length; i++) {
+							assertTrue(isDescending ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+						}
+
+						if(selectBounds[0] >= 0) {
+							assertTrue(selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0]]);
+						}
+						if(selectBounds[1] >= 0) {
+							assertTrue(selectBounds[1] > sIdx && v[selectBounds[1]] == sorted[selectBounds[1]]);
+						}
+					}
+
+					// The block kernel on its own
+					System.arraycopy(reference, 0, v, 0, reference.length);
+					int pivotIdx = random.nextInt(v.length);
+					double pivot = v[pivotIdx];
+					int pivotInsertIdx = isDescending ? p.partitionBlockDescending(v, pivotIdx, 0, v.length - 1) : p.partitionBlockAscending(v, pivotIdx, 0, v.length - 1);
+					assertTrue(v[pivotInsertIdx] == pivot);
+					for(int i=0; i<pivotInsertIdx; i++) {
+						assertTrue(isDescending ? v[i] >= pivot : v[i] <= pivot);
+					}
+					for(int i=pivotInsertIdx+1; i<v.length; i++) {
+						assertTrue(isDescending ? v[i] < pivot : v[i] > pivot);
+					}
+					double [] partitioned = v.clone();
+					Arrays.sort(partitioned);
+					double [] ascending = reference.clone();
+					Arrays.sort(ascending);
+					assertTrue(Arrays.equals(partitioned, ascending));
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testSelectUnchecked() {
+		Random random = new Random(47);
+		for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+			for(PartitionMethod partitionMethod : PartitionMethod.values()) {
+				QuickSelectDoubleArray p = new QuickSelectDoubleArray(false, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod, partitionMethod);
+				int [] selectBounds = new int[2];  // Reused across the trials, like the batch medians do
+				for(int trial=0; trial<40; trial++) {
+					double [] v = new double[1 + random.nextInt(2000)];
+					for(int i=0; i<v.length; i++) {
+						v[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(10);
+					}
+					int beginIndex = random.nextInt(v.length);
+					int endIndex = beginIndex + 1 + random.nextInt(v.length - beginIndex);
+					int sIdx = beginIndex + random.nextInt(endIndex - beginIndex);
+					double [] sorted = Arrays.copyOfRange(v, beginIndex, endIndex);
+					Arrays.sort(sorted);
+					double [] outside = v.clone();
+
+					assertTrue(p.selectUnchecked(v, sIdx, beginIndex, endIndex, selectBounds) == selectBounds);
+					assertTrue(v[sIdx] == sorted[sIdx - beginIndex]);
+					for(int i=beginIndex; i<endIndex; i++) {
+						assertTrue(i < sIdx ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+					}
+					for(int i=0; i<v.length; i++) {
+						assertTrue((i >= beginIndex && i < endIndex) || v[i] == outside[i]);
+					}
+					if(selectBounds[0] >= 0) {
+						assertTrue(selectBounds[0] >= beginIndex && selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0] - beginIndex]);
+					}
+					if(selectBounds[1] >= 0) {
+						assertTrue(selectBounds[1] > sIdx && selectBounds[1] < endIndex && v[selectBounds[1]] == sorted[selectBounds[1] - beginIndex]);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testSortSmall() {
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray();
+		try {
+			p.sortSmall(null, 0, 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.sortSmall(new double[10], 5, 4);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		// By the 0-1 principle, a network sorts everything if it sorts every sequence of zeros and ones
+		for(boolean isDescending : new boolean[] {true, false}) {
+			p = new QuickSelectDoubleArray(isDescending);
+			for(int size : new int[] {3, 5, 7, 9, 16}) {
+				double [] v = new double[size + 2];
+				for(int bits=0; bits<(1 << size); bits++) {
+					v[0] = -1;
+					v[size + 1] = -1;
+					for(int i=0; i<size; i++) {
+						v[i + 1] = (bits >>> i) & 1;
+					}
+					p.sortSmall(v, 1, size + 1);
+					assertTrue(v[0] == -1 && v[size + 1] == -1);
+					for(int i=2; i<=size; i++) {
+						assertTrue(isDescending ? v[i - 1] >= v[i] : v[i - 1] <= v[i]);
+					}
+				}
+			}
+
+			Random random = new Random(46);
+			for(int size=0; size<40; size++) {
+				double [] reference = new double[size];
+				for(int i=0; i<size; i++) {
+					reference[i] = random.nextInt(10);
+				}
+				double [] v = reference.clone();
+				p.sortSmall(v, 0, size);
+
+				double [] sorted = reference.clone();
+				Arrays.sort(sorted);
+				for(int i=0; i<size; i++) {
+					assertTrue(v[i] == sorted[isDescending ? size - i - 1 : i]);
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testSmallSortThreshold() {
+		try {
+			new QuickSelectDoubleArray(true, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.QUICKSELECT, PartitionMethod.TWO_WAY, -1);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		Random random = new Random(47);
+		for(int smallSortThreshold : new int[] {0, 1, 5, 16, 64}) {
+			for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+				for(PartitionMethod partitionMethod : PartitionMethod.values()) {
+					QuickSelectDoubleArray p = new QuickSelectDoubleArray(false, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod, partitionMethod, smallSortThreshold);
+					for(int trial=0; trial<20; trial++) {
+						double [] reference = new double[1 + random.nextInt(trial < 10 ? 70 : 2000)];
+						for(int i=0; i<reference.length; i++) {
+							reference[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(8);
+						}
+						double [] sorted = reference.clone();
+						Arrays.sort(sorted);
+
+						int sIdx = random.nextInt(reference.length);
+						double [] v = reference.clone();
+						int [] selectBounds = p.select(v, sIdx, 0, v.length);
+						assertTrue(v[sIdx] == sorted[sIdx]);
+						for(int i=0; i<sIdx; i++) {
+							assertTrue(v[i] <= v[sIdx]);
+						}
+						for(int i=sIdx+1; i<v.length; i++) {
+							assertTrue(v[i] >= v[sIdx]);
+						}
+						if(selectBounds[0] >= 0) {
+							assertTrue(selectBounds[0] < sIdx && v[selectBounds[0]] == sorted[selectBounds[0]]);
+						}
+						if(selectBounds[1] >= 0) {
+							assertTrue(selectBounds[1] > sIdx && v[selectBounds[1]] == sorted[selectBounds[1]]);
+						}
+
+						v = reference.clone();
+						int [] range = p.selectEqualRange(v, sIdx, 0, v.length);
+						for(int i=0; i<v.length; i++) {
+							assertTrue(i < range[0] ? v[i] < sorted[sIdx] : (i < range[1] ? v[i] == sorted[sIdx] : v[i] > sorted[sIdx]));
+						}
+
+						int [] selectIdxs = new int[] {0, sIdx, v.length - 1, random.nextInt(v.length)};
+						v = reference.clone();
+						p.select(v, selectIdxs);
+						for(int selectIdx : selectIdxs) {
+							assertTrue(v[selectIdx] == sorted[selectIdx]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testSelectEqualRange() {
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray(false);
+
+		try {
+			p.selectEqualRange(null, 0, 0, 1);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.selectEqualRange(new double[10], 5, 6, 10);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		double [] v = new double[] {3, 1, 2, 2, 5, 2, 0, 2};
+		int [] range = p.selectEqualRange(v, 3, 0, v.length);
+		assertTrue(range[0] == 2 && range[1] == 6);
+		for(int i=range[0]; i<range[1]; i++) {
+			assertTrue(v[i] == 2.0);
+		}
+
+		// The range is limited to the array subset
+		v = new double[] {2, 2, 1, 2, 2, 3, 2, 2};
+		range = p.selectEqualRange(v, 3, 2, 6);
+		assertTrue(range[0] == 3 && range[1] == 5);
+		assertTrue(v[0] == 2 && v[1] == 2 && v[2] == 1 && v[5] == 3 && v[6] == 2 && v[7] == 2);
+
+		Random random = new Random(44);
+		for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				p = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod);
+				for(int trial=0; trial<50; trial++) {
+					v = new double[1 + random.nextInt(5000)];
+					for(int i=0; i<v.length; i++) {
+						v[i] = random.nextInt(1 + trial);
+					}
+					int sIdx = random.nextInt(v.length);
+					double [] sorted = v.clone();
+					Arrays.sort(sorted);
+					double expected = sorted[isDescending ? sorted.length - sIdx - 1 : sIdx];
+
+					range = p.selectEqualRange(v, sIdx, 0, v.length);
+					assertTrue(range[0] <= sIdx && sIdx < range[1]);
+					for(int i=0; i<v.length; i++) {
+						if(i < range[0]) {
+							assertTrue(isDescending ? v[i] > expected : v[i] < expected);
+						} else if(i < range[1]) {
+							assertTrue(v[i] == expected);
+						} else {
+							assertTrue(isDescending ? v[i] < expected : v[i] > expected);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testMultiSelectIllegalArguments() {
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray();
+
+		try {
+			p.select(null, new int[] {0});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[10], (int[])null);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[10], new int[] {0, 10});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[10], new int[] {4, 1}, 2, 10);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testMultiSelectRandom() {
+		for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+			QuickSelectDoubleArray p = new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod);
+
+			Random random = new Random(43);
+			for(int trial=0; trial<100; trial++) {
+				double [] reference = new double[1 + random.nextInt(3000)];
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(10);
+				}
+
+				double [] sorted = new double[reference.length];
+				System.arraycopy(reference, 0, sorted, 0, reference.length);
+				Arrays.sort(sorted);
+
+				int [] selectIdxs = new int[random.nextInt(10)];
+				for(int i=0; i<selectIdxs.length; i++) {
+					selectIdxs[i] = random.nextInt(reference.length);
+				}
+
+				double [] v = reference.clone();
+				p.select(v, selectIdxs);
+				assertSelect(v, reference.length-1, reference);
+
+				int [] sortedSelectIdxs = selectIdxs.clone();
+				Arrays.sort(sortedSelectIdxs);
+				int previousIdx = -1;
+				for(int sIdx : sortedSelectIdxs) {
+					assertTrue(v[sIdx] == sorted[sorted.length - sIdx - 1]);
+					for(int i=previousIdx+1; i<sIdx; i++) {
+						assertTrue(v[i] >= v[sIdx] && (previousIdx < 0 || v[i] <= v[previousIdx]));
+					}
+					previousIdx = sIdx;
+				}
+				for(int i=previousIdx+1; i<v.length; i++) {
+					assertTrue(previousIdx < 0 || v[i] <= v[previousIdx]);
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testIntroSelectDegenerate() {
+		// Middle-element pivots with the two-way partition take O(n^2) time on these arrays; introselect must finish quickly
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray(false, EnumSet.noneOf(PivotMethod.class), null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.INTROSELECT);
+
+		double [] v = new double[1000000];
+		p.select(v, v.length >>> 1);
+		assertTrue(v[v.length >>> 1] == 0.0);
+
+		for(int i=0; i<v.length; i++) {
+			v[i] = i & 1;
+		}
+		p.select(v, v.length >>> 2);
+		assertTrue(v[v.length >>> 2] == 0.0);
+		for(int i=0; i<(v.length >>> 2); i++) {
+			assertTrue(v[i] == 0.0);
+		}
+	}
+
+
+	@Test
+	public void testSeededIsReproducible() {
+		Random random = new Random(48);
+		double [] reference = new double[5000];
+		for(int i=0; i<reference.length; i++) {
+			reference[i] = random.nextDouble();
+		}
+
+		double [] v1 = reference.clone();
+		double [] v2 = reference.clone();
+		new QuickSelectDoubleArray(true, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(49), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD).select(v1, 1234);
+		new QuickSelectDoubleArray(true, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, new Random(49), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD).select(v2, 1234);
+		assertTrue(Arrays.equals(v1, v2));
+	}
+
+
+	@Test
+	public void testSharedAcrossThreads() throws InterruptedException {
+		// The default object draws pivots from ThreadLocalRandom, so every thread can use it at once
+		final QuickSelectDoubleArray p = new QuickSelectDoubleArray(false);
+		final boolean [] isCorrect = new boolean[8];
+		Thread [] threads = new Thread[isCorrect.length];
+		for(int t=0; t<threads.length; t++) {
+			final int threadIdx = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(50 + threadIdx);
+					boolean isThreadCorrect = true;
+					for(int trial=0; trial<200; trial++) {
+						double [] v = new double[1 + random.nextInt(3000)];
+						for(int i=0; i<v.length; i++) {
+							v[i] = random.nextDouble();
+						}
+						double [] sorted = v.clone();
+						Arrays.sort(sorted);
+
+						int sIdx = random.nextInt(v.length);
+						p.select(v, sIdx);
+						isThreadCorrect &= v[sIdx] == sorted[sIdx];
+					}
+					isCorrect[threadIdx] = isThreadCorrect;
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		for(boolean isThreadCorrect : isCorrect) {
+			assertTrue(isThreadCorrect);
+		}
+	}
+
+
+	@Test
+	public void testSelectNaNPolicy() {
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray();
+		try {
+			p.select(new double[] {1, 2, 3}, 1, 0, 3, null);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new double[] {1, NaN, 3}, 1, 0, 3, NaNPolicy.REJECT);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		// A NaN outside the array subset doesn't matter
+		double [] v = new double[] {NaN, 1, 3, 2, NaN};
+		int [] selectBounds = p.select(v, 2, 1, 4, NaNPolicy.REJECT);
+		assertTrue(v[2] == 2 && selectBounds[2] == 4 && selectBounds[3] == 4);
+
+		v = new double[] {NaN, NaN};
+		selectBounds = p.select(v, 1, 0, 2, NaNPolicy.IGNORE);
+		assertTrue(Double.isNaN(v[1]) && selectBounds[0] == -1 && selectBounds[1] == -1 && selectBounds[2] == 0 && selectBounds[3] == 2);
+
+		Random random = new Random(51);
+		for(NaNPolicy nanPolicy : new NaNPolicy[] {NaNPolicy.IGNORE, NaNPolicy.LARGEST}) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				p = new QuickSelectDoubleArray(isDescending);
+				for(int trial=0; trial<300; trial++) {
+					double [] reference = new double[1 + random.nextInt(trial < 150 ? 30 : 3000)];
+					int numNaN = 0;
+					for(int i=0; i<reference.length; i++) {
+						if(random.nextInt(4) == 0) {
+							reference[i] = NaN;
+							numNaN++;
+						} else {
+							reference[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(6);
+						}
+					}
+
+					// Arrays.sort puts NaN last, which is the LARGEST order; IGNORE wants the NaN values last in either order
+					double [] sorted = reference.clone();
+					Arrays.sort(sorted);
+					if(isDescending) {
+						int numNumbers = nanPolicy == NaNPolicy.IGNORE ? sorted.length - numNaN : sorted.length;
+						for(int i=0, j=numNumbers-1; i<j; i++, j--) {
+							double swap = sorted[i];
+							sorted[i] = sorted[j];
+							sorted[j] = swap;
+						}
+					}
+
+					int sIdx = random.nextInt(reference.length);
+					v = reference.clone();
+					selectBounds = p.select(v, sIdx, 0, v.length, nanPolicy);
+					assertTrue(Double.compare(v[sIdx], sorted[sIdx]) == 0);
+					assertTrue(selectBounds[3] - selectBounds[2] == numNaN);
+					for(int i=0; i<v.length; i++) {
+						boolean isInRun = i >= selectBounds[2] && i < selectBounds[3];
+						assertTrue(isInRun == Double.isNaN(v[i]));
+						if(!isInRun && !Double.isNaN(v[sIdx])) {
+							if(i < sIdx) {
+								assertTrue(isDescending ? v[i] >= v[sIdx] : v[i] <= v[sIdx]);
+							} else if(i > sIdx) {
+								assertTrue(isDescending ? v[i] <= v[sIdx] : v[i] >= v[sIdx]);
+							}
+						}
+					}
+					if(selectBounds[0] >= 0) {
+						assertTrue(selectBounds[0] < sIdx && Double.compare(v[selectBounds[0]], sorted[selectBounds[0]]) == 0);
+					}
+					if(selectBounds[1] >= 0) {
+						assertTrue(selectBounds[1] > sIdx && Double.compare(v[selectBounds[1]], sorted[selectBounds[1]]) == 0);
+					}
+
+					double [] permuted = v.clone();
+					Arrays.sort(permuted);
+					double [] ascending = reference.clone();
+					Arrays.sort(ascending);
+					assertTrue(Arrays.equals(permuted, ascending));
+				}
+			}
+		}
+	}
+
+
 	@Test
 	public void testContainsNaNIllegalArguments() {
 		QuickSelectDoubleArray p = new QuickSelectDoubleArray();
@@ -420,4 +1154,82 @@ public class QuickSelectDoubleArrayTest {
 		assertTrue(p.containsNaN(new double[] {0,1,NaN}, 1, 3));
 		assertTrue(p.containsNaN(new double[] {0,1,NaN}, 2, 3));
 	}
+
+
+	@Test
+	public void testSelectNonDestructiveIllegalArguments() {
+		QuickSelectDoubleArray p = new QuickSelectDoubleArray();
+		try {
+			p.selectNonDestructive(null, 0);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			p.selectNonDestructive(new double[3], 3);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			p.selectNonDestructive(new double[3], 2, true, new double[3]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			p.selectNonDestructive(new double[3], 0, false, new double[2]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			QuickSelectDoubleArray.threadLocalScratch(-1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testSelectNonDestructiveRandom() {
+		Random random = new Random(83);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickSelectDoubleArray p = new QuickSelectDoubleArray(isDescending);
+			for(int trial=0; trial<200; trial++) {
+				// Large enough arrays that the candidate bracket is used; few distinct values make the bracket miss more often
+				double [] reference = new double[1 + random.nextInt(trial < 100 ? 100 : 20000)];
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 3) == 0 ? random.nextInt(3) : random.nextGaussian();
+				}
+				double [] original = reference.clone();
+				double [] sorted = reference.clone();
+				Arrays.sort(sorted);
+
+				int selectIdx = random.nextInt(reference.length);
+				double expected = sorted[isDescending ? sorted.length - 1 - selectIdx : selectIdx];
+				assertTrue(p.selectNonDestructive(reference, selectIdx) == expected);
+				assertTrue(Arrays.equals(reference, original));
+
+				if(selectIdx < reference.length - 1) {
+					double [] scratch = new double[reference.length + random.nextInt(3)];
+					int scratchIdx = p.selectNonDestructive(reference, selectIdx, true, scratch);
+					assertTrue(scratch[scratchIdx] == expected);
+					assertTrue(scratch[scratchIdx + 1] == sorted[isDescending ? sorted.length - 2 - selectIdx : selectIdx + 1]);
+					assertTrue(Arrays.equals(reference, original));
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testThreadLocalScratch() {
+		double [] scratch = QuickSelectDoubleArray.threadLocalScratch(1000);
+		assertTrue(scratch.length == 1024);
+		assertTrue(QuickSelectDoubleArray.threadLocalScratch(600) == scratch);
+		assertTrue(QuickSelectDoubleArray.threadLocalScratch(1025).length == 2048);
+		assertTrue(QuickSelectDoubleArray.threadLocalScratch(0).length == 1);
+	}
 }
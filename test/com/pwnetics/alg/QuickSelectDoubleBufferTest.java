@@ -0,0 +1,271 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+import com.pwnetics.math.QuickMedianDoubleArray;
+import com.pwnetics.math.QuickMedianDoubleBuffer;
+
+public class QuickSelectDoubleBufferTest {
+
+	/**
+	 * Splits values into heap buffer chunks of the given size, so that selections cross chunk boundaries.
+	 */
+	private static BigDoubleBuffer chunked(double [] values, int chunkSize) {
+		DoubleBuffer [] chunks = new DoubleBuffer[Math.max(1, (values.length + chunkSize - 1) / chunkSize)];
+		for(int i=0; i<chunks.length; i++) {
+			int begin = i * chunkSize;
+			chunks[i] = DoubleBuffer.wrap(Arrays.copyOfRange(values, begin, Math.min(values.length, begin + chunkSize)));
+		}
+		return new BigDoubleBuffer(chunks);
+	}
+
+
+	private static double [] toArray(BigDoubleBuffer values) {
+		double [] array = new double[(int)values.size()];
+		values.get(0, array, 0, array.length);
+		return array;
+	}
+
+
+	/**
+	 * Checks the selection postconditions against a sorted copy.
+	 */
+	private static void assertSelected(double [] selected, double [] original, int selectIdx, boolean isDescending) {
+		double [] sorted = original.clone();
+		Arrays.sort(sorted);
+		if(isDescending) {
+			for(int i=0; i<sorted.length/2; i++) {
+				double tmp = sorted[i];
+				sorted[i] = sorted[sorted.length - 1 - i];
+				sorted[sorted.length - 1 - i] = tmp;
+			}
+		}
+		assertTrue(selected[selectIdx] == sorted[selectIdx]);
+		for(int i=0; i<selected.length; i++) {
+			if(i < selectIdx) {
+				assertTrue(isDescending ? selected[i] >= selected[selectIdx] : selected[i] <= selected[selectIdx]);
+			} else if(i > selectIdx) {
+				assertTrue(isDescending ? selected[i] <= selected[selectIdx] : selected[i] >= selected[selectIdx]);
+			}
+		}
+		double [] multiset = selected.clone();
+		Arrays.sort(multiset);
+		double [] expected = original.clone();
+		Arrays.sort(expected);
+		assertTrue(Arrays.equals(multiset, expected));
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new BigDoubleBuffer(new DoubleBuffer[] {DoubleBuffer.allocate(6), DoubleBuffer.allocate(6)});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new BigDoubleBuffer(new DoubleBuffer[] {DoubleBuffer.allocate(4), DoubleBuffer.allocate(8)});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new QuickSelectDoubleBuffer().select(new BigDoubleBuffer(DoubleBuffer.allocate(4)), 4);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new QuickSelectDoubleBuffer(new QuickSelectDoubleArray(), 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testBigDoubleBuffer() {
+		double [] values = new double[37];
+		for(int i=0; i<values.length; i++) {
+			values[i] = i;
+		}
+		BigDoubleBuffer buffer = chunked(values, 8);
+		assertTrue(buffer.size() == 37);
+		assertTrue(buffer.get(0) == 0 && buffer.get(8) == 8 && buffer.get(36) == 36);
+		buffer.swap(3, 33);
+		assertTrue(buffer.get(3) == 33 && buffer.get(33) == 3);
+		buffer.put(9, -1);
+		assertTrue(buffer.get(9) == -1);
+
+		double [] run = new double[20];
+		buffer.get(5, run, 0, 20);
+		assertTrue(run[0] == 5 && run[4] == -1 && run[19] == 24);
+		buffer.put(30, new double[] {100, 101, 102}, 0, 3);
+		assertTrue(buffer.get(31) == 101 && buffer.get(32) == 102);
+
+		// A buffer contributes only its elements from position to limit
+		DoubleBuffer positioned = DoubleBuffer.wrap(values);
+		positioned.position(10);
+		assertTrue(new BigDoubleBuffer(positioned).get(0) == 10);
+	}
+
+
+	@Test
+	public void testRandom() {
+		// The buffer passes use the pivot, selection, and partition methods of the given QuickSelectDoubleArray
+		List<EnumSet<PivotMethod>> pivotMethods = new ArrayList<EnumSet<PivotMethod>>();
+		pivotMethods.add(EnumSet.noneOf(PivotMethod.class));
+		pivotMethods.add(EnumSet.of(PivotMethod.RANDOM));
+		pivotMethods.add(QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD);
+		Random random = new Random(18);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			for(EnumSet<PivotMethod> pivotMethod : pivotMethods) {
+				for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+					for(PartitionMethod partitionMethod : PartitionMethod.values()) {
+						QuickSelectDoubleArray quickSelect = new QuickSelectDoubleArray(isDescending, pivotMethod, new Random(random.nextLong()), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod, partitionMethod);
+						QuickSelectDoubleBuffer qs = new QuickSelectDoubleBuffer(quickSelect, 16);
+						for(int trial=0; trial<20; trial++) {
+							double [] values = new double[1 + random.nextInt(2000)];
+							for(int i=0; i<values.length; i++) {
+								values[i] = (trial & 1) == 0 ? random.nextGaussian() : random.nextInt(10);
+							}
+							BigDoubleBuffer buffer = chunked(values, 1 << (3 + random.nextInt(6)));
+							int selectIdx = random.nextInt(values.length);
+							qs.select(buffer, selectIdx);
+							assertSelected(toArray(buffer), values, selectIdx, isDescending);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testPartitionAllTheWay() {
+		// With a threshold of 1, every subset is partitioned in the buffer, so under introselect the small ones often fail to halve and use median-of-medians pivots
+		Random random = new Random(19);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			for(PartitionMethod partitionMethod : PartitionMethod.values()) {
+				QuickSelectDoubleArray quickSelect = new QuickSelectDoubleArray(isDescending, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, null, QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, SelectionMethod.INTROSELECT, partitionMethod);
+				QuickSelectDoubleBuffer qs = new QuickSelectDoubleBuffer(quickSelect, 1);
+				for(int trial=0; trial<100; trial++) {
+					double [] values = new double[1 + random.nextInt(500)];
+					for(int i=0; i<values.length; i++) {
+						values[i] = (trial & 1) == 0 ? random.nextGaussian() : random.nextInt(4);
+					}
+					if(trial % 5 == 0) {
+						Arrays.sort(values);
+					}
+					BigDoubleBuffer buffer = chunked(values, 1 << (3 + random.nextInt(6)));
+					int selectIdx = random.nextInt(values.length);
+					qs.select(buffer, selectIdx);
+					assertSelected(toArray(buffer), values, selectIdx, isDescending);
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testMedian() {
+		Random random = new Random(19);
+		QuickMedianDoubleArray qmArray = new QuickMedianDoubleArray();
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickMedianDoubleBuffer qm = new QuickMedianDoubleBuffer(new QuickSelectDoubleBuffer(new QuickSelectDoubleArray(isDescending), 32));
+			for(int trial=0; trial<100; trial++) {
+				double [] values = new double[1 + random.nextInt(1000)];
+				for(int i=0; i<values.length; i++) {
+					values[i] = random.nextGaussian();
+				}
+				assertTrue(qm.median(chunked(values, 64)) == qmArray.median(values.clone()));
+			}
+		}
+	}
+
+
+	@Test
+	public void testMappedFile() throws IOException {
+		Random random = new Random(20);
+		double [] values = new double[10000];
+		ByteBuffer bytes = ByteBuffer.allocate(8 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i=0; i<values.length; i++) {
+			values[i] = random.nextDouble();
+			bytes.putDouble(values[i]);
+		}
+
+		File file = File.createTempFile("QuickSelectDoubleBufferTest", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			bytes.flip();
+			channel.write(bytes);
+
+			// Small chunks, so that the mapping is split and the selection crosses chunks
+			BigDoubleBuffer mapped = BigDoubleBuffer.map(channel, FileChannel.MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN, 1024);
+			assertTrue(mapped.size() == values.length && mapped.get(1234) == values[1234]);
+			new QuickSelectDoubleBuffer(new QuickSelectDoubleArray(false), 100).select(mapped, 5000);
+			assertSelected(toArray(mapped), values, 5000, false);
+
+			double expected = new QuickMedianDoubleArray().median(values.clone());
+			assertTrue(new QuickMedianDoubleBuffer().median(BigDoubleBuffer.map(channel, FileChannel.MapMode.PRIVATE, ByteOrder.LITTLE_ENDIAN)) == expected);
+		} finally {
+			raf.close();
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the QuickSelect classes generated for int, long and float arrays.
+ * The generated code is shared with {@link QuickSelectDoubleArray}, which is tested thoroughly by {@link QuickSelectDoubleArrayTest}, so these tests mostly check that the generated classes are wired up correctly.
+ */
+public class QuickSelectPrimitiveArraysTest {
+
+	@Test
+	public void testIntArray() {
+		Random random = new Random(59);
+		for(QuickSelectIntArray.SelectionMethod selectionMethod : QuickSelectIntArray.SelectionMethod.values()) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				QuickSelectIntArray p = new QuickSelectIntArray(isDescending, QuickSelectIntArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectIntArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod);
+				for(int trial=0; trial<50; trial++) {
+					int [] reference = new int[1 + random.nextInt(2000)];
+					for(int i=0; i<reference.length; i++) {
+						reference[i] = (trial & 1) == 0 ? random.nextInt() : random.nextInt(10);
+					}
+					int [] sorted = reference.clone();
+					Arrays.sort(sorted);
+
+					int selectIdx = random.nextInt(reference.length);
+					int [] v = reference.clone();
+					p.select(v, selectIdx);
+					int expected = sorted[isDescending ? sorted.length - 1 - selectIdx : selectIdx];
+					assertTrue(v[selectIdx] == expected);
+					for(int i=0; i<selectIdx; i++) {
+						assertTrue(isDescending ? v[i] >= expected : v[i] <= expected);
+					}
+					for(int i=selectIdx+1; i<v.length; i++) {
+						assertTrue(isDescending ? v[i] <= expected : v[i] >= expected);
+					}
+
+					int [] selectIdxs = new int[] {0, selectIdx, reference.length - 1};
+					v = reference.clone();
+					p.select(v, selectIdxs);
+					for(int sIdx : selectIdxs) {
+						assertTrue(v[sIdx] == sorted[isDescending ? sorted.length - 1 - sIdx : sIdx]);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testLongArray() {
+		Random random = new Random(61);
+		for(QuickSelectLongArray.SelectionMethod selectionMethod : QuickSelectLongArray.SelectionMethod.values()) {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				QuickSelectLongArray p = new QuickSelectLongArray(isDescending, QuickSelectLongArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectLongArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod);
+				for(int trial=0; trial<50; trial++) {
+					long [] reference = new long[1 + random.nextInt(2000)];
+					for(int i=0; i<reference.length; i++) {
+						reference[i] = (trial & 1) == 0 ? random.nextLong() : random.nextInt(10);
+					}
+					long [] sorted = reference.clone();
+					Arrays.sort(sorted);
+
+					int selectIdx = random.nextInt(reference.length);
+					long [] v = reference.clone();
+					int [] selectBounds = p.select(v, selectIdx, 0, v.length);
+					long expected = sorted[isDescending ? sorted.length - 1 - selectIdx : selectIdx];
+					assertTrue(v[selectIdx] == expected);
+					for(int bound : selectBounds) {
+						if(bound >= 0) {
+							assertTrue(v[bound] == sorted[isDescending ? sorted.length - 1 - bound : bound]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testFloatArray() {
+		Random random = new Random(67);
+		for(QuickSelectFloatArray.SelectionMethod selectionMethod : QuickSelectFloatArray.SelectionMethod.values()) {
+			QuickSelectFloatArray p = new QuickSelectFloatArray(QuickSelectFloatArray.DEFAULT_IS_DESCENDING, QuickSelectFloatArray.DEFAULT_PIVOT_METHOD, new Random(42L), QuickSelectFloatArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD, selectionMethod);
+			for(int trial=0; trial<50; trial++) {
+				float [] reference = new float[1 + random.nextInt(2000)];
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 1) == 0 ? random.nextFloat() - 0.5f : random.nextInt(10) - 5;
+				}
+				float [] sorted = reference.clone();
+				Arrays.sort(sorted);
+
+				int selectIdx = random.nextInt(reference.length);
+				float [] v = reference.clone();
+				p.select(v, selectIdx);
+				assertTrue(v[selectIdx] == sorted[sorted.length - 1 - selectIdx]);
+			}
+		}
+
+		QuickSelectFloatArray p = new QuickSelectFloatArray();
+		assertTrue(p.containsNaN(new float[] {0.0f, Float.NaN}));
+		assertTrue(!p.containsNaN(new float[] {0.0f, Float.POSITIVE_INFINITY}));
+	}
+}
@@ -0,0 +1,253 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+
+public class QuickSelectTest {
+
+	/** A record with a sort key and an identity that the key doesn't determine */
+	private static class Request {
+		final int id;
+		final long latency;
+
+		Request(int id, long latency) {
+			this.id = id;
+			this.latency = latency;
+		}
+	}
+
+	private static final Comparator<Request> BY_LATENCY = new Comparator<Request>() {
+		@Override
+		public int compare(Request o1, Request o2) {
+			return o1.latency < o2.latency ? -1 : (o1.latency == o2.latency ? 0 : 1);
+		}
+	};
+
+
+	/** A random-access list that can't be copied out, so a select over it must reorder it in place */
+	private static class NoCopyList extends AbstractList<Request> implements RandomAccess {
+		final Request [] values;
+
+		NoCopyList(Request [] values) {
+			this.values = values;
+		}
+
+		@Override
+		public Request get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public Request set(int index, Request element) {
+			Request old = values[index];
+			values[index] = element;
+			return old;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public Object [] toArray() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+
+	private static Request [] randomRequests(Random random, int n, int maxLatency) {
+		Request [] requests = new Request[n];
+		for(int i=0; i<n; i++) {
+			requests[i] = new Request(i, random.nextInt(maxLatency));
+		}
+		return requests;
+	}
+
+
+	/**
+	 * Checks that the selected element has the correct key, that the elements before and after it are ordered correctly relative to it, and that no element was lost.
+	 */
+	private static void assertSelect(List<Request> values, int selectIdx, long [] sortedLatencies, Comparator<Request> comparator, int referenceSize) {
+		assertTrue(values.size() == referenceSize);
+		Request selected = values.get(selectIdx);
+		assertTrue(comparator.compare(selected, new Request(-1, sortedLatencies[selectIdx])) == 0);
+		for(int i=0; i<values.size(); i++) {
+			int c = comparator.compare(values.get(i), selected);
+			assertTrue(i < selectIdx ? c <= 0 : (i > selectIdx ? c >= 0 : c == 0));
+		}
+
+		boolean [] seen = new boolean[referenceSize];
+		for(Request r : values) {
+			assertTrue(!seen[r.id]);
+			seen[r.id] = true;
+		}
+	}
+
+
+	@Test
+	public void testSelectIllegalArguments() {
+		QuickSelect<Request> p = new QuickSelect<Request>(BY_LATENCY);
+
+		try {
+			p.select((Request [])null, 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new ArrayList<Request>(), 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			p.select(new Request[10], 10, 0, 10);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new QuickSelect<Request>(null);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testSelectArray() {
+		List<EnumSet<PivotMethod>> pivotMethods = new ArrayList<EnumSet<PivotMethod>>();
+		pivotMethods.add(EnumSet.noneOf(PivotMethod.class));
+		pivotMethods.add(EnumSet.of(PivotMethod.MEDIAN_OF_THREE));
+		pivotMethods.add(QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD);
+
+		Random random = new Random(83);
+		for(EnumSet<PivotMethod> pivotMethod : pivotMethods) {
+			for(Comparator<Request> comparator : Arrays.asList(BY_LATENCY, Collections.reverseOrder(BY_LATENCY))) {
+				QuickSelect<Request> p = new QuickSelect<Request>(comparator, pivotMethod, new Random(42L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+				for(int trial=0; trial<30; trial++) {
+					Request [] reference = randomRequests(random, 1 + random.nextInt(1000), (trial & 1) == 0 ? 1000000 : 10);
+					Request [] sorted = reference.clone();
+					Arrays.sort(sorted, comparator);
+					long [] sortedLatencies = new long[sorted.length];
+					for(int i=0; i<sorted.length; i++) {
+						sortedLatencies[i] = sorted[i].latency;
+					}
+
+					int selectIdx = random.nextInt(reference.length);
+					Request [] v = reference.clone();
+					int [] selectBounds = p.select(v, selectIdx, 0, v.length);
+					assertSelect(Arrays.asList(v), selectIdx, sortedLatencies, comparator, reference.length);
+					for(int bound : selectBounds) {
+						if(bound >= 0) {
+							assertTrue(v[bound].latency == sortedLatencies[bound]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testSelectList() {
+		Random random = new Random(89);
+		QuickSelect<Request> p = new QuickSelect<Request>(BY_LATENCY);
+		for(int trial=0; trial<60; trial++) {
+			Request [] reference = randomRequests(random, 1 + random.nextInt(1000), 1000);
+			Request [] sorted = reference.clone();
+			Arrays.sort(sorted, BY_LATENCY);
+			long [] sortedLatencies = new long[sorted.length];
+			for(int i=0; i<sorted.length; i++) {
+				sortedLatencies[i] = sorted[i].latency;
+			}
+
+			List<Request> v = (trial & 1) == 0 ? new ArrayList<Request>(Arrays.asList(reference)) : new LinkedList<Request>(Arrays.asList(reference));
+			int selectIdx = random.nextInt(reference.length);
+			p.select(v, selectIdx);
+			assertSelect(v, selectIdx, sortedLatencies, BY_LATENCY, reference.length);
+		}
+
+		// Random-access lists are reordered in place, without being copied to an array
+		for(EnumSet<PivotMethod> pivotMethod : Arrays.asList(EnumSet.noneOf(PivotMethod.class), EnumSet.of(PivotMethod.MEDIAN_OF_THREE), QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD)) {
+			QuickSelect<Request> q = new QuickSelect<Request>(BY_LATENCY, pivotMethod, new Random(43L), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD);
+			for(int trial=0; trial<20; trial++) {
+				Request [] reference = randomRequests(random, 1 + random.nextInt(1000), (trial & 1) == 0 ? 1000 : 5);
+				Request [] sorted = reference.clone();
+				Arrays.sort(sorted, BY_LATENCY);
+				long [] sortedLatencies = new long[sorted.length];
+				for(int i=0; i<sorted.length; i++) {
+					sortedLatencies[i] = sorted[i].latency;
+				}
+
+				List<Request> v = new NoCopyList(reference.clone());
+				int selectIdx = random.nextInt(reference.length);
+				int [] selectBounds = q.select(v, selectIdx, 0, v.size());
+				assertSelect(v, selectIdx, sortedLatencies, BY_LATENCY, reference.length);
+				for(int bound : selectBounds) {
+					if(bound >= 0) {
+						assertTrue(v.get(bound).latency == sortedLatencies[bound]);
+					}
+				}
+			}
+		}
+
+		// Selecting within a list subset leaves the rest of the list alone
+		List<Request> v = new ArrayList<Request>(Arrays.asList(new Request(0, 5), new Request(1, 4), new Request(2, 3), new Request(3, 2), new Request(4, 1)));
+		int [] selectBounds = p.select(v, 2, 1, 4);
+		assertTrue(v.get(0).id == 0 && v.get(4).id == 4);
+		assertTrue(v.get(2).id == 2);
+		assertTrue(v.get(1).latency == 2 && v.get(3).latency == 4);
+		assertTrue(selectBounds[0] < 0 || selectBounds[0] == 1);
+		assertTrue(selectBounds[1] < 0 || selectBounds[1] == 3);
+	}
+}
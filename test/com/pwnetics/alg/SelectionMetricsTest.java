@@ -0,0 +1,216 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
+import com.pwnetics.alg.QuickSelectDoubleArray.PartitionMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.PivotMethod;
+import com.pwnetics.alg.QuickSelectDoubleArray.SelectionMethod;
+
+public class SelectionMetricsTest {
+
+	private static QuickSelectDoubleArray newQuickSelect(SelectionMethod selectionMethod, PartitionMethod partitionMethod, EnumSet<PivotMethod> pivotMethod, SelectionListener listener) {
+		return new QuickSelectDoubleArray(QuickSelectDoubleArray.DEFAULT_IS_DESCENDING, pivotMethod, new Random(43), QuickSelectDoubleArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD,
+				selectionMethod, partitionMethod, QuickSelectDoubleArray.DEFAULT_SMALL_SORT_THRESHOLD, listener);
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new SelectionMetrics(0.0, 0.1);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new SelectionMetrics(Double.NaN, 0.1);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new SelectionMetrics(6.0, 1.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testBalance() {
+		assertTrue(SelectionMetrics.balance(5, 5) == 1.0);
+		assertTrue(SelectionMetrics.balance(0, 0) == 1.0);
+		assertTrue(SelectionMetrics.balance(0, 10) == 0.0);
+		assertTrue(SelectionMetrics.balance(8, 2) == 0.25);
+	}
+
+
+	@Test
+	public void testRandom() {
+		final int n = 10001;
+		double [] reference = new double[n];
+		Random random = new Random(42);
+		for(int i=0; i<n; i++) {
+			reference[i] = random.nextDouble();
+		}
+		double [] sorted = reference.clone();
+		Arrays.sort(sorted);
+		final double expected = sorted[n - 1 - n / 2];  // Descending order
+
+		for(SelectionMethod selectionMethod : SelectionMethod.values()) {
+			for(PartitionMethod partitionMethod : PartitionMethod.values()) {
+				SelectionMetrics metrics = new SelectionMetrics();
+				QuickSelectDoubleArray qs = newQuickSelect(selectionMethod, partitionMethod, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, metrics);
+				double [] values = reference.clone();
+				qs.select(values, n / 2);
+				assertTrue(values[n / 2] == expected);
+
+				assertTrue(metrics.getCalls() == 1);
+				assertTrue(metrics.getDegenerateCalls() == 0);
+				assertTrue(metrics.getPartitions() > 0);
+				assertTrue(metrics.getElementsScanned() >= n);
+				assertTrue(metrics.getElementsScanned() <= SelectionMetrics.DEFAULT_WORK_FACTOR * n);
+				assertTrue(metrics.getSwaps() > 0);
+				assertTrue(metrics.getMeanBalance() > 0.0 && metrics.getMeanBalance() <= 1.0);
+
+				metrics.reset();
+				assertTrue(metrics.getCalls() == 0 && metrics.getPartitions() == 0 && Double.isNaN(metrics.getMeanBalance()));
+			}
+		}
+	}
+
+
+	@Test
+	public void testDegenerate() {
+		// Equal values all go before the pivot of a two-way partition, so each pass only removes the pivot
+		final int n = 2000;
+		final boolean [] isDegenerateReported = new boolean[1];
+		SelectionMetrics metrics = new SelectionMetrics() {
+			@Override
+			protected void callFinished(int size, int numPartitions, long numScanned, long numSwaps, double minBalance, boolean isDegenerate, long elapsedNanos) {
+				assertTrue(size == n && numPartitions > 100 && minBalance == 0.0);
+				isDegenerateReported[0] = isDegenerate;
+			}
+		};
+		QuickSelectDoubleArray qs = newQuickSelect(SelectionMethod.QUICKSELECT, PartitionMethod.TWO_WAY, EnumSet.noneOf(PivotMethod.class), metrics);
+		double [] values = new double[n];
+		Arrays.fill(values, 1.0);
+		qs.select(values, n / 2);
+
+		assertTrue(isDegenerateReported[0]);
+		assertTrue(metrics.getCalls() == 1 && metrics.getDegenerateCalls() == 1);
+		assertTrue(metrics.getUnbalancedPartitions() == metrics.getPartitions());
+		assertTrue(metrics.getElementsScanned() > SelectionMetrics.DEFAULT_WORK_FACTOR * n);
+
+		// The three-way partition settles all of the equal values in one pass
+		metrics = new SelectionMetrics();
+		qs = newQuickSelect(SelectionMethod.QUICKSELECT, PartitionMethod.THREE_WAY, EnumSet.noneOf(PivotMethod.class), metrics);
+		qs.select(values, n / 2);
+		assertTrue(metrics.getCalls() == 1 && metrics.getDegenerateCalls() == 0 && metrics.getPartitions() == 1);
+		assertTrue(metrics.getElementsScanned() == n && metrics.getSwaps() == 0 && metrics.getMeanBalance() == 1.0);
+	}
+
+
+	@Test
+	public void testEntryPoints() {
+		SelectionMetrics metrics = new SelectionMetrics();
+		QuickSelectDoubleArray qs = newQuickSelect(SelectionMethod.QUICKSELECT, PartitionMethod.TWO_WAY, QuickSelectDoubleArray.DEFAULT_PIVOT_METHOD, metrics);
+		Random random = new Random(42);
+		double [] values = new double[1000];
+		for(int i=0; i<values.length; i++) {
+			values[i] = random.nextInt(100);
+		}
+
+		qs.select(values, 10);
+		assertTrue(metrics.getCalls() == 1);
+		qs.select(values, new int[] {10, 500, 990});
+		assertTrue(metrics.getCalls() == 2);
+		qs.selectEqualRange(values, 500, 0, values.length);
+		assertTrue(metrics.getCalls() == 3);
+
+		values[3] = Double.NaN;
+		long partitions = metrics.getPartitions();
+		qs.select(values, 500, 0, values.length, NaNPolicy.IGNORE);
+		assertTrue(metrics.getCalls() == 4 && metrics.getPartitions() > partitions);
+
+		// Partitions outside of a selection call are counted, but not as a call
+		partitions = metrics.getPartitions();
+		qs.partitionNaN(values, 0, values.length, NaNPolicy.IGNORE);
+		assertTrue(metrics.getCalls() == 4 && metrics.getPartitions() == partitions + 1);
+
+		// A failed call still finishes, so later calls aren't counted as nested in it
+		try {
+			qs.select(values, 500, 0, values.length, NaNPolicy.REJECT);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		assertTrue(metrics.getCalls() == 5);
+		for(int i=0; i<values.length; i++) {
+			values[i] = random.nextInt(100);  // The NaN value was moved, so refill rather than clearing it
+		}
+		qs.select(values, 10);
+		assertTrue(metrics.getCalls() == 6);
+
+		// The unchecked select reports its partitions, but not a call
+		partitions = metrics.getPartitions();
+		qs.selectUnchecked(values, 500, 0, values.length, new int[2]);
+		assertTrue(metrics.getCalls() == 6 && metrics.getPartitions() > partitions);
+	}
+
+
+	@Test
+	public void testPrimitive() {
+		SelectionMetrics metrics = new SelectionMetrics();
+		QuickSelectIntArray qs = new QuickSelectIntArray(false, QuickSelectIntArray.DEFAULT_PIVOT_METHOD, null, QuickSelectIntArray.DEFAULT_MEDIAN_OF_THREE_THRESHOLD,
+				QuickSelectIntArray.SelectionMethod.RADIX, QuickSelectIntArray.DEFAULT_PARTITION_METHOD, QuickSelectIntArray.DEFAULT_SMALL_SORT_THRESHOLD, metrics);
+		int [] values = new int[5000];
+		Random random = new Random(42);
+		for(int i=0; i<values.length; i++) {
+			values[i] = random.nextInt();
+		}
+		int [] sorted = values.clone();
+		Arrays.sort(sorted);
+		qs.select(values, 1234);
+		assertTrue(values[1234] == sorted[1234]);
+		assertTrue(metrics.getCalls() == 1 && metrics.getPartitions() > 0 && metrics.getDegenerateCalls() == 0);
+	}
+}
@@ -0,0 +1,162 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.alg;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKDoubleCollectorTest {
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new TopKDoubleCollector(0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new TopKDoubleCollector(3).offer(Double.NaN);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testSimple() {
+		TopKDoubleCollector topK = new TopKDoubleCollector(2);
+		assertTrue(topK.size() == 0 && Double.isNaN(topK.getThreshold()));
+
+		assertTrue(topK.offer(3, 30));
+		assertTrue(topK.size() == 1);
+		assertTrue(topK.offer(1, 10));
+		assertTrue(topK.offer(4, 40));
+		assertTrue(topK.offer(2, 20));
+
+		// The buffer of four is full, so this compacts to {4, 3} and raises the threshold to 3
+		assertTrue(!topK.offer(0, 0));
+		assertTrue(topK.getThreshold() == 3);
+		assertTrue(!topK.offer(3, 31));
+		assertTrue(topK.offer(5, 50));
+
+		double [] values = topK.getValues();
+		long [] ids = topK.getIds();
+		assertTrue(values.length == 2 && ids.length == 2);
+		assertTrue((values[0] == 5 && ids[0] == 50 && values[1] == 4 && ids[1] == 40) || (values[0] == 4 && ids[0] == 40 && values[1] == 5 && ids[1] == 50));
+		assertTrue(topK.getNumOffered() == 7);
+
+		topK.clear();
+		assertTrue(topK.size() == 0 && topK.getNumOffered() == 0 && Double.isNaN(topK.getThreshold()));
+		assertTrue(topK.offer(-1));
+		assertTrue(topK.getIds()[0] == 0);
+	}
+
+
+	@Test
+	public void testGettersDontRaiseThreshold() {
+		TopKDoubleCollector topK = new TopKDoubleCollector(3);
+		for(int i=1; i<=4; i++) {
+			assertTrue(topK.offer(i));
+		}
+
+		double [] values = topK.getValues();
+		long [] ids = topK.getIds();
+		Arrays.sort(values);
+		assertTrue(values.length == 3 && values[0] == 2 && values[1] == 3 && values[2] == 4);
+		for(long id : ids) {
+			assertTrue(id >= 1 && id <= 3);
+		}
+		assertTrue(Double.isNaN(topK.getThreshold()));
+
+		// Nothing was rejected for lack of room yet, so this is still accepted
+		assertTrue(topK.offer(1.5));
+		assertTrue(topK.offer(0.5));
+		assertTrue(Double.isNaN(topK.getThreshold()));
+
+		// The buffer of six is full, so this compacts to {4, 3, 2} and raises the threshold to 2
+		assertTrue(!topK.offer(1));
+		assertTrue(topK.getThreshold() == 2);
+		values = topK.getValues();
+		Arrays.sort(values);
+		assertTrue(values.length == 3 && values[0] == 2 && values[1] == 3 && values[2] == 4);
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(52);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			for(int trial=0; trial<100; trial++) {
+				int k = 1 + random.nextInt(50);
+				double [] stream = new double[random.nextInt(5000)];
+				for(int i=0; i<stream.length; i++) {
+					stream[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(20);
+				}
+
+				TopKDoubleCollector topK = new TopKDoubleCollector(k, isDescending);
+				double previousThreshold = Double.NaN;
+				for(int i=0; i<stream.length; i++) {
+					topK.offer(stream[i]);
+
+					double threshold = topK.getThreshold();
+					if(!Double.isNaN(previousThreshold)) {
+						assertTrue(isDescending ? threshold >= previousThreshold : threshold <= previousThreshold);
+					}
+					previousThreshold = threshold;
+				}
+
+				double [] values = topK.getValues();
+				long [] ids = topK.getIds();
+				assertTrue(values.length == Math.min(k, stream.length));
+				for(int i=0; i<values.length; i++) {
+					assertTrue(stream[(int)ids[i]] == values[i]);
+				}
+
+				// The collected values are the best ones of the whole stream
+				double [] sorted = stream.clone();
+				Arrays.sort(sorted);
+				double [] collected = values.clone();
+				Arrays.sort(collected);
+				int offset = isDescending ? sorted.length - collected.length : 0;
+				for(int i=0; i<collected.length; i++) {
+					assertTrue(collected[i] == sorted[offset + i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KllQuantileSketchTest {
+
+	/** Largest normalized rank error allowed by these tests; generous compared to the 99% bound for k = 200, so that the seeded tests aren't fragile */
+	private static final double RANK_ERROR_TOLERANCE = 0.025;
+
+
+	/**
+	 * Fraction of sorted values that are less than or equal to the given value.
+	 */
+	private static double exactRank(double [] sorted, double value) {
+		int lo = 0;
+		int hi = sorted.length;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return (double)lo / sorted.length;
+	}
+
+
+	private static void assertQuantilesWithinError(KllQuantileSketch sketch, double [] sorted) {
+		assertTrue(sketch.getN() == sorted.length);
+		assertTrue(sketch.getMin() == sorted[0] && sketch.getMax() == sorted[sorted.length - 1]);
+		for(double p=0.01; p<1.0; p+=0.01) {
+			double q = sketch.quantile(p);
+
+			// The rank of the estimate is a range when the value is duplicated, so measure the distance to the nearest rank of that value
+			double rankBelow = exactRank(sorted, Math.nextDown(q));
+			double rankAtOrBelow = exactRank(sorted, q);
+			assertTrue(p >= rankBelow - RANK_ERROR_TOLERANCE && p <= rankAtOrBelow + RANK_ERROR_TOLERANCE);
+
+			assertTrue(Math.abs(sketch.rank(sorted[(int)(p * sorted.length)]) - exactRank(sorted, sorted[(int)(p * sorted.length)])) <= RANK_ERROR_TOLERANCE);
+		}
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new KllQuantileSketch(KllQuantileSketch.MIN_K - 1);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new KllQuantileSketch().update(Double.NaN);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new KllQuantileSketch().quantile(0.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		KllQuantileSketch sketch = new KllQuantileSketch();
+		sketch.update(1);
+		try {
+			sketch.quantile(1.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			sketch.merge(new KllQuantileSketch(100));
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			KllQuantileSketch.fromByteArray(new byte[] {1, 2, 3});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testExactWhenSmall() {
+		KllQuantileSketch sketch = new KllQuantileSketch(KllQuantileSketch.DEFAULT_K, new Random(1));
+		assertTrue(sketch.isEmpty() && Double.isNaN(sketch.getMin()));
+		for(int i=100; i>=1; i--) {
+			sketch.update(i);
+		}
+
+		// Nothing has been compacted yet, so every quantile is exact
+		assertTrue(sketch.getNumRetained() == 100);
+		assertTrue(sketch.quantile(0.0) == 1 && sketch.quantile(1.0) == 100);
+		assertTrue(sketch.quantile(0.5) == 50);
+		assertTrue(sketch.quantile(0.505) == 51);
+		assertTrue(sketch.rank(0) == 0.0 && sketch.rank(25) == 0.25 && sketch.rank(100) == 1.0);
+		assertTrue(Arrays.equals(sketch.quantiles(new double[] {0.1, 0.9}), new double[] {10, 90}));
+	}
+
+
+	@Test
+	public void testRankError() {
+		Random random = new Random(15);
+		for(int trial=0; trial<4; trial++) {
+			KllQuantileSketch sketch = new KllQuantileSketch(KllQuantileSketch.DEFAULT_K, new Random(trial));
+			double [] stream = new double[200000];
+			for(int i=0; i<stream.length; i++) {
+				switch(trial) {
+				case 0: stream[i] = random.nextDouble(); break;
+				case 1: stream[i] = random.nextGaussian(); break;
+				case 2: stream[i] = random.nextInt(50); break;
+				default: stream[i] = i; break;  // Sorted input
+				}
+				sketch.update(stream[i]);
+			}
+
+			// Memory stays bounded no matter how long the stream is
+			assertTrue(sketch.getNumRetained() < 3 * KllQuantileSketch.DEFAULT_K + 8 * 20);
+
+			Arrays.sort(stream);
+			assertQuantilesWithinError(sketch, stream);
+		}
+	}
+
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(16);
+		double [] stream = new double[100000];
+		KllQuantileSketch [] parts = new KllQuantileSketch[7];
+		for(int p=0; p<parts.length; p++) {
+			parts[p] = new KllQuantileSketch(KllQuantileSketch.DEFAULT_K, new Random(p));
+		}
+		for(int i=0; i<stream.length; i++) {
+			stream[i] = random.nextGaussian();
+			// Uneven shards, each with its own range of values
+			parts[(int)(Math.abs(stream[i]) * 3) % parts.length].update(stream[i]);
+		}
+
+		KllQuantileSketch merged = new KllQuantileSketch(KllQuantileSketch.DEFAULT_K, new Random(100));
+		for(KllQuantileSketch part : parts) {
+			merged.merge(part);
+		}
+		merged.merge(new KllQuantileSketch());  // Merging an empty sketch changes nothing
+
+		Arrays.sort(stream);
+		assertQuantilesWithinError(merged, stream);
+		assertTrue(merged.getNumRetained() < 3 * KllQuantileSketch.DEFAULT_K + 8 * 20);
+	}
+
+
+	@Test
+	public void testSerialization() {
+		KllQuantileSketch empty = KllQuantileSketch.fromByteArray(new KllQuantileSketch(50).toByteArray());
+		assertTrue(empty.isEmpty() && empty.getK() == 50);
+
+		Random random = new Random(17);
+		KllQuantileSketch sketch = new KllQuantileSketch(KllQuantileSketch.DEFAULT_K, new Random(0));
+		for(int i=0; i<50000; i++) {
+			sketch.update(random.nextDouble());
+		}
+		byte [] bytes = sketch.toByteArray();
+		assertTrue(bytes.length < 8 * sketch.getNumRetained() + 200);
+
+		KllQuantileSketch copy = KllQuantileSketch.fromByteArray(bytes);
+		assertTrue(copy.getK() == sketch.getK() && copy.getN() == sketch.getN() && copy.getNumRetained() == sketch.getNumRetained());
+		assertTrue(copy.getMin() == sketch.getMin() && copy.getMax() == sketch.getMax());
+		for(double p=0.0; p<=1.0; p+=0.05) {
+			assertTrue(copy.quantile(p) == sketch.quantile(p));
+		}
+		assertTrue(Arrays.equals(copy.toByteArray(), bytes));
+
+		// A deserialized sketch keeps working
+		copy.merge(sketch);
+		copy.update(2.0);
+		assertTrue(copy.getN() == 2 * sketch.getN() + 1 && copy.getMax() == 2.0);
+
+		try {
+			KllQuantileSketch.fromByteArray(Arrays.copyOf(bytes, bytes.length - 8));
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.math.QuickQuantileDoubleArray.QuantileType;
+
+public class QuickGroupedQuantileDoubleArrayTest {
+
+	@Test
+	public void testIllegalArguments() {
+		QuickGroupedQuantileDoubleArray q = new QuickGroupedQuantileDoubleArray();
+		try {
+			q.medians(null, new double[0], 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			q.medians(new int[2], new double[3], 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			q.medians(new int[] {0, 1}, new double[2], 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			q.medians(new int[] {-1}, new double[1], 1);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			q.quantiles(new int[] {0}, new double[1], 1, new double[] {1.1});
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			QuickGroupedQuantileDoubleArray.group(new int[2], new double[2], 1, new double[1]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testGroup() {
+		double [] grouped = new double[6];
+		int [] offsets = QuickGroupedQuantileDoubleArray.group(new int[] {2, 0, 2, 3, 0, 2}, new double[] {1, 2, 3, 4, 5, 6}, 5, grouped);
+		assertTrue(Arrays.equals(offsets, new int[] {0, 2, 2, 5, 6, 6}));
+		assertTrue(Arrays.equals(grouped, new double[] {2, 5, 1, 3, 6, 4}));
+	}
+
+
+	@Test
+	public void testSimple() {
+		QuickGroupedQuantileDoubleArray q = new QuickGroupedQuantileDoubleArray();
+		int [] keys = new int[] {1, 0, 1, 1, 0, 3};
+		double [] values = new double[] {5, 2, 1, 3, 4, 7};
+		double [] original = values.clone();
+		assertTrue(Arrays.equals(q.medians(keys, values, 4), new double[] {3, 3, Double.NaN, 7}));
+		double [][] quantiles = q.quantiles(keys, values, 4, new double[] {0.0, 1.0});
+		assertTrue(Arrays.equals(quantiles[0], new double[] {2, 4}));
+		assertTrue(Arrays.equals(quantiles[1], new double[] {1, 5}));
+		assertTrue(Double.isNaN(quantiles[2][0]) && Double.isNaN(quantiles[2][1]));
+		assertTrue(Arrays.equals(quantiles[3], new double[] {7, 7}));
+		assertTrue(Arrays.equals(values, original));
+		assertTrue(q.medians(new int[0], new double[0], 0).length == 0);
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(109);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for(int trial=0; trial<30; trial++) {
+				QuantileType type = QuantileType.values()[trial % QuantileType.values().length];
+				QuickSelectDoubleArray quickSelect = new QuickSelectDoubleArray(random.nextBoolean());
+				QuickGroupedQuantileDoubleArray q = new QuickGroupedQuantileDoubleArray(quickSelect, type);
+				QuickQuantileDoubleArray reference = new QuickQuantileDoubleArray(quickSelect, type);
+
+				final int numGroups = 1 + random.nextInt(trial < 15 ? 10 : 3000);
+				int [] keys = new int[random.nextInt(200000)];
+				double [] values = new double[keys.length];
+				for(int i=0; i<keys.length; i++) {
+					// Skewed group sizes, so some groups are large and some are empty
+					keys[i] = (int)(numGroups * Math.pow(random.nextDouble(), 2));
+					values[i] = (trial & 1) == 0 ? random.nextInt(10) : random.nextGaussian();
+				}
+				double [] probabilities = new double[] {0.5, random.nextDouble(), 0.0, 1.0};
+
+				// Reference: copy each group out on its own
+				double [][] groups = new double[numGroups][];
+				int [] sizes = new int[numGroups];
+				for(int key : keys) {
+					sizes[key]++;
+				}
+				for(int g=0; g<numGroups; g++) {
+					groups[g] = new double[sizes[g]];
+					sizes[g] = 0;
+				}
+				for(int i=0; i<keys.length; i++) {
+					groups[keys[i]][sizes[keys[i]]++] = values[i];
+				}
+
+				double [] medians = q.medians(keys, values, numGroups, trial % 3 == 0 ? pool : null);
+				double [][] quantiles = q.quantiles(keys, values, numGroups, probabilities, trial % 3 == 1 ? pool : null);
+				for(int g=0; g<numGroups; g++) {
+					if(groups[g].length == 0) {
+						assertTrue(Double.isNaN(medians[g]) && Double.isNaN(quantiles[g][0]));
+					} else {
+						assertTrue(medians[g] == SortingMedianDoubleArray.median(groups[g].clone()));
+						assertTrue(Arrays.equals(quantiles[g], reference.quantiles(groups[g].clone(), probabilities)));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
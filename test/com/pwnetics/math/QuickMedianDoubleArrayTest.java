@@ -33,9 +33,12 @@ import static org.junit.Assert.assertTrue;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArray.NaNPolicy;
 import com.pwnetics.alg.QuickSelectDoubleArrayTest;
 
 public class QuickMedianDoubleArrayTest {
@@ -197,4 +200,188 @@ public class QuickMedianDoubleArrayTest {
 			assertTrue(SortingMedianDoubleArray.median(reference) == m);
 		}
 	}
+
+
+	@Test
+	public void testMedianSmall() {
+		// Covers the sorting fast path and the sizes just above it
+		Random random = new Random(34);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickMedianDoubleArray med = new QuickMedianDoubleArray(new QuickSelectDoubleArray(isDescending));
+			for(int trial=0; trial<2000; trial++) {
+				double [] reference = new double[1 + random.nextInt(64)];
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 1) == 0 ? random.nextDouble() : random.nextInt(4);
+				}
+
+				double [] v = reference.clone();
+				double m = med.median(v);
+				QuickSelectDoubleArrayTest.assertSelect(v, reference.length-1, reference);
+				assertTrue(SortingMedianDoubleArray.median(reference) == m);
+			}
+		}
+	}
+
+
+	@Test
+	public void testMedianNaNPolicy() {
+		QuickMedianDoubleArray med = new QuickMedianDoubleArray();
+		try {
+			med.median(new double[] {1, NaN, 3}, NaNPolicy.REJECT);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			med.median(new double[] {1, 2, 3}, null);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		assertTrue(med.median(new double[] {3, 1, 2}, NaNPolicy.REJECT) == 2.0);
+		assertTrue(med.median(new double[] {NaN, 3, NaN, 1, 2, 4}, NaNPolicy.IGNORE) == 2.5);
+		assertTrue(Double.isNaN(med.median(new double[] {NaN, NaN}, NaNPolicy.IGNORE)));
+		assertTrue(med.median(new double[] {NaN, 3, 1, 2, 4}, NaNPolicy.LARGEST) == 3.0);
+		assertTrue(Double.isNaN(med.median(new double[] {NaN, 3, NaN, 1}, NaNPolicy.LARGEST)));
+
+		Random random = new Random(35);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			med = new QuickMedianDoubleArray(new QuickSelectDoubleArray(isDescending));
+			for(int trial=0; trial<500; trial++) {
+				double [] reference = new double[1 + random.nextInt(trial < 250 ? 20 : 2000)];
+				int numNaN = 0;
+				for(int i=0; i<reference.length; i++) {
+					if(random.nextInt(3) == 0) {
+						reference[i] = NaN;
+						numNaN++;
+					} else {
+						reference[i] = random.nextDouble();
+					}
+				}
+				double [] sorted = reference.clone();
+				Arrays.sort(sorted);
+
+				double m = med.median(reference.clone(), NaNPolicy.IGNORE);
+				if(numNaN == reference.length) {
+					assertTrue(Double.isNaN(m));
+				} else {
+					assertTrue(m == SortingMedianDoubleArray.median(Arrays.copyOf(sorted, sorted.length - numNaN)));
+				}
+
+				// With NaN as the largest value, the median is NaN exactly when a middle element of the sorted array is
+				m = med.median(reference.clone(), NaNPolicy.LARGEST);
+				int highMiddleIdx = sorted.length >>> 1;
+				double expected = (sorted.length & 1) == 1 ? sorted[highMiddleIdx] : (sorted[highMiddleIdx - 1] + sorted[highMiddleIdx]) / 2.0;
+				assertTrue(Double.compare(m, expected) == 0);
+			}
+		}
+	}
+
+
+	@Test
+	public void testMedianNonDestructive() {
+		Random random = new Random(89);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			QuickMedianDoubleArray med = new QuickMedianDoubleArray(new QuickSelectDoubleArray(isDescending));
+			for(int trial=0; trial<200; trial++) {
+				double [] reference = new double[1 + random.nextInt(trial < 100 ? 40 : 20000)];
+				for(int i=0; i<reference.length; i++) {
+					reference[i] = (trial & 3) == 0 ? random.nextInt(5) : random.nextGaussian();
+				}
+				double [] original = reference.clone();
+				double expected = SortingMedianDoubleArray.median(reference.clone());
+				assertTrue(med.medianNonDestructive(reference) == expected);
+				assertTrue(med.medianNonDestructive(reference, new double[reference.length]) == expected);
+				assertTrue(Arrays.equals(reference, original));
+			}
+		}
+
+		QuickMedianDoubleArray med = new QuickMedianDoubleArray();
+		try {
+			med.medianNonDestructive(new double[0]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			med.medianNonDestructive(new double[2], new double[1]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testMedians() {
+		Random random = new Random(103);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for(boolean isDescending : new boolean[] {true, false}) {
+				QuickMedianDoubleArray med = new QuickMedianDoubleArray(new QuickSelectDoubleArray(isDescending));
+				for(int trial=0; trial<40; trial++) {
+					// Mostly short segments, as in a median per sensor per minute, with an occasional empty or long one
+					double [][] arrays = new double[random.nextInt(trial < 20 ? 50 : 5000)][];
+					int [] offsets = new int[arrays.length + 1];
+					for(int i=0; i<arrays.length; i++) {
+						arrays[i] = new double[random.nextInt(20) == 0 ? random.nextInt(500) : random.nextInt(80)];
+						for(int j=0; j<arrays[i].length; j++) {
+							arrays[i][j] = (trial & 1) == 0 ? random.nextInt(5) : random.nextGaussian();
+						}
+						offsets[i + 1] = offsets[i] + arrays[i].length;
+					}
+					double [] flat = new double[offsets[arrays.length]];
+					for(int i=0; i<arrays.length; i++) {
+						System.arraycopy(arrays[i], 0, flat, offsets[i], arrays[i].length);
+					}
+
+					double [] expected = new double[arrays.length];
+					for(int i=0; i<arrays.length; i++) {
+						expected[i] = arrays[i].length == 0 ? NaN : SortingMedianDoubleArray.median(arrays[i].clone());
+					}
+
+					double [][] copies = new double[arrays.length][];
+					for(int i=0; i<arrays.length; i++) {
+						copies[i] = arrays[i].clone();
+					}
+					assertTrue(Arrays.equals(med.medians(copies), expected));
+					assertTrue(Arrays.equals(med.medians(arrays, pool), expected));
+					assertTrue(Arrays.equals(med.medians(flat.clone(), offsets), expected));
+					assertTrue(Arrays.equals(med.medians(flat, offsets, pool), expected));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		QuickMedianDoubleArray med = new QuickMedianDoubleArray();
+		assertTrue(med.medians(new double[0][]).length == 0);
+		assertTrue(med.medians(new double[5], new int[] {2}).length == 0);
+		assertTrue(Arrays.equals(med.medians(new double[] {9, 3, 1, 2, 5}, new int[] {1, 3, 3, 5}), new double[] {2.0, NaN, 3.5}));
+		try {
+			med.medians(new double[][] {null});
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			med.medians(new double[3], new int[0]);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			med.medians(new double[3], new int[] {0, 4});
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+		try {
+			med.medians(new double[3], new int[] {0, 2, 1});
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
 }
@@ -0,0 +1,146 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the QuickMedian classes generated for int, long and float arrays.
+ */
+public class QuickMedianPrimitiveArraysTest {
+
+	@Test
+	public void testIntArray() {
+		QuickMedianIntArray med = new QuickMedianIntArray();
+		assertTrue(med.median(new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE}) == Integer.MAX_VALUE);
+		assertTrue(med.median(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE}) == -0.5);
+		assertTrue(med.median(new int[] {3, 1, 2, 4}) == 2.5);
+
+		Random random = new Random(71);
+		for(int trial=0; trial<100; trial++) {
+			int [] reference = new int[1 + random.nextInt(2000)];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = random.nextInt();
+			}
+			int [] sorted = reference.clone();
+			Arrays.sort(sorted);
+			int middleIdx = sorted.length >>> 1;
+			double expected = (sorted.length & 1) == 1 ? sorted[middleIdx] : ((double)sorted[middleIdx - 1] + sorted[middleIdx]) / 2.0;
+			assertTrue(med.median(reference) == expected);
+		}
+	}
+
+
+	@Test
+	public void testLongArray() {
+		QuickMedianLongArray med = new QuickMedianLongArray();
+		assertTrue(med.median(new long[] {Long.MAX_VALUE, Long.MAX_VALUE}) == Long.MAX_VALUE);
+		assertTrue(med.median(new long[] {7, 1, 3}) == 3.0);
+
+		Random random = new Random(73);
+		for(int trial=0; trial<100; trial++) {
+			long [] reference = new long[1 + random.nextInt(2000)];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = random.nextInt(1000000);
+			}
+			long [] sorted = reference.clone();
+			Arrays.sort(sorted);
+			int middleIdx = sorted.length >>> 1;
+			double expected = (sorted.length & 1) == 1 ? sorted[middleIdx] : (sorted[middleIdx - 1] + sorted[middleIdx]) / 2.0;
+			assertTrue(med.median(reference) == expected);
+		}
+	}
+
+
+	@Test
+	public void testFloatArray() {
+		QuickMedianFloatArray med = new QuickMedianFloatArray();
+		assertTrue(med.median(new float[] {Float.MAX_VALUE, Float.MAX_VALUE}) == Float.MAX_VALUE);
+		assertTrue(med.median(new float[] {Float.POSITIVE_INFINITY, 0.0f}) == Double.POSITIVE_INFINITY);
+
+		Random random = new Random(79);
+		for(int trial=0; trial<100; trial++) {
+			float [] reference = new float[1 + random.nextInt(2000)];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = random.nextFloat();
+			}
+			float [] sorted = reference.clone();
+			Arrays.sort(sorted);
+			int middleIdx = sorted.length >>> 1;
+			double expected = (sorted.length & 1) == 1 ? sorted[middleIdx] : ((double)sorted[middleIdx - 1] + sorted[middleIdx]) / 2.0;
+			assertTrue(med.median(reference) == expected);
+		}
+	}
+
+
+	@Test
+	public void testMedianNonDestructive() {
+		QuickMedianIntArray intMed = new QuickMedianIntArray();
+		QuickMedianLongArray longMed = new QuickMedianLongArray();
+		Random random = new Random(97);
+		for(int trial=0; trial<50; trial++) {
+			int [] intReference = new int[1 + random.nextInt(10000)];
+			long [] longReference = new long[intReference.length];
+			for(int i=0; i<intReference.length; i++) {
+				intReference[i] = random.nextInt();
+				longReference[i] = random.nextLong() >> 12;
+			}
+			int [] intOriginal = intReference.clone();
+			long [] longOriginal = longReference.clone();
+			assertTrue(intMed.medianNonDestructive(intReference) == intMed.median(intReference.clone()));
+			assertTrue(longMed.medianNonDestructive(longReference) == longMed.median(longReference.clone()));
+			assertTrue(Arrays.equals(intReference, intOriginal));
+			assertTrue(Arrays.equals(longReference, longOriginal));
+		}
+	}
+
+
+	@Test
+	public void testMedians() {
+		QuickMedianIntArray med = new QuickMedianIntArray();
+		Random random = new Random(107);
+		int [][] arrays = new int[2000][];
+		double [] expected = new double[arrays.length];
+		for(int i=0; i<arrays.length; i++) {
+			arrays[i] = new int[1 + random.nextInt(100)];
+			for(int j=0; j<arrays[i].length; j++) {
+				arrays[i][j] = random.nextInt();
+			}
+			expected[i] = med.median(arrays[i].clone());
+		}
+		assertTrue(Arrays.equals(med.medians(arrays), expected));
+	}
+}
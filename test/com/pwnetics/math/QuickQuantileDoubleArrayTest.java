@@ -0,0 +1,261 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pwnetics.alg.QuickSelectDoubleArray;
+import com.pwnetics.alg.QuickSelectDoubleArrayTest;
+import com.pwnetics.math.QuickQuantileDoubleArray.QuantileType;
+
+public class QuickQuantileDoubleArrayTest {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+	private static final double NINF = Double.NEGATIVE_INFINITY;
+	private static final double MAX = Double.MAX_VALUE;
+	private static final double NMAX = -MAX;
+
+	private static final double [] PROBABILITIES = new double[] {0.0, 0.1, 0.25, 0.5, 0.9, 1.0};
+
+	/** Quantiles of the values 1 through 10 at {@link #PROBABILITIES}, one row per {@link QuantileType}, worked out by hand from the Hyndman and Fan definitions */
+	private static final double [][] ONE_TO_TEN_QUANTILES = new double[][] {
+		{1, 1.0, 3.0, 5.0, 9.0, 10},
+		{1, 1.5, 3.0, 5.5, 9.5, 10},
+		{1, 1.0, 2.0, 5.0, 9.0, 10},
+		{1, 1.0, 2.5, 5.0, 9.0, 10},
+		{1, 1.5, 3.0, 5.5, 9.5, 10},
+		{1, 1.1, 2.75, 5.5, 9.9, 10},
+		{1, 1.9, 3.25, 5.5, 9.1, 10},
+		{1, 1.1 + 0.8 / 3, 2.5 + 1.25 / 3, 5.5, 9 + 1.9 / 3, 10},
+		{1, 1.4, 2.9375, 5.5, 9.6, 10},
+	};
+
+
+	@Test
+	public void testQuantileIllegalArguments() {
+		QuickQuantileDoubleArray q = new QuickQuantileDoubleArray();
+
+		try {
+			q.quantile(null, 0.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			q.quantile(new double[0], 0.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			q.quantiles(new double[10], null);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		for(double probability : new double[] {-0.1, 1.1, Double.NaN}) {
+			try {
+				q.quantile(new double[10], probability);
+				assertTrue("should throw exception", false);
+			} catch (IllegalArgumentException e) {
+				assertTrue(true);  // Exception correctly thrown
+			}
+		}
+	}
+
+
+	@Test
+	public void testQuantileTypes() {
+		Random random = new Random(47);
+		for(boolean isDescending : new boolean[] {true, false}) {
+			for(QuantileType type : QuantileType.values()) {
+				QuickQuantileDoubleArray q = new QuickQuantileDoubleArray(new QuickSelectDoubleArray(isDescending), type);
+				double [] expected = ONE_TO_TEN_QUANTILES[type.ordinal()];
+				for(int trial=0; trial<10; trial++) {
+					double [] v = new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+					for(int i=v.length-1; i>0; i--) {
+						int j = random.nextInt(i + 1);
+						double swap = v[i];
+						v[i] = v[j];
+						v[j] = swap;
+					}
+
+					double [] quantiles = q.quantiles(v, PROBABILITIES);
+					for(int i=0; i<PROBABILITIES.length; i++) {
+						assertTrue(type + " " + PROBABILITIES[i] + ": " + quantiles[i], Math.abs(expected[i] - quantiles[i]) < 1e-12);
+					}
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testQuantileEdgeCases() {
+		QuickQuantileDoubleArray q = new QuickQuantileDoubleArray();
+		assertTrue(q.quantile(new double[] {42.42}, 0.0) == 42.42);
+		assertTrue(q.quantile(new double[] {42.42}, 0.7) == 42.42);
+		assertTrue(q.quantile(new double[] {NMAX, MAX}, 0.5) == 0.0);
+		assertTrue(q.quantile(new double[] {MAX, MAX}, 0.3) == MAX);
+		assertTrue(q.quantile(new double[] {INF, 0.0}, 0.3) == INF);
+		assertTrue(q.quantile(new double[] {NINF, 0.0}, 0.3) == NINF);
+		assertTrue(Double.isNaN(q.quantile(new double[] {NINF, INF}, 0.3)));
+		assertTrue(q.quantile(new double[] {NINF, INF}, 0.0) == NINF);
+		assertTrue(q.quantile(new double[] {NINF, INF}, 1.0) == INF);
+		assertTrue(q.quantiles(new double[] {1.0}, new double[0]).length == 0);
+	}
+
+
+	@Test
+	public void testQuantileRandom() {
+		QuickMedianDoubleArray med = new QuickMedianDoubleArray();
+		Random random = new Random(53);
+		for(int trial=0; trial<200; trial++) {
+			double [] reference = new double[1 + random.nextInt(2000)];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = (trial & 1) == 0 ? random.nextGaussian() : random.nextInt(20);
+			}
+			double [] sorted = reference.clone();
+			Arrays.sort(sorted);
+
+			double [] probabilities = new double[random.nextInt(8)];
+			for(int i=0; i<probabilities.length; i++) {
+				probabilities[i] = random.nextInt(4) == 0 ? random.nextInt(101) / 100.0 : random.nextDouble();
+			}
+
+			QuantileType type = QuantileType.values()[trial % QuantileType.values().length];
+			QuickQuantileDoubleArray q = new QuickQuantileDoubleArray(new QuickSelectDoubleArray(random.nextBoolean()), type);
+			double [] v = reference.clone();
+			double [] quantiles = q.quantiles(v, probabilities);
+			QuickSelectDoubleArrayTest.assertSelect(v, reference.length-1, reference);  // quantile calculation isn't destructive
+
+			for(int i=0; i<probabilities.length; i++) {
+				double expected = sortingQuantile(sorted, probabilities[i], type);
+				assertTrue(type + " " + probabilities[i], Math.abs(expected - quantiles[i]) <= 1e-9 * Math.max(1.0, Math.abs(expected)));
+			}
+
+			v = reference.clone();
+			assertTrue(new QuickQuantileDoubleArray().quantile(v, 0.5) == med.median(reference.clone()));
+		}
+	}
+
+
+	/**
+	 * Calculates a quantile directly from the Hyndman and Fan definition over a sorted array, as a reference.
+	 * @param sorted values sorted in ascending order
+	 * @param p probability
+	 * @param type sample quantile definition
+	 * @return quantile
+	 */
+	private static double sortingQuantile(double [] sorted, double p, QuantileType type) {
+		final int n = sorted.length;
+		final double [] m = new double[] {0, 0, -0.5, 0, 0.5, p, 1 - p, (p + 1) / 3, p / 4 + 3.0 / 8};
+		final double npm = n * p + m[type.ordinal()];
+		final int j = (int)Math.floor(npm + 1e-12);
+		final double g = Math.abs(npm - j) < 1e-12 ? 0 : npm - j;
+		double gamma;
+		switch(type) {
+		case TYPE_1: gamma = g > 0 ? 1 : 0; break;
+		case TYPE_2: gamma = g > 0 ? 1 : 0.5; break;
+		case TYPE_3: gamma = (g == 0 && j % 2 == 0) ? 0 : 1; break;
+		default: gamma = g;
+		}
+		double lower = sorted[Math.min(Math.max(j, 1), n) - 1];
+		double upper = sorted[Math.min(Math.max(j + 1, 1), n) - 1];
+		return (1 - gamma) * lower + gamma * upper;
+	}
+
+
+	@Test
+	public void testQuantileNonDestructive() {
+		Random random = new Random(101);
+		for(int trial=0; trial<200; trial++) {
+			double [] reference = new double[1 + random.nextInt(trial < 100 ? 40 : 20000)];
+			for(int i=0; i<reference.length; i++) {
+				reference[i] = (trial & 3) == 0 ? random.nextInt(5) : random.nextGaussian();
+			}
+			double [] original = reference.clone();
+			double probability = random.nextInt(4) == 0 ? random.nextInt(11) / 10.0 : random.nextDouble();
+
+			QuantileType type = QuantileType.values()[trial % QuantileType.values().length];
+			QuickQuantileDoubleArray q = new QuickQuantileDoubleArray(new QuickSelectDoubleArray(random.nextBoolean()), type);
+			double expected = q.quantile(reference.clone(), probability);
+			assertTrue(type + " " + probability, q.quantileNonDestructive(reference, probability) == expected);
+			assertTrue(Arrays.equals(reference, original));
+		}
+
+		QuickQuantileDoubleArray q = new QuickQuantileDoubleArray();
+		try {
+			q.quantileNonDestructive(new double[] {1.0}, 1.5);
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testQuantilesSubset() {
+		Random random = new Random(113);
+		for(int trial=0; trial<100; trial++) {
+			double [] values = new double[1 + random.nextInt(500)];
+			for(int i=0; i<values.length; i++) {
+				values[i] = random.nextGaussian();
+			}
+			int beginIndex = random.nextInt(values.length);
+			int endIndex = beginIndex + 1 + random.nextInt(values.length - beginIndex);
+			double [] probabilities = new double[] {random.nextDouble(), 0.5, 0.0, 1.0};
+
+			QuickQuantileDoubleArray q = new QuickQuantileDoubleArray(new QuickSelectDoubleArray(random.nextBoolean()), QuantileType.values()[trial % QuantileType.values().length]);
+			double [] expected = q.quantiles(Arrays.copyOfRange(values, beginIndex, endIndex), probabilities);
+			double [] v = values.clone();
+			assertTrue(Arrays.equals(q.quantiles(v, beginIndex, endIndex, probabilities), expected));
+			for(int i=0; i<values.length; i++) {
+				assertTrue(i >= beginIndex && i < endIndex || v[i] == values[i]);  // only the subset is reordered
+			}
+		}
+
+		try {
+			new QuickQuantileDoubleArray().quantiles(new double[3], 2, 2, new double[] {0.5});
+			assertTrue("should throw exception", false);
+		} catch(IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+}
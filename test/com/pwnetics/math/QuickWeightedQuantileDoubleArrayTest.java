@@ -0,0 +1,211 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pwnetics.math.QuickQuantileDoubleArray.QuantileType;
+
+public class QuickWeightedQuantileDoubleArrayTest {
+
+	/**
+	 * Expands values by their counts, the slow way that the weighted quantile avoids.
+	 */
+	private static double [] expand(double [] values, long [] counts) {
+		int n = 0;
+		for(long count : counts) {
+			n += count;
+		}
+		double [] expanded = new double[n];
+		int k = 0;
+		for(int i=0; i<values.length; i++) {
+			for(long c=0; c<counts[i]; c++) {
+				expanded[k++] = values[i];
+			}
+		}
+		return expanded;
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray();
+		try {
+			qw.median(new double[] {1, 2}, new double[] {1});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			qw.median(new double[] {1, 2}, new double[] {1, -1});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			qw.median(new double[] {1, 2}, new double[] {0, 0});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			qw.median(new double[] {}, new long[] {});
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			qw.quantile(new double[] {1}, new long[] {1}, 1.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testSimple() {
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray(new Random(17));
+		assertTrue(qw.median(new double[] {3, 1, 2}, new double[] {1, 1, 5}) == 2);
+		assertTrue(qw.median(new double[] {3, 1, 2}, new double[] {10, 1, 5}) == 3);
+		assertTrue(qw.median(new double[] {3, 1, 2}, new long[] {3, 2, 1}) == 2.5);
+		assertTrue(qw.median(new double[] {3, 1, 2}, new long[] {3, 3, 0}) == 2);  // Zero weights are never the result
+		assertTrue(qw.quantile(new double[] {3, 1, 2}, new long[] {3, 2, 1}, 0.0) == 1);
+		assertTrue(qw.quantile(new double[] {3, 1, 2, 9}, new long[] {3, 2, 1, 0}, 1.0) == 3);
+		assertTrue(qw.quantile(new double[] {3, 1, 2}, new double[] {0.25, 0.5, 0.25}, 0.6) == 2);
+
+		// Each weight moves with its value
+		double [] values = new double[] {5, 4, 3, 2, 1};
+		long [] counts = new long[] {50, 40, 30, 20, 10};
+		qw.median(values, counts);
+		for(int i=0; i<values.length; i++) {
+			assertTrue(counts[i] == 10 * values[i]);
+		}
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(18);
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray();
+		QuickQuantileDoubleArray qq = new QuickQuantileDoubleArray(QuantileType.TYPE_2);
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		for(int trial=0; trial<300; trial++) {
+			double [] values = new double[1 + random.nextInt(300)];
+			long [] counts = new long[values.length];
+			for(int i=0; i<values.length; i++) {
+				values[i] = (trial & 1) == 0 ? random.nextGaussian() : random.nextInt(20);
+				counts[i] = random.nextInt(5);
+			}
+			counts[random.nextInt(counts.length)] = 1 + random.nextInt(5);
+			double [] expanded = expand(values, counts);
+			double probability = (trial % 3) == 0 ? 0.5 : random.nextInt(11) / 10.0;
+
+			double [] doubleCounts = new double[counts.length];
+			for(int i=0; i<counts.length; i++) {
+				doubleCounts[i] = counts[i];
+			}
+
+			double expected = probability == 0.5 ? qm.median(expanded.clone()) : qq.quantile(expanded.clone(), probability);
+			assertTrue(qw.quantile(values.clone(), counts.clone(), probability) == expected);
+			assertTrue(qw.quantile(values.clone(), doubleCounts, probability) == expected);
+		}
+	}
+
+
+	@Test
+	public void testFuzz() {
+		// Probabilities m/n times a total count of n round to just below or above m, which must count as m, as in TYPE_2
+		Random random = new Random(20);
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray();
+		QuickQuantileDoubleArray qq = new QuickQuantileDoubleArray(QuantileType.TYPE_2);
+		for(int n=1; n<=40; n++) {
+			double [] values = new double[n];
+			long [] counts = new long[n];
+			double [] doubleCounts = new double[n];
+			for(int i=0; i<n; i++) {
+				values[i] = random.nextInt(2 * n);
+				counts[i] = 1;
+				doubleCounts[i] = 1.0;
+			}
+			for(int m=0; m<=n; m++) {
+				double probability = m / (double)n;
+				double expected = qq.quantile(values.clone(), probability);
+				assertTrue(qw.quantile(values.clone(), counts.clone(), probability) == expected);
+				assertTrue(qw.quantile(values.clone(), doubleCounts.clone(), probability) == expected);
+			}
+		}
+
+		double [] values = new double[22];
+		for(int i=0; i<values.length; i++) {
+			values[i] = i < 15 ? 4.0 : 5.0;
+		}
+		long [] counts = new long[22];
+		Arrays.fill(counts, 1);
+		assertTrue(qw.quantile(values, counts, 15 / 22.0) == 4.5);
+	}
+
+
+	@Test
+	public void testScaledWeights() {
+		// Scaling every weight by the same factor doesn't change the answer, up to the exact-tie averaging
+		Random random = new Random(19);
+		QuickWeightedQuantileDoubleArray qw = new QuickWeightedQuantileDoubleArray();
+		for(int trial=0; trial<100; trial++) {
+			double [] values = new double[1 + random.nextInt(1000)];
+			double [] weights = new double[values.length];
+			for(int i=0; i<values.length; i++) {
+				values[i] = random.nextDouble();
+				weights[i] = random.nextDouble();
+			}
+			double probability = random.nextDouble();
+
+			double [] sortedValues = values.clone();
+			Arrays.sort(sortedValues);
+			double q = qw.quantile(values.clone(), weights.clone(), probability);
+			double [] scaledWeights = weights.clone();
+			for(int i=0; i<scaledWeights.length; i++) {
+				scaledWeights[i] *= 1000.0;
+			}
+			assertTrue(q == qw.quantile(values.clone(), scaledWeights, probability));
+			assertTrue(Arrays.binarySearch(sortedValues, q) >= 0);
+		}
+	}
+}
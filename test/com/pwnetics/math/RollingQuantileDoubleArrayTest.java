@@ -0,0 +1,169 @@
+/*
+Copyright 2011 Brian Romanowski. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are
+permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of
+conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list
+of conditions and the following disclaimer in the documentation and/or other materials
+provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY BRIAN ROMANOWSKI ``AS IS'' AND ANY EXPRESS OR IMPLIED
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL BRIAN ROMANOWSKI OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those of the
+authors.
+*/
+
+
+
+
+package com.pwnetics.math;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RollingQuantileDoubleArrayTest {
+
+	private static boolean nearlyEqual(double x, double y) {
+		return x == y || Math.abs(x - y) <= 1e-12 * Math.max(Math.abs(x), Math.abs(y));
+	}
+
+
+	@Test
+	public void testIllegalArguments() {
+		try {
+			new RollingQuantileDoubleArray(1.5);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new RollingQuantileDoubleArray().add(Double.NaN);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new RollingQuantileDoubleArray().removeOldest();
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new RollingQuantileDoubleArray().quantiles(new double[] {1, 2}, 0);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+
+		try {
+			new RollingQuantileDoubleArray().quantiles(new double[] {1, 2}, new long[] {2, 1}, 10);
+			assertTrue("should throw exception", false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(true);  // Exception correctly thrown
+		}
+	}
+
+
+	@Test
+	public void testSimple() {
+		RollingQuantileDoubleArray rm = new RollingQuantileDoubleArray();
+		assertTrue(Double.isNaN(rm.quantile()));
+		assertTrue(Arrays.equals(rm.quantiles(new double[] {5, 1, 3, 2, 8, 8, 0}, 3), new double[] {5, 3, 3, 2, 3, 8, 8}));
+		assertTrue(Arrays.equals(rm.quantiles(new double[] {4, 1, 2, 3}, 2), new double[] {4, 2.5, 1.5, 2.5}));
+
+		rm.clear();
+		rm.add(3);
+		rm.add(1);
+		rm.add(2);
+		assertTrue(rm.size() == 3 && rm.quantile() == 2);
+		assertTrue(rm.removeOldest() == 3);
+		assertTrue(rm.quantile() == 1.5);
+
+		// Windows of the last 10 time units
+		double [] values = new double[] {1, 9, 2, 8, 3};
+		long [] timestamps = new long[] {0, 5, 10, 10, 30};
+		assertTrue(Arrays.equals(rm.quantiles(values, timestamps, 10), new double[] {1, 5, 5.5, 8, 3}));
+
+		RollingQuantileDoubleArray rmax = new RollingQuantileDoubleArray(1.0);
+		assertTrue(Arrays.equals(rmax.quantiles(new double[] {5, 1, 3, 2, 8, 8, 0}, 3), new double[] {5, 5, 5, 3, 8, 8, 8}));
+	}
+
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(16);
+		for(int trial=0; trial<60; trial++) {
+			double probability = trial % 3 == 0 ? 0.5 : random.nextDouble();
+			double [] values = new double[1 + random.nextInt(2000)];
+			for(int i=0; i<values.length; i++) {
+				values[i] = (trial & 1) == 0 ? random.nextGaussian() : random.nextInt(10);
+			}
+			int windowSize = 1 + random.nextInt(100);
+
+			QuickQuantileDoubleArray qq = new QuickQuantileDoubleArray();
+			QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+			RollingQuantileDoubleArray rq = new RollingQuantileDoubleArray(probability);
+			double [] quantiles = rq.quantiles(values, windowSize);
+			for(int i=0; i<values.length; i++) {
+				double [] window = Arrays.copyOfRange(values, Math.max(0, i - windowSize + 1), i + 1);
+				double expected = probability == 0.5 ? qm.median(window) : qq.quantile(window, probability);
+				assertTrue(nearlyEqual(quantiles[i], expected));
+			}
+
+			// Timestamps with gaps and repeats
+			long [] timestamps = new long[values.length];
+			for(int i=1; i<values.length; i++) {
+				timestamps[i] = timestamps[i - 1] + random.nextInt(5);
+			}
+			long windowLength = 1 + random.nextInt(50);
+			quantiles = rq.quantiles(values, timestamps, windowLength);
+			int oldest = 0;
+			for(int i=0; i<values.length; i++) {
+				while(timestamps[oldest] <= timestamps[i] - windowLength) {
+					oldest++;
+				}
+				double [] window = Arrays.copyOfRange(values, oldest, i + 1);
+				assertTrue(nearlyEqual(quantiles[i], qq.quantile(window, probability)));
+			}
+		}
+	}
+
+
+	@Test
+	public void testGrowth() {
+		// The window starts small and has to grow while the ring buffer wraps around
+		Random random = new Random(17);
+		RollingQuantileDoubleArray rm = new RollingQuantileDoubleArray();
+		QuickMedianDoubleArray qm = new QuickMedianDoubleArray();
+		double [] values = new double[3000];
+		int oldest = 0;
+		for(int i=0; i<values.length; i++) {
+			values[i] = random.nextDouble();
+			rm.add(values[i]);
+			if(random.nextInt(3) == 0) {
+				assertTrue(rm.removeOldest() == values[oldest++]);
+			}
+			assertTrue(rm.size() == i + 1 - oldest);
+			assertTrue(nearlyEqual(rm.quantile(), qm.median(Arrays.copyOfRange(values, oldest, i + 1))));
+		}
+	}
+}